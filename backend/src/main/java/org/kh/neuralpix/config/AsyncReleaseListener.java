@@ -0,0 +1,31 @@
+package org.kh.neuralpix.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+/**
+ * Runs a release once an async request is over, however it ends. The release must be idempotent.
+ */
+record AsyncReleaseListener(Runnable release) implements AsyncListener {
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        release.run();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        release.run();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        release.run();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+        // Re-register so the release also follows a restarted async cycle
+        event.getAsyncContext().addListener(this);
+    }
+}
@@ -0,0 +1,137 @@
+package org.kh.neuralpix.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.service.BusinessMetricsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Hibernate post-commit listener that feeds subscription and transaction state changes
+ * into {@link BusinessMetricsService}. Only committed changes are applied, so rolled back
+ * transactions never skew the dashboard aggregates.
+ */
+@Component
+public class BusinessMetricsEventListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusinessMetricsEventListener.class);
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final BusinessMetricsService metricsService;
+
+    public BusinessMetricsEventListener(EntityManagerFactory entityManagerFactory,
+                                        BusinessMetricsService metricsService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.metricsService = metricsService;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+        logger.info("Registered business metrics listener for subscription and transaction changes");
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Subscription.class || type == Transaction.class;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getPersister(), event.getState(), true);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getOldState() == null) {
+            // Without the previous state we cannot compute a delta; the periodic rebuild will catch up
+            logger.debug("Skipping metrics update for {} {} - no old state", event.getPersister().getEntityName(), event.getId());
+            return;
+        }
+        apply(event.getPersister(), event.getOldState(), false);
+        apply(event.getPersister(), event.getState(), true);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        apply(event.getPersister(), event.getDeletedState(), false);
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Nothing was applied before commit
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // Nothing was applied before commit
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // Nothing was applied before commit
+    }
+
+    private void apply(EntityPersister persister, Object[] state, boolean added) {
+        if (state == null) {
+            return;
+        }
+        try {
+            String[] names = persister.getPropertyNames();
+            if (persister.getMappedClass() == Subscription.class) {
+                Subscription.SubscriptionStatus status = (Subscription.SubscriptionStatus) value(names, state, "status");
+                Subscription.BillingCycle billingCycle = (Subscription.BillingCycle) value(names, state, "billingCycle");
+                BigDecimal price = (BigDecimal) value(names, state, "price");
+                if (added) {
+                    metricsService.subscriptionAdded(status, billingCycle, price);
+                } else {
+                    metricsService.subscriptionRemoved(status, billingCycle, price);
+                }
+            } else {
+                Transaction.TransactionStatus status = (Transaction.TransactionStatus) value(names, state, "status");
+                BigDecimal amount = (BigDecimal) value(names, state, "amount");
+                LocalDateTime updatedAt = (LocalDateTime) value(names, state, "updatedAt");
+                if (added) {
+                    metricsService.transactionAdded(status, amount, updatedAt);
+                } else {
+                    metricsService.transactionRemoved(status, amount, updatedAt);
+                }
+            }
+        } catch (Exception e) {
+            // Metrics must never break a committed business operation
+            logger.error("Failed to apply metrics update for {}", persister.getEntityName(), e);
+        }
+    }
+
+    private static Object value(String[] names, Object[] state, String property) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(property)) {
+                return state[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,330 @@
+package org.kh.neuralpix.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounds the heap held by large request bodies. JSON endpoints take base64 images inline
+ * (PixelCut's imageUrl, Vertex's baseImage and maskImage), which Jackson turns into Strings
+ * that are decoded again into byte arrays, so a body costs a multiple of its size until the
+ * request completes. Multipart limits do not cover them.
+ *
+ * Bodies over the threshold acquire their estimated heap cost from a fair byte-weighted
+ * semaphore sized to a share of the max heap, waiting briefly for room and otherwise getting 503
+ * with Retry-After. The cost is held until the response is complete, including async handling.
+ * Multipart bodies are skipped: the container spools them to disk.
+ *
+ * A chunked body has no declared length, so it is charged as the largest allowed body and read
+ * through a counting stream that answers 413 once it goes past that size.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class PayloadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadAdmissionFilter.class);
+
+    // Semaphore permits are whole KiB so multi-GB budgets fit in an int
+    private static final int UNIT = 1024;
+
+    private final long thresholdBytes;
+    private final long maxBodyBytes;
+    private final int expansionFactor;
+    private final long maxWaitMillis;
+    private final int budgetPermits;
+    private final Semaphore permits;
+
+    private final Counter admittedBytes;
+    private final Counter rejectedBytes;
+    private final Counter rejectedBusy;
+    private final Counter rejectedTooLarge;
+
+    // Slices without metrics auto-configuration (e.g. @WebMvcTest) have no MeterRegistry
+    @Autowired
+    public PayloadAdmissionFilter(@Value("${app.payload-admission.threshold-bytes:65536}") long thresholdBytes,
+                                  @Value("${app.payload-admission.max-body-bytes:16777216}") long maxBodyBytes,
+                                  @Value("${app.payload-admission.expansion-factor:3}") int expansionFactor,
+                                  @Value("${app.payload-admission.heap-fraction:0.25}") double heapFraction,
+                                  @Value("${app.payload-admission.max-wait-ms:2000}") long maxWaitMillis,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        this(thresholdBytes, maxBodyBytes, expansionFactor, heapFraction, maxWaitMillis,
+                meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+
+    public PayloadAdmissionFilter(long thresholdBytes, long maxBodyBytes, int expansionFactor, double heapFraction,
+                                  long maxWaitMillis, MeterRegistry meterRegistry) {
+        this.thresholdBytes = thresholdBytes;
+        this.maxBodyBytes = maxBodyBytes;
+        this.expansionFactor = Math.max(1, expansionFactor);
+        this.maxWaitMillis = maxWaitMillis;
+        long budgetBytes = (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        this.budgetPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / UNIT));
+        this.permits = new Semaphore(budgetPermits, true);
+        logger.info("Request payload admission budget: {} MB of heap", (long) budgetPermits * UNIT / (1024 * 1024));
+
+        Gauge.builder("neuralpix.payload.budget.bytes", this, f -> (double) f.budgetPermits * UNIT)
+                .description("Estimated heap available to large request bodies")
+                .register(meterRegistry);
+        Gauge.builder("neuralpix.payload.inflight.bytes", this,
+                        f -> (double) (f.budgetPermits - f.permits.availablePermits()) * UNIT)
+                .description("Estimated heap held by large request bodies in flight")
+                .register(meterRegistry);
+        Gauge.builder("neuralpix.payload.waiting", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for payload admission")
+                .register(meterRegistry);
+        admittedBytes = Counter.builder("neuralpix.payload.admitted.bytes")
+                .description("Body bytes of admitted large requests")
+                .register(meterRegistry);
+        rejectedBytes = Counter.builder("neuralpix.payload.rejected.bytes")
+                .description("Body bytes of rejected large requests")
+                .register(meterRegistry);
+        rejectedBusy = Counter.builder("neuralpix.payload.rejected")
+                .tag("reason", "busy")
+                .register(meterRegistry);
+        rejectedTooLarge = Counter.builder("neuralpix.payload.rejected")
+                .tag("reason", "too_large")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.toLowerCase().startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+            return true;
+        }
+        long length = request.getContentLengthLong();
+        // Unknown length (chunked) is charged as the largest allowed body
+        return length >= 0 && length < thresholdBytes
+                || length < 0 && request.getHeader(HttpHeaders.TRANSFER_ENCODING) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        long bodyBytes = length >= 0 ? length : maxBodyBytes;
+        if (bodyBytes > maxBodyBytes) {
+            rejectedTooLarge.increment();
+            rejectedBytes.increment(bodyBytes);
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body too large");
+            return;
+        }
+
+        int weight = weight(bodyBytes);
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(weight, maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedBusy.increment();
+            rejectedBytes.increment(bodyBytes);
+            logger.warn("Rejected {} byte request to {}: payload budget exhausted", bodyBytes, request.getRequestURI());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "2");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Server busy, please retry shortly");
+            return;
+        }
+        admittedBytes.increment(bodyBytes);
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release(weight);
+            }
+        };
+        try {
+            if (length >= 0) {
+                filterChain.doFilter(request, response);
+            } else {
+                LimitedRequest limited = new LimitedRequest(request, response, maxBodyBytes);
+                filterChain.doFilter(limited, new LimitedResponse(response, limited));
+            }
+        } finally {
+            if (request.isAsyncStarted()) {
+                // The parsed body lives on in the async handler until the response completes
+                request.getAsyncContext().addListener(new AsyncReleaseListener(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Permits for a body: its estimated heap cost in KiB, capped at the whole budget so a body
+     * bigger than the budget is still admitted, alone.
+     */
+    int weight(long bodyBytes) {
+        long units = (bodyBytes * expansionFactor + UNIT - 1) / UNIT;
+        return (int) Math.max(1, Math.min(budgetPermits, units));
+    }
+
+    /**
+     * Reads the body through a counting stream that sends 413 and fails the read once more than
+     * maxBytes arrive. The container enforces a declared Content-Length itself.
+     */
+    private final class LimitedRequest extends HttpServletRequestWrapper {
+
+        private final HttpServletResponse response;
+        private final long maxBytes;
+        private volatile boolean exceeded;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+
+        LimitedRequest(HttpServletRequest request, HttpServletResponse response, long maxBytes) {
+            super(request);
+            this.response = response;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public synchronized ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new CountingInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+
+        @Override
+        public synchronized BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+            }
+            return reader;
+        }
+
+        private void exceeded() throws IOException {
+            if (!exceeded) {
+                exceeded = true;
+                rejectedTooLarge.increment();
+                logger.warn("Rejected chunked request to {}: body over {} bytes", getRequestURI(), maxBytes);
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Request body too large");
+                }
+            }
+            throw new IOException("Request body exceeds " + maxBytes + " bytes");
+        }
+
+        private final class CountingInputStream extends ServletInputStream {
+
+            private final ServletInputStream delegate;
+            private long count;
+
+            CountingInputStream(ServletInputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = delegate.read();
+                if (b >= 0) {
+                    counted(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = delegate.read(buffer, offset, length);
+                if (read > 0) {
+                    counted(read);
+                }
+                return read;
+            }
+
+            private void counted(int bytes) throws IOException {
+                count += bytes;
+                if (count > maxBytes) {
+                    exceeded();
+                }
+            }
+
+            @Override
+            public boolean isFinished() {
+                return delegate.isFinished();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                delegate.setReadListener(readListener);
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+        }
+    }
+
+    /**
+     * Keeps the 413 once it is sent: the failed read surfaces in the handler as an unreadable
+     * body, whose 400 must not replace it.
+     */
+    private static final class LimitedResponse extends HttpServletResponseWrapper {
+
+        private final LimitedRequest request;
+
+        LimitedResponse(HttpServletResponse response, LimitedRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            if (!request.exceeded) {
+                super.sendError(sc, msg);
+            }
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            if (!request.exceeded) {
+                super.sendError(sc);
+            }
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            if (!request.exceeded) {
+                super.setStatus(sc);
+            }
+        }
+    }
+}
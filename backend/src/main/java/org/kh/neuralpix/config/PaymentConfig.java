@@ -23,6 +23,11 @@ public class PaymentConfig {
      */
     private PayOS payos = new PayOS();
     
+    /**
+     * Asynchronous webhook processing configuration
+     */
+    private Webhook webhook = new Webhook();
+    
     @Data
     public static class Frontend {
         private String baseUrl = "https://neura-pix-chi.vercel.app";
@@ -92,4 +97,14 @@ public class PaymentConfig {
         private boolean enableSignatureVerification = true;
         private int transactionTimeoutMinutes = 15;
     }
+    
+    @Data
+    public static class Webhook {
+        // Number of single-threaded workers; events for one order always go to the same worker
+        private int workerStripes = 4;
+        private int queueCapacity = 1000;
+        private int maxAttempts = 5;
+        private long retryBaseDelaySeconds = 30;
+        private long staleProcessingMinutes = 5;
+    }
 }
\ No newline at end of file
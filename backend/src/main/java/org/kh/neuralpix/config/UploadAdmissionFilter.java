@@ -0,0 +1,82 @@
+package org.kh.neuralpix.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.kh.neuralpix.exception.StorageAdmissionException;
+import org.kh.neuralpix.service.UploadStagingService;
+import org.kh.neuralpix.service.UploadStagingService.Reservation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Admits multipart bodies against the upload storage budget before they are parsed. The
+ * container spools multipart parts to java.io.tmpdir, which in production is the same in-memory
+ * filesystem as the upload directory, as soon as anything reads the parts. The reservation is
+ * taken on the declared Content-Length (the multipart request limit when it is not declared)
+ * and held until the request completes, including async handling, so the spooled parts are
+ * inside the budget. It also covers the upload once it is stored: FileUploadService does not
+ * reserve again.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class UploadAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadAdmissionFilter.class);
+
+    private final UploadStagingService uploadStagingService;
+    private final long maxRequestBytes;
+
+    public UploadAdmissionFilter(UploadStagingService uploadStagingService,
+                                 @Value("${spring.servlet.multipart.max-request-size:10MB}") DataSize maxRequestSize) {
+        this.uploadStagingService = uploadStagingService;
+        this.maxRequestBytes = maxRequestSize.toBytes();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType == null || !contentType.toLowerCase().startsWith(MediaType.MULTIPART_FORM_DATA_VALUE);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        // Longer bodies are refused by the container while parsing, before the limit is spooled
+        long bodyBytes = length >= 0 ? Math.min(length, maxRequestBytes) : maxRequestBytes;
+
+        Reservation reservation;
+        try {
+            reservation = uploadStagingService.reserve(bodyBytes);
+        } catch (StorageAdmissionException e) {
+            logger.warn("Rejected {} byte multipart request to {}: {}", bodyBytes, request.getRequestURI(), e.getMessage());
+            if (e.getRetryAfterSeconds() > 0) {
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            }
+            response.sendError(e.getStatus().value(), e.getMessage());
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // The parts stay spooled until the async response completes
+                request.getAsyncContext().addListener(new AsyncReleaseListener(reservation::close));
+            } else {
+                reservation.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.kh.neuralpix.controller;
+
+import org.kh.neuralpix.dto.UserDto;
+import org.kh.neuralpix.service.DirectUploadService;
+import org.kh.neuralpix.service.DirectUploadService.UploadResult;
+import org.kh.neuralpix.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/uploads")
+public class DirectUploadController {
+
+    private final DirectUploadService directUploadService;
+    private final UserService userService;
+
+    @Autowired
+    public DirectUploadController(DirectUploadService directUploadService, UserService userService) {
+        this.directUploadService = directUploadService;
+        this.userService = userService;
+    }
+
+    /**
+     * Signed parameters for uploading one image from the browser straight to Cloudinary
+     */
+    @PostMapping("/signature")
+    public ResponseEntity<?> sign(Authentication authentication) {
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(directUploadService.sign(userId));
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Verify Cloudinary's response to a direct upload and return the stored image
+     */
+    @PostMapping("/confirm")
+    public ResponseEntity<?> confirm(@RequestBody UploadResult result, Authentication authentication) {
+        Long userId = currentUserId(authentication);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(directUploadService.confirm(userId, result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
+        }
+    }
+
+    private Long currentUserId(Authentication authentication) {
+        if (authentication == null) {
+            return null;
+        }
+        return userService.findByEmail(authentication.getName()).map(UserDto::getId).orElse(null);
+    }
+}
@@ -1,11 +1,14 @@
 package org.kh.neuralpix.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.kh.neuralpix.service.FileUploadService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -42,11 +45,14 @@ public class FileUploadController {
     }
 
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<?> downloadFile(@PathVariable String fileName) {
+    public void downloadFile(@PathVariable String fileName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
         try {
-            return fileUploadService.downloadFile(fileName);
+            fileUploadService.downloadFile(fileName, request, response);
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body("Error downloading file: " + e.getMessage());
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Error downloading file: " + e.getMessage());
+            }
         }
     }
 
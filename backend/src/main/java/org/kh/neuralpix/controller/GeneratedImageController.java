@@ -2,17 +2,31 @@ package org.kh.neuralpix.controller;
 
 import org.kh.neuralpix.dto.request.GeneratedImageRequestDto;
 import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+import org.kh.neuralpix.dto.response.WorkHistoryResponseDto;
 import org.kh.neuralpix.model.GeneratedImage;
 import org.kh.neuralpix.service.GeneratedImageService;
+import org.kh.neuralpix.service.PublicGalleryService;
+import org.kh.neuralpix.service.TrendingService;
 import org.kh.neuralpix.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/images")
@@ -21,13 +35,23 @@ public class GeneratedImageController {
 
     private static final Logger logger = LoggerFactory.getLogger(GeneratedImageController.class);
 
+    private static final int MAX_PUBLIC_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "_";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final CacheControl PUBLIC_FEED_CACHE_CONTROL = CacheControl.maxAge(Duration.ofSeconds(30)).cachePublic();
+
     private final GeneratedImageService generatedImageService;
     private final UserService userService;
+    private final PublicGalleryService publicGalleryService;
+    private final TrendingService trendingService;
 
     @Autowired
-    public GeneratedImageController(GeneratedImageService generatedImageService, UserService userService) {
+    public GeneratedImageController(GeneratedImageService generatedImageService, UserService userService,
+                                    PublicGalleryService publicGalleryService, TrendingService trendingService) {
         this.generatedImageService = generatedImageService;
         this.userService = userService;
+        this.publicGalleryService = publicGalleryService;
+        this.trendingService = trendingService;
     }
 
     @GetMapping
@@ -68,14 +92,131 @@ public class GeneratedImageController {
         }
     }
 
+    /**
+     * Current user's work history, newest first, optionally filtered by a full-text search term
+     */
+    @GetMapping("/user/me/history")
+    public ResponseEntity<WorkHistoryResponseDto> getMyWorkHistory(@RequestParam(defaultValue = "0") int page,
+                                                                   @RequestParam(defaultValue = "20") int size,
+                                                                   @RequestParam(required = false) String search,
+                                                                   Authentication authentication) {
+        try {
+            Long userId = userService.findByEmail(authentication.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found with email: " + authentication.getName()))
+                    .getId();
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PUBLIC_PAGE_SIZE)));
+            return ResponseEntity.ok(generatedImageService.getUserWorkHistory(userId, search, pageable));
+        } catch (Exception e) {
+            logger.error("Error fetching work history for user: {}", authentication.getName(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Full-text search of the current user's work history by prompt text, style and operation.
+     * Every word matches as a prefix; results are ranked by relevance.
+     */
+    @GetMapping("/user/me/search")
+    public ResponseEntity<WorkHistoryResponseDto> searchMyImages(@RequestParam("q") String query,
+                                                                 @RequestParam(defaultValue = "0") int page,
+                                                                 @RequestParam(defaultValue = "20") int size,
+                                                                 Authentication authentication) {
+        try {
+            Long userId = userService.findByEmail(authentication.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found with email: " + authentication.getName()))
+                    .getId();
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PUBLIC_PAGE_SIZE)));
+            return ResponseEntity.ok(generatedImageService.getUserWorkHistory(userId, query, pageable));
+        } catch (Exception e) {
+            logger.error("Error searching images for user: {}", authentication.getName(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @GetMapping("/prompt/{promptId}")
     public ResponseEntity<List<GeneratedImage>> getImagesByPromptId(@PathVariable Long promptId) {
         return ResponseEntity.ok(generatedImageService.findByPromptId(promptId));
     }
 
+    /**
+     * Public gallery, newest first. The body stays a JSON array; the cursor for the next page
+     * is returned in the X-Next-Cursor header when there are more images.
+     */
     @GetMapping("/public")
-    public ResponseEntity<List<GeneratedImageResponseDto>> getPublicImages() {
-        return ResponseEntity.ok(generatedImageService.getPublicImagesDto());
+    public ResponseEntity<List<GeneratedImageResponseDto>> getPublicImages(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "24") int size,
+            WebRequest request) {
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        int pageSize = Math.max(1, Math.min(size, MAX_PUBLIC_PAGE_SIZE));
+        try {
+            if (cursor != null && !cursor.isBlank()) {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split(CURSOR_SEPARATOR, 2);
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                cursorCreatedAt = LocalDateTime.parse(parts[0]);
+                cursorId = Long.parseLong(parts[1]);
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            logger.warn("Invalid public gallery cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Fetch one extra image to know whether another page exists
+        List<GeneratedImageResponseDto> images = publicGalleryService.getFeed(cursorCreatedAt, cursorId, pageSize + 1);
+        boolean hasNext = images.size() > pageSize;
+        if (hasNext) {
+            images = images.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasNext) {
+            GeneratedImageResponseDto last = images.get(images.size() - 1);
+            String raw = last.getCreatedAt() + CURSOR_SEPARATOR + last.getId();
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String etag = feedETag(images, nextCursor);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(PUBLIC_FEED_CACHE_CONTROL).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).cacheControl(PUBLIC_FEED_CACHE_CONTROL);
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(images);
+    }
+
+    /**
+     * Public images ranked by time-decayed likes, downloads and views, served from the in-memory trending index
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<GeneratedImageResponseDto>> getTrendingImages(
+            @RequestParam(defaultValue = "24") int size,
+            WebRequest request) {
+        int limit = Math.max(1, Math.min(size, MAX_PUBLIC_PAGE_SIZE));
+        List<GeneratedImageResponseDto> images = trendingService.getTrendingImages(limit);
+
+        String etag = feedETag(images, null);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(PUBLIC_FEED_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(PUBLIC_FEED_CACHE_CONTROL).body(images);
+    }
+
+    /**
+     * Content-derived ETag: changes when any image on the page, its counters or the next cursor change
+     */
+    private static String feedETag(List<GeneratedImageResponseDto> images, String nextCursor) {
+        long hash = 1125899906842597L;
+        for (GeneratedImageResponseDto image : images) {
+            hash = 31 * hash + Objects.hash(image.getId(), image.getUpdatedAt(), image.getLikesCount(),
+                    image.getDownloadsCount(), image.getViewsCount(), image.getThumbnailUrl());
+        }
+        hash = 31 * hash + Objects.hashCode(nextCursor);
+        return "\"feed-" + Long.toHexString(hash) + "\"";
     }
 
     @PostMapping
@@ -0,0 +1,62 @@
+package org.kh.neuralpix.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.kh.neuralpix.service.StorageBackend;
+import org.kh.neuralpix.service.StorageBackend.StoredFile;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+
+/**
+ * Serves images stored by the local storage backend. URLs are public so image providers can
+ * fetch inputs, and immutable because names are content hashes.
+ */
+@RestController
+@RequestMapping("/api/storage")
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+public class LocalStorageController {
+
+    private final StorageBackend storageBackend;
+
+    public LocalStorageController(StorageBackend storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    @GetMapping("/{first}/{second}/{publicId:.+}")
+    public void serve(@PathVariable String first, @PathVariable String second, @PathVariable String publicId,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<StoredFile> file = publicId.startsWith(first + second) ? storageBackend.read(publicId) : Optional.empty();
+        if (file.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // The mapping may be unmapped once the file is closed, so nothing reads it after this block
+        try (StoredFile stored = file.get()) {
+            String etag = "\"" + stored.contentHash() + "\"";
+            if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+                return;
+            }
+            ByteBuffer content = stored.content();
+            response.setContentType(stored.contentType());
+            response.setContentLength(content.remaining());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+        }
+    }
+}
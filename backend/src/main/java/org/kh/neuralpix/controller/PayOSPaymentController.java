@@ -3,16 +3,13 @@ package org.kh.neuralpix.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.kh.neuralpix.config.PaymentConfig;
-import org.kh.neuralpix.constants.PayOSConstants;
-import org.kh.neuralpix.dto.UserDto;
 import org.kh.neuralpix.dto.payos.CreatePaymentLinkRequestDto;
 import org.kh.neuralpix.dto.payos.CreateUpgradePaymentLinkRequestDto;
 import org.kh.neuralpix.model.Transaction;
-import org.kh.neuralpix.service.EmailService;
 import org.kh.neuralpix.service.PayOSPaymentService;
-import org.kh.neuralpix.service.SubscriptionService;
+import org.kh.neuralpix.service.OrderCodeService;
+import org.kh.neuralpix.service.PaymentWebhookService;
 import org.kh.neuralpix.service.TransactionService;
-import org.kh.neuralpix.service.UserService;
 import org.kh.neuralpix.service.impl.PayOSPaymentServiceImpl;
 import org.kh.neuralpix.utils.PaymentResponseUtil;
 import org.kh.neuralpix.utils.PaymentStatusUtil;
@@ -40,10 +37,9 @@ public class PayOSPaymentController {
     private final PayOSPaymentService payOSPaymentService;
     private final PayOSPaymentServiceImpl payOSPaymentServiceImpl;
     private final TransactionService transactionService;
-    private final SubscriptionService subscriptionService;
     private final PaymentConfig paymentConfig;
-    private final UserService userService;
-    private final EmailService emailService;
+    private final PaymentWebhookService paymentWebhookService;
+    private final OrderCodeService orderCodeService;
 
     @PostMapping("/create-payment-link")
     public ResponseEntity<Map<String, Object>> createPaymentLink(@Valid @RequestBody CreatePaymentLinkRequestDto request) {
@@ -160,31 +156,30 @@ public class PayOSPaymentController {
 
             WebhookData verifiedData = payOSPaymentService.verifyWebhookData(webhookData);
             Long orderCodeLong = verifiedData.getOrderCode();
-            String statusCode = verifiedData.getCode();
 
-            log.info("Webhook verified for order: {} with status code: {}", orderCodeLong, statusCode);
+            log.info("Webhook verified for order: {} with status code: {}", orderCodeLong, verifiedData.getCode());
 
-            Optional<Transaction> transactionOpt = transactionService.findByOrderCode(orderCodeLong);
-            if (transactionOpt.isEmpty()) {
-                log.error("Transaction not found for order code: {}", orderCodeLong);
-                return PaymentResponseUtil.createWebhookErrorResponse("Transaction not found", 404);
+            // Persist and acknowledge immediately; the workers apply the payment asynchronously
+            boolean queued;
+            try {
+                queued = paymentWebhookService.enqueue(verifiedData);
+            } catch (Exception e) {
+                // Not stored, so PayOS must retry: a 2xx here would lose the payment event
+                log.error("Could not store PayOS webhook for order: {}", orderCode, e);
+                return PaymentResponseUtil.createWebhookErrorResponse("Webhook could not be stored, please retry", 503);
+            }
+            if (!queued) {
+                return PaymentResponseUtil.createWebhookSuccessResponse("Duplicate webhook ignored");
             }
 
-            Transaction transaction = transactionOpt.get();
-            log.info("Processing webhook for transaction ID: {} with current status: {} and webhook status: {}",
-                transaction.getId(), transaction.getStatus(), statusCode);
-
-            processPaymentWebhook(transaction, statusCode, orderCodeLong);
-
-            log.info("PayOS webhook processed successfully for order: {}", orderCodeLong);
-            return PaymentResponseUtil.createWebhookSuccessResponse("Webhook processed successfully");
+            return PaymentResponseUtil.createWebhookSuccessResponse("Webhook received");
 
         } catch (SecurityException e) {
             log.error("Security error processing PayOS webhook for order: {}", orderCode, e);
             return PaymentResponseUtil.createWebhookErrorResponse("Unauthorized webhook", 401);
         } catch (Exception e) {
-            log.error("Error processing PayOS webhook for order: {}", orderCode, e);
-            // Return success để tránh PayOS retry, nhưng log error để manual review
+            log.error("Error receiving PayOS webhook for order: {}", orderCode, e);
+            // Webhook không hợp lệ (không xác thực được): trả success để PayOS không retry
             return PaymentResponseUtil.createWebhookAcceptedResponse("Webhook received but processing failed - manual review required");
         }
     }
@@ -240,7 +235,7 @@ public class PayOSPaymentController {
             PaymentValidationUtil.validateUpgradePaymentRequest(request);
 
             // Generate unique order code for upgrade payment
-            Long orderCode = System.currentTimeMillis() / 1000;
+            Long orderCode = orderCodeService.nextOrderCode();
             
             // Create product name for upgrade
             String productName = String.format("Subscription Upgrade - %s to %s", 
@@ -353,135 +348,6 @@ public class PayOSPaymentController {
     }
 
 
-    private void processPaymentWebhook(Transaction transaction, String statusCode, Long orderCode) {
-        try {
-            log.info("Processing payment webhook for transaction: {} with PayOS status code: {}", 
-                transaction.getId(), statusCode);
-
-            if (PayOSConstants.PAYMENT_SUCCESS.equals(statusCode)) {
-                handleSuccessfulPaymentWebhook(transaction, orderCode);
-            } else if (PayOSConstants.PAYMENT_CANCELLED.equals(statusCode)) {
-                handleCancelledPaymentWebhook(transaction, orderCode);
-            } else if (PayOSConstants.PAYMENT_FAILED.equals(statusCode)) {
-                handleFailedPaymentWebhook(transaction, orderCode);
-            } else if (PayOSConstants.PAYMENT_PENDING.equals(statusCode)) {
-                handlePendingPaymentWebhook(transaction, orderCode);
-            } else {
-                log.warn("Unknown PayOS status code: {} for order: {}, treating as failed", statusCode, orderCode);
-                handleFailedPaymentWebhook(transaction, orderCode);
-            }
-        } catch (Exception e) {
-            log.error("Error processing payment webhook for order: {}", orderCode, e);
-            throw e;
-        }
-    }
-
-    private void handleSuccessfulPaymentWebhook(Transaction transaction, Long orderCode) {
-        try {
-            log.info("Processing successful payment webhook for order: {} with transaction ID: {}", 
-                orderCode, transaction.getId());
-
-            if (transaction.isPaid()) {
-                log.info("Transaction {} is already marked as paid, skipping processing", transaction.getId());
-                return;
-            }
-
-            transaction = transactionService.markTransactionAsPaid(orderCode, PayOSConstants.DEFAULT_PAYMENT_PROVIDER);
-            log.info("Transaction {} marked as paid successfully", transaction.getId());
-
-            if (transaction.getSubscriptionId() != null) {
-                if (transaction.getType() == Transaction.TransactionType.SUBSCRIPTION_PAYMENT) {
-                    log.info("Activating subscription: {} for transaction: {}", 
-                        transaction.getSubscriptionId(), transaction.getId());
-                    
-                    try {
-                        subscriptionService.activateSubscription(transaction.getSubscriptionId());
-                        log.info("Subscription {} activated successfully", transaction.getSubscriptionId());
-                    } catch (Exception e) {
-                        log.error("Failed to activate subscription {} for paid transaction {}. Manual intervention may be required.", 
-                            transaction.getSubscriptionId(), transaction.getId(), e);
-                    }
-                } else if (transaction.getType() == Transaction.TransactionType.SUBSCRIPTION_UPGRADE) {
-                    log.info("Processing subscription upgrade: {} for transaction: {}", 
-                        transaction.getSubscriptionId(), transaction.getId());
-                    
-                    try {
-                        processUpgradePaymentConfirmation(transaction);
-                        log.info("Subscription upgrade {} processed successfully", transaction.getSubscriptionId());
-                    } catch (Exception e) {
-                        log.error("Failed to process subscription upgrade {} for paid transaction {}. Manual intervention may be required.", 
-                            transaction.getSubscriptionId(), transaction.getId(), e);
-                    }
-                }
-            }
-
-            sendPaymentSuccessEmail(transaction);
-            
-            log.info("Successful payment webhook processing completed for order: {}", orderCode);
-            
-        } catch (IllegalStateException e) {
-            log.warn("Transaction {} is already in final state: {}", orderCode, e.getMessage());
-            // Không cần fail webhook nếu transaction đã được xử lý
-        } catch (Exception e) {
-            log.error("Error processing successful payment webhook for order: {}", orderCode, e);
-            throw e;
-        }
-    }
-
-    private void handleCancelledPaymentWebhook(Transaction transaction, Long orderCode) {
-        try {
-            log.info("Processing cancelled payment webhook for order: {}", orderCode);
-            
-            if (transaction.isCancelled()) {
-                log.info("Transaction {} is already cancelled", transaction.getId());
-                return;
-            }
-            
-            transactionService.markTransactionAsCancelled(orderCode);
-            log.info("Transaction {} marked as cancelled", transaction.getId());
-            
-        } catch (IllegalStateException e) {
-            log.warn("Transaction {} is already in final state: {}", orderCode, e.getMessage());
-        } catch (Exception e) {
-            log.error("Error processing cancelled payment webhook for order: {}", orderCode, e);
-            throw e;
-        }
-    }
-
-    private void handleFailedPaymentWebhook(Transaction transaction, Long orderCode) {
-        try {
-            log.info("Processing failed payment webhook for order: {}", orderCode);
-            
-            if (transaction.isFailed()) {
-                log.info("Transaction {} is already marked as failed", transaction.getId());
-                return;
-            }
-            
-            transactionService.markTransactionAsFailed(orderCode);
-            log.info("Transaction {} marked as failed", transaction.getId());
-            
-        } catch (IllegalStateException e) {
-            log.warn("Transaction {} is already in final state: {}", orderCode, e.getMessage());
-        } catch (Exception e) {
-            log.error("Error processing failed payment webhook for order: {}", orderCode, e);
-            throw e;
-        }
-    }
-
-
-    private void handlePendingPaymentWebhook(Transaction transaction, Long orderCode) {
-        try {
-            log.info("Processing pending payment webhook for order: {}", orderCode);
-            
-            // Transaction đã ở trạng thái PENDING từ khi tạo, không cần cập nhật gì
-            log.info("Transaction {} remains in pending status", transaction.getId());
-            
-        } catch (Exception e) {
-            log.error("Error processing pending payment webhook for order: {}", orderCode, e);
-            throw e;
-        }
-    }
-
     private String determinePaymentStatusFromParams(String code, String status, String cancel) {
         // PayOS uses code=00 for success, and cancel=false for successful payments
         if (code != null && "00".equals(code.trim()) && "false".equals(cancel)) {
@@ -546,76 +412,4 @@ public class PayOSPaymentController {
         }
         return paymentConfig.getFrontend().getPaymentCancelUrl(orderCode);
     }
-
-    private void sendPaymentSuccessEmail(Transaction transaction) {
-        try {
-            Optional<UserDto> user = userService.findById(transaction.getUserId());
-            if (user.isEmpty()) {
-                log.warn("User not found for transaction {}, skipping email notification", transaction.getId());
-                return;
-            }
-            
-            if (transaction.getSubscriptionId() != null) {
-                log.info("Subscription confirmation email will be sent by subscription service for transaction {}", transaction.getId());
-            } else {
-                log.info("Payment confirmation email would be sent for transaction {} to user {}", 
-                    transaction.getId(), user.get().getEmail());
-                // emailService.sendPaymentConfirmation(user, transaction);
-            }
-        } catch (Exception e) {
-            log.error("Failed to send payment success email for transaction {}. User will not receive email notification.", 
-                transaction.getId(), e);
-        }
-    }
-
-    /**
-     * Process upgrade payment confirmation and apply subscription upgrade
-     */
-    private void processUpgradePaymentConfirmation(Transaction transaction) {
-        try {
-            log.info("Processing upgrade payment confirmation for transaction: {}", transaction.getId());
-            
-            // Extract upgrade details from transaction description
-            String description = transaction.getDescription();
-            if (description == null || !description.contains("from") || !description.contains("to")) {
-                throw new IllegalStateException("Transaction description doesn't contain upgrade information");
-            }
-            
-            // Parse tier information from description like "Upgrade from BASIC to PREMIUM"
-            String[] parts = description.split(" ");
-            String currentTierStr = null;
-            String newTierStr = null;
-            
-            for (int i = 0; i < parts.length - 2; i++) {
-                if ("from".equals(parts[i]) && i + 1 < parts.length) {
-                    currentTierStr = parts[i + 1];
-                }
-                if ("to".equals(parts[i]) && i + 1 < parts.length) {
-                    newTierStr = parts[i + 1];
-                }
-            }
-            
-            if (currentTierStr == null || newTierStr == null) {
-                throw new IllegalStateException("Upgrade tier information is missing from transaction metadata");
-            }
-            
-            // Create upgrade request
-            org.kh.neuralpix.dto.request.SubscriptionUpgradeDto upgradeRequest = 
-                new org.kh.neuralpix.dto.request.SubscriptionUpgradeDto();
-            upgradeRequest.setNewTier(org.kh.neuralpix.model.enums.SubscriptionTier.valueOf(newTierStr));
-            upgradeRequest.setReason("Payment confirmed upgrade");
-            upgradeRequest.setUpgradeImmediately(true);
-            upgradeRequest.setPaymentOrderCode(transaction.getOrderCode());
-            
-            // Apply the subscription upgrade
-            subscriptionService.upgradeSubscription(transaction.getSubscriptionId(), upgradeRequest);
-            
-            log.info("Subscription upgrade applied successfully for transaction: {} - {} to {}", 
-                transaction.getId(), currentTierStr, newTierStr);
-                
-        } catch (Exception e) {
-            log.error("Failed to process upgrade payment confirmation for transaction: {}", transaction.getId(), e);
-            throw e;
-        }
-    }
 }
\ No newline at end of file
@@ -2,8 +2,7 @@ package org.kh.neuralpix.controller;
 
 import org.kh.neuralpix.dto.pixelcut.PixelCutImageGenerationRequest;
 import org.kh.neuralpix.dto.pixelcut.PixelCutImageGenerationResponse;
-import org.kh.neuralpix.model.GeneratedImage;
-import org.kh.neuralpix.service.GeneratedImageService;
+import org.kh.neuralpix.dto.UserDto;
 import org.kh.neuralpix.service.PixelCutService;
 import org.kh.neuralpix.service.UsageTrackingService;
 import org.kh.neuralpix.service.UserService;
@@ -29,9 +28,6 @@ public class PixelCutController {
     @Autowired
     private UsageTrackingService usageTrackingService;
 
-    @Autowired
-    private GeneratedImageService generatedImageService;
-
     @Autowired
     private UserService userService;
 
@@ -45,8 +41,9 @@ public class PixelCutController {
         
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Validate usage limits
-                if (!usageTrackingService.canProcessImage(authentication.getName())) {
+                // Resolve the user once; the recorder takes the id from here on
+                Long userId = userService.findByEmail(authentication.getName()).map(UserDto::getId).orElse(null);
+                if (userId == null || !usageTrackingService.canGenerateImage(userId)) {
                     logger.warn("[{}] User {} exceeded image processing usage limit", correlationId, authentication.getName());
                     PixelCutImageGenerationResponse errorResponse = PixelCutImageGenerationResponse.builder()
                         .success(false)
@@ -67,7 +64,7 @@ public class PixelCutController {
 
                 // Process image
                 logger.info("[{}] Starting PixelCut background removal for user: {}", correlationId, authentication.getName());
-                PixelCutImageGenerationResponse response = pixelCutService.removeBackground(request).join();
+                PixelCutImageGenerationResponse response = pixelCutService.removeBackground(request, userId).join();
                 
                 if (response == null) {
                     logger.error("[{}] Received null response from PixelCut service", correlationId);
@@ -80,27 +77,6 @@ public class PixelCutController {
 
                 logger.info("[{}] PixelCut processing completed. Success: {}", correlationId, response.isSuccess());
 
-                if (response.isSuccess()) {
-                    // Track usage - don't fail if this fails
-                    try {
-                        usageTrackingService.trackImageProcessingUsage(authentication.getName());
-                        logger.info("[{}] Tracked background removal usage for user: {}", correlationId, authentication.getName());
-                    } catch (Exception usageEx) {
-                        logger.error("[{}] Failed to track usage for user {}: {}", correlationId, authentication.getName(), usageEx.getMessage());
-                        // Continue - don't fail the main operation
-                    }
-                    
-                    // Create GeneratedImage record - don't fail if this fails
-                    try {
-                        createGeneratedImageRecord(authentication.getName(), response, "remove-background", 
-                                                 request.getImageUrl(), null);
-                        logger.info("[{}] Created GeneratedImage record for user: {}", correlationId, authentication.getName());
-                    } catch (Exception recordEx) {
-                        logger.error("[{}] Failed to create GeneratedImage record for user {}: {}", correlationId, authentication.getName(), recordEx.getMessage());
-                        // Continue - don't fail the main operation
-                    }
-                }
-                
                 logger.info("[{}] Returning response to user: {} - Success: {}", correlationId, authentication.getName(), response.isSuccess());
                 return ResponseEntity.ok(response);
                 
@@ -134,8 +110,9 @@ public class PixelCutController {
         
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Validate usage limits
-                if (!usageTrackingService.canProcessImage(authentication.getName())) {
+                // Resolve the user once; the recorder takes the id from here on
+                Long userId = userService.findByEmail(authentication.getName()).map(UserDto::getId).orElse(null);
+                if (userId == null || !usageTrackingService.canGenerateImage(userId)) {
                     logger.warn("[{}] User {} exceeded image processing usage limit", correlationId, authentication.getName());
                     PixelCutImageGenerationResponse errorResponse = PixelCutImageGenerationResponse.builder()
                         .success(false)
@@ -165,7 +142,7 @@ public class PixelCutController {
 
                 // Process image
                 logger.info("[{}] Starting PixelCut background generation for user: {}", correlationId, authentication.getName());
-                PixelCutImageGenerationResponse response = pixelCutService.generateBackground(request).join();
+                PixelCutImageGenerationResponse response = pixelCutService.generateBackground(request, userId).join();
 
                 if (response == null) {
                     logger.error("[{}] Received null response from PixelCut service", correlationId);
@@ -178,25 +155,6 @@ public class PixelCutController {
 
                 logger.info("[{}] PixelCut processing completed. Success: {}", correlationId, response.isSuccess());
 
-                if (response.isSuccess()) {
-                    // Track usage - don't fail if this fails
-                    try {
-                        usageTrackingService.trackImageProcessingUsage(authentication.getName());
-                        logger.info("[{}] Tracked background generation usage for user: {}", correlationId, authentication.getName());
-                    } catch (Exception usageEx) {
-                        logger.error("[{}] Failed to track usage for user {}: {}", correlationId, authentication.getName(), usageEx.getMessage());
-                    }
-                    
-                    // Create GeneratedImage record - don't fail if this fails
-                    try {
-                        createGeneratedImageRecord(authentication.getName(), response, "generate-background", 
-                                                 request.getImageUrl(), request.getPrompt());
-                        logger.info("[{}] Created GeneratedImage record for user: {}", correlationId, authentication.getName());
-                    } catch (Exception recordEx) {
-                        logger.error("[{}] Failed to create GeneratedImage record for user {}: {}", correlationId, authentication.getName(), recordEx.getMessage());
-                    }
-                }
-                
                 logger.info("[{}] Returning response to user: {} - Success: {}", correlationId, authentication.getName(), response.isSuccess());
                 return ResponseEntity.ok(response);
                 
@@ -228,8 +186,9 @@ public class PixelCutController {
         
         return CompletableFuture.supplyAsync(() -> {
             try {
-                // Validate usage limits
-                if (!usageTrackingService.canProcessImage(authentication.getName())) {
+                // Resolve the user once; the recorder takes the id from here on
+                Long userId = userService.findByEmail(authentication.getName()).map(UserDto::getId).orElse(null);
+                if (userId == null || !usageTrackingService.canGenerateImage(userId)) {
                     logger.warn("[{}] User {} exceeded image processing usage limit", correlationId, authentication.getName());
                     PixelCutImageGenerationResponse errorResponse = PixelCutImageGenerationResponse.builder()
                         .success(false)
@@ -262,7 +221,7 @@ public class PixelCutController {
 
                 // Process image
                 logger.info("[{}] Starting PixelCut image upscaling for user: {}", correlationId, authentication.getName());
-                PixelCutImageGenerationResponse response = pixelCutService.upScale(request).join();
+                PixelCutImageGenerationResponse response = pixelCutService.upScale(request, userId).join();
 
                 if (response == null) {
                     logger.error("[{}] Received null response from PixelCut service", correlationId);
@@ -275,25 +234,6 @@ public class PixelCutController {
 
                 logger.info("[{}] PixelCut processing completed. Success: {}", correlationId, response.isSuccess());
 
-                if (response.isSuccess()) {
-                    // Track usage - don't fail if this fails
-                    try {
-                        usageTrackingService.trackImageProcessingUsage(authentication.getName());
-                        logger.info("[{}] Tracked image upscaling usage for user: {}", correlationId, authentication.getName());
-                    } catch (Exception usageEx) {
-                        logger.error("[{}] Failed to track usage for user {}: {}", correlationId, authentication.getName(), usageEx.getMessage());
-                    }
-                    
-                    // Create GeneratedImage record - don't fail if this fails
-                    try {
-                        createGeneratedImageRecord(authentication.getName(), response, "upscale", 
-                                                 request.getImageUrl(), "Image upscaling " + request.getScale() + "x");
-                        logger.info("[{}] Created GeneratedImage record for user: {}", correlationId, authentication.getName());
-                    } catch (Exception recordEx) {
-                        logger.error("[{}] Failed to create GeneratedImage record for user {}: {}", correlationId, authentication.getName(), recordEx.getMessage());
-                    }
-                }
-                
                 logger.info("[{}] Returning response to user: {} - Success: {}", correlationId, authentication.getName(), response.isSuccess());
                 return ResponseEntity.ok(response);
                 
@@ -319,51 +259,4 @@ public class PixelCutController {
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("PixelCut Controller is running!");
     }
-
-    /**
-     * Helper method to create GeneratedImage record for work history tracking
-     */
-    private void createGeneratedImageRecord(String username, PixelCutImageGenerationResponse response, 
-                                          String operation, String originalImageUrl, String prompt) {
-        try {
-            // Get user ID
-            Long userId = userService.findByEmail(username)
-                    .orElseThrow(() -> new RuntimeException("User not found"))
-                    .getId();
-            
-            // Get the processed image URL from response
-            String processedImageUrl = null;
-            Integer fileSize = null;
-            
-            if (response.getImageUrls() != null && !response.getImageUrls().isEmpty()) {
-                processedImageUrl = response.getImageUrls().get(0);
-            } else if (response.getImages() != null && !response.getImages().isEmpty()) {
-                processedImageUrl = response.getImages().get(0).getImageUrl();
-                fileSize = response.getImages().get(0).getFileSize();
-            }
-            
-            if (processedImageUrl != null) {
-                // Create GeneratedImage record without prompt
-                String promptText = prompt != null ? prompt : (operation + " operation");
-                GeneratedImage generatedImage = generatedImageService.createImageFromPixelCutProcessing(
-                    processedImageUrl,
-                    null, // No thumbnail for PixelCut operations
-                    userId,
-                    fileSize,
-                    operation,
-                    promptText
-                );
-                
-                logger.info("Created GeneratedImage record {} for {} operation by user {}", 
-                           generatedImage.getId(), operation, username);
-            } else {
-                logger.warn("No processed image URL found in PixelCut response for {} operation", operation);
-            }
-            
-        } catch (Exception e) {
-            logger.error("Failed to create GeneratedImage record for {} operation by user {}: {}", 
-                        operation, username, e.getMessage(), e);
-            // Don't fail the main operation, just log the error
-        }
-    }
-}
\ No newline at end of file
+}
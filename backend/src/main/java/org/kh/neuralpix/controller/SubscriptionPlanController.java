@@ -9,10 +9,14 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,6 +28,11 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = {"http://localhost:5173", "https://neura-pix-chi.vercel.app"}, allowCredentials = "true")
 public class SubscriptionPlanController {
 
+    // Plans change rarely; let browsers and CDNs reuse the response and revalidate with the ETag
+    private static final CacheControl PLANS_CACHE_CONTROL = CacheControl.maxAge(Duration.ofMinutes(5))
+            .cachePublic()
+            .staleWhileRevalidate(Duration.ofMinutes(1));
+
     private final SubscriptionPlanService service;
 
     @Autowired
@@ -32,8 +41,12 @@ public class SubscriptionPlanController {
     }
 
     @GetMapping
-    public ResponseEntity<List<SubscriptionPlan>> getAll() {
-        return ResponseEntity.ok(service.getAll());
+    public ResponseEntity<List<SubscriptionPlan>> getAll(WebRequest request) {
+        String etag = catalogETag("all");
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(PLANS_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(PLANS_CACHE_CONTROL).body(service.getAll());
     }
 
     @GetMapping("/{id}")
@@ -46,8 +59,19 @@ public class SubscriptionPlanController {
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<SubscriptionPlan>> getActivePlans() {
-        return ResponseEntity.ok(service.getActivePlans());
+    public ResponseEntity<List<SubscriptionPlan>> getActivePlans(WebRequest request) {
+        String etag = catalogETag("active");
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(PLANS_CACHE_CONTROL).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(PLANS_CACHE_CONTROL).body(service.getActivePlans());
+    }
+
+    /**
+     * ETag derived from the plan catalog version; the view name keeps /plans and /plans/active distinct
+     */
+    private String catalogETag(String view) {
+        return "\"plans-" + view + "-v" + service.getCatalogVersion() + "\"";
     }
 
     @PostMapping
@@ -295,33 +319,12 @@ public class SubscriptionPlanController {
         try {
             log.info("Toggling status for plan: {}", id);
             
-            // Mock implementation for toggle status - would be implemented in service layer
-            SubscriptionPlan plan = service.getById(id);
+            SubscriptionPlanDto plan = service.toggleStatus(id);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Plan status updated successfully");
-            response.put("plan", SubscriptionPlanDto.builder()
-                .id(plan.getId())
-                .name(plan.getName())
-                .description(plan.getDescription())
-                .tier(plan.getTier() != null ? plan.getTier().name() : null)
-                .monthlyPrice(plan.getMonthlyPrice())
-                .yearlyPrice(plan.getYearlyPrice())
-                .dailyGenerationLimit(plan.getDailyGenerationLimit())
-                .monthlyGenerationLimit(plan.getMonthlyGenerationLimit())
-                .maxImageResolution(plan.getMaxImageResolution())
-                .priorityProcessing(plan.getPriorityProcessing())
-                .watermarkRemoval(plan.getWatermarkRemoval())
-                .commercialLicense(plan.getCommercialLicense())
-                .apiAccess(plan.getApiAccess())
-                .advancedModels(plan.getAdvancedModels())
-                .concurrentGenerations(plan.getConcurrentGenerations())
-                .isActive(plan.getIsActive() == SubscriptionPlan.IsActive.FALSE ? "TRUE" : "FALSE") // Toggle the status
-                .sortOrder(plan.getSortOrder())
-                .createdAt(plan.getCreatedAt())
-                .updatedAt(plan.getUpdatedAt())
-                .build());
+            response.put("plan", plan);
             
             return ResponseEntity.ok(response);
             
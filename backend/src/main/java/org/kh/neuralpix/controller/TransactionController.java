@@ -1,5 +1,6 @@
 package org.kh.neuralpix.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.kh.neuralpix.dto.TransactionDto;
@@ -8,10 +9,21 @@ import org.kh.neuralpix.service.TransactionService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +37,15 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = {"http://localhost:5173", "https://neura-pix-chi.vercel.app"}, allowCredentials = "true")
 public class TransactionController {
 
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "_";
+    private static final MediaType NDJSON_MEDIA_TYPE = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV_MEDIA_TYPE = MediaType.parseMediaType("text/csv; charset=UTF-8");
+    private static final String CSV_HEADER = "id,orderCode,userId,subscriptionId,amount,currency,status,type," +
+            "paymentProvider,description,buyerEmail,paymentMethod,createdAt,updatedAt\n";
+
     private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Lấy transaction theo ID
@@ -241,7 +261,7 @@ public class TransactionController {
     }
 
     /**
-     * Tìm kiếm transactions trong khoảng thời gian
+     * Tìm kiếm transactions trong khoảng thời gian, lọc ở DB và phân trang bằng cursor
      */
     @GetMapping("/search")
     public ResponseEntity<Map<String, Object>> searchTransactions(
@@ -249,47 +269,54 @@ public class TransactionController {
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) String type) {
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            log.info("Searching transactions with filters - userId: {}, startDate: {}, endDate: {}, status: {}, type: {}", 
-                    userId, startDate, endDate, status, type);
+            log.info("Searching transactions with filters - userId: {}, startDate: {}, endDate: {}, status: {}, type: {}, cursor: {}", 
+                    userId, startDate, endDate, status, type, cursor);
             
             // Parse dates
             LocalDateTime start = startDate != null ? LocalDateTime.parse(startDate) : LocalDateTime.now().minusMonths(1);
             LocalDateTime end = endDate != null ? LocalDateTime.parse(endDate) : LocalDateTime.now();
-            
-            List<Transaction> transactions;
-            
-            if (userId != null) {
-                transactions = transactionService.getUserTransactionsBetweenDates(userId, start, end);
-            } else {
-                transactions = transactionService.getTransactionsBetweenDates(start, end);
+            Transaction.TransactionStatus transactionStatus = parseStatus(status);
+            Transaction.TransactionType transactionType = parseType(type);
+            
+            LocalDateTime cursorCreatedAt = null;
+            Long cursorId = null;
+            if (cursor != null && !cursor.isBlank()) {
+                String[] parts = decodeCursor(cursor);
+                cursorCreatedAt = LocalDateTime.parse(parts[0]);
+                cursorId = Long.parseLong(parts[1]);
             }
             
-            // Filter by status if provided
-            if (status != null) {
-                Transaction.TransactionStatus transactionStatus = Transaction.TransactionStatus.valueOf(status.toUpperCase());
-                transactions = transactions.stream()
-                        .filter(t -> t.getStatus() == transactionStatus)
-                        .collect(Collectors.toList());
-            }
+            int pageSize = Math.max(1, Math.min(size, MAX_SEARCH_PAGE_SIZE));
+            // Fetch one extra row to know whether another page exists
+            List<Transaction> transactions = transactionService.searchTransactions(userId, transactionStatus,
+                    transactionType, start, end, cursorCreatedAt, cursorId, pageSize + 1);
             
-            // Filter by type if provided
-            if (type != null) {
-                Transaction.TransactionType transactionType = Transaction.TransactionType.valueOf(type.toUpperCase());
-                transactions = transactions.stream()
-                        .filter(t -> t.getType() == transactionType)
-                        .collect(Collectors.toList());
+            boolean hasNext = transactions.size() > pageSize;
+            if (hasNext) {
+                transactions = transactions.subList(0, pageSize);
             }
             
             List<TransactionDto> transactionDtos = transactions.stream()
                     .map(TransactionDto::fromEntity)
                     .collect(Collectors.toList());
             
+            Map<String, Object> pagination = new HashMap<>();
+            pagination.put("pageSize", pageSize);
+            pagination.put("hasNext", hasNext);
+            if (hasNext) {
+                Transaction last = transactions.get(transactions.size() - 1);
+                pagination.put("nextCursor", encodeCursor(last));
+            }
+            
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", transactionDtos);
             response.put("total", transactionDtos.size());
+            response.put("pagination", pagination);
             Map<String, Object> filters = new HashMap<>();
             filters.put("userId", userId);
             filters.put("startDate", start);
@@ -300,6 +327,12 @@ public class TransactionController {
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.error("Invalid transaction search parameters: {}", e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("message", "Invalid search parameters: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             log.error("Error searching transactions", e);
             Map<String, Object> error = new HashMap<>();
@@ -308,4 +341,113 @@ public class TransactionController {
             return ResponseEntity.internalServerError().body(error);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Export transactions theo bộ lọc dưới dạng NDJSON hoặc CSV, stream trực tiếp từ DB
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "ndjson") String format) {
+        LocalDateTime start;
+        LocalDateTime end;
+        Transaction.TransactionStatus transactionStatus;
+        Transaction.TransactionType transactionType;
+        try {
+            start = startDate != null ? LocalDateTime.parse(startDate) : LocalDateTime.now().minusMonths(1);
+            end = endDate != null ? LocalDateTime.parse(endDate) : LocalDateTime.now();
+            transactionStatus = parseStatus(status);
+            transactionType = parseType(type);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            log.error("Invalid transaction export parameters: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Exporting transactions as {} - userId: {}, startDate: {}, endDate: {}, status: {}, type: {}",
+                format, userId, start, end, status, type);
+        
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            if (csv) {
+                writer.write(CSV_HEADER);
+            }
+            transactionService.exportTransactions(userId, transactionStatus, transactionType, start, end, transaction -> {
+                try {
+                    if (csv) {
+                        writer.write(toCsvRow(transaction));
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(TransactionDto.fromEntity(transaction)));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+        
+        String filename = "transactions." + (csv ? "csv" : "ndjson");
+        return ResponseEntity.ok()
+                .contentType(csv ? CSV_MEDIA_TYPE : NDJSON_MEDIA_TYPE)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    private static Transaction.TransactionStatus parseStatus(String status) {
+        return status != null ? Transaction.TransactionStatus.valueOf(status.toUpperCase()) : null;
+    }
+
+    private static Transaction.TransactionType parseType(String type) {
+        return type != null ? Transaction.TransactionType.valueOf(type.toUpperCase()) : null;
+    }
+
+    private static String encodeCursor(Transaction transaction) {
+        String raw = transaction.getCreatedAt() + CURSOR_SEPARATOR + transaction.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = raw.split(CURSOR_SEPARATOR, 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return parts;
+    }
+
+    private static String toCsvRow(Transaction t) {
+        return String.join(",",
+                String.valueOf(t.getId()),
+                String.valueOf(t.getOrderCode()),
+                String.valueOf(t.getUserId()),
+                t.getSubscriptionId() != null ? t.getSubscriptionId().toString() : "",
+                t.getAmount() != null ? t.getAmount().toPlainString() : "",
+                csvField(t.getCurrency()),
+                t.getStatus() != null ? t.getStatus().name() : "",
+                t.getType() != null ? t.getType().name() : "",
+                csvField(t.getPaymentProvider()),
+                csvField(t.getDescription()),
+                csvField(t.getBuyerEmail()),
+                csvField(t.getPaymentMethod()),
+                t.getCreatedAt() != null ? t.getCreatedAt().toString() : "",
+                t.getUpdatedAt() != null ? t.getUpdatedAt().toString() : "") + "\n";
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
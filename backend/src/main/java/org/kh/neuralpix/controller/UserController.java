@@ -5,29 +5,39 @@ import org.kh.neuralpix.dto.UserDto;
 import org.kh.neuralpix.dto.users.PagedUserResponse;
 import org.kh.neuralpix.dto.users.UserCreateRequestDto;
 import org.kh.neuralpix.dto.users.UserUpdateRequestDto;
-import org.kh.neuralpix.service.CloudinaryService;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.DirectUploadService;
+import org.kh.neuralpix.service.DirectUploadService.UploadResult;
+import org.kh.neuralpix.service.StorageBackend;
 import org.kh.neuralpix.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/v1/users")
 public class UserController {
 
     private final UserService userService;
-    private final CloudinaryService cloudinaryService;
+    private final StorageBackend storageBackend;
+    private final DirectUploadService directUploadService;
 
     @Autowired
-    public UserController(UserService userService, CloudinaryService cloudinaryService) {
+    public UserController(UserService userService, StorageBackend storageBackend,
+                          DirectUploadService directUploadService) {
         this.userService = userService;
-        this.cloudinaryService = cloudinaryService;
+        this.storageBackend = storageBackend;
+        this.directUploadService = directUploadService;
     }
 
     @GetMapping
@@ -95,38 +105,83 @@ public class UserController {
     }
 
     @PostMapping("/{id}/avatar")
-    public ResponseEntity<?> uploadAvatar(@PathVariable Long id, @RequestParam("file") MultipartFile file) {
-        try {
-            // Validate file
-            if (file.isEmpty()) {
-                return ResponseEntity.badRequest().body("File is empty");
-            }
-
-            // Check if file is an image
-            String contentType = file.getContentType();
-            List<String> allowedTypes = Arrays.asList("image/jpeg", "image/png", "image/gif", "image/webp");
-            if (contentType == null || !allowedTypes.contains(contentType)) {
-                return ResponseEntity.badRequest().body("Only image files are allowed (JPEG, PNG, GIF, WebP)");
-            }
-
-            // Check file size (5MB limit)
-            if (file.getSize() > 5 * 1024 * 1024) {
-                return ResponseEntity.badRequest().body("File size must be less than 5MB");
-            }
-
-            // Upload to Cloudinary in avatars folder
-            CompletableFuture<String> uploadFuture = cloudinaryService.uploadImage(file, "avatars");
+    public CompletableFuture<ResponseEntity<?>> uploadAvatar(@PathVariable Long id, @RequestParam("file") MultipartFile file,
+                                                             Authentication authentication) {
+        ResponseEntity<?> denied = requireSelf(id, authentication);
+        if (denied != null) {
+            return CompletableFuture.completedFuture(denied);
+        }
+        // Validate file
+        if (file.isEmpty()) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("File is empty"));
+        }
 
-            // Wait for upload to complete
-            String avatarUrl = uploadFuture.get();
+        // Check if file is an image (the upload also checks the actual bytes)
+        String contentType = file.getContentType();
+        List<String> allowedTypes = Arrays.asList("image/jpeg", "image/png", "image/gif", "image/webp");
+        if (contentType == null || !allowedTypes.contains(contentType)) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body("Only image files are allowed (JPEG, PNG, GIF, WebP)"));
+        }
 
-            // Update user's avatar URL
-            UserDto updatedUser = userService.updateUserAvatar(id, avatarUrl);
+        // Check file size (5MB limit)
+        if (file.getSize() > 5 * 1024 * 1024) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("File size must be less than 5MB"));
+        }
 
-            return ResponseEntity.ok(updatedUser);
+        // Streamed to the configured backend, in the avatars folder on Cloudinary; the request
+        // thread is not held meanwhile, and a body that is not an image is refused with 400
+        return storageBackend.store(file, "avatars")
+                .<ResponseEntity<?>>thenApply(avatar -> ResponseEntity.ok(userService.updateUserAvatar(id, avatar.url())))
+                .exceptionally(throwable -> {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                    if (cause instanceof RejectedExecutionException) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many uploads in progress, please try again");
+                    }
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().body(cause.getMessage());
+                    }
+                    return ResponseEntity.internalServerError().body("Failed to upload avatar: " + cause.getMessage());
+                });
+    }
 
+    /**
+     * Set the avatar to an image the browser uploaded straight to Cloudinary
+     */
+    @PostMapping("/{id}/avatar/direct")
+    public ResponseEntity<?> confirmDirectAvatar(@PathVariable Long id, @RequestBody UploadResult result,
+                                                 Authentication authentication) {
+        ResponseEntity<?> denied = requireSelf(id, authentication);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            ImageHandle avatar = directUploadService.confirm(id, result);
+            return ResponseEntity.ok(userService.updateUserAvatar(id, avatar.url()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UnsupportedOperationException e) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
         } catch (Exception e) {
-            return ResponseEntity.internalServerError().body("Failed to upload avatar: " + e.getMessage());
+            return ResponseEntity.internalServerError().body("Failed to update avatar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Refusal unless the caller is the user {id}; a user's avatar is set only by that user
+     */
+    private ResponseEntity<?> requireSelf(Long id, Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Long currentUserId = userService.findByEmail(authentication.getName()).map(UserDto::getId).orElse(null);
+        if (currentUserId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!currentUserId.equals(id)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("You can only change your own avatar");
         }
+        return null;
     }
-}
\ No newline at end of file
+}
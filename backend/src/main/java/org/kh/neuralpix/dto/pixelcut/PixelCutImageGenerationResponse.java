@@ -1,9 +1,11 @@
 package org.kh.neuralpix.dto.pixelcut;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
 
 import java.util.List;
 
@@ -20,6 +22,10 @@ public class PixelCutImageGenerationResponse {
     private boolean success;
     private String errorMessage;
     private List<String> imageUrls;
+
+    // The input as it was sent to PixelCut, carried to the operation recorder; never serialized
+    @JsonIgnore
+    private ImageHandle sourceImage;
     
     public boolean isSuccess() {
         return success;
@@ -21,6 +21,8 @@ public class GeneratedImageResponseDto {
     private String imageUrl;
     private String thumbnailUrl;
     private Integer fileSize;
+    private Integer width;
+    private Integer height;
     private BigDecimal generationTime;
     private GenerationStatus status;
     private String errorMessage;
@@ -34,4 +36,33 @@ public class GeneratedImageResponseDto {
     
     // Additional fields for work history
     private String username;
+
+    /**
+     * List view projection, used by JPQL constructor expressions. Leaves out errorMessage so
+     * list queries never read the TEXT column.
+     */
+    public GeneratedImageResponseDto(Long id, Long promptId, Long userId, String imageUrl, String thumbnailUrl,
+                                     Integer fileSize, Integer width, Integer height, BigDecimal generationTime, GenerationStatus status,
+                                     Boolean isPublic, Integer likesCount, Integer downloadsCount, Integer viewsCount,
+                                     Boolean isDeleted, LocalDateTime createdAt, LocalDateTime updatedAt,
+                                     String username) {
+        this.id = id;
+        this.promptId = promptId;
+        this.userId = userId;
+        this.imageUrl = imageUrl;
+        this.thumbnailUrl = thumbnailUrl;
+        this.fileSize = fileSize;
+        this.width = width;
+        this.height = height;
+        this.generationTime = generationTime;
+        this.status = status;
+        this.isPublic = isPublic;
+        this.likesCount = likesCount;
+        this.downloadsCount = downloadsCount;
+        this.viewsCount = viewsCount;
+        this.isDeleted = isDeleted;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.username = username;
+    }
 }
@@ -0,0 +1,27 @@
+package org.kh.neuralpix.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * An upload refused to protect storage: 507 when the budget is used up by stored files,
+ * 429 when it is only held by uploads in progress and a retry may succeed.
+ */
+public class StorageAdmissionException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public StorageAdmissionException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
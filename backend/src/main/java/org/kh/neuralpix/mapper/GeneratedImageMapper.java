@@ -4,14 +4,22 @@ import org.kh.neuralpix.dto.request.GeneratedImageRequestDto;
 import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
 import org.kh.neuralpix.dto.response.WorkHistoryResponseDto;
 import org.kh.neuralpix.model.GeneratedImage;
+import org.kh.neuralpix.service.EngagementCounterService;
 import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 public class GeneratedImageMapper {
+
+    private final EngagementCounterService engagementCounterService;
+
+    public GeneratedImageMapper(EngagementCounterService engagementCounterService) {
+        this.engagementCounterService = engagementCounterService;
+    }
     
     public GeneratedImage toEntity(GeneratedImageRequestDto dto, Long userId) {
         GeneratedImage entity = new GeneratedImage();
@@ -62,6 +70,8 @@ public class GeneratedImageMapper {
         dto.setUserId(entity.getUserId());
         dto.setImageUrl(entity.getImageUrl());
         dto.setThumbnailUrl(entity.getThumbnailUrl());
+        dto.setWidth(entity.getWidth());
+        dto.setHeight(entity.getHeight());
         dto.setFileSize(entity.getFileSize());
         dto.setGenerationTime(entity.getGenerationTime());
         dto.setStatus(entity.getStatus());
@@ -79,8 +89,27 @@ public class GeneratedImageMapper {
             dto.setUsername(entity.getUser().getUsername());
         }
         
+        return withPendingCounts(dto);
+    }
+
+    /**
+     * Add engagement increments that have not been flushed to the database yet. Call once on a
+     * DTO freshly built from the database (entity or projection), never on a cached one.
+     */
+    public GeneratedImageResponseDto withPendingCounts(GeneratedImageResponseDto dto) {
+        dto.setLikesCount(engagementCounterService.withPending(
+                EngagementCounterService.Counter.IMAGE_LIKES, dto.getId(), dto.getLikesCount()));
+        dto.setDownloadsCount(engagementCounterService.withPending(
+                EngagementCounterService.Counter.IMAGE_DOWNLOADS, dto.getId(), dto.getDownloadsCount()));
+        dto.setViewsCount(engagementCounterService.withPending(
+                EngagementCounterService.Counter.IMAGE_VIEWS, dto.getId(), dto.getViewsCount()));
         return dto;
     }
+
+    public List<GeneratedImageResponseDto> withPendingCounts(List<GeneratedImageResponseDto> dtos) {
+        dtos.forEach(this::withPendingCounts);
+        return dtos;
+    }
     
     public List<GeneratedImageResponseDto> toDtoList(List<GeneratedImage> entities) {
         return entities.stream()
@@ -88,10 +117,11 @@ public class GeneratedImageMapper {
                 .collect(Collectors.toList());
     }
     
-    public WorkHistoryResponseDto toWorkHistoryDto(Page<GeneratedImage> page) {
-        List<GeneratedImageResponseDto> images = page.getContent().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+    /**
+     * Wrap a page of list projections, adding unflushed engagement counts
+     */
+    public WorkHistoryResponseDto toWorkHistoryDto(Page<GeneratedImageResponseDto> page) {
+        List<GeneratedImageResponseDto> images = withPendingCounts(new ArrayList<>(page.getContent()));
         
         return WorkHistoryResponseDto.builder()
                 .images(images)
@@ -16,7 +16,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "generated_images")
+@Table(name = "generated_images", indexes = {
+        // Keyset seek for the public gallery feed; the feed reads only ids from it, then loads rows by primary key
+        @Index(name = "idx_generated_images_public_feed", columnList = "is_public, is_deleted, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,6 +48,12 @@ public class GeneratedImage {
     @Min(value = 0, message = "File size cannot be negative")
     private Integer fileSize;
 
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
     @Column(name = "generation_time", precision = 5, scale = 2)
     @DecimalMin(value = "0.0", message = "Generation time cannot be negative")
     private BigDecimal generationTime;
@@ -59,13 +68,14 @@ public class GeneratedImage {
     @Column(name = "is_public", columnDefinition = "BOOLEAN DEFAULT FALSE")
     private Boolean isPublic = false;
 
-    @Column(name = "likes_count", columnDefinition = "INT DEFAULT 0")
+    // Engagement counters are only ever changed by EngagementCounterService relative updates
+    @Column(name = "likes_count", columnDefinition = "INT DEFAULT 0", updatable = false)
     private Integer likesCount = 0;
 
-    @Column(name = "downloads_count", columnDefinition = "INT DEFAULT 0")
+    @Column(name = "downloads_count", columnDefinition = "INT DEFAULT 0", updatable = false)
     private Integer downloadsCount = 0;
 
-    @Column(name = "views_count", columnDefinition = "INT DEFAULT 0")
+    @Column(name = "views_count", columnDefinition = "INT DEFAULT 0", updatable = false)
     private Integer viewsCount = 0;
 
     @Column(name = "is_deleted", columnDefinition = "BOOLEAN DEFAULT FALSE")
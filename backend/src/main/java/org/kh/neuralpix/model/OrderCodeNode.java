@@ -0,0 +1,36 @@
+package org.kh.neuralpix.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease on one of the order code generator node ids. Each running instance holds exactly one
+ * node id; the last issued timestamp is stored so the next holder continues after it.
+ */
+@Entity
+@Table(name = "order_code_nodes")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCodeNode {
+
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    @Column(name = "owner", length = 100)
+    private String owner;
+
+    @Column(name = "leased_until")
+    private LocalDateTime leasedUntil;
+
+    @Column(name = "last_timestamp_millis", nullable = false)
+    @Builder.Default
+    private Long lastTimestampMillis = 0L;
+}
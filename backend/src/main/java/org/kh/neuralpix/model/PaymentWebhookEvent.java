@@ -0,0 +1,77 @@
+package org.kh.neuralpix.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Durable inbox of verified PayOS webhook deliveries. The unique (order_code, status_code)
+ * key makes repeated deliveries of the same outcome idempotent.
+ */
+@Entity
+@Table(name = "payment_webhook_events",
+        uniqueConstraints = @UniqueConstraint(name = "uk_webhook_events_order_status",
+                columnNames = {"order_code", "status_code"}),
+        indexes = @Index(name = "idx_webhook_events_status_next_attempt", columnList = "status, next_attempt_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentWebhookEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_code", nullable = false)
+    private Long orderCode;
+
+    @Column(name = "status_code", length = 10, nullable = false)
+    private String statusCode;
+
+    @Column(name = "reference", length = 100)
+    private String reference;
+
+    @Column(name = "payload", columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    @Builder.Default
+    private EventStatus status = EventStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum EventStatus {
+        PENDING,        // Đã lưu, chờ worker xử lý
+        PROCESSING,     // Worker đang xử lý
+        PROCESSED,      // Xử lý thành công
+        FAILED,         // Lỗi, sẽ retry sau nextAttemptAt
+        DEAD            // Hết số lần retry, cần xử lý thủ công
+    }
+}
@@ -29,9 +29,29 @@ public class ProcessedImage {
     @Column(name = "processed_url", length = 2048, nullable = false)
     private String processedUrl;
 
+    @Column(name = "thumbnail_url", length = 2048)
+    private String thumbnailUrl;
+
     @Column(name = "imgur_url", length = 2048)
     private String imgurUrl;
 
+    // What was uploaded as the input, recorded once at upload time
+    @Column(name = "source_hash", length = 64)
+    private String sourceHash;
+
+    // dHash of the uploaded input, for near-duplicate detection
+    @Column(name = "source_phash")
+    private Long sourcePerceptualHash;
+
+    @Column(name = "source_file_size")
+    private Long sourceFileSize;
+
+    @Column(name = "source_width")
+    private Integer sourceWidth;
+
+    @Column(name = "source_height")
+    private Integer sourceHeight;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "operation_type", nullable = false)
     private OperationType operationType;
@@ -81,7 +101,8 @@ public class ProcessedImage {
     @Column(name = "is_favorite")
     private Boolean isFavorite = false;
 
-    @Column(name = "view_count")
+    // Only changed by EngagementCounterService relative updates
+    @Column(name = "view_count", updatable = false)
     private Integer viewCount = 0;
 
     @Column(name = "created_at", nullable = false)
@@ -0,0 +1,44 @@
+package org.kh.neuralpix.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persistent cursor and lease for a batch job. The cursor is the (time, id) of the last
+ * row processed so a restarted job resumes after it; the lease keeps two instances from
+ * running the same job at once.
+ */
+@Entity
+@Table(name = "scheduler_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SchedulerCheckpoint {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "cursor_time")
+    private LocalDateTime cursorTime;
+
+    @Column(name = "cursor_id")
+    private Long cursorId;
+
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,54 @@
+package org.kh.neuralpix.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Denormalized, searchable text of one image: prompt text, style, tags and operation type.
+ * The content column carries a MySQL FULLTEXT index (created by the search service on startup,
+ * since JPA cannot declare one) and starts with an owner token so a user's search only walks
+ * that user's postings.
+ */
+@Entity
+@Table(name = "search_documents",
+       uniqueConstraints = @UniqueConstraint(name = "uk_search_documents_item", columnNames = {"item_type", "item_id"}),
+       indexes = @Index(name = "idx_search_documents_user_type_created", columnList = "user_id, item_type, created_at"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchDocument {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "item_type", nullable = false, length = 30)
+    private ItemType itemType;
+
+    @Column(name = "item_id", nullable = false)
+    private Long itemId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum ItemType {
+        GENERATED_IMAGE,
+        PROCESSED_IMAGE
+    }
+}
@@ -16,7 +16,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "subscriptions")
+@Table(name = "subscriptions", indexes = {
+        @Index(name = "idx_subscriptions_status_end_date", columnList = "status, end_date"),
+        @Index(name = "idx_subscriptions_status_next_billing", columnList = "status, next_billing_date")
+})
 @Data
 @Builder
 @NoArgsConstructor
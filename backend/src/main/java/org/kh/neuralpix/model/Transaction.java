@@ -14,7 +14,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_transactions_user_created_at", columnList = "user_id, created_at"),
+        @Index(name = "idx_transactions_status_created_at", columnList = "status, created_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -64,6 +68,12 @@ public class Transaction {
     @Column(name = "payment_method")
     private String paymentMethod;
 
+    @Column(name = "cancellation_reason")
+    private String cancellationReason;
+
+    @Column(name = "cancelled_at")
+    private LocalDateTime cancelledAt;
+
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -123,6 +133,8 @@ public class Transaction {
 
     public void markAsCancelled(String reason) {
         this.status = TransactionStatus.CANCELLED;
+        this.cancellationReason = reason;
+        this.cancelledAt = LocalDateTime.now();
     }
 
     public void markAsFailed(String reason) {
@@ -0,0 +1,46 @@
+package org.kh.neuralpix.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persisted copy of the in-memory trending index, reloaded on startup. Log scores are
+ * independent of when they were taken, so a restored index continues decaying as if the
+ * instance had never stopped.
+ */
+@Entity
+@Table(name = "trending_snapshots",
+       uniqueConstraints = @UniqueConstraint(name = "uk_trending_snapshots_item", columnNames = {"item_type", "item_id"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "item_type", nullable = false, length = 30)
+    private ItemType itemType;
+
+    @Column(name = "item_id", nullable = false)
+    private Long itemId;
+
+    @Column(name = "log_score", nullable = false)
+    private Double logScore;
+
+    @Column(name = "snapshot_at", nullable = false)
+    private LocalDateTime snapshotAt;
+
+    public enum ItemType {
+        GENERATED_IMAGE,
+        PROCESSED_IMAGE
+    }
+}
@@ -0,0 +1,39 @@
+package org.kh.neuralpix.repository;
+
+import org.kh.neuralpix.model.EmailOutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxMessageRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    /**
+     * Ids of messages ready to send: new or failed messages whose retry time has passed,
+     * plus messages stuck in SENDING since before staleBefore (dispatcher died mid-batch)
+     */
+    @Query("SELECT m.id FROM EmailOutboxMessage m " +
+           "WHERE ((m.status = 'PENDING' OR m.status = 'FAILED') AND (m.nextAttemptAt IS NULL OR m.nextAttemptAt <= :now)) " +
+           "OR (m.status = 'SENDING' AND m.updatedAt < :staleBefore) " +
+           "ORDER BY m.id")
+    List<Long> findDueMessageIds(@Param("now") LocalDateTime now,
+                                 @Param("staleBefore") LocalDateTime staleBefore,
+                                 Pageable pageable);
+
+    /**
+     * Atomically claim a message for sending. Returns 1 only for the dispatcher that wins the claim.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutboxMessage m SET m.status = 'SENDING', m.attempts = m.attempts + 1, m.updatedAt = :now " +
+           "WHERE m.id = :id AND (m.status = 'PENDING' OR m.status = 'FAILED' " +
+           "OR (m.status = 'SENDING' AND m.updatedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -1,5 +1,6 @@
 package org.kh.neuralpix.repository;
 
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
 import org.kh.neuralpix.model.GeneratedImage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,10 +9,19 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface GeneratedImageRepository extends JpaRepository<GeneratedImage, Long> {
+
+    // List view projection: only the columns the lists show, with the username joined in the same query
+    String LIST_ITEM_SELECT = "SELECT new org.kh.neuralpix.dto.response.GeneratedImageResponseDto(" +
+            "gi.id, gi.promptId, gi.userId, gi.imageUrl, gi.thumbnailUrl, gi.fileSize, gi.width, gi.height, " +
+            "gi.generationTime, gi.status, gi.isPublic, gi.likesCount, gi.downloadsCount, gi.viewsCount, gi.isDeleted, " +
+            "gi.createdAt, gi.updatedAt, " +
+            "u.username) FROM GeneratedImage gi LEFT JOIN gi.user u ";
+
     List<GeneratedImage> findByUserId(Long userId);
     List<GeneratedImage> findByPromptId(Long promptId);
     List<GeneratedImage> findByIsPublicTrue();
@@ -19,17 +29,39 @@ public interface GeneratedImageRepository extends JpaRepository<GeneratedImage,
     // Work history methods with pagination
     Page<GeneratedImage> findByUserIdAndIsDeletedFalse(Long userId, Pageable pageable);
     
-    @Query("SELECT gi FROM GeneratedImage gi " +
-           "WHERE gi.userId = :userId AND gi.isDeleted = false " +
-           "ORDER BY gi.createdAt DESC")
-    Page<GeneratedImage> findUserWorkHistory(@Param("userId") Long userId, Pageable pageable);
-    
-    @Query("SELECT gi FROM GeneratedImage gi " +
-           "WHERE gi.userId = :userId AND gi.isDeleted = false " +
-           "AND (LOWER(gi.imageUrl) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
-           "OR LOWER(gi.errorMessage) LIKE LOWER(CONCAT('%', :searchTerm, '%'))) " +
-           "ORDER BY gi.createdAt DESC")
-    Page<GeneratedImage> findUserWorkHistoryWithSearch(@Param("userId") Long userId, 
-                                                      @Param("searchTerm") String searchTerm, 
-                                                      Pageable pageable);
-} 
\ No newline at end of file
+    @Query(value = LIST_ITEM_SELECT +
+                   "WHERE gi.userId = :userId AND gi.isDeleted = false " +
+                   "ORDER BY gi.createdAt DESC, gi.id DESC",
+           countQuery = "SELECT COUNT(gi) FROM GeneratedImage gi WHERE gi.userId = :userId AND gi.isDeleted = false")
+    Page<GeneratedImageResponseDto> findUserWorkHistoryItems(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(LIST_ITEM_SELECT + "WHERE gi.userId = :userId ORDER BY gi.createdAt DESC, gi.id DESC")
+    List<GeneratedImageResponseDto> findListItemsByUserId(@Param("userId") Long userId);
+
+    @Query(LIST_ITEM_SELECT + "WHERE gi.isPublic = true ORDER BY gi.createdAt DESC, gi.id DESC")
+    List<GeneratedImageResponseDto> findPublicListItems();
+
+    // Unordered; callers put the rows back in the order of ids
+    @Query(LIST_ITEM_SELECT + "WHERE gi.id IN :ids")
+    List<GeneratedImageResponseDto> findListItemsByIdIn(@Param("ids") List<Long> ids);
+
+    // Public gallery feed: newest first by (createdAt, id). Both id queries are satisfied by idx_generated_images_public_feed.
+    @Query("SELECT gi.id FROM GeneratedImage gi " +
+           "WHERE gi.isPublic = true AND gi.isDeleted = false " +
+           "ORDER BY gi.createdAt DESC, gi.id DESC")
+    List<Long> findPublicFeedIds(Pageable pageable);
+
+    @Query("SELECT gi.id FROM GeneratedImage gi " +
+           "WHERE gi.isPublic = true AND gi.isDeleted = false " +
+           "AND (gi.createdAt < :cursorCreatedAt OR (gi.createdAt = :cursorCreatedAt AND gi.id < :cursorId)) " +
+           "ORDER BY gi.createdAt DESC, gi.id DESC")
+    List<Long> findPublicFeedIdsAfter(@Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                      @Param("cursorId") Long cursorId,
+                                      Pageable pageable);
+
+    // Seed rows for the trending index when there is no snapshot: [id, likesCount, downloadsCount, viewsCount, createdAt]
+    @Query("SELECT gi.id, gi.likesCount, gi.downloadsCount, gi.viewsCount, gi.createdAt FROM GeneratedImage gi " +
+           "WHERE gi.isPublic = true AND gi.isDeleted = false " +
+           "ORDER BY gi.createdAt DESC, gi.id DESC")
+    List<Object[]> findTrendingSeed(Pageable pageable);
+}
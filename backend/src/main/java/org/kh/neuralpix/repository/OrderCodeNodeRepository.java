@@ -0,0 +1,40 @@
+package org.kh.neuralpix.repository;
+
+import org.kh.neuralpix.model.OrderCodeNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface OrderCodeNodeRepository extends JpaRepository<OrderCodeNode, Integer> {
+
+    /**
+     * Claim the node id if its lease is free or expired. Returns 1 when acquired.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderCodeNode n SET n.owner = :owner, n.leasedUntil = :leasedUntil " +
+           "WHERE n.nodeId = :nodeId AND (n.leasedUntil IS NULL OR n.leasedUntil < :now)")
+    int tryLease(@Param("nodeId") Integer nodeId, @Param("owner") String owner,
+                 @Param("now") LocalDateTime now, @Param("leasedUntil") LocalDateTime leasedUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderCodeNode n SET n.leasedUntil = :leasedUntil, n.lastTimestampMillis = :lastTimestampMillis " +
+           "WHERE n.nodeId = :nodeId AND n.owner = :owner")
+    int renewLease(@Param("nodeId") Integer nodeId, @Param("owner") String owner,
+                   @Param("leasedUntil") LocalDateTime leasedUntil,
+                   @Param("lastTimestampMillis") Long lastTimestampMillis);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderCodeNode n SET n.owner = NULL, n.leasedUntil = NULL, n.lastTimestampMillis = :lastTimestampMillis " +
+           "WHERE n.nodeId = :nodeId AND n.owner = :owner")
+    int releaseLease(@Param("nodeId") Integer nodeId, @Param("owner") String owner,
+                     @Param("lastTimestampMillis") Long lastTimestampMillis);
+}
@@ -0,0 +1,41 @@
+package org.kh.neuralpix.repository;
+
+import org.kh.neuralpix.model.PaymentWebhookEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, Long> {
+
+    boolean existsByOrderCodeAndStatusCode(Long orderCode, String statusCode);
+
+    /**
+     * Events ready to be (re)processed: new or failed events whose retry time has passed,
+     * plus events stuck in PROCESSING since before staleBefore (worker died mid-flight)
+     */
+    @Query("SELECT e FROM PaymentWebhookEvent e " +
+           "WHERE ((e.status = 'PENDING' OR e.status = 'FAILED') AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)) " +
+           "OR (e.status = 'PROCESSING' AND e.updatedAt < :staleBefore) " +
+           "ORDER BY e.id")
+    List<PaymentWebhookEvent> findDueEvents(@Param("now") LocalDateTime now,
+                                            @Param("staleBefore") LocalDateTime staleBefore,
+                                            Pageable pageable);
+
+    /**
+     * Atomically claim an event for processing. Returns 1 only for the worker that wins the claim.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentWebhookEvent e SET e.status = 'PROCESSING', e.attempts = e.attempts + 1, e.updatedAt = :now " +
+           "WHERE e.id = :id AND (e.status = 'PENDING' OR e.status = 'FAILED' " +
+           "OR (e.status = 'PROCESSING' AND e.updatedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -52,13 +52,9 @@ public interface ProcessedImageRepository extends JpaRepository<ProcessedImage,
     @Query("SELECT p FROM ProcessedImage p WHERE p.userId = :userId AND p.createdAt >= :fromDate ORDER BY p.createdAt DESC")
     List<ProcessedImage> findRecentActivity(@Param("userId") Long userId, @Param("fromDate") LocalDateTime fromDate);
 
-    // Search by tags or prompt
-    @Query("SELECT p FROM ProcessedImage p WHERE p.userId = :userId AND (p.tags LIKE %:keyword% OR p.prompt LIKE %:keyword%) AND p.success = true ORDER BY p.createdAt DESC")
-    List<ProcessedImage> searchByKeyword(@Param("userId") Long userId, @Param("keyword") String keyword);
-
-    // Popular images (by view count)
-    @Query("SELECT p FROM ProcessedImage p WHERE p.isPublic = true AND p.success = true ORDER BY p.viewCount DESC, p.createdAt DESC")
-    Page<ProcessedImage> findPopularPublicImages(Pageable pageable);
+    // Seed rows for the trending index when there is no snapshot: [id, viewCount, createdAt] of the newest public images
+    @Query("SELECT p.id, p.viewCount, p.createdAt FROM ProcessedImage p WHERE p.isPublic = true AND p.success = true ORDER BY p.createdAt DESC")
+    List<Object[]> findTrendingSeed(Pageable pageable);
 
     // Delete old unsuccessful attempts (cleanup)
     @Query("DELETE FROM ProcessedImage p WHERE p.success = false AND p.createdAt < :beforeDate")
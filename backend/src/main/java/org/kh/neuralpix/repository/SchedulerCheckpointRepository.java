@@ -0,0 +1,39 @@
+package org.kh.neuralpix.repository;
+
+import org.kh.neuralpix.model.SchedulerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SchedulerCheckpointRepository extends JpaRepository<SchedulerCheckpoint, String> {
+
+    /**
+     * Take the job lease if it is free, expired or already ours. Returns 1 when acquired.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerCheckpoint c SET c.lockedBy = :owner, c.lockedUntil = :lockedUntil " +
+           "WHERE c.jobName = :jobName AND (c.lockedUntil IS NULL OR c.lockedUntil < :now OR c.lockedBy = :owner)")
+    int tryAcquire(@Param("jobName") String jobName, @Param("owner") String owner,
+                   @Param("now") LocalDateTime now, @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerCheckpoint c SET c.cursorTime = :cursorTime, c.cursorId = :cursorId, c.lockedUntil = :lockedUntil " +
+           "WHERE c.jobName = :jobName AND c.lockedBy = :owner")
+    int saveCursor(@Param("jobName") String jobName, @Param("owner") String owner,
+                   @Param("cursorTime") LocalDateTime cursorTime, @Param("cursorId") Long cursorId,
+                   @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SchedulerCheckpoint c SET c.lockedBy = NULL, c.lockedUntil = NULL " +
+           "WHERE c.jobName = :jobName AND c.lockedBy = :owner")
+    int release(@Param("jobName") String jobName, @Param("owner") String owner);
+}
@@ -0,0 +1,90 @@
+package org.kh.neuralpix.repository;
+
+import org.kh.neuralpix.model.SearchDocument;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SearchDocumentRepository extends JpaRepository<SearchDocument, Long> {
+
+    // Searches only return items that can be shown: generated images not soft-deleted, successful
+    // processed images. Filtering in the query keeps pages full and totals exact.
+    String VISIBLE_ITEMS_JOIN =
+            "LEFT JOIN generated_images gi ON d.item_type = 'GENERATED_IMAGE' AND gi.id = d.item_id " +
+            "LEFT JOIN processed_images pi ON d.item_type = 'PROCESSED_IMAGE' AND pi.id = d.item_id ";
+    String VISIBLE_ITEMS_FILTER =
+            "AND ((gi.id IS NOT NULL AND COALESCE(gi.is_deleted, FALSE) = FALSE) " +
+            "OR (pi.id IS NOT NULL AND pi.success = TRUE)) ";
+
+    /**
+     * Insert or replace the document of one item
+     */
+    @Modifying
+    @Query(value = "INSERT INTO search_documents (item_type, item_id, user_id, content, created_at, updated_at) " +
+                   "VALUES (:itemType, :itemId, :userId, :content, :createdAt, :updatedAt) " +
+                   "ON DUPLICATE KEY UPDATE user_id = VALUES(user_id), content = VALUES(content), updated_at = VALUES(updated_at)",
+           nativeQuery = true)
+    int upsert(@Param("itemType") String itemType, @Param("itemId") Long itemId, @Param("userId") Long userId,
+               @Param("content") String content, @Param("createdAt") LocalDateTime createdAt,
+               @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Modifying
+    @Query("DELETE FROM SearchDocument d WHERE d.itemType = :itemType AND d.itemId = :itemId")
+    int deleteByItem(@Param("itemType") SearchDocument.ItemType itemType, @Param("itemId") Long itemId);
+
+    /**
+     * Item ids matching a boolean-mode query, most relevant first, newest first on ties
+     */
+    @Query(value = "SELECT d.item_id FROM search_documents d " + VISIBLE_ITEMS_JOIN +
+                   "WHERE d.item_type = :itemType AND d.user_id = :userId " +
+                   "AND MATCH(d.content) AGAINST(:query IN BOOLEAN MODE) " + VISIBLE_ITEMS_FILTER +
+                   "ORDER BY MATCH(d.content) AGAINST(:query IN BOOLEAN MODE) DESC, d.created_at DESC, d.item_id DESC " +
+                   "LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Long> search(@Param("itemType") String itemType, @Param("userId") Long userId, @Param("query") String query,
+                      @Param("limit") int limit, @Param("offset") long offset);
+
+    @Query(value = "SELECT COUNT(*) FROM search_documents d " + VISIBLE_ITEMS_JOIN +
+                   "WHERE d.item_type = :itemType AND d.user_id = :userId " +
+                   "AND MATCH(d.content) AGAINST(:query IN BOOLEAN MODE) " + VISIBLE_ITEMS_FILTER,
+           nativeQuery = true)
+    long countMatches(@Param("itemType") String itemType, @Param("userId") Long userId, @Param("query") String query);
+
+    @Query(value = "SELECT COUNT(*) FROM information_schema.statistics " +
+                   "WHERE table_schema = DATABASE() AND table_name = 'search_documents' AND index_name = :indexName",
+           nativeQuery = true)
+    long countIndexes(@Param("indexName") String indexName);
+
+    /**
+     * Index generated images that have no document yet (rows written before search existed)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO search_documents (item_type, item_id, user_id, content, created_at, updated_at) " +
+                   "SELECT 'GENERATED_IMAGE', gi.id, gi.user_id, " +
+                   "CONCAT_WS(' ', CONCAT('usr', gi.user_id), p.prompt_text, p.style, p.model), gi.created_at, NOW() " +
+                   "FROM generated_images gi LEFT JOIN prompts p ON p.id = gi.prompt_id " +
+                   "LEFT JOIN search_documents d ON d.item_type = 'GENERATED_IMAGE' AND d.item_id = gi.id " +
+                   "WHERE d.id IS NULL",
+           nativeQuery = true)
+    int backfillGeneratedImages();
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO search_documents (item_type, item_id, user_id, content, created_at, updated_at) " +
+                   "SELECT 'PROCESSED_IMAGE', pi.id, pi.user_id, " +
+                   "CONCAT_WS(' ', CONCAT('usr', pi.user_id), pi.prompt, pi.tags, pi.style, " +
+                   "pi.operation_type, REPLACE(pi.operation_type, '_', ' ')), pi.created_at, NOW() " +
+                   "FROM processed_images pi " +
+                   "LEFT JOIN search_documents d ON d.item_type = 'PROCESSED_IMAGE' AND d.item_id = pi.id " +
+                   "WHERE d.id IS NULL",
+           nativeQuery = true)
+    int backfillProcessedImages();
+}
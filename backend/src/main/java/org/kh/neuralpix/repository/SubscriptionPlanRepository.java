@@ -3,6 +3,7 @@ package org.kh.neuralpix.repository;
 import org.kh.neuralpix.model.SubscriptionPlan;
 import org.kh.neuralpix.model.enums.SubscriptionTier;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +18,8 @@ public interface SubscriptionPlanRepository extends JpaRepository<SubscriptionPl
     // Count methods for statistics
     long countByTier(SubscriptionTier tier);
     long countByIsActive(SubscriptionPlan.IsActive isActive);
+
+    // Cheap change detection for the in-memory plan catalog: [max(updatedAt), count]
+    @Query("SELECT MAX(p.updatedAt), COUNT(p) FROM SubscriptionPlan p")
+    List<Object[]> findCatalogStamp();
 }
@@ -1,11 +1,13 @@
 package org.kh.neuralpix.repository;
 
 import org.kh.neuralpix.model.Subscription;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,4 +29,40 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, Long
     
     // Count methods for statistics
     long countByStatus(Subscription.SubscriptionStatus status);
-}
+
+    // Aggregates used to rebuild the business metrics: [status, billingCycle, count, sum(price)]
+    @Query("SELECT s.status, s.billingCycle, COUNT(s), SUM(s.price) FROM Subscription s GROUP BY s.status, s.billingCycle")
+    List<Object[]> aggregateByStatusAndBillingCycle();
+
+    // Scheduler scans: keyset pages of [id, dueAt] ordered by (dueAt, id), strictly after the cursor and due by :until
+    @Query("SELECT s.id, s.nextBillingDate FROM Subscription s " +
+           "WHERE s.status = :status AND s.autoRenew = true AND s.nextBillingDate <= :until " +
+           "AND (s.nextBillingDate > :cursorTime OR (s.nextBillingDate = :cursorTime AND s.id > :cursorId)) " +
+           "ORDER BY s.nextBillingDate, s.id")
+    List<Object[]> findDueForRenewal(@Param("status") Subscription.SubscriptionStatus status,
+                                     @Param("until") LocalDateTime until,
+                                     @Param("cursorTime") LocalDateTime cursorTime,
+                                     @Param("cursorId") Long cursorId,
+                                     Pageable pageable);
+
+    @Query("SELECT s.id, s.endDate FROM Subscription s " +
+           "WHERE s.status IN :statuses AND s.autoRenew = false AND s.endDate <= :until " +
+           "AND (s.endDate > :cursorTime OR (s.endDate = :cursorTime AND s.id > :cursorId)) " +
+           "ORDER BY s.endDate, s.id")
+    List<Object[]> findDueForExpiration(@Param("statuses") List<Subscription.SubscriptionStatus> statuses,
+                                        @Param("until") LocalDateTime until,
+                                        @Param("cursorTime") LocalDateTime cursorTime,
+                                        @Param("cursorId") Long cursorId,
+                                        Pageable pageable);
+
+    // Past due subscriptions whose period ended by :until, whether or not they auto-renew
+    @Query("SELECT s.id, s.endDate FROM Subscription s " +
+           "WHERE s.status = :status AND s.endDate <= :until " +
+           "AND (s.endDate > :cursorTime OR (s.endDate = :cursorTime AND s.id > :cursorId)) " +
+           "ORDER BY s.endDate, s.id")
+    List<Object[]> findEndedWithStatus(@Param("status") Subscription.SubscriptionStatus status,
+                                       @Param("until") LocalDateTime until,
+                                       @Param("cursorTime") LocalDateTime cursorTime,
+                                       @Param("cursorId") Long cursorId,
+                                       Pageable pageable);
+}
\ No newline at end of file
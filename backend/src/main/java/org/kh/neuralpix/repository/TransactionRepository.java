@@ -1,16 +1,22 @@
 package org.kh.neuralpix.repository;
 
 import org.kh.neuralpix.model.Transaction;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
@@ -75,12 +81,69 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
                                                     @Param("startDate") LocalDateTime startDate,
                                                     @Param("endDate") LocalDateTime endDate);
 
+    /**
+     * Tìm kiếm transactions theo bộ lọc, phân trang keyset theo (createdAt, id) giảm dần.
+     * Cursor null nghĩa là trang đầu tiên.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.createdAt BETWEEN :startDate AND :endDate " +
+           "AND (:userId IS NULL OR t.userId = :userId) " +
+           "AND (:status IS NULL OR t.status = :status) " +
+           "AND (:type IS NULL OR t.type = :type) " +
+           "AND (:cursorCreatedAt IS NULL OR t.createdAt < :cursorCreatedAt " +
+           "OR (t.createdAt = :cursorCreatedAt AND t.id < :cursorId)) " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<Transaction> searchByFilters(@Param("userId") Long userId,
+                                      @Param("status") Transaction.TransactionStatus status,
+                                      @Param("type") Transaction.TransactionType type,
+                                      @Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate,
+                                      @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                      @Param("cursorId") Long cursorId,
+                                      Pageable pageable);
+
+    /**
+     * Stream transactions theo bộ lọc cho export. Fetch size Integer.MIN_VALUE bật chế độ
+     * streaming từng dòng của MySQL Connector/J; phải được gọi trong transaction read-only.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM Transaction t WHERE t.createdAt BETWEEN :startDate AND :endDate " +
+           "AND (:userId IS NULL OR t.userId = :userId) " +
+           "AND (:status IS NULL OR t.status = :status) " +
+           "AND (:type IS NULL OR t.type = :type) " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    Stream<Transaction> streamByFilters(@Param("userId") Long userId,
+                                        @Param("status") Transaction.TransactionStatus status,
+                                        @Param("type") Transaction.TransactionType type,
+                                        @Param("startDate") LocalDateTime startDate,
+                                        @Param("endDate") LocalDateTime endDate);
+
     /**
      * Tìm transactions pending quá hạn (để auto cancel)
      */
     @Query("SELECT t FROM Transaction t WHERE t.status = 'PENDING' AND t.createdAt < :expiredTime")
     List<Transaction> findExpiredPendingTransactions(@Param("expiredTime") LocalDateTime expiredTime);
 
+    /**
+     * Lấy id của một batch transactions pending quá hạn, đi theo index (status, created_at)
+     */
+    @Query("SELECT t.id FROM Transaction t WHERE t.status = 'PENDING' AND t.createdAt < :expiredTime ORDER BY t.createdAt")
+    List<Long> findExpiredPendingTransactionIds(@Param("expiredTime") LocalDateTime expiredTime, Pageable pageable);
+
+    /**
+     * Hủy một batch transactions bằng một câu UPDATE; chỉ các dòng vẫn còn PENDING mới bị đổi
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Transaction t SET t.status = 'CANCELLED', t.cancellationReason = :reason, " +
+           "t.cancelledAt = :cancelledAt, t.updatedAt = :cancelledAt " +
+           "WHERE t.id IN :ids AND t.status = 'PENDING'")
+    int cancelPendingTransactions(@Param("ids") List<Long> ids,
+                                  @Param("reason") String reason,
+                                  @Param("cancelledAt") LocalDateTime cancelledAt);
+
     /**
      * Thống kê tổng số tiền theo status
      */
@@ -127,4 +190,17 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
      */
     @Query("SELECT SUM(t.amount) FROM Transaction t WHERE t.status = 'PAID' AND YEAR(t.updatedAt) = :year AND MONTH(t.updatedAt) = :month")
     Double getRevenueByMonth(@Param("year") int year, @Param("month") int month);
+
+    /**
+     * Thống kê số lượng và tổng tiền theo status trong một query: [status, count, sum(amount)]
+     */
+    @Query("SELECT t.status, COUNT(t), SUM(t.amount) FROM Transaction t GROUP BY t.status")
+    List<Object[]> aggregateByStatus();
+
+    /**
+     * Thống kê doanh thu PAID theo từng tháng trong một query: [year, month, sum(amount)]
+     */
+    @Query("SELECT YEAR(t.updatedAt), MONTH(t.updatedAt), SUM(t.amount) FROM Transaction t " +
+           "WHERE t.status = 'PAID' GROUP BY YEAR(t.updatedAt), MONTH(t.updatedAt)")
+    List<Object[]> aggregatePaidRevenueByMonth();
 }
\ No newline at end of file
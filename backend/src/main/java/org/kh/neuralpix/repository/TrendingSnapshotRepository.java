@@ -0,0 +1,20 @@
+package org.kh.neuralpix.repository;
+
+import org.kh.neuralpix.model.TrendingSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TrendingSnapshotRepository extends JpaRepository<TrendingSnapshot, Long> {
+
+    List<TrendingSnapshot> findByItemType(TrendingSnapshot.ItemType itemType);
+
+    @Modifying
+    @Query("DELETE FROM TrendingSnapshot t WHERE t.itemType = :itemType")
+    int deleteByItemType(@Param("itemType") TrendingSnapshot.ItemType itemType);
+}
@@ -3,6 +3,7 @@ package org.kh.neuralpix.security;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -65,6 +66,13 @@ public class SecurityConfig {
                         .requestMatchers("/api/pixelcut/**").permitAll()
                         .requestMatchers("/api/vertexai/**").permitAll()
                         
+                        // Public gallery feed and trending images (anonymous, CDN cacheable)
+                        .requestMatchers(HttpMethod.GET, "/api/images/public").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/images/trending").permitAll()
+                        
+                        // Images kept by the local storage backend (fetched by image providers)
+                        .requestMatchers(HttpMethod.GET, "/api/storage/**").permitAll()
+                        
                         // Health check endpoint
                         .requestMatchers("/actuator/health").permitAll()
                         
@@ -119,6 +127,10 @@ public class SecurityConfig {
         // Configure allowed headers
         config.addAllowedHeader("*");
         
+        // Let the frontend read cache validators and pagination cursors
+        config.addExposedHeader("ETag");
+        config.addExposedHeader("X-Next-Cursor");
+        
         // Allow credentials for JWT authentication
         config.setAllowCredentials(true);
         
@@ -0,0 +1,41 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * In-memory subscription and transaction aggregates for the admin dashboards.
+ * Values are maintained incrementally as entities change state and can be
+ * rebuilt from the database at any time; every read is O(1).
+ */
+public interface BusinessMetricsService {
+
+    // Incremental updates - an entity change is a removal of its old contribution plus an addition of the new one
+    void subscriptionAdded(Subscription.SubscriptionStatus status, Subscription.BillingCycle billingCycle, BigDecimal price);
+    void subscriptionRemoved(Subscription.SubscriptionStatus status, Subscription.BillingCycle billingCycle, BigDecimal price);
+    void transactionAdded(Transaction.TransactionStatus status, BigDecimal amount, LocalDateTime updatedAt);
+    void transactionRemoved(Transaction.TransactionStatus status, BigDecimal amount, LocalDateTime updatedAt);
+
+    /**
+     * Recompute every aggregate from the database using GROUP BY queries
+     */
+    void rebuild();
+
+    // Subscription metrics
+    long countSubscriptionsByStatus(Subscription.SubscriptionStatus status);
+    Map<String, Long> getSubscriptionCountsByStatus();
+    Double getActiveSubscriptionRevenue();
+    Double getActiveMonthlySubscriptionRevenue();
+    Double getAverageRevenuePerUser();
+    Double getChurnRate();
+    Double getGrowthRate();
+
+    // Transaction metrics
+    long countTransactionsByStatus(Transaction.TransactionStatus status);
+    Double getTransactionAmountByStatus(Transaction.TransactionStatus status);
+    Double getPaidRevenueByMonth(int year, int month);
+}
@@ -1,16 +1,79 @@
 package org.kh.neuralpix.service;
 
 import org.springframework.web.multipart.MultipartFile;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 public interface CloudinaryService {
-    CompletableFuture<String> uploadImage(MultipartFile file);
-    CompletableFuture<String> uploadImage(MultipartFile file, String folder);
-    CompletableFuture<String> uploadImageFromBase64(String base64Data);
-    CompletableFuture<String> uploadImageFromBase64(String base64Data, String folder);
+
+    /**
+     * Width of the grid thumbnail, one of the standard derivative widths
+     */
+    int THUMBNAIL_WIDTH = 320;
+
+    /**
+     * Stream a multipart upload to Cloudinary in chunks, hashing it and checking its format
+     * (PNG, JPEG, GIF or WebP, by magic number) on the way. Fails with an
+     * IllegalArgumentException for other data.
+     */
+    CompletableFuture<ImageHandle> uploadImageHandle(MultipartFile file, String folder);
+
+    /**
+     * Upload image bytes already decoded and hashed by the caller
+     */
+    CompletableFuture<ImageHandle> uploadImageHandleFromBytes(byte[] imageBytes, String contentHash);
     CompletableFuture<String> uploadImageFromUrl(String imageUrl);
     CompletableFuture<String> uploadImageFromUrl(String imageUrl, String folder);
     CompletableFuture<Boolean> deleteImage(String publicId);
     CompletableFuture<String> generateTransformationUrl(String publicId, int width, int height, String format);
-    String uploadImageFromBytes(byte[] imageBytes, String filename);
-}
\ No newline at end of file
+
+    /**
+     * Make sure an image is stored in Cloudinary with the standard derivative widths generated
+     * eagerly, and describe it. Images already stored in our cloud are not uploaded again.
+     */
+    CompletableFuture<ImageHandle> storeWithDerivatives(String imageUrl);
+
+    /**
+     * Sign parameters for an upload the browser sends straight to Cloudinary. Returns what the
+     * browser posts along with the file: the given parameters plus api_key, signature and, unless
+     * the parameters carry one, the current timestamp.
+     */
+    Map<String, Object> signDirectUpload(Map<String, Object> params);
+
+    /**
+     * Cloudinary endpoint a directly uploaded image is posted to
+     */
+    String directUploadUrl();
+
+    /**
+     * Handle of a directly uploaded image when the signature is the one Cloudinary returned for
+     * this public id and version, empty otherwise
+     */
+    Optional<ImageHandle> verifyDirectUpload(String publicId, String version, String signature);
+
+    /**
+     * Delivery URL of a stored image scaled down to one of the standard derivative widths
+     */
+    String derivativeUrl(String publicId, int width);
+
+    /**
+     * An image that has been uploaded (or was already reachable by URL). Everything but the URL
+     * is null when the image was never read by us. The perceptual hash is only computed for
+     * uploads that go through duplicate detection.
+     */
+    record ImageHandle(String url, String publicId, String contentHash, Long perceptualHash, Long sizeBytes,
+                       Integer width, Integer height, String format) {
+
+        public static ImageHandle ofUrl(String url) {
+            return new ImageHandle(url, null, null, null, null, null, null, null);
+        }
+
+        /**
+         * The same stored image, described as uploaded from other bytes
+         */
+        public ImageHandle withHashes(String contentHash, Long perceptualHash) {
+            return new ImageHandle(url, publicId, contentHash, perceptualHash, sizeBytes, width, height, format);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+
+import java.util.Map;
+
+/**
+ * Uploads that go from the browser straight to Cloudinary, so image bytes never pass through
+ * this server. The browser asks for signed upload parameters scoped to the user's folder,
+ * posts the file to Cloudinary with them, and hands back only the public id, version and the
+ * response signature Cloudinary returned, which are verified before the image is used. Both
+ * calls throw UnsupportedOperationException when app.storage.backend is not cloudinary.
+ */
+public interface DirectUploadService {
+
+    /**
+     * Signed parameters for one upload under a new public id in the user's folder
+     */
+    SignedUpload sign(Long userId);
+
+    /**
+     * Verified handle of an image the user uploaded directly. Throws IllegalArgumentException
+     * when the signature does not match, the image is outside the user's folder, or the upload
+     * is too old to be confirmed.
+     */
+    ImageHandle confirm(Long userId, UploadResult result);
+
+    /**
+     * Where to post the file and the form fields to send with it. Cloudinary refuses the
+     * signature after expiresAt (epoch seconds).
+     */
+    record SignedUpload(String uploadUrl, Map<String, Object> params, long expiresAt) {
+    }
+
+    /**
+     * The fields of Cloudinary's upload response the browser sends back
+     */
+    record UploadResult(String publicId, String version, String signature) {
+    }
+}
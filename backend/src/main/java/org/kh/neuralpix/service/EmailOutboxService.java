@@ -0,0 +1,19 @@
+package org.kh.neuralpix.service;
+
+/**
+ * Transactional email outbox. Messages are stored with the caller's transaction and
+ * delivered asynchronously in batches over a shared SMTP connection.
+ */
+public interface EmailOutboxService {
+
+    /**
+     * Store a rendered message for delivery. Joins the current transaction if there is one,
+     * so the email is only sent if the business change commits.
+     */
+    void enqueue(String recipient, String subject, String htmlBody, String fromName, String replyTo);
+
+    /**
+     * Send one batch of due messages. Returns the number delivered.
+     */
+    int dispatchDueMessages();
+}
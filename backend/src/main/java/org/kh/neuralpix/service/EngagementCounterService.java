@@ -0,0 +1,60 @@
+package org.kh.neuralpix.service;
+
+import java.util.Map;
+
+/**
+ * In-memory engagement counters (likes, downloads, views). Increments are absorbed by
+ * per-image adders and written to the database periodically as batched relative updates,
+ * so a hot image never turns into a read-modify-write per request.
+ */
+public interface EngagementCounterService {
+
+    enum Counter {
+        IMAGE_LIKES("generated_images", "likes_count"),
+        IMAGE_DOWNLOADS("generated_images", "downloads_count"),
+        IMAGE_VIEWS("generated_images", "views_count"),
+        PROCESSED_IMAGE_VIEWS("processed_images", "view_count");
+
+        private final String table;
+        private final String column;
+
+        Counter(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    void increment(Counter counter, Long id);
+
+    /**
+     * Increments recorded for an image that are not yet in the database
+     */
+    long pending(Counter counter, Long id);
+
+    /**
+     * Convenience for read paths: the stored value plus whatever has not been flushed yet
+     */
+    default Integer withPending(Counter counter, Long id, Integer stored) {
+        long total = (stored != null ? stored : 0) + (id != null ? pending(counter, id) : 0);
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Write all pending increments to the database. Returns the number of rows updated.
+     */
+    int flush();
+
+    /**
+     * Published after a flush commits, with the increments it wrote per counter and image id
+     */
+    record CountersFlushedEvent(Map<Counter, Map<Long, Long>> deltas, long flushedAtMillis) {
+    }
+}
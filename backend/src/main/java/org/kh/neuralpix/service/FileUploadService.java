@@ -1,10 +1,22 @@
 package org.kh.neuralpix.service;
 
-import org.springframework.http.ResponseEntity;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface FileUploadService {
+
+    /**
+     * Store a file under a new opaque name; identical files share their stored content. Returns
+     * the stored file name. The caller admits the upload against the staging budget first.
+     */
     String uploadFile(MultipartFile file) throws Exception;
-    ResponseEntity<?> downloadFile(String fileName) throws Exception;
+
+    /**
+     * Write a stored file to the response, honouring If-None-Match / If-Modified-Since (304)
+     * and a single byte range (206). Answers 404 for unknown names.
+     */
+    void downloadFile(String fileName, HttpServletRequest request, HttpServletResponse response) throws Exception;
+
     boolean deleteFile(String fileName) throws Exception;
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package org.kh.neuralpix.service;
+
+import java.util.List;
+
+/**
+ * Fills in thumbnail URL, file size and dimensions of stored results after the fact. The image
+ * is stored in Cloudinary with its standard widths generated eagerly, so grid pages can load a
+ * small derivative instead of the full-size result. A result that had to be uploaded is then
+ * served from the Cloudinary copy.
+ */
+public interface ImageDerivativeService {
+
+    /**
+     * Queue derivative generation for one stored result. Returns false when the queue is full.
+     */
+    boolean submit(StoredImage image);
+
+    /**
+     * A result that was written to generated_images and/or processed_images; either id may be null
+     */
+    record StoredImage(Long generatedImageId, Long processedImageId, String imageUrl) {
+    }
+
+    /**
+     * Published once new result rows are committed
+     */
+    record ImagesStoredEvent(List<StoredImage> images) {
+    }
+}
@@ -0,0 +1,18 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+
+import java.util.Optional;
+
+/**
+ * Real format and dimensions of an input image, read from its first bytes only: data URLs are
+ * decoded just far enough, remote URLs are fetched with range requests. Remote results are
+ * cached by URL.
+ */
+public interface ImageProbeService {
+
+    /**
+     * Empty when the image is not PNG, JPEG, GIF or WebP, or could not be read
+     */
+    Optional<ImageInfo> probe(String imageUrl);
+}
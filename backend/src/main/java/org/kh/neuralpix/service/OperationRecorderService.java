@@ -0,0 +1,47 @@
+package org.kh.neuralpix.service;
+
+import lombok.Builder;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single write path for completed image operations. Each operation is recorded once, queued
+ * in memory and written off the request path: the processed-image history row, the work
+ * history (generated image) row, the usage increments and the search documents of a whole
+ * batch of operations go to the database in one transaction of JDBC batches.
+ */
+public interface OperationRecorderService {
+
+    /**
+     * Queue a completed operation. Never blocks on the database and never throws.
+     */
+    void record(OperationCompleted operation);
+
+    /**
+     * Write every queued operation. Returns the number of operations written.
+     */
+    int flush();
+
+    /**
+     * One finished operation. Only successful operations with a result URL count towards
+     * usage and appear in the work history; failures are kept in the processed-image history.
+     */
+    @Builder(toBuilder = true)
+    record OperationCompleted(Long userId,
+                              ProcessedImage.OperationType operationType,
+                              String originalUrl,
+                              String resultUrl,
+                              ImageHandle sourceImage,
+                              String prompt,
+                              String style,
+                              String quality,
+                              Double scaleFactor,
+                              Integer fileSize,
+                              boolean success,
+                              String errorMessage,
+                              long processingTimeMs,
+                              LocalDateTime completedAt) {
+    }
+}
@@ -0,0 +1,9 @@
+package org.kh.neuralpix.service;
+
+/**
+ * Issues PayOS order codes that are unique across all running instances without
+ * consulting the transactions table.
+ */
+public interface OrderCodeService {
+    long nextOrderCode();
+}
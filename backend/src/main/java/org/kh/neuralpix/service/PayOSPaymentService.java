@@ -1,5 +1,6 @@
 package org.kh.neuralpix.service;
 
+import org.kh.neuralpix.model.Transaction;
 import vn.payos.type.CheckoutResponseData;
 import vn.payos.type.PaymentLinkData;
 import vn.payos.type.Webhook;
@@ -9,6 +10,14 @@ import java.math.BigDecimal;
 
 public interface PayOSPaymentService {
     CheckoutResponseData createPaymentLink(Long orderCode, BigDecimal amount, String description, String buyerEmail);
+
+    /**
+     * Create a payment link and record a pending transaction for it, so its webhook can be
+     * matched back to the user and subscription
+     */
+    CheckoutResponseData createPaymentLinkWithTransaction(Long orderCode, Long userId, Long subscriptionId,
+                                                          BigDecimal amount, Transaction.TransactionType type,
+                                                          String description, String buyerEmail);
     PaymentLinkData getPaymentLinkInfo(Long orderCode);
     PaymentLinkData cancelPaymentLink(Long orderCode, String reason);
     WebhookData verifyWebhookData(Webhook webhookData);
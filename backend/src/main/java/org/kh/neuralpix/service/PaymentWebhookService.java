@@ -0,0 +1,17 @@
+package org.kh.neuralpix.service;
+
+import vn.payos.type.WebhookData;
+
+public interface PaymentWebhookService {
+
+    /**
+     * Durably store a verified webhook and hand it to the worker for its order.
+     * Returns false when the same delivery was already received.
+     */
+    boolean enqueue(WebhookData webhookData);
+
+    /**
+     * Dispatch stored events that are new, due for retry or stuck in processing
+     */
+    void dispatchDueEvents();
+}
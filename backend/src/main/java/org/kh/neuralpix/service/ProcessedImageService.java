@@ -32,11 +32,12 @@ public interface ProcessedImageService {
     // Mark as favorite
     ProcessedImage toggleFavorite(Long imageId, Long userId);
     
-    // Increment view count
-    ProcessedImage incrementViewCount(Long imageId);
+    // Increment view count (buffered in memory and flushed in batches)
+    void incrementViewCount(Long imageId);
     
-    // Search images
+    // Search images (full-text over prompt, tags, style and operation type, ranked by relevance)
     List<ProcessedImage> searchUserImages(Long userId, String keyword);
+    Page<ProcessedImage> searchUserImages(Long userId, String keyword, Pageable pageable);
     
     // Get statistics
     Long getUserProcessingCount(Long userId);
@@ -0,0 +1,24 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Cursor-paginated feed of public images, newest first. The first pages are served
+ * from memory and rebuilt after any change to a public image commits.
+ */
+public interface PublicGalleryService {
+
+    /**
+     * Up to limit images strictly after the (cursorCreatedAt, cursorId) cursor; pass nulls for the first page
+     */
+    List<GeneratedImageResponseDto> getFeed(LocalDateTime cursorCreatedAt, Long cursorId, int limit);
+
+    /**
+     * Published when an image is made public or private, or a public image is created, changed or deleted
+     */
+    record GalleryChangedEvent(Long imageId) {
+    }
+}
@@ -0,0 +1,47 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.model.GeneratedImage;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.model.SearchDocument;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * Full-text search over a user's images. Documents are written in the same transaction as
+ * the image they describe, so search never returns an image that was rolled back.
+ */
+public interface SearchIndexService {
+
+    /**
+     * Index a generated image from its prompt (text, style, model) plus any extra terms,
+     * e.g. the PixelCut operation and prompt of images that have no Prompt row
+     */
+    void indexGeneratedImage(GeneratedImage image, String... extraTerms);
+
+    /**
+     * Index a processed image from its prompt, tags, style and operation type
+     */
+    void indexProcessedImage(ProcessedImage image);
+
+    /**
+     * Index rows that were inserted in bulk, with one batched upsert for all of them. Joins the
+     * caller's transaction like the single-image methods.
+     */
+    void indexBatch(List<ProcessedImage> processedImages, List<GeneratedImageTerms> generatedImages);
+
+    void remove(SearchDocument.ItemType itemType, Long itemId);
+
+    /**
+     * Ids of the user's items matching every word of the query, each word as a prefix,
+     * ranked by relevance. Returns an empty page when the query has no searchable words.
+     */
+    Page<Long> search(Long userId, SearchDocument.ItemType itemType, String query, Pageable pageable);
+
+    /**
+     * A generated image with the extra terms it is indexed with, see indexGeneratedImage
+     */
+    record GeneratedImageTerms(GeneratedImage image, String... extraTerms) {
+    }
+}
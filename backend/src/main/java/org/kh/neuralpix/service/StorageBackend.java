@@ -0,0 +1,70 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where uploaded images are kept. Selected with app.storage.backend: "cloudinary" (the
+ * default) or "local", which stores images on the server's disk and serves them itself, so
+ * local runs, tests and on-prem deployments need no Cloudinary account.
+ *
+ * Input uploads, avatars and generated Vertex images go through this interface. Features that
+ * exist only in Cloudinary are off with the local backend: eager derivatives (rows keep showing
+ * the full image) and browser-direct uploads (refused, the client uploads through the server).
+ */
+public interface StorageBackend {
+
+    /**
+     * Store image bytes whose SHA-256 the caller already computed. The handle's URL is publicly
+     * readable and its publicId is the key for {@link #delete(String)}.
+     */
+    CompletableFuture<ImageHandle> store(byte[] imageBytes, String contentHash);
+
+    /**
+     * Store image bytes the caller has not hashed
+     */
+    default CompletableFuture<ImageHandle> store(byte[] imageBytes) {
+        try {
+            return store(imageBytes, HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(imageBytes)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Store a multipart upload without holding it in memory: it is hashed while it is copied and
+     * checked to be a PNG, JPEG, GIF or WebP image before anything is stored, failing with an
+     * IllegalArgumentException otherwise. The folder groups the upload in Cloudinary; the local
+     * backend keys every file by its content.
+     */
+    CompletableFuture<ImageHandle> store(MultipartFile file, String folder);
+
+    CompletableFuture<Boolean> delete(String publicId);
+
+    /**
+     * Bytes of a stored image for backends that serve their own URLs; empty when the image is
+     * unknown or the backend's URLs are served elsewhere. Close the file once it is written out.
+     */
+    default Optional<StoredFile> read(String publicId) {
+        return Optional.empty();
+    }
+
+    /**
+     * A stored image's bytes, read-only and valid until closed
+     */
+    record StoredFile(ByteBuffer content, String contentType, String contentHash, Runnable release)
+            implements AutoCloseable {
+
+        @Override
+        public void close() {
+            release.run();
+        }
+    }
+}
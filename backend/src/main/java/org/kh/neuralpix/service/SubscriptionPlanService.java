@@ -19,6 +19,14 @@ public interface SubscriptionPlanService {
     SubscriptionPlanDto update(Long id, SubscriptionPlanDto request);
     void delete(Long id);
     List<SubscriptionPlan> getActivePlans();
+    SubscriptionPlanDto toggleStatus(Long id);
+
+    /**
+     * Version of the in-memory plan catalog, derived from the plan rows so that every instance
+     * reports the same version for the same data; changes whenever any plan changes.
+     * Plans returned by getAll/getActivePlans/getByTier are copies the caller may modify.
+     */
+    String getCatalogVersion();
     
     // Admin functionality
     Page<SubscriptionPlan> getAllPlans(Pageable pageable);
@@ -30,7 +30,16 @@ public interface SubscriptionService {
     
     // Subscription actions
     void cancelSubscription(Long subscriptionId, SubscriptionCancelDto request);
+    /**
+     * Ask for the renewal payment of a subscription that is due. The subscription is held
+     * PAST_DUE until the payment is confirmed; it is not extended here.
+     */
     void renewSubscription(Long subscriptionId);
+
+    /**
+     * Extend a subscription whose renewal payment PayOS confirmed
+     */
+    void completeRenewal(Long subscriptionId);
     void expireSubscription(Long subscriptionId);
     void suspendSubscription(Long subscriptionId, String reason);
     SubscriptionDto upgradeSubscription(Long subscriptionId, SubscriptionUpgradeDto request);
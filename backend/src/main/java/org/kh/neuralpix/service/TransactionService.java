@@ -8,6 +8,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface TransactionService {
 
@@ -118,6 +119,23 @@ public interface TransactionService {
      */
     List<Transaction> getUserTransactionsBetweenDates(Long userId, LocalDateTime startDate, LocalDateTime endDate);
 
+    /**
+     * Tìm kiếm transactions theo bộ lọc, phân trang bằng cursor (createdAt, id).
+     * Các bộ lọc null sẽ bị bỏ qua; cursor null trả về trang đầu tiên.
+     */
+    List<Transaction> searchTransactions(Long userId, Transaction.TransactionStatus status,
+                                         Transaction.TransactionType type,
+                                         LocalDateTime startDate, LocalDateTime endDate,
+                                         LocalDateTime cursorCreatedAt, Long cursorId, int limit);
+
+    /**
+     * Stream transactions theo bộ lọc vào consumer với bộ nhớ cố định, trả về số dòng đã xuất
+     */
+    long exportTransactions(Long userId, Transaction.TransactionStatus status,
+                            Transaction.TransactionType type,
+                            LocalDateTime startDate, LocalDateTime endDate,
+                            Consumer<Transaction> consumer);
+
     /**
      * Thống kê doanh thu theo tháng
      */
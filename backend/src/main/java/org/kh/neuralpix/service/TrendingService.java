@@ -0,0 +1,31 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * Trending images ranked by time-decayed engagement. The ranking lives in memory, is updated
+ * as engagement counters are flushed, and is snapshotted to the database for restarts.
+ */
+public interface TrendingService {
+
+    /**
+     * Top public generated images, highest trending score first
+     */
+    List<GeneratedImageResponseDto> getTrendingImages(int limit);
+
+    /**
+     * Top public processed images, highest trending score first
+     */
+    Page<ProcessedImage> getTrendingProcessedImages(Pageable pageable);
+
+    /**
+     * Persist the current rankings, replacing the previous snapshot, unless another instance
+     * holds the snapshot lease
+     */
+    void snapshot();
+}
@@ -0,0 +1,20 @@
+package org.kh.neuralpix.service;
+
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Uploads a user's input images once. Each upload is indexed per user by the SHA-256 of its
+ * bytes; an image the user uploaded before, byte for byte, resolves to the stored image instead
+ * of a new asset. Its 64-bit perceptual hash is computed and recorded alongside. The index is
+ * rebuilt from the processed-image history when a user is first seen.
+ */
+public interface UploadDedupService {
+
+    /**
+     * Handle of the stored image for base64 data (with or without data URL prefix), uploading
+     * it only when the user has no duplicate of it. A null user is never deduplicated.
+     */
+    CompletableFuture<ImageHandle> upload(Long userId, String base64Data);
+}
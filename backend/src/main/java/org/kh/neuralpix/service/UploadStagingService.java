@@ -0,0 +1,57 @@
+package org.kh.neuralpix.service;
+
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Byte budget for the local upload directory, which in production is an in-memory filesystem:
+ * every stored byte is container RAM. Uploads reserve their size before writing; when the
+ * budget is full, idle files are evicted (expired first, then least recently used) and, if that
+ * is not enough, the upload is refused with a StorageAdmissionException instead of running the
+ * container out of memory. A background sweep removes expired files and orphaned temp files.
+ */
+public interface UploadStagingService {
+
+    /**
+     * Reserve room for an upload of the given size. Close the reservation once the file is
+     * stored (and {@link #stored} called) or abandoned.
+     */
+    Reservation reserve(long bytes);
+
+    /**
+     * A file was stored in the upload directory; counts it against the budget
+     */
+    void stored(String fileName, long bytes);
+
+    /**
+     * A file was read; keeps it from being evicted first
+     */
+    void accessed(String fileName);
+
+    /**
+     * A file was deleted from the upload directory
+     */
+    void removed(String fileName);
+
+    /**
+     * Replaces how an evicted file is deleted, for stores that keep more than one path per file.
+     * The evictor runs under the same lock as {@link #withoutEviction}.
+     */
+    void setEvictor(Consumer<String> evictor);
+
+    /**
+     * Runs the action with eviction held off, so files it checks or places cannot be evicted
+     * before it has recorded them with {@link #stored}
+     */
+    <T> T withoutEviction(Callable<T> action) throws Exception;
+
+    Usage usage();
+
+    interface Reservation extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    record Usage(long budgetBytes, long storedBytes, long reservedBytes, int files) {
+    }
+}
@@ -0,0 +1,319 @@
+package org.kh.neuralpix.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.repository.SubscriptionRepository;
+import org.kh.neuralpix.repository.TransactionRepository;
+import org.kh.neuralpix.service.BusinessMetricsService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps dashboard aggregates in memory. Incremental updates arrive from
+ * {@link org.kh.neuralpix.config.BusinessMetricsEventListener} after each commit; a periodic
+ * rebuild from the database corrects any drift caused by bulk updates or missed events.
+ * Updates that arrive while a rebuild is reading are recorded and applied again on top of the
+ * rebuilt aggregates, since the read may not have seen them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BusinessMetricsServiceImpl implements BusinessMetricsService {
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final TransactionRepository transactionRepository;
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private final EnumMap<Subscription.SubscriptionStatus, Long> subscriptionCounts =
+            new EnumMap<>(Subscription.SubscriptionStatus.class);
+    private long totalSubscriptions;
+    private BigDecimal activeRevenue = BigDecimal.ZERO;
+    private BigDecimal activeMonthlyRevenue = BigDecimal.ZERO;
+    private final EnumMap<Transaction.TransactionStatus, Long> transactionCounts =
+            new EnumMap<>(Transaction.TransactionStatus.class);
+    private final EnumMap<Transaction.TransactionStatus, BigDecimal> transactionAmounts =
+            new EnumMap<>(Transaction.TransactionStatus.class);
+    private final Map<YearMonth, BigDecimal> paidRevenueByMonth = new HashMap<>();
+    // Updates since the running rebuild started, null when none is running
+    private List<Runnable> updatesDuringRebuild;
+
+    @Override
+    public void subscriptionAdded(Subscription.SubscriptionStatus status, Subscription.BillingCycle billingCycle, BigDecimal price) {
+        applySubscription(status, billingCycle, price, 1);
+    }
+
+    @Override
+    public void subscriptionRemoved(Subscription.SubscriptionStatus status, Subscription.BillingCycle billingCycle, BigDecimal price) {
+        applySubscription(status, billingCycle, price, -1);
+    }
+
+    @Override
+    public void transactionAdded(Transaction.TransactionStatus status, BigDecimal amount, LocalDateTime updatedAt) {
+        applyTransaction(status, amount, updatedAt, 1);
+    }
+
+    @Override
+    public void transactionRemoved(Transaction.TransactionStatus status, BigDecimal amount, LocalDateTime updatedAt) {
+        applyTransaction(status, amount, updatedAt, -1);
+    }
+
+    private void applySubscription(Subscription.SubscriptionStatus status, Subscription.BillingCycle billingCycle,
+                                   BigDecimal price, int sign) {
+        apply(() -> {
+            totalSubscriptions += sign;
+            if (status == null) {
+                return;
+            }
+            subscriptionCounts.merge(status, (long) sign, Long::sum);
+            if (status == Subscription.SubscriptionStatus.ACTIVE && price != null) {
+                BigDecimal delta = sign > 0 ? price : price.negate();
+                activeRevenue = activeRevenue.add(delta);
+                if (billingCycle == Subscription.BillingCycle.MONTHLY) {
+                    activeMonthlyRevenue = activeMonthlyRevenue.add(delta);
+                }
+            }
+        });
+    }
+
+    private void applyTransaction(Transaction.TransactionStatus status, BigDecimal amount,
+                                  LocalDateTime updatedAt, int sign) {
+        if (status == null) {
+            return;
+        }
+        apply(() -> {
+            transactionCounts.merge(status, (long) sign, Long::sum);
+            if (amount == null) {
+                return;
+            }
+            BigDecimal delta = sign > 0 ? amount : amount.negate();
+            transactionAmounts.merge(status, delta, BigDecimal::add);
+            if (status == Transaction.TransactionStatus.PAID && updatedAt != null) {
+                paidRevenueByMonth.merge(YearMonth.from(updatedAt), delta, BigDecimal::add);
+            }
+        });
+    }
+
+    /**
+     * Apply an update under the lock, keeping it for replay when a rebuild is reading
+     */
+    private void apply(Runnable update) {
+        synchronized (lock) {
+            update.run();
+            if (updatesDuringRebuild != null) {
+                updatesDuringRebuild.add(update);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to build business metrics on startup", e);
+        }
+    }
+
+    /**
+     * Rebuild aggregates from the database every 6 hours to correct any drift
+     */
+    @Scheduled(cron = "0 30 */6 * * *")
+    public void scheduledRebuild() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Error in scheduled business metrics rebuild", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (lock) {
+            updatesDuringRebuild = new ArrayList<>();
+        }
+        try {
+            rebuildFromDatabase(start);
+        } finally {
+            synchronized (lock) {
+                updatesDuringRebuild = null;
+            }
+        }
+    }
+
+    private void rebuildFromDatabase(long start) {
+        EnumMap<Subscription.SubscriptionStatus, Long> newSubscriptionCounts =
+                new EnumMap<>(Subscription.SubscriptionStatus.class);
+        long newTotalSubscriptions = 0;
+        BigDecimal newActiveRevenue = BigDecimal.ZERO;
+        BigDecimal newActiveMonthlyRevenue = BigDecimal.ZERO;
+        for (Object[] row : subscriptionRepository.aggregateByStatusAndBillingCycle()) {
+            Subscription.SubscriptionStatus status = (Subscription.SubscriptionStatus) row[0];
+            Subscription.BillingCycle billingCycle = (Subscription.BillingCycle) row[1];
+            long count = ((Number) row[2]).longValue();
+            BigDecimal sum = toBigDecimal(row[3]);
+            newTotalSubscriptions += count;
+            if (status == null) {
+                continue;
+            }
+            newSubscriptionCounts.merge(status, count, Long::sum);
+            if (status == Subscription.SubscriptionStatus.ACTIVE) {
+                newActiveRevenue = newActiveRevenue.add(sum);
+                if (billingCycle == Subscription.BillingCycle.MONTHLY) {
+                    newActiveMonthlyRevenue = newActiveMonthlyRevenue.add(sum);
+                }
+            }
+        }
+
+        EnumMap<Transaction.TransactionStatus, Long> newTransactionCounts =
+                new EnumMap<>(Transaction.TransactionStatus.class);
+        EnumMap<Transaction.TransactionStatus, BigDecimal> newTransactionAmounts =
+                new EnumMap<>(Transaction.TransactionStatus.class);
+        for (Object[] row : transactionRepository.aggregateByStatus()) {
+            Transaction.TransactionStatus status = (Transaction.TransactionStatus) row[0];
+            newTransactionCounts.put(status, ((Number) row[1]).longValue());
+            newTransactionAmounts.put(status, toBigDecimal(row[2]));
+        }
+
+        Map<YearMonth, BigDecimal> newPaidRevenueByMonth = new HashMap<>();
+        for (Object[] row : transactionRepository.aggregatePaidRevenueByMonth()) {
+            if (row[0] == null || row[1] == null) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            newPaidRevenueByMonth.put(month, toBigDecimal(row[2]));
+        }
+
+        synchronized (lock) {
+            subscriptionCounts.clear();
+            subscriptionCounts.putAll(newSubscriptionCounts);
+            totalSubscriptions = newTotalSubscriptions;
+            activeRevenue = newActiveRevenue;
+            activeMonthlyRevenue = newActiveMonthlyRevenue;
+            transactionCounts.clear();
+            transactionCounts.putAll(newTransactionCounts);
+            transactionAmounts.clear();
+            transactionAmounts.putAll(newTransactionAmounts);
+            paidRevenueByMonth.clear();
+            paidRevenueByMonth.putAll(newPaidRevenueByMonth);
+            updatesDuringRebuild.forEach(Runnable::run);
+        }
+
+        log.info("Rebuilt business metrics in {} ms - {} subscriptions, {} transaction statuses",
+                System.currentTimeMillis() - start, newTotalSubscriptions, newTransactionCounts.size());
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return new BigDecimal(value.toString());
+    }
+
+    @Override
+    public long countSubscriptionsByStatus(Subscription.SubscriptionStatus status) {
+        synchronized (lock) {
+            return subscriptionCounts.getOrDefault(status, 0L);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getSubscriptionCountsByStatus() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        synchronized (lock) {
+            for (Subscription.SubscriptionStatus status : Subscription.SubscriptionStatus.values()) {
+                counts.put(status.name(), subscriptionCounts.getOrDefault(status, 0L));
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Double getActiveSubscriptionRevenue() {
+        synchronized (lock) {
+            return activeRevenue.doubleValue();
+        }
+    }
+
+    @Override
+    public Double getActiveMonthlySubscriptionRevenue() {
+        synchronized (lock) {
+            return activeMonthlyRevenue.doubleValue();
+        }
+    }
+
+    @Override
+    public Double getAverageRevenuePerUser() {
+        synchronized (lock) {
+            long active = subscriptionCounts.getOrDefault(Subscription.SubscriptionStatus.ACTIVE, 0L);
+            if (active <= 0) {
+                return 0.0;
+            }
+            return activeRevenue.doubleValue() / active;
+        }
+    }
+
+    @Override
+    public Double getChurnRate() {
+        synchronized (lock) {
+            if (totalSubscriptions <= 0) {
+                return 0.0;
+            }
+            long cancelled = subscriptionCounts.getOrDefault(Subscription.SubscriptionStatus.CANCELLED, 0L);
+            return (double) cancelled / totalSubscriptions * 100;
+        }
+    }
+
+    @Override
+    public Double getGrowthRate() {
+        synchronized (lock) {
+            if (totalSubscriptions <= 0) {
+                return 0.0;
+            }
+            long active = subscriptionCounts.getOrDefault(Subscription.SubscriptionStatus.ACTIVE, 0L);
+            return (double) active / totalSubscriptions * 100;
+        }
+    }
+
+    @Override
+    public long countTransactionsByStatus(Transaction.TransactionStatus status) {
+        synchronized (lock) {
+            return transactionCounts.getOrDefault(status, 0L);
+        }
+    }
+
+    @Override
+    public Double getTransactionAmountByStatus(Transaction.TransactionStatus status) {
+        synchronized (lock) {
+            return transactionAmounts.getOrDefault(status, BigDecimal.ZERO).doubleValue();
+        }
+    }
+
+    @Override
+    public Double getPaidRevenueByMonth(int year, int month) {
+        synchronized (lock) {
+            return paidRevenueByMonth.getOrDefault(YearMonth.of(year, month), BigDecimal.ZERO).doubleValue();
+        }
+    }
+}
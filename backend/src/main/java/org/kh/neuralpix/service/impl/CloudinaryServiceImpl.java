@@ -4,6 +4,7 @@ import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import com.cloudinary.Transformation;
 import org.kh.neuralpix.service.CloudinaryService;
+import org.kh.neuralpix.utils.ImageProbe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,10 +12,28 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 // removed unused import
-import java.util.Base64;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 @Service
 public class CloudinaryServiceImpl implements CloudinaryService {
@@ -33,14 +52,40 @@ public class CloudinaryServiceImpl implements CloudinaryService {
     @Value("${cloudinary.folder:neuralpix}")
     private String defaultFolder;
 
+    // Uploads run on their own bounded pool: at most this many talk to Cloudinary at once
+    @Value("${cloudinary.upload.workers:4}")
+    private int uploadWorkers;
+
+    @Value("${cloudinary.upload.queue-capacity:64}")
+    private int uploadQueueCapacity;
+
+    // Streamed uploads hold one chunk in memory; Cloudinary requires at least 5 MB per chunk
+    @Value("${cloudinary.upload.chunk-size:5242880}")
+    private int uploadChunkSize;
+
     private Cloudinary cloudinary;
+    private ThreadPoolExecutor uploadExecutor;
+
+    // Standard widths generated eagerly for every stored result; the smallest is the grid thumbnail
+    private static final int[] DERIVATIVE_WIDTHS = {THUMBNAIL_WIDTH, 640, 1280};
+    private static final Pattern VERSION_PREFIX = Pattern.compile("^v\\d+/");
 
     @PostConstruct
     public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, uploadWorkers);
+        uploadExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, uploadQueueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cloudinary-io-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
         if (cloudName == null || cloudName.trim().isEmpty() ||
             apiKey == null || apiKey.trim().isEmpty() ||
             apiSecret == null || apiSecret.trim().isEmpty()) {
-            logger.warn("Cloudinary credentials not configured properly");
+            logger.warn("Cloudinary credentials not configured properly; set app.storage.backend=local to keep uploads on this server");
             return;
         }
 
@@ -54,16 +99,19 @@ public class CloudinaryServiceImpl implements CloudinaryService {
     }
 
     @Override
-    public CompletableFuture<String> uploadImage(MultipartFile file) {
-        return uploadImage(file, defaultFolder);
-    }
-
-    @Override
-    public CompletableFuture<String> uploadImage(MultipartFile file, String folder) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
+    public CompletableFuture<ImageHandle> uploadImageHandle(MultipartFile file, String folder) {
+        return onUploadPool(() -> {
+            try (BufferedInputStream in = new BufferedInputStream(file.getInputStream())) {
                 validateCloudinaryConfig();
-                
+
+                // Sniff the real format before anything is sent, then rewind
+                in.mark(ImageProbe.HEADER_BYTES);
+                String format = ImageProbe.format(in.readNBytes(ImageProbe.HEADER_BYTES));
+                in.reset();
+                if (format == null) {
+                    throw new IllegalArgumentException("File is not a PNG, JPEG, GIF or WebP image");
+                }
+
                 Map<String, Object> uploadParams = ObjectUtils.asMap(
                     "folder", folder,
                     "resource_type", "image",
@@ -74,13 +122,18 @@ public class CloudinaryServiceImpl implements CloudinaryService {
                     "format", "png"
                 );
 
+                // Hashed while it is streamed up in chunks; the file is never held in memory as a whole
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
                 @SuppressWarnings("unchecked")
-                Map<String, Object> uploadResult = (Map<String, Object>) cloudinary.uploader().upload(file.getBytes(), uploadParams);
-                String imageUrl = (String) uploadResult.get("secure_url");
-                
-                logger.info("Successfully uploaded image to Cloudinary: {}", imageUrl);
-                return imageUrl;
-                
+                Map<String, Object> uploadResult = (Map<String, Object>) cloudinary.uploader()
+                        .uploadLarge(new DigestInputStream(in, digest), uploadParams, uploadChunkSize);
+                String contentHash = HexFormat.of().formatHex(digest.digest());
+
+                logger.info("Successfully uploaded {} image to Cloudinary: {}", format, uploadResult.get("secure_url"));
+                return toHandle(uploadResult, contentHash);
+
+            } catch (IllegalArgumentException e) {
+                throw e;
             } catch (Exception e) {
                 logger.error("Error uploading image to Cloudinary: {}", e.getMessage(), e);
                 throw new RuntimeException("Failed to upload image to Cloudinary: " + e.getMessage());
@@ -89,49 +142,38 @@ public class CloudinaryServiceImpl implements CloudinaryService {
     }
 
     @Override
-    public CompletableFuture<String> uploadImageFromBase64(String base64Data) {
-        return uploadImageFromBase64(base64Data, defaultFolder);
-    }
-
-    @Override
-    public CompletableFuture<String> uploadImageFromBase64(String base64Data, String folder) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<ImageHandle> uploadImageHandleFromBytes(byte[] imageBytes, String contentHash) {
+        return onUploadPool(() -> {
             try {
-                validateCloudinaryConfig();
-
-                // Clean base64 data if it has data URL prefix
-                String cleanBase64 = base64Data;
-                if (base64Data.startsWith("data:image/")) {
-                    cleanBase64 = base64Data.split(",")[1];
-                }
-
-                // Optionally validate base64 (skip storing variable to avoid unused warning)
-                Base64.getDecoder().decode(cleanBase64);
-
-                Map<String, Object> uploadParams = ObjectUtils.asMap(
-                    "folder", folder,
-                    "resource_type", "image",
-                    "unique_filename", true,
-                    "use_filename", false,
-                    "quality", "auto",
-                    "fetch_format", "auto",
-                    "format", "png"
-                );
-
-                @SuppressWarnings("unchecked")
-                Map<String, Object> uploadResult = (Map<String, Object>) cloudinary.uploader().upload("data:image/png;base64," + cleanBase64, uploadParams);
-                String imageUrl = (String) uploadResult.get("secure_url");
-                
-                logger.info("Successfully uploaded base64 image to Cloudinary: {}", imageUrl);
-                return imageUrl;
-                
+                return uploadBytes(imageBytes, contentHash, defaultFolder);
             } catch (Exception e) {
-                logger.error("Error uploading base64 image to Cloudinary: {}", e.getMessage(), e);
-                throw new RuntimeException("Failed to upload base64 image to Cloudinary: " + e.getMessage());
+                logger.error("Error uploading image bytes to Cloudinary: {}", e.getMessage(), e);
+                throw new RuntimeException("Failed to upload image to Cloudinary: " + e.getMessage());
             }
         });
     }
 
+    private ImageHandle uploadBytes(byte[] imageBytes, String contentHash, String folder) throws IOException {
+        validateCloudinaryConfig();
+
+        Map<String, Object> uploadParams = ObjectUtils.asMap(
+            "folder", folder,
+            "resource_type", "image",
+            "unique_filename", true,
+            "use_filename", false,
+            "quality", "auto",
+            "fetch_format", "auto",
+            "format", "png"
+        );
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> uploadResult = (Map<String, Object>) cloudinary.uploader().upload(imageBytes, uploadParams);
+        String imageUrl = (String) uploadResult.get("secure_url");
+
+        logger.info("Successfully uploaded image bytes to Cloudinary: {}", imageUrl);
+        return toHandle(uploadResult, contentHash);
+    }
+
     @Override
     public CompletableFuture<String> uploadImageFromUrl(String imageUrl) {
         return uploadImageFromUrl(imageUrl, defaultFolder);
@@ -139,7 +181,7 @@ public class CloudinaryServiceImpl implements CloudinaryService {
 
     @Override
     public CompletableFuture<String> uploadImageFromUrl(String imageUrl, String folder) {
-        return CompletableFuture.supplyAsync(() -> {
+        return onUploadPool(() -> {
             try {
                 validateCloudinaryConfig();
 
@@ -169,7 +211,7 @@ public class CloudinaryServiceImpl implements CloudinaryService {
 
     @Override
     public CompletableFuture<Boolean> deleteImage(String publicId) {
-        return CompletableFuture.supplyAsync(() -> {
+        return onUploadPool(() -> {
             try {
                 validateCloudinaryConfig();
 
@@ -217,32 +259,152 @@ public class CloudinaryServiceImpl implements CloudinaryService {
     }
 
     @Override
-    public String uploadImageFromBytes(byte[] imageBytes, String filename) {
+    public CompletableFuture<ImageHandle> storeWithDerivatives(String imageUrl) {
+        return onUploadPool(() -> {
+            try {
+                validateCloudinaryConfig();
+
+                List<Transformation> eager = new ArrayList<>();
+                for (int width : DERIVATIVE_WIDTHS) {
+                    eager.add(derivative(width));
+                }
+
+                String publicId = ownPublicId(imageUrl);
+                Map<String, Object> result;
+                if (publicId != null) {
+                    // Already ours: explicit only adds the derivatives and reports the stored asset
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> explicitResult = (Map<String, Object>) cloudinary.uploader().explicit(publicId, ObjectUtils.asMap(
+                        "type", "upload",
+                        "eager", eager,
+                        "eager_async", true
+                    ));
+                    result = explicitResult;
+                } else {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> uploadResult = (Map<String, Object>) cloudinary.uploader().upload(imageUrl, ObjectUtils.asMap(
+                        "folder", defaultFolder,
+                        "resource_type", "image",
+                        "unique_filename", true,
+                        "use_filename", false,
+                        "eager", eager,
+                        "eager_async", true
+                    ));
+                    result = uploadResult;
+                }
+
+                logger.debug("Stored image with derivatives: {} -> {}", imageUrl, result.get("secure_url"));
+                return toHandle(result, null);
+
+            } catch (Exception e) {
+                logger.error("Error storing image derivatives for {}: {}", imageUrl, e.getMessage(), e);
+                throw new RuntimeException("Failed to store image derivatives: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public String derivativeUrl(String publicId, int width) {
+        validateCloudinaryConfig();
+        // Same transformation as the eager one, so the URL is served from the precomputed derivative
+        return cloudinary.url()
+                .transformation(derivative(width))
+                .secure(true)
+                .generate(publicId);
+    }
+
+    @Override
+    public Map<String, Object> signDirectUpload(Map<String, Object> params) {
+        validateCloudinaryConfig();
+        Map<String, Object> signed = new HashMap<>(params);
+        signed.putIfAbsent("timestamp", Instant.now().getEpochSecond());
+        signed.put("signature", cloudinary.apiSignRequest(signed, apiSecret));
+        signed.put("api_key", apiKey);
+        return signed;
+    }
+
+    @Override
+    public String directUploadUrl() {
+        return "https://api.cloudinary.com/v1_1/" + cloudName + "/image/upload";
+    }
+
+    @Override
+    public Optional<ImageHandle> verifyDirectUpload(String publicId, String version, String signature) {
+        validateCloudinaryConfig();
+        if (!cloudinary.verifyApiResponseSignature(publicId, version, signature)) {
+            return Optional.empty();
+        }
+        String url = cloudinary.url()
+                .secure(true)
+                .version(version)
+                .generate(publicId);
+        return Optional.of(new ImageHandle(url, publicId, null, null, null, null, null, null));
+    }
+
+    private static Transformation<?> derivative(int width) {
+        return new Transformation<>()
+                .width(width)
+                .crop("limit")
+                .quality("auto");
+    }
+
+    /**
+     * Public id of an image delivered from our own cloud without a transformation, or null
+     */
+    private String ownPublicId(String imageUrl) {
+        if (imageUrl == null || cloudName == null || cloudName.isEmpty()) {
+            return null;
+        }
+        String prefix = "://res.cloudinary.com/" + cloudName + "/image/upload/";
+        int start = imageUrl.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+        String path = imageUrl.substring(start + prefix.length());
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        path = VERSION_PREFIX.matcher(path).replaceFirst("");
+        if (path.contains(",") || path.isEmpty()) {
+            // A transformed delivery URL, not the stored asset
+            return null;
+        }
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(0, dot) : path;
+    }
+
+    private static ImageHandle toHandle(Map<String, Object> result, String contentHash) {
+        return new ImageHandle(
+            (String) result.get("secure_url"),
+            (String) result.get("public_id"),
+            contentHash,
+            null,
+            result.get("bytes") instanceof Number bytes ? bytes.longValue() : null,
+            result.get("width") instanceof Number width ? width.intValue() : null,
+            result.get("height") instanceof Number height ? height.intValue() : null,
+            (String) result.get("format")
+        );
+    }
+
+    /**
+     * Run a Cloudinary call on the upload pool. When the queue is full the call fails at once
+     * with a RejectedExecutionException instead of piling up more work.
+     */
+    private <T> CompletableFuture<T> onUploadPool(Supplier<T> call) {
         try {
-            validateCloudinaryConfig();
-            
-            Map<String, Object> uploadParams = ObjectUtils.asMap(
-                "folder", defaultFolder,
-                "public_id", filename,
-                "resource_type", "image",
-                "overwrite", true,
-                "quality", "auto",
-                "format", "png"
-            );
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> uploadResult = (Map<String, Object>) cloudinary.uploader().upload(imageBytes, uploadParams);
-            String cloudinaryUrl = (String) uploadResult.get("secure_url");
-            
-            logger.info("Successfully uploaded image from bytes to Cloudinary: {}", cloudinaryUrl);
-            return cloudinaryUrl;
-            
-        } catch (Exception e) {
-            logger.error("Error uploading image from bytes to Cloudinary: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to upload image from bytes to Cloudinary: " + e.getMessage());
+            return CompletableFuture.supplyAsync(call, uploadExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Cloudinary upload queue is full, rejecting call");
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
     private void validateCloudinaryConfig() {
         if (cloudinary == null) {
             throw new RuntimeException("Cloudinary not initialized. Please check your configuration.");
@@ -0,0 +1,36 @@
+package org.kh.neuralpix.service.impl;
+
+import org.kh.neuralpix.service.CloudinaryService;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.StorageBackend;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.concurrent.CompletableFuture;
+
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryStorageBackend implements StorageBackend {
+
+    private final CloudinaryService cloudinaryService;
+
+    public CloudinaryStorageBackend(CloudinaryService cloudinaryService) {
+        this.cloudinaryService = cloudinaryService;
+    }
+
+    @Override
+    public CompletableFuture<ImageHandle> store(byte[] imageBytes, String contentHash) {
+        return cloudinaryService.uploadImageHandleFromBytes(imageBytes, contentHash);
+    }
+
+    @Override
+    public CompletableFuture<ImageHandle> store(MultipartFile file, String folder) {
+        return cloudinaryService.uploadImageHandle(file, folder);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(String publicId) {
+        return cloudinaryService.deleteImage(publicId);
+    }
+}
@@ -0,0 +1,104 @@
+package org.kh.neuralpix.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.service.CloudinaryService;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.DirectUploadService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Signs direct uploads of one image, restricted to image formats. The signature names the
+ * public id, a fresh random name in {folder}/users/{userId}, and refuses to overwrite, so it
+ * cannot be used to upload anywhere else or to replace an existing image. Cloudinary accepts a
+ * signature for an hour after its timestamp, so the timestamp is backdated to let it expire
+ * app.direct-upload.signature-lifetime-seconds after it is issued. A finished upload can be
+ * confirmed for app.direct-upload.confirm-window-seconds after it was stored, so an old upload
+ * response cannot be replayed later. With the local storage backend there is nothing to upload
+ * to, and both calls are refused.
+ */
+@Service
+@Slf4j
+public class DirectUploadServiceImpl implements DirectUploadService {
+
+    // Cloudinary's own limit on the age of a signed request
+    private static final long CLOUDINARY_SIGNATURE_SECONDS = 3600;
+    private static final Pattern UPLOAD_NAME = Pattern.compile("[0-9a-f]{32}");
+    private static final String ALLOWED_FORMATS = "png,jpg,jpeg,webp,gif";
+
+    private final CloudinaryService cloudinaryService;
+    private final String folder;
+    private final long confirmWindowSeconds;
+    private final long signatureLifetimeSeconds;
+    private final boolean enabled;
+
+    public DirectUploadServiceImpl(CloudinaryService cloudinaryService,
+                                   @Value("${cloudinary.folder:neuralpix}") String folder,
+                                   @Value("${app.direct-upload.confirm-window-seconds:900}") long confirmWindowSeconds,
+                                   @Value("${app.direct-upload.signature-lifetime-seconds:300}") long signatureLifetimeSeconds,
+                                   @Value("${app.storage.backend:cloudinary}") String storageBackend) {
+        this.cloudinaryService = cloudinaryService;
+        this.folder = folder;
+        this.confirmWindowSeconds = confirmWindowSeconds;
+        this.signatureLifetimeSeconds = Math.max(1, Math.min(signatureLifetimeSeconds, CLOUDINARY_SIGNATURE_SECONDS));
+        this.enabled = "cloudinary".equals(storageBackend);
+    }
+
+    @Override
+    public SignedUpload sign(Long userId) {
+        requireEnabled();
+        long expiresAt = Instant.now().getEpochSecond() + signatureLifetimeSeconds;
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("public_id", userFolder(userId) + "/" + UUID.randomUUID().toString().replace("-", ""));
+        params.put("overwrite", "false");
+        params.put("allowed_formats", ALLOWED_FORMATS);
+        params.put("timestamp", expiresAt - CLOUDINARY_SIGNATURE_SECONDS);
+        Map<String, Object> signed = cloudinaryService.signDirectUpload(params);
+        return new SignedUpload(cloudinaryService.directUploadUrl(), signed, expiresAt);
+    }
+
+    @Override
+    public ImageHandle confirm(Long userId, UploadResult result) {
+        requireEnabled();
+        if (result == null || result.publicId() == null || result.version() == null || result.signature() == null) {
+            throw new IllegalArgumentException("publicId, version and signature are required");
+        }
+        String prefix = userFolder(userId) + "/";
+        if (!result.publicId().startsWith(prefix)
+                || !UPLOAD_NAME.matcher(result.publicId().substring(prefix.length())).matches()) {
+            throw new IllegalArgumentException("Upload does not belong to this user");
+        }
+
+        // The version is the upload time in epoch seconds
+        long uploadedAt;
+        try {
+            uploadedAt = Long.parseLong(result.version());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid upload version");
+        }
+        if (Instant.now().getEpochSecond() - uploadedAt > confirmWindowSeconds) {
+            throw new IllegalArgumentException("Upload is too old to be confirmed");
+        }
+
+        ImageHandle handle = cloudinaryService.verifyDirectUpload(result.publicId(), result.version(), result.signature())
+                .orElseThrow(() -> new IllegalArgumentException("Invalid upload signature"));
+        log.info("Confirmed direct upload {} for user {}", result.publicId(), userId);
+        return handle;
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new UnsupportedOperationException("Direct uploads need the Cloudinary storage backend; upload through the server");
+        }
+    }
+
+    private String userFolder(Long userId) {
+        return folder + "/users/" + userId;
+    }
+}
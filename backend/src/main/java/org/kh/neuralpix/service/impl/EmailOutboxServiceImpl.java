@@ -0,0 +1,243 @@
+package org.kh.neuralpix.service.impl;
+
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.model.EmailOutboxMessage;
+import org.kh.neuralpix.repository.EmailOutboxMessageRepository;
+import org.kh.neuralpix.service.EmailOutboxService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers {@link EmailOutboxMessage} rows. Each batch is claimed row by row (so several
+ * instances can poll safely), then handed to {@link JavaMailSender#send(MimeMessage...)},
+ * which opens one SMTP connection for the whole batch. Batches are paced to stay under the
+ * configured send rate; failed messages are retried with exponential backoff and marked
+ * DEAD after the last attempt.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxServiceImpl implements EmailOutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+    private final EmailOutboxMessageRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize = 50;
+
+    @Value("${app.mail.outbox.max-per-second:10}")
+    private int maxPerSecond = 10;
+
+    @Value("${app.mail.outbox.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${app.mail.outbox.retry-base-delay-seconds:60}")
+    private long retryBaseDelaySeconds = 60;
+
+    @Value("${app.mail.outbox.stale-sending-minutes:10}")
+    private long staleSendingMinutes = 10;
+
+    @Override
+    @Transactional
+    public void enqueue(String recipient, String subject, String htmlBody, String fromName, String replyTo) {
+        EmailOutboxMessage message = EmailOutboxMessage.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .htmlBody(htmlBody)
+                .fromName(fromName)
+                .replyTo(replyTo)
+                .build();
+        outboxRepository.save(message);
+        log.debug("Queued email '{}' to {}", subject, recipient);
+    }
+
+    /**
+     * Drain due messages every 5 seconds, one paced batch at a time
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:5000}")
+    public void dispatchScheduled() {
+        try {
+            int claimed;
+            do {
+                claimed = dispatchBatch();
+            } while (claimed >= batchSize);
+        } catch (Exception e) {
+            log.error("Error dispatching email outbox", e);
+        }
+    }
+
+    @Override
+    public int dispatchDueMessages() {
+        return dispatchBatch();
+    }
+
+    /**
+     * Claim, send and record one batch. Returns the number of messages claimed.
+     */
+    private int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusMinutes(staleSendingMinutes);
+        List<Long> dueIds = outboxRepository.findDueMessageIds(now, staleBefore, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> claimedIds = new ArrayList<>(dueIds.size());
+        for (Long id : dueIds) {
+            if (outboxRepository.claim(id, now, staleBefore) > 0) {
+                claimedIds.add(id);
+            }
+        }
+        if (claimedIds.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        List<EmailOutboxMessage> batch = outboxRepository.findAllById(claimedIds);
+        Map<MimeMessage, EmailOutboxMessage> prepared = new IdentityHashMap<>();
+        Map<EmailOutboxMessage, Exception> failures = new IdentityHashMap<>();
+        for (EmailOutboxMessage message : batch) {
+            try {
+                prepared.put(toMimeMessage(message), message);
+            } catch (Exception e) {
+                failures.put(message, e);
+            }
+        }
+
+        if (!prepared.isEmpty()) {
+            try {
+                mailSender.send(prepared.keySet().toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                // Per-message failures; everything not listed was delivered on the shared connection
+                e.getFailedMessages().forEach((failed, cause) -> {
+                    EmailOutboxMessage message = prepared.get(failed);
+                    if (message != null) {
+                        failures.put(message, cause);
+                    }
+                });
+                if (e.getFailedMessages().isEmpty()) {
+                    prepared.values().forEach(message -> failures.put(message, e));
+                }
+            } catch (MailException e) {
+                // Connection or authentication failure - nothing in the batch was sent
+                prepared.values().forEach(message -> failures.put(message, e));
+            }
+        }
+
+        LocalDateTime finishedAt = LocalDateTime.now();
+        int sent = 0;
+        for (EmailOutboxMessage message : batch) {
+            Exception failure = failures.get(message);
+            if (failure == null) {
+                message.setStatus(EmailOutboxMessage.OutboxStatus.SENT);
+                message.setSentAt(finishedAt);
+                message.setLastError(null);
+                sent++;
+            } else {
+                markFailed(message, failure, finishedAt);
+            }
+        }
+        outboxRepository.saveAll(batch);
+
+        log.info("Email outbox batch: {} sent, {} failed in {} ms",
+                sent, batch.size() - sent, System.currentTimeMillis() - start);
+        pace(batch.size(), start);
+        return claimedIds.size();
+    }
+
+    private void markFailed(EmailOutboxMessage message, Exception failure, LocalDateTime now) {
+        String error = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+        message.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        int attempts = message.getAttempts() != null ? message.getAttempts() : 1;
+        if (attempts >= maxAttempts) {
+            message.setStatus(EmailOutboxMessage.OutboxStatus.DEAD);
+            log.error("Email {} to {} failed after {} attempts, giving up: {}",
+                    message.getId(), message.getRecipient(), attempts, message.getLastError());
+            return;
+        }
+        long delay = Math.min(MAX_RETRY_DELAY_SECONDS, retryBaseDelaySeconds * (1L << Math.min(attempts - 1, 20)));
+        message.setStatus(EmailOutboxMessage.OutboxStatus.FAILED);
+        message.setNextAttemptAt(now.plusSeconds(delay));
+        log.warn("Email {} to {} failed (attempt {}), retrying in {}s: {}",
+                message.getId(), message.getRecipient(), attempts, delay, message.getLastError());
+    }
+
+    /**
+     * Keep the average send rate at or below maxPerSecond
+     */
+    private void pace(int messages, long startMillis) {
+        if (maxPerSecond <= 0) {
+            return;
+        }
+        long minimumMillis = messages * 1000L / maxPerSecond;
+        long remaining = minimumMillis - (System.currentTimeMillis() - startMillis);
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private MimeMessage toMimeMessage(EmailOutboxMessage outboxMessage) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        if (outboxMessage.getFromName() != null) {
+            helper.setFrom(fromEmail, outboxMessage.getFromName());
+        } else {
+            helper.setFrom(fromEmail);
+        }
+        helper.setTo(outboxMessage.getRecipient());
+        if (outboxMessage.getReplyTo() != null) {
+            helper.setReplyTo(outboxMessage.getReplyTo(), "NeuralPix No-Reply");
+        }
+        helper.setSubject(outboxMessage.getSubject());
+        helper.setText(outboxMessage.getHtmlBody(), true);
+
+        // Add headers to improve deliverability
+        message.setHeader("List-Unsubscribe", "<mailto:unsubscribe@neuralpix.com>");
+        message.setHeader("X-Mailer", "NeuralPix Email Service");
+        message.setHeader("Message-ID", generateMessageId());
+        message.setHeader("X-Priority", "3");
+        message.setHeader("Importance", "Normal");
+        return message;
+    }
+
+    /**
+     * Generate unique Message-ID for better email deliverability
+     */
+    private String generateMessageId() {
+        byte[] randomBytes = new byte[16];
+        secureRandom.nextBytes(randomBytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : randomBytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return "<" + sb.toString() + "@neuralpix.com>";
+    }
+}
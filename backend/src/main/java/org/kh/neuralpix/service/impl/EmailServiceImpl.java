@@ -1,76 +1,53 @@
 package org.kh.neuralpix.service.impl;
 
-import com.github.mustachejava.DefaultMustacheFactory;
-import com.github.mustachejava.Mustache;
-import com.github.mustachejava.MustacheFactory;
 import org.kh.neuralpix.model.Subscription;
 import org.kh.neuralpix.model.enums.SubscriptionTier;
 import org.kh.neuralpix.model.User;
+import org.kh.neuralpix.service.EmailOutboxService;
 import org.kh.neuralpix.service.EmailService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringWriter;
 import java.time.Year;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.security.SecureRandom;
 
 @Service
 public class EmailServiceImpl implements EmailService {
 
-    private final JavaMailSender mailSender;
-    private final MustacheFactory mustacheFactory;
-    private final SecureRandom secureRandom = new SecureRandom();
-    
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMMM dd, yyyy");
+
+    // Benefit lists are static content, built once per tier
+    private static final Map<SubscriptionTier, List<String>> TIER_BENEFITS = new EnumMap<>(SubscriptionTier.class);
+
+    static {
+        for (SubscriptionTier tier : SubscriptionTier.values()) {
+            TIER_BENEFITS.put(tier, List.copyOf(buildTierBenefits(tier)));
+        }
+    }
+
+    private final EmailOutboxService emailOutboxService;
+    private final EmailTemplateRenderer templateRenderer;
     
     @Value("${app.frontend.url}")
     private String frontendUrl;
 
-    public EmailServiceImpl(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
-        this.mustacheFactory = new DefaultMustacheFactory();
+    public EmailServiceImpl(EmailOutboxService emailOutboxService, EmailTemplateRenderer templateRenderer) {
+        this.emailOutboxService = emailOutboxService;
+        this.templateRenderer = templateRenderer;
     }
 
     @Override
     public void sendPasswordResetEmail(String to, String username, String resetLink) {
         try {
-            Reader templateReader = new InputStreamReader(new ClassPathResource("templates/email/password-reset.html").getInputStream());
-            Mustache mustache = mustacheFactory.compile(templateReader, "password-reset");
-            
             Map<String, Object> context = new HashMap<>();
             context.put("username", username);
             context.put("resetLink", frontendUrl + "/reset-password?token=" + resetLink);
             context.put("currentYear", Year.now().getValue());
 
-            StringWriter writer = new StringWriter();
-            mustache.execute(writer, context);
-            String emailContent = writer.toString();
+            String emailContent = templateRenderer.render("password-reset.html", context);
 
-            var message = mailSender.createMimeMessage();
-            var helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            // Set sender with proper name and email
-            helper.setFrom(fromEmail, "NeuralPix Support");
-            helper.setTo(to);
-            helper.setReplyTo("noreply@neuralpix.com", "NeuralPix No-Reply");
-            helper.setSubject("Reset Your NeuralPix Password");
-            helper.setText(emailContent, true);
-            
-            // Add headers to improve deliverability
-            message.setHeader("List-Unsubscribe", "<mailto:unsubscribe@neuralpix.com>");
-            message.setHeader("X-Mailer", "NeuralPix Email Service");
-            message.setHeader("Message-ID", generateMessageId());
-            message.setHeader("X-Priority", "3");
-            message.setHeader("Importance", "Normal");
-
-            mailSender.send(message);
+            emailOutboxService.enqueue(to, "Reset Your NeuralPix Password", emailContent,
+                    "NeuralPix Support", "noreply@neuralpix.com");
         } catch (Exception e) {
             throw new RuntimeException("Failed to send password reset email", e);
         }
@@ -79,9 +56,6 @@ public class EmailServiceImpl implements EmailService {
     @Override
     public void sendSubscriptionConfirmation(User user, Subscription subscription) {
         try {
-            Reader templateReader = new InputStreamReader(new ClassPathResource("templates/email/subscription-confirmation.html").getInputStream());
-            Mustache mustache = mustacheFactory.compile(templateReader, "subscription-confirmation");
-            
             Map<String, Object> context = new HashMap<>();
             context.put("username", user.getUsername());
             context.put("email", user.getEmail());
@@ -102,27 +76,11 @@ public class EmailServiceImpl implements EmailService {
                 context.put("benefitsList", benefits);
             }
 
-            StringWriter writer = new StringWriter();
-            mustache.execute(writer, context);
-            String emailContent = writer.toString();
+            String emailContent = templateRenderer.render("subscription-confirmation.html", context);
 
-            var message = mailSender.createMimeMessage();
-            var helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail, "NeuralPix Support");
-            helper.setTo(user.getEmail());
-            helper.setReplyTo("noreply@neuralpix.com", "NeuralPix No-Reply");
-            helper.setSubject("Welcome to NeuralPix " + getTierDisplayName(subscription.getTier()) + "! 🎉");
-            helper.setText(emailContent, true);
-            
-            // Add headers to improve deliverability
-            message.setHeader("List-Unsubscribe", "<mailto:unsubscribe@neuralpix.com>");
-            message.setHeader("X-Mailer", "NeuralPix Email Service");
-            message.setHeader("Message-ID", generateMessageId());
-            message.setHeader("X-Priority", "3");
-            message.setHeader("Importance", "Normal");
-
-            mailSender.send(message);
+            emailOutboxService.enqueue(user.getEmail(),
+                    "Welcome to NeuralPix " + getTierDisplayName(subscription.getTier()) + "! 🎉",
+                    emailContent, "NeuralPix Support", "noreply@neuralpix.com");
         } catch (Exception e) {
             throw new RuntimeException("Failed to send subscription confirmation email", e);
         }
@@ -131,9 +89,6 @@ public class EmailServiceImpl implements EmailService {
     @Override
     public void sendUpgradeConfirmation(User user, Subscription subscription) {
         try {
-            Reader templateReader = new InputStreamReader(new ClassPathResource("templates/email/upgrade-confirmation.html").getInputStream());
-            Mustache mustache = mustacheFactory.compile(templateReader, "upgrade-confirmation");
-
             Map<String, Object> context = new HashMap<>();
             context.put("username", user.getUsername());
             context.put("email", user.getEmail());
@@ -153,26 +108,11 @@ public class EmailServiceImpl implements EmailService {
                 context.put("benefitsList", benefits);
             }
 
-            StringWriter writer = new StringWriter();
-            mustache.execute(writer, context);
-            String emailContent = writer.toString();
+            String emailContent = templateRenderer.render("upgrade-confirmation.html", context);
 
-            var message = mailSender.createMimeMessage();
-            var helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail, "NeuralPix Support");
-            helper.setTo(user.getEmail());
-            helper.setReplyTo("noreply@neuralpix.com", "NeuralPix No-Reply");
-            helper.setSubject("Your NeuralPix subscription was upgraded to " + getTierDisplayName(subscription.getTier()) + " ✅");
-            helper.setText(emailContent, true);
-
-            message.setHeader("List-Unsubscribe", "<mailto:unsubscribe@neuralpix.com>");
-            message.setHeader("X-Mailer", "NeuralPix Email Service");
-            message.setHeader("Message-ID", generateMessageId());
-            message.setHeader("X-Priority", "3");
-            message.setHeader("Importance", "Normal");
-
-            mailSender.send(message);
+            emailOutboxService.enqueue(user.getEmail(),
+                    "Your NeuralPix subscription was upgraded to " + getTierDisplayName(subscription.getTier()) + " ✅",
+                    emailContent, "NeuralPix Support", "noreply@neuralpix.com");
         } catch (Exception e) {
             throw new RuntimeException("Failed to send upgrade confirmation email", e);
         }
@@ -223,10 +163,14 @@ public class EmailServiceImpl implements EmailService {
 
     private String formatDate(java.time.LocalDateTime dateTime) {
         if (dateTime == null) return "N/A";
-        return dateTime.format(DateTimeFormatter.ofPattern("MMMM dd, yyyy"));
+        return dateTime.format(DATE_FORMATTER);
     }
 
     private List<String> getTierBenefits(SubscriptionTier tier) {
+        return TIER_BENEFITS.getOrDefault(tier, List.of());
+    }
+
+    private static List<String> buildTierBenefits(SubscriptionTier tier) {
         List<String> benefits = new ArrayList<>();
         
         switch (tier) {
@@ -270,9 +214,6 @@ public class EmailServiceImpl implements EmailService {
     @Override
     public void sendCancellationConfirmation(User user, Subscription subscription) {
         try {
-            Reader templateReader = new InputStreamReader(new ClassPathResource("templates/email/cancellation-confirmation.html").getInputStream());
-            Mustache mustache = mustacheFactory.compile(templateReader, "cancellation-confirmation");
-            
             Map<String, Object> context = new HashMap<>();
             context.put("username", user.getUsername());
             context.put("email", user.getEmail());
@@ -296,19 +237,10 @@ public class EmailServiceImpl implements EmailService {
             // Optional refund amount (if applicable)
             // context.put("refundAmount", calculateRefundAmount(subscription));
 
-            StringWriter writer = new StringWriter();
-            mustache.execute(writer, context);
-            String emailContent = writer.toString();
-
-            var message = mailSender.createMimeMessage();
-            var helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail);
-            helper.setTo(user.getEmail());
-            helper.setSubject("Subscription Cancelled - We're Sorry to See You Go");
-            helper.setText(emailContent, true);
+            String emailContent = templateRenderer.render("cancellation-confirmation.html", context);
 
-            mailSender.send(message);
+            emailOutboxService.enqueue(user.getEmail(), "Subscription Cancelled - We're Sorry to See You Go",
+                    emailContent, null, null);
         } catch (Exception e) {
             throw new RuntimeException("Failed to send cancellation confirmation email", e);
         }
@@ -317,9 +249,6 @@ public class EmailServiceImpl implements EmailService {
     @Override
     public void sendExpirationNotification(User user, Subscription subscription) {
         try {
-            Reader templateReader = new InputStreamReader(new ClassPathResource("templates/email/expiration-notification.html").getInputStream());
-            Mustache mustache = mustacheFactory.compile(templateReader, "expiration-notification");
-            
             Map<String, Object> context = new HashMap<>();
             context.put("username", user.getUsername());
             context.put("email", user.getEmail());
@@ -360,24 +289,13 @@ public class EmailServiceImpl implements EmailService {
             context.put("upgradeUrl", frontendUrl + "/subscription/plans");
             context.put("currentYear", Year.now().getValue());
 
-            StringWriter writer = new StringWriter();
-            mustache.execute(writer, context);
-            String emailContent = writer.toString();
+            String emailContent = templateRenderer.render("expiration-notification.html", context);
 
-            var message = mailSender.createMimeMessage();
-            var helper = new MimeMessageHelper(message, true, "UTF-8");
-            
-            helper.setFrom(fromEmail);
-            helper.setTo(user.getEmail());
-            
             String subject = isExpired ? 
                 "Your NeuralPix " + getTierDisplayName(subscription.getTier()) + " Subscription Has Expired" :
                 "Your NeuralPix Subscription Expires Soon - Action Required";
-            
-            helper.setSubject(subject);
-            helper.setText(emailContent, true);
 
-            mailSender.send(message);
+            emailOutboxService.enqueue(user.getEmail(), subject, emailContent, null, null);
         } catch (Exception e) {
             throw new RuntimeException("Failed to send expiration notification email", e);
         }
@@ -416,17 +334,4 @@ public class EmailServiceImpl implements EmailService {
             return "";
         }
     }
-    
-    /**
-     * Generate unique Message-ID for better email deliverability
-     */
-    private String generateMessageId() {
-        byte[] randomBytes = new byte[16];
-        secureRandom.nextBytes(randomBytes);
-        StringBuilder sb = new StringBuilder();
-        for (byte b : randomBytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return "<" + sb.toString() + "@neuralpix.com>";
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,132 @@
+package org.kh.neuralpix.service.impl;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles every email template under classpath:templates/email once at startup. Compiled
+ * Mustache templates keep their static HTML as precomputed fragments, so a render only
+ * writes those fragments plus the substituted values. Rendering goes into a per-thread
+ * reusable buffer instead of a new StringWriter per email.
+ */
+@Component
+@Slf4j
+public class EmailTemplateRenderer {
+
+    private static final String TEMPLATE_LOCATION = "classpath:templates/email/*.*";
+    private static final int INITIAL_BUFFER_CAPACITY = 16 * 1024;
+    // Buffers that grew beyond this are not kept, so one huge email can't pin memory per thread
+    private static final int MAX_POOLED_BUFFER_CAPACITY = 128 * 1024;
+
+    private final MustacheFactory mustacheFactory = new DefaultMustacheFactory();
+    private final ThreadLocal<StringBuilderWriter> buffers =
+            ThreadLocal.withInitial(() -> new StringBuilderWriter(INITIAL_BUFFER_CAPACITY));
+
+    private volatile Map<String, Mustache> templates = Map.of();
+
+    @PostConstruct
+    public void compileTemplates() throws IOException {
+        Map<String, Mustache> compiled = new HashMap<>();
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(TEMPLATE_LOCATION);
+        for (Resource resource : resources) {
+            String name = resource.getFilename();
+            if (name == null) {
+                continue;
+            }
+            try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+                compiled.put(name, mustacheFactory.compile(reader, name));
+            }
+        }
+        templates = Map.copyOf(compiled);
+        log.info("Compiled {} email templates", compiled.size());
+    }
+
+    /**
+     * Render a compiled template, e.g. render("password-reset.html", context)
+     */
+    public String render(String templateName, Map<String, Object> context) {
+        Mustache mustache = templates.get(templateName);
+        if (mustache == null) {
+            throw new IllegalArgumentException("Unknown email template: " + templateName);
+        }
+
+        StringBuilderWriter buffer = buffers.get();
+        buffer.reset();
+        try {
+            mustache.execute(buffer, context);
+            return buffer.toString();
+        } finally {
+            if (buffer.capacity() > MAX_POOLED_BUFFER_CAPACITY) {
+                buffers.remove();
+            }
+        }
+    }
+
+    /**
+     * Unsynchronized Writer over a reusable StringBuilder; each instance is confined to one thread
+     */
+    private static final class StringBuilderWriter extends Writer {
+
+        private final StringBuilder builder;
+
+        StringBuilderWriter(int capacity) {
+            this.builder = new StringBuilder(capacity);
+        }
+
+        void reset() {
+            builder.setLength(0);
+        }
+
+        int capacity() {
+            return builder.capacity();
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            builder.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            builder.append(str, off, off + len);
+        }
+
+        @Override
+        public void write(int c) {
+            builder.append((char) c);
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            builder.append(csq);
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+    }
+}
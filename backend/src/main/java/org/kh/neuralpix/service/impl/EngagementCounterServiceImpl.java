@@ -0,0 +1,178 @@
+package org.kh.neuralpix.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.service.EngagementCounterService;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-image {@link LongAdder}s, drained every few seconds into one JDBC batch of
+ * {@code UPDATE <table> SET <column> = <column> + ? WHERE id = ?} per counter. The relative
+ * update never reads the row, so concurrent flushes from several instances cannot lose
+ * increments. A failed flush is rolled back and its deltas are added back to the adders.
+ *
+ * Idle adders are removed from the map but drained once more on the next flush, which picks
+ * up any increment that raced with the removal.
+ */
+@Service
+@Slf4j
+public class EngagementCounterServiceImpl implements EngagementCounterService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Counter, ConcurrentHashMap<Long, LongAdder>> adders = new EnumMap<>(Counter.class);
+    // Deltas being written by the current flush, still counted by pending() until they commit
+    private volatile Map<Counter, Map<Long, Long>> inFlight = Collections.emptyMap();
+    // Guarded by this
+    private List<RetiredAdder> retired = new ArrayList<>();
+
+    public EngagementCounterServiceImpl(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                        ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        for (Counter counter : Counter.values()) {
+            adders.put(counter, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public void increment(Counter counter, Long id) {
+        if (id == null) {
+            return;
+        }
+        adders.get(counter).computeIfAbsent(id, key -> new LongAdder()).increment();
+    }
+
+    @Override
+    public long pending(Counter counter, Long id) {
+        LongAdder adder = adders.get(counter).get(id);
+        long value = adder != null ? adder.sum() : 0;
+        Map<Long, Long> flushing = inFlight.get(counter);
+        if (flushing != null) {
+            value += flushing.getOrDefault(id, 0L);
+        }
+        return value;
+    }
+
+    /**
+     * Flush pending increments every 5 seconds
+     */
+    @Scheduled(fixedDelayString = "${app.engagement.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error flushing engagement counters", e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            int rows = flush();
+            log.info("Flushed {} engagement counter rows on shutdown", rows);
+        } catch (Exception e) {
+            log.error("Failed to flush engagement counters on shutdown", e);
+        }
+    }
+
+    @Override
+    public synchronized int flush() {
+        Map<Counter, Map<Long, Long>> deltas = drain();
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        inFlight = deltas;
+        try {
+            Integer rows = transactionTemplate.execute(status -> {
+                int updated = 0;
+                for (Map.Entry<Counter, Map<Long, Long>> entry : deltas.entrySet()) {
+                    updated += writeBatch(entry.getKey(), entry.getValue());
+                }
+                return updated;
+            });
+            log.debug("Flushed engagement counters: {} rows updated", rows);
+            publishFlushed(deltas);
+            return rows != null ? rows : 0;
+        } catch (RuntimeException e) {
+            // Rolled back, keep the increments for the next attempt
+            deltas.forEach((counter, byId) -> byId.forEach((id, delta) ->
+                    adders.get(counter).computeIfAbsent(id, key -> new LongAdder()).add(delta)));
+            throw e;
+        } finally {
+            inFlight = Collections.emptyMap();
+        }
+    }
+
+    private void publishFlushed(Map<Counter, Map<Long, Long>> deltas) {
+        try {
+            eventPublisher.publishEvent(new CountersFlushedEvent(deltas, System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            // Listeners may already be gone during shutdown; the counts are safely written
+            log.debug("Could not publish engagement flush event", e);
+        }
+    }
+
+    /**
+     * Reset every adder and collect the non-zero deltas, ordered by id so concurrent flushes
+     * from several instances lock rows in the same order
+     */
+    private Map<Counter, Map<Long, Long>> drain() {
+        Map<Counter, Map<Long, Long>> deltas = new EnumMap<>(Counter.class);
+        List<RetiredAdder> previouslyRetired = retired;
+        retired = new ArrayList<>();
+
+        for (RetiredAdder entry : previouslyRetired) {
+            long late = entry.adder().sumThenReset();
+            if (late != 0) {
+                deltas.computeIfAbsent(entry.counter(), key -> new TreeMap<>()).merge(entry.id(), late, Long::sum);
+            }
+        }
+
+        for (Counter counter : Counter.values()) {
+            ConcurrentHashMap<Long, LongAdder> byId = adders.get(counter);
+            for (Map.Entry<Long, LongAdder> entry : byId.entrySet()) {
+                long delta = entry.getValue().sumThenReset();
+                if (delta != 0) {
+                    deltas.computeIfAbsent(counter, key -> new TreeMap<>()).merge(entry.getKey(), delta, Long::sum);
+                } else if (byId.remove(entry.getKey(), entry.getValue())) {
+                    retired.add(new RetiredAdder(counter, entry.getKey(), entry.getValue()));
+                }
+            }
+        }
+        return deltas;
+    }
+
+    private int writeBatch(Counter counter, Map<Long, Long> byId) {
+        String sql = "UPDATE " + counter.getTable() + " SET " + counter.getColumn() + " = COALESCE("
+                + counter.getColumn() + ", 0) + ? WHERE id = ?";
+        List<Object[]> args = new ArrayList<>(byId.size());
+        byId.forEach((id, delta) -> args.add(new Object[]{delta, id}));
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(sql, args)) {
+            // Drivers may report SUCCESS_NO_INFO (-2) for batched statements
+            updated += count > 0 ? count : 0;
+        }
+        return updated;
+    }
+
+    private record RetiredAdder(Counter counter, Long id, LongAdder adder) {
+    }
+}
@@ -1,29 +1,92 @@
 package org.kh.neuralpix.service.impl;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.kh.neuralpix.service.FileUploadService;
+import org.kh.neuralpix.service.UploadStagingService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Local file storage. Content is stored once per SHA-256 as a blob at the top of the upload
+ * directory; every upload gets its own random id (plus the original extension) under files/,
+ * a hard link to the blob. Ids cannot be guessed from the content, deleting one upload leaves
+ * other uploads of the same content in place, and the blob goes with its last link. An id never
+ * changes meaning, so files are served with a strong ETag and cached as immutable. Downloads are
+ * written with the container's sendfile when it offers it (Tomcat NIO), otherwise with
+ * FileChannel.transferTo, so file bytes are not copied through the heap. Blob bytes are kept
+ * within the staging budget of {@link UploadStagingService}; evicting a blob removes its links.
+ */
 @Service
 public class FileUploadServiceImpl implements FileUploadService {
 
-    @Value("${app.upload.dir}")
-    private String uploadDir;
+    private static final Pattern FILE_ID = Pattern.compile("[0-9a-f]{32}(\\.[a-z0-9]{1,10})?");
+    private static final Pattern BLOB = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+
+    // Tomcat's sendfile request attributes
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final long HASH_WINDOW = 64L * 1024 * 1024;
+
+    private final Path uploadPath;
+    private final Path filesPath;
+    private final UploadStagingService uploadStagingService;
+    private final SecureRandom random = new SecureRandom();
+
+    // Blob hash -> ids linked to it; guarded by the staging lock (withoutEviction and the evictor)
+    private final Map<String, Set<String>> idsByBlob = new HashMap<>();
+    // Id -> blob hash, also read by downloads outside the lock
+    private final Map<String, String> blobById = new ConcurrentHashMap<>();
+
+    // Content type by extension, looked up once instead of probing the file system per request
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    public FileUploadServiceImpl(@Value("${app.upload.dir}") String uploadDir,
+                                 UploadStagingService uploadStagingService) throws Exception {
+        this.uploadPath = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.filesPath = uploadPath.resolve("files");
+        this.uploadStagingService = uploadStagingService;
+        uploadStagingService.withoutEviction(() -> {
+            rebuild();
+            return null;
+        });
+        uploadStagingService.setEvictor(this::evictBlob);
+    }
 
     @Override
     public String uploadFile(MultipartFile file) throws Exception {
@@ -31,61 +94,259 @@ public class FileUploadServiceImpl implements FileUploadService {
             throw new Exception("Failed to store empty file");
         }
 
-        String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
-        String fileExtension = "";
-        
-        if (originalFileName.contains(".")) {
-            fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-        }
-        
-        String fileName = UUID.randomUUID().toString() + fileExtension;
-        
+        String fileExtension = extension(StringUtils.cleanPath(String.valueOf(file.getOriginalFilename())));
+
+        Path temp = null;
+        // The body was admitted against the staging budget before it was parsed (UploadAdmissionFilter);
+        // that reservation covers the spooled part and the file it becomes
         try {
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-            
-            Path targetLocation = uploadPath.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            
-            return fileName;
+            Files.createDirectories(filesPath);
+
+            // The container moves its spooled part into place where it can, rather than copying it
+            temp = Files.createTempFile(uploadPath, "upload-", ".tmp");
+            file.transferTo(temp.toAbsolutePath().toFile());
+
+            String hash = sha256(temp);
+            long size = Files.size(temp);
+            String fileId = newId() + fileExtension;
+            Path spooled = temp;
+            // The blob cannot be evicted between finding it and linking to it
+            return uploadStagingService.withoutEviction(() -> {
+                Path blob = uploadPath.resolve(hash);
+                if (!Files.exists(blob)) {
+                    Files.move(spooled, blob, StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.createLink(filesPath.resolve(fileId), blob);
+                idsByBlob.computeIfAbsent(hash, key -> new HashSet<>()).add(fileId);
+                blobById.put(fileId, hash);
+                // Same content already stored counts as a fresh use of it
+                uploadStagingService.stored(hash, size);
+                return fileId;
+            });
         } catch (IOException ex) {
-            throw new Exception("Could not store file " + fileName + ". Please try again!", ex);
+            throw new Exception("Could not store file. Please try again!", ex);
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
         }
     }
 
     @Override
-    public ResponseEntity<?> downloadFile(String fileName) throws Exception {
+    public void downloadFile(String fileName, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        Path filePath = resolve(fileName);
+        BasicFileAttributes attributes;
         try {
-            Path filePath = Paths.get(uploadDir).resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-            
-            if (resource.exists()) {
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
-                }
-                
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                        .body(resource);
-            } else {
-                throw new Exception("File not found " + fileName);
+            attributes = filePath != null ? Files.readAttributes(filePath, BasicFileAttributes.class) : null;
+        } catch (IOException e) {
+            attributes = null;
+        }
+        if (attributes == null || !attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "File not found " + fileName);
+            return;
+        }
+
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + fileName.substring(0, 32) + "\"";
+
+        // Sets ETag and Last-Modified, and answers 304 when the client's copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setContentType(contentType(fileName));
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag);
+        if (range != null) {
+            if (length == 0 || range.getRangeStart(length) >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        String blob = blobById.get(fileName);
+        if (blob != null) {
+            uploadStagingService.accessed(blob);
+        }
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector writes the file itself once the request returns
+            request.setAttribute(SENDFILE_FILENAME, filePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
             }
-        } catch (MalformedURLException ex) {
-            throw new Exception("File not found " + fileName, ex);
         }
     }
 
     @Override
     public boolean deleteFile(String fileName) throws Exception {
+        if (resolve(fileName) == null) {
+            return false;
+        }
         try {
-            Path filePath = Paths.get(uploadDir).resolve(fileName).normalize();
-            return Files.deleteIfExists(filePath);
+            return uploadStagingService.withoutEviction(() -> {
+                String hash = blobById.remove(fileName);
+                boolean deleted = Files.deleteIfExists(filesPath.resolve(fileName));
+                if (hash != null) {
+                    Set<String> ids = idsByBlob.get(hash);
+                    ids.remove(fileName);
+                    if (ids.isEmpty()) {
+                        // Last reference gone
+                        idsByBlob.remove(hash);
+                        Files.deleteIfExists(uploadPath.resolve(hash));
+                        uploadStagingService.removed(hash);
+                    }
+                }
+                return deleted;
+            });
         } catch (IOException ex) {
             throw new Exception("Could not delete file " + fileName, ex);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Path of an uploaded file, or null when the name is not a file id
+     */
+    private Path resolve(String fileName) {
+        return fileName != null && FILE_ID.matcher(fileName).matches() ? filesPath.resolve(fileName) : null;
+    }
+
+    /**
+     * Evictor for the staging budget: the blob and every id linked to it. Runs under the staging lock.
+     */
+    private void evictBlob(String hash) {
+        try {
+            Set<String> ids = idsByBlob.remove(hash);
+            if (ids != null) {
+                for (String id : ids) {
+                    blobById.remove(id);
+                    Files.deleteIfExists(filesPath.resolve(id));
+                }
+            }
+            Files.deleteIfExists(uploadPath.resolve(hash));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Index the links under files/ by the blob they share an inode with. Blobs no id links to
+     * are unreachable and deleted.
+     */
+    private void rebuild() throws IOException {
+        if (!Files.isDirectory(uploadPath)) {
+            return;
+        }
+        Map<Object, String> blobByKey = new HashMap<>();
+        try (Stream<Path> paths = Files.list(uploadPath)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                String name = path.getFileName().toString();
+                if (BLOB.matcher(name).matches()) {
+                    Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                    blobByKey.put(key != null ? key : name, name);
+                }
+            }
+        }
+        if (Files.isDirectory(filesPath)) {
+            try (Stream<Path> paths = Files.list(filesPath)) {
+                for (Path path : (Iterable<Path>) paths::iterator) {
+                    String id = path.getFileName().toString();
+                    String hash = FILE_ID.matcher(id).matches()
+                            ? blobByKey.get(Files.readAttributes(path, BasicFileAttributes.class).fileKey())
+                            : null;
+                    if (hash != null) {
+                        idsByBlob.computeIfAbsent(hash, key -> new HashSet<>()).add(id);
+                        blobById.put(id, hash);
+                    }
+                }
+            }
+        }
+        for (String hash : blobByKey.values()) {
+            if (!idsByBlob.containsKey(hash)) {
+                Files.deleteIfExists(uploadPath.resolve(hash));
+                uploadStagingService.removed(hash);
+            }
+        }
+    }
+
+    /**
+     * The single range to send, or null for the whole file. Multiple ranges, malformed headers
+     * and a stale If-Range are answered with the whole file, as RFC 9110 allows.
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range needs a strong match; a date or weak validator gets the whole file
+        if (ifRange != null && (!ifRange.equals(etag) || etag.startsWith("W/"))) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String contentType(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String extension = dot >= 0 ? fileName.substring(dot).toLowerCase() : "";
+        return contentTypes.computeIfAbsent(extension, key -> MediaTypeFactory.getMediaType("file" + key)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString());
+    }
+
+    private String newId() {
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        return HexFormat.of().formatHex(id);
+    }
+
+    private static String extension(String originalFileName) {
+        int dot = originalFileName.lastIndexOf('.');
+        if (dot < 0) {
+            return "";
+        }
+        String extension = originalFileName.substring(dot).toLowerCase();
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    private static String sha256(Path file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += HASH_WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(HASH_WINDOW, size - position));
+                digest.update(window);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -5,21 +5,32 @@ import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
 import org.kh.neuralpix.dto.response.WorkHistoryResponseDto;
 import org.kh.neuralpix.mapper.GeneratedImageMapper;
 import org.kh.neuralpix.model.GeneratedImage;
+import org.kh.neuralpix.model.SearchDocument;
 import org.kh.neuralpix.model.enums.GenerationStatus;
 import org.kh.neuralpix.repository.GeneratedImageRepository;
+import org.kh.neuralpix.service.EngagementCounterService;
 import org.kh.neuralpix.service.GeneratedImageService;
+import org.kh.neuralpix.service.ImageDerivativeService;
+import org.kh.neuralpix.service.SearchIndexService;
+import org.kh.neuralpix.service.PublicGalleryService;
 import org.kh.neuralpix.service.UsageTrackingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -30,14 +41,40 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
     private final GeneratedImageRepository generatedImageRepository;
     private final UsageTrackingService usageTrackingService;
     private final GeneratedImageMapper generatedImageMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EngagementCounterService engagementCounterService;
+    private final SearchIndexService searchIndexService;
 
     @Autowired
     public GeneratedImageServiceImpl(GeneratedImageRepository generatedImageRepository,
                                    UsageTrackingService usageTrackingService,
-                                   GeneratedImageMapper generatedImageMapper) {
+                                   GeneratedImageMapper generatedImageMapper,
+                                   ApplicationEventPublisher eventPublisher,
+                                   EngagementCounterService engagementCounterService,
+                                   SearchIndexService searchIndexService) {
         this.generatedImageRepository = generatedImageRepository;
         this.usageTrackingService = usageTrackingService;
         this.generatedImageMapper = generatedImageMapper;
+        this.eventPublisher = eventPublisher;
+        this.engagementCounterService = engagementCounterService;
+        this.searchIndexService = searchIndexService;
+    }
+
+    /**
+     * Tell the public gallery cache to rebuild once the current transaction commits
+     */
+    private void publishGalleryChange(Long imageId) {
+        eventPublisher.publishEvent(new PublicGalleryService.GalleryChangedEvent(imageId));
+    }
+
+    /**
+     * Re-index images that have a prompt. PixelCut images have none and keep the document
+     * written at creation from their operation and prompt text.
+     */
+    private void indexForSearch(GeneratedImage image) {
+        if (image.getPromptId() != null) {
+            searchIndexService.indexGeneratedImage(image);
+        }
     }
 
     @Override
@@ -67,7 +104,12 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
 
     @Override
     public GeneratedImage save(GeneratedImage image) {
-        return generatedImageRepository.save(image);
+        GeneratedImage saved = generatedImageRepository.save(image);
+        indexForSearch(saved);
+        if (Boolean.TRUE.equals(saved.getIsPublic())) {
+            publishGalleryChange(saved.getId());
+        }
+        return saved;
     }
 
     @Override
@@ -89,6 +131,10 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
         
         // Save the image
         GeneratedImage savedImage = generatedImageRepository.save(image);
+        indexForSearch(savedImage);
+        if (Boolean.TRUE.equals(savedImage.getIsPublic())) {
+            publishGalleryChange(savedImage.getId());
+        }
         
         // Track the usage after successful image creation
         try {
@@ -105,39 +151,35 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
     @Override
     public void deleteById(Long id) {
         generatedImageRepository.deleteById(id);
+        searchIndexService.remove(SearchDocument.ItemType.GENERATED_IMAGE, id);
+        publishGalleryChange(id);
     }
 
     @Override
     public GeneratedImage update(Long id, GeneratedImage image) {
         if (generatedImageRepository.existsById(id)) {
             image.setId(id);
-            return generatedImageRepository.save(image);
+            GeneratedImage saved = generatedImageRepository.save(image);
+            indexForSearch(saved);
+            publishGalleryChange(id);
+            return saved;
         }
         throw new RuntimeException("GeneratedImage not found with id: " + id);
     }
 
     @Override
     public void incrementLikesCount(Long id) {
-        generatedImageRepository.findById(id).ifPresent(image -> {
-            image.setLikesCount(image.getLikesCount() + 1);
-            generatedImageRepository.save(image);
-        });
+        engagementCounterService.increment(EngagementCounterService.Counter.IMAGE_LIKES, id);
     }
 
     @Override
     public void incrementDownloadsCount(Long id) {
-        generatedImageRepository.findById(id).ifPresent(image -> {
-            image.setDownloadsCount(image.getDownloadsCount() + 1);
-            generatedImageRepository.save(image);
-        });
+        engagementCounterService.increment(EngagementCounterService.Counter.IMAGE_DOWNLOADS, id);
     }
 
     @Override
     public void incrementViewsCount(Long id) {
-        generatedImageRepository.findById(id).ifPresent(image -> {
-            image.setViewsCount(image.getViewsCount() + 1);
-            generatedImageRepository.save(image);
-        });
+        engagementCounterService.increment(EngagementCounterService.Counter.IMAGE_VIEWS, id);
     }
 
     // DTO-based methods implementation
@@ -160,21 +202,22 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<GeneratedImageResponseDto> getImagesByUserIdDto(Long userId) {
-        List<GeneratedImage> entities = findByUserId(userId);
-        return generatedImageMapper.toDtoList(entities);
+        return generatedImageMapper.withPendingCounts(generatedImageRepository.findListItemsByUserId(userId));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<GeneratedImageResponseDto> getPublicImagesDto() {
-        List<GeneratedImage> entities = findPublicImages();
-        return generatedImageMapper.toDtoList(entities);
+        return generatedImageMapper.withPendingCounts(generatedImageRepository.findPublicListItems());
     }
 
     @Override
     public GeneratedImageResponseDto updateImageDto(Long id, GeneratedImageRequestDto requestDto) {
         GeneratedImage existingEntity = generatedImageRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("GeneratedImage not found with id: " + id));
+        boolean wasPublic = Boolean.TRUE.equals(existingEntity.getIsPublic());
         
         // Update only non-null fields
         if (requestDto.getImageUrl() != null) existingEntity.setImageUrl(requestDto.getImageUrl());
@@ -192,25 +235,40 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
         if (requestDto.getIsPublic() != null) existingEntity.setIsPublic(requestDto.getIsPublic());
         
         GeneratedImage updatedEntity = generatedImageRepository.save(existingEntity);
+        if (wasPublic || Boolean.TRUE.equals(updatedEntity.getIsPublic())) {
+            publishGalleryChange(id);
+        }
         return generatedImageMapper.toDto(updatedEntity);
     }
 
     // Work history methods implementation
     @Override
+    @Transactional(readOnly = true)
     public WorkHistoryResponseDto getUserWorkHistory(Long userId, Pageable pageable) {
-        Page<GeneratedImage> page = generatedImageRepository.findUserWorkHistory(userId, pageable);
+        Page<GeneratedImageResponseDto> page = generatedImageRepository.findUserWorkHistoryItems(userId, pageable);
         return generatedImageMapper.toWorkHistoryDto(page);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public WorkHistoryResponseDto getUserWorkHistory(Long userId, String searchTerm, Pageable pageable) {
-        Page<GeneratedImage> page;
-        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
-            page = generatedImageRepository.findUserWorkHistoryWithSearch(userId, searchTerm, pageable);
-        } else {
-            page = generatedImageRepository.findUserWorkHistory(userId, pageable);
+        if (searchTerm == null || searchTerm.trim().isEmpty()) {
+            return getUserWorkHistory(userId, pageable);
         }
-        return generatedImageMapper.toWorkHistoryDto(page);
+        // Ranked ids from the full-text index, then one query for the page of images
+        Page<Long> ids = searchIndexService.search(userId, SearchDocument.ItemType.GENERATED_IMAGE, searchTerm, pageable);
+        Map<Long, GeneratedImageResponseDto> byId = ids.isEmpty() ? Map.of()
+                : generatedImageRepository.findListItemsByIdIn(ids.getContent()).stream()
+                        .collect(Collectors.toMap(GeneratedImageResponseDto::getId, Function.identity()));
+        List<GeneratedImageResponseDto> images = new ArrayList<>(ids.getNumberOfElements());
+        for (Long id : ids) {
+            GeneratedImageResponseDto image = byId.get(id);
+            // Deleted items are filtered by the search query; null only if one was removed since
+            if (image != null) {
+                images.add(image);
+            }
+        }
+        return generatedImageMapper.toWorkHistoryDto(new PageImpl<>(images, pageable, ids.getTotalElements()));
     }
 
     // Method to create image from PixelCut processing
@@ -234,6 +292,13 @@ public class GeneratedImageServiceImpl implements GeneratedImageService {
         logger.info("Creating generated image record for user: {}, operation: {}, imageUrl: {}", 
                    userId, operation, imageUrl);
         
-        return createImageWithUsageTracking(image);
+        GeneratedImage saved = createImageWithUsageTracking(image);
+        searchIndexService.indexGeneratedImage(saved, operation, promptText);
+        if (thumbnailUrl == null) {
+            // Thumbnail, size and dimensions are filled in after commit
+            eventPublisher.publishEvent(new ImageDerivativeService.ImagesStoredEvent(
+                    List.of(new ImageDerivativeService.StoredImage(saved.getId(), null, imageUrl))));
+        }
+        return saved;
     }
 } 
\ No newline at end of file
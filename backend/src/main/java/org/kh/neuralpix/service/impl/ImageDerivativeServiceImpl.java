@@ -0,0 +1,118 @@
+package org.kh.neuralpix.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.service.CloudinaryService;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.ImageDerivativeService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs derivative generation on a small bounded pool, off the request and recorder paths. Each
+ * job stores the result in Cloudinary (an explicit call when it is already there), which
+ * generates the standard widths eagerly, and then writes the thumbnail URL, size and dimensions
+ * it reports back to the rows. Values already set on a row are kept.
+ *
+ * A result that was not in our cloud yet, such as a provider URL that expires, is uploaded once
+ * and the Cloudinary copy replaces the row's image URL, unless the row moved to another URL
+ * meanwhile. That copy is then the only stored asset of the result.
+ *
+ * When the queue is full new jobs are dropped; the rows simply keep showing the full image.
+ * Derivatives are a Cloudinary feature: with the local storage backend this service is not
+ * created and stored-image events go unhandled, with the same result.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "cloudinary", matchIfMissing = true)
+public class ImageDerivativeServiceImpl implements ImageDerivativeService {
+
+    private static final String UPDATE_GENERATED_SQL =
+            "UPDATE generated_images SET image_url = CASE WHEN image_url = ? THEN ? ELSE image_url END, " +
+            "thumbnail_url = COALESCE(thumbnail_url, ?), file_size = COALESCE(file_size, ?), " +
+            "width = COALESCE(width, ?), height = COALESCE(height, ?) WHERE id = ?";
+    private static final String UPDATE_PROCESSED_SQL =
+            "UPDATE processed_images SET processed_url = CASE WHEN processed_url = ? THEN ? ELSE processed_url END, " +
+            "thumbnail_url = COALESCE(thumbnail_url, ?), file_size = COALESCE(file_size, ?), " +
+            "width = COALESCE(width, ?), height = COALESCE(height, ?), format = COALESCE(format, ?) WHERE id = ?";
+
+    private final CloudinaryService cloudinaryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolExecutor workers;
+
+    public ImageDerivativeServiceImpl(CloudinaryService cloudinaryService,
+                                      JdbcTemplate jdbcTemplate,
+                                      @Value("${app.derivatives.workers:2}") int workerCount,
+                                      @Value("${app.derivatives.queue-capacity:1000}") int queueCapacity) {
+        this.cloudinaryService = cloudinaryService;
+        this.jdbcTemplate = jdbcTemplate;
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, workerCount);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        // Pending jobs are dropped; the rows keep working without derivatives
+        workers.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImagesStored(ImagesStoredEvent event) {
+        event.images().forEach(this::submit);
+    }
+
+    @Override
+    public boolean submit(StoredImage image) {
+        if (image.imageUrl() == null || (image.generatedImageId() == null && image.processedImageId() == null)) {
+            return false;
+        }
+        try {
+            workers.execute(() -> process(image));
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Derivative queue full, skipping image {}", image.imageUrl());
+            return false;
+        }
+    }
+
+    private void process(StoredImage image) {
+        try {
+            ImageHandle stored = cloudinaryService.storeWithDerivatives(image.imageUrl()).join();
+            String thumbnailUrl = stored.publicId() != null
+                    ? cloudinaryService.derivativeUrl(stored.publicId(), CloudinaryService.THUMBNAIL_WIDTH)
+                    : null;
+            Long size = stored.sizeBytes();
+            String storedUrl = stored.url() != null ? stored.url() : image.imageUrl();
+
+            if (image.generatedImageId() != null) {
+                jdbcTemplate.update(UPDATE_GENERATED_SQL, image.imageUrl(), storedUrl, thumbnailUrl,
+                        size != null ? (int) Math.min(size, Integer.MAX_VALUE) : null,
+                        stored.width(), stored.height(), image.generatedImageId());
+            }
+            if (image.processedImageId() != null) {
+                jdbcTemplate.update(UPDATE_PROCESSED_SQL, image.imageUrl(), storedUrl, thumbnailUrl, size, stored.width(), stored.height(),
+                        stored.format(), image.processedImageId());
+            }
+            log.debug("Stored derivatives for {} as {}: {}x{} {}", image.imageUrl(), storedUrl, stored.width(),
+                    stored.height(), thumbnailUrl);
+        } catch (Exception e) {
+            log.warn("Failed to generate derivatives for {}: {}", image.imageUrl(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.kh.neuralpix.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.kh.neuralpix.service.ImageProbeService;
+import org.kh.neuralpix.utils.ImageProbe;
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@link ImageProbe} over data URLs and remote URLs. A data URL is decoded only for the base64
+ * quads that cover the requested bytes. A remote image is read in 4 KB blocks with HTTP range
+ * requests; from a server that ignores the range, a bounded prefix of the one full response is
+ * kept and nothing more is fetched. Remote results, including "not an image", are cached by URL.
+ *
+ * URLs come from users, so only public addresses are fetched: the host must not resolve to a
+ * loopback, private, link-local, carrier-grade NAT or "this network" address (the check is applied to the addresses the
+ * connection actually uses), and redirects are not followed.
+ */
+@Service
+@Slf4j
+public class ImageProbeServiceImpl implements ImageProbeService {
+
+    private static final int BLOCK_SIZE = 4096;
+    // Kept from a server that ignores Range; enough for the headers of practically every image
+    private static final int MAX_UNRANGED_BYTES = 64 * BLOCK_SIZE;
+
+    private final OkHttpClient httpClient;
+    private final boolean allowPrivateAddresses;
+    private final Cache<String, Optional<ImageInfo>> cache;
+
+    @Autowired
+    public ImageProbeServiceImpl(@Value("${app.image-probe.cache-size:10000}") long cacheSize,
+                                 @Value("${app.image-probe.timeout-ms:5000}") long timeoutMs) {
+        this(cacheSize, timeoutMs, false);
+    }
+
+    /**
+     * allowPrivateAddresses lifts the public-address check, for tests against a local server only
+     */
+    ImageProbeServiceImpl(long cacheSize, long timeoutMs, boolean allowPrivateAddresses) {
+        this.allowPrivateAddresses = allowPrivateAddresses;
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .readTimeout(Duration.ofMillis(timeoutMs))
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .dns(this::lookupPublic)
+                .build();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+    }
+
+    @Override
+    public Optional<ImageInfo> probe(String imageUrl) {
+        if (imageUrl == null || imageUrl.isBlank()) {
+            return Optional.empty();
+        }
+        if (imageUrl.startsWith("data:")) {
+            return probeDataUrl(imageUrl);
+        }
+        if (!imageUrl.startsWith("http://") && !imageUrl.startsWith("https://")) {
+            return Optional.empty();
+        }
+
+        Optional<ImageInfo> cached = cache.getIfPresent(imageUrl);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            // OkHttp connects to IP literals without a DNS lookup, so they are checked here
+            String host = URI.create(imageUrl).getHost();
+            if (host == null) {
+                return Optional.empty();
+            }
+            lookupPublic(host);
+            Optional<ImageInfo> info = Optional.ofNullable(ImageProbe.probe(new RemoteSource(imageUrl)));
+            cache.put(imageUrl, info);
+            return info;
+        } catch (IOException | IllegalArgumentException e) {
+            // Not cached: the next attempt may reach the server
+            log.debug("Could not probe {}: {}", imageUrl, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Addresses of a host, refusing hosts that resolve to anything but public addresses
+     */
+    private List<InetAddress> lookupPublic(String host) throws UnknownHostException {
+        List<InetAddress> addresses = Dns.SYSTEM.lookup(host);
+        if (!allowPrivateAddresses) {
+            for (InetAddress address : addresses) {
+                if (!isPublic(address)) {
+                    throw new UnknownHostException(host + " resolves to a non-public address");
+                }
+            }
+        }
+        return addresses;
+    }
+
+    public static boolean isPublic(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            // "This network" (0.0.0.0/8) and carrier-grade NAT (100.64.0.0/10)
+            return bytes[0] != 0 && !(bytes[0] == 100 && (bytes[1] & 0xc0) == 0x40);
+        }
+        // IPv6 unique local addresses (fc00::/7), which isSiteLocalAddress does not cover
+        return (bytes[0] & 0xfe) != 0xfc;
+    }
+
+    private Optional<ImageInfo> probeDataUrl(String dataUrl) {
+        int comma = dataUrl.indexOf(',');
+        if (comma < 0 || !dataUrl.substring(0, comma).endsWith(";base64")) {
+            return Optional.empty();
+        }
+        String base64 = dataUrl.substring(comma + 1);
+        try {
+            return Optional.ofNullable(ImageProbe.probe((offset, length) -> decodeRange(base64, offset, length)));
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Could not probe data URL: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Decode bytes [offset, offset + length) of base64 text without decoding what comes before
+     */
+    static byte[] decodeRange(String base64, long offset, int length) {
+        long firstQuad = offset / 3;
+        long charStart = firstQuad * 4;
+        long charEnd = Math.min(base64.length(), ((offset + length + 2) / 3) * 4);
+        if (charStart >= charEnd) {
+            return new byte[0];
+        }
+        byte[] decoded = Base64.getDecoder().decode(base64.substring((int) charStart, (int) charEnd));
+        int skip = (int) (offset - firstQuad * 3);
+        if (skip >= decoded.length) {
+            return new byte[0];
+        }
+        return Arrays.copyOfRange(decoded, skip, Math.min(decoded.length, skip + length));
+    }
+
+    /**
+     * Range-reads a remote image in blocks, keeping the blocks already fetched
+     */
+    private final class RemoteSource implements ImageProbe.ByteSource {
+
+        private final String url;
+        private final Map<Long, byte[]> blocks = new HashMap<>();
+        // Set once the server answered with the full body: everything it will give is in blocks
+        private boolean unranged;
+
+        private RemoteSource(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public byte[] read(long offset, int length) throws IOException {
+            byte[] result = new byte[length];
+            int filled = 0;
+            while (filled < length) {
+                long position = offset + filled;
+                long blockStart = position - position % BLOCK_SIZE;
+                byte[] block = blocks.get(blockStart);
+                if (block == null) {
+                    block = fetch(blockStart);
+                    blocks.put(blockStart, block);
+                }
+                int from = (int) (position - blockStart);
+                if (from >= block.length) {
+                    break;
+                }
+                int count = Math.min(length - filled, block.length - from);
+                System.arraycopy(block, from, result, filled, count);
+                filled += count;
+            }
+            return filled == length ? result : Arrays.copyOf(result, filled);
+        }
+
+        private byte[] fetch(long start) throws IOException {
+            if (unranged) {
+                return new byte[0];
+            }
+            Request request = new Request.Builder()
+                    .url(url)
+                    .header("Range", "bytes=" + start + "-" + (start + BLOCK_SIZE - 1))
+                    .build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (response.code() == 416) {
+                    return new byte[0];
+                }
+                ResponseBody body = response.body();
+                if (!response.isSuccessful() || body == null) {
+                    throw new IOException("HTTP " + response.code());
+                }
+                if (response.code() != 206) {
+                    return readUnranged(body, start);
+                }
+                try (InputStream in = body.byteStream()) {
+                    return in.readNBytes(BLOCK_SIZE);
+                }
+            }
+        }
+
+        /**
+         * Range ignored: keep a bounded prefix of the full body as blocks, rather than downloading
+         * the body again for each block the probe asks for
+         */
+        private byte[] readUnranged(ResponseBody body, long start) throws IOException {
+            unranged = true;
+            byte[] prefix;
+            try (InputStream in = body.byteStream()) {
+                prefix = in.readNBytes(MAX_UNRANGED_BYTES);
+            }
+            for (int from = 0; from < prefix.length; from += BLOCK_SIZE) {
+                blocks.put((long) from, Arrays.copyOfRange(prefix, from, Math.min(prefix.length, from + BLOCK_SIZE)));
+            }
+            return blocks.getOrDefault(start, new byte[0]);
+        }
+    }
+}
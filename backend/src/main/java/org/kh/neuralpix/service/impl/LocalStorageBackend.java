@@ -0,0 +1,299 @@
+package org.kh.neuralpix.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.StorageBackend;
+import org.kh.neuralpix.utils.ImageProbe;
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Stores images on local disk under their SHA-256, sharded two levels deep by the first four
+ * hex digits (ab/cd/abcd....png) so directories stay small. Files are written to a temporary
+ * file in the storage directory and renamed into place, so readers never see a partial file.
+ * Storing the same bytes twice keeps one file. Files are served by LocalStorageController;
+ * recently read files stay memory-mapped, up to app.storage.local.mapped-bytes, so hot images
+ * are served from the page cache without a read per request. A mapping dropped from the cache
+ * is unmapped as soon as the last read of it is closed, rather than whenever the buffer is
+ * garbage collected.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final Pattern PUBLIC_ID = Pattern.compile("[0-9a-f]{64}\\.(png|jpeg|gif|webp)");
+
+    private final Path root;
+    private final String publicBaseUrl;
+    // Unmaps a mapped buffer immediately; null when the JDK does not allow it (left to the GC)
+    private static final MethodHandle UNMAPPER = unmapper();
+
+    private final Cache<String, Mapping> mapped;
+
+    public LocalStorageBackend(@Value("${app.storage.local.dir:storage}") String dir,
+                               @Value("${app.storage.local.public-base-url:http://localhost:8080}") String publicBaseUrl,
+                               @Value("${app.storage.local.mapped-bytes:268435456}") long mappedBytes) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.publicBaseUrl = publicBaseUrl.endsWith("/") ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1) : publicBaseUrl;
+        this.mapped = CacheBuilder.newBuilder()
+                .maximumWeight(mappedBytes)
+                .<String, Mapping>weigher((publicId, mapping) -> mapping.buffer.capacity())
+                .removalListener((RemovalListener<String, Mapping>) removal -> removal.getValue().evict())
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<ImageHandle> store(byte[] imageBytes, String contentHash) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                ImageInfo info = ImageProbe.probe((offset, length) -> Arrays.copyOfRange(imageBytes,
+                        (int) Math.min(offset, imageBytes.length), (int) Math.min(offset + length, imageBytes.length)));
+                if (info == null) {
+                    throw new IllegalArgumentException("Not a PNG, JPEG, GIF or WebP image");
+                }
+
+                Files.createDirectories(root);
+                // Written aside and renamed, so readers never see a partial file
+                Path temp = Files.createTempFile(root, "store-", ".tmp");
+                try {
+                    Files.write(temp, imageBytes);
+                    return moveIntoPlace(temp, contentHash, info, imageBytes.length);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to store image locally", e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<ImageHandle> store(MultipartFile file, String folder) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (BufferedInputStream in = new BufferedInputStream(file.getInputStream())) {
+                // Sniff the real format before anything is written, then rewind
+                in.mark(ImageProbe.HEADER_BYTES);
+                String format = ImageProbe.format(in.readNBytes(ImageProbe.HEADER_BYTES));
+                in.reset();
+                if (format == null) {
+                    throw new IllegalArgumentException("Not a PNG, JPEG, GIF or WebP image");
+                }
+
+                Files.createDirectories(root);
+                // Hashed while it is copied aside; its name is known only once the copy is done
+                Path temp = Files.createTempFile(root, "store-", ".tmp");
+                try {
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    long size = Files.copy(new DigestInputStream(in, digest), temp, StandardCopyOption.REPLACE_EXISTING);
+                    ImageInfo info;
+                    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ)) {
+                        info = ImageProbe.probe((offset, length) -> readAt(channel, offset, length));
+                    }
+                    if (info == null) {
+                        throw new IllegalArgumentException("Not a PNG, JPEG, GIF or WebP image");
+                    }
+                    return moveIntoPlace(temp, HexFormat.of().formatHex(digest.digest()), info, size);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to store image locally", e);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Rename a fully written file to its content address, unless the same bytes are stored already
+     */
+    private ImageHandle moveIntoPlace(Path temp, String contentHash, ImageInfo info, long size) throws IOException {
+        String publicId = contentHash + "." + info.format();
+        Path target = path(publicId);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        log.debug("Stored {} locally at {}", publicId, target);
+        return new ImageHandle(url(publicId), publicId, contentHash, null, size,
+                info.width(), info.height(), info.format());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> delete(String publicId) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (!PUBLIC_ID.matcher(publicId).matches()) {
+                return false;
+            }
+            mapped.invalidate(publicId);
+            try {
+                return Files.deleteIfExists(path(publicId));
+            } catch (IOException e) {
+                log.warn("Failed to delete {}: {}", publicId, e.getMessage());
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Bytes of a stored image, memory-mapped and kept mapped while it is read often
+     */
+    @Override
+    public Optional<StoredFile> read(String publicId) {
+        if (!PUBLIC_ID.matcher(publicId).matches()) {
+            return Optional.empty();
+        }
+        try {
+            Mapping mapping = mapped.get(publicId, () -> new Mapping(map(path(publicId))));
+            if (!mapping.acquire()) {
+                // Evicted already (bigger than the cache, or lost a race): mapped for this read only
+                mapping = Mapping.forOneRead(map(path(publicId)));
+            }
+            String format = publicId.substring(publicId.indexOf('.') + 1);
+            Mapping acquired = mapping;
+            AtomicBoolean closed = new AtomicBoolean();
+            return Optional.of(new StoredFile(mapping.buffer.asReadOnlyBuffer(), "image/" + format,
+                    publicId.substring(0, 64), () -> {
+                        if (closed.compareAndSet(false, true)) {
+                            acquired.release();
+                        }
+                    }));
+        } catch (IOException | ExecutionException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (!(cause instanceof NoSuchFileException)) {
+                log.warn("Failed to read {}: {}", publicId, cause.getMessage());
+            }
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] readAt(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            if (offset + buffer.position() >= channel.size()) {
+                break;
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static MethodHandle unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Mapped files cannot be unmapped explicitly, leaving them to the GC: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A mapped file shared by concurrent reads. Once evicted it takes no new readers and is
+     * unmapped when the last one is done; unmapping earlier would crash a reader still writing it.
+     */
+    private static final class Mapping {
+
+        private final MappedByteBuffer buffer;
+        private int readers;
+        private boolean evicted;
+
+        private Mapping(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * A mapping outside the cache, unmapped when its one read is closed
+         */
+        static Mapping forOneRead(MappedByteBuffer buffer) {
+            Mapping mapping = new Mapping(buffer);
+            mapping.readers = 1;
+            mapping.evicted = true;
+            return mapping;
+        }
+
+        synchronized boolean acquire() {
+            if (evicted) {
+                return false;
+            }
+            readers++;
+            return true;
+        }
+
+        synchronized void release() {
+            if (--readers == 0 && evicted) {
+                unmap();
+            }
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            if (readers == 0) {
+                unmap();
+            }
+        }
+
+        private void unmap() {
+            if (UNMAPPER == null) {
+                return;
+            }
+            try {
+                UNMAPPER.invokeExact((ByteBuffer) buffer);
+            } catch (Throwable e) {
+                log.warn("Failed to unmap a stored file: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Path path(String publicId) {
+        return root.resolve(publicId.substring(0, 2)).resolve(publicId.substring(2, 4)).resolve(publicId);
+    }
+
+    private String url(String publicId) {
+        return publicBaseUrl + "/api/storage/" + publicId.substring(0, 2) + "/" + publicId.substring(2, 4) + "/" + publicId;
+    }
+}
@@ -0,0 +1,372 @@
+package org.kh.neuralpix.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.model.GeneratedImage;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.model.UsageTracking.UsageType;
+import org.kh.neuralpix.model.enums.GenerationStatus;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.ImageDerivativeService.ImagesStoredEvent;
+import org.kh.neuralpix.service.ImageDerivativeService.StoredImage;
+import org.kh.neuralpix.service.OperationRecorderService;
+import org.kh.neuralpix.service.SearchIndexService;
+import org.kh.neuralpix.service.SearchIndexService.GeneratedImageTerms;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Queues completed operations and writes them every second. One flush is a single
+ * transaction of four JDBC batches, whatever the number of operations in it: processed-image
+ * rows, generated-image rows, usage_tracking upserts aggregated per user and day, and the
+ * search documents of the new rows. Usage is incremented with a relative upsert, so nothing is
+ * read before it is written. After commit the stored results are handed to derivative
+ * generation.
+ *
+ * A failed batch is retried one operation per transaction so a bad row cannot hold back the
+ * others; an operation that still fails is re-queued a few times and then dropped with an error.
+ */
+@Service
+@Slf4j
+public class OperationRecorderServiceImpl implements OperationRecorderService {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final String INSERT_PROCESSED_SQL =
+            "INSERT INTO processed_images (user_id, original_url, processed_url, imgur_url, source_hash, source_phash, " +
+            "source_file_size, source_width, source_height, operation_type, prompt, style, quality, scale_factor, " +
+            "file_size, processing_time_ms, success, error_message, is_public, is_favorite, view_count, created_at, " +
+            "updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, FALSE, 0, ?, ?)";
+    private static final String INSERT_GENERATED_SQL =
+            "INSERT INTO generated_images (user_id, image_url, file_size, status, is_public, likes_count, " +
+            "downloads_count, views_count, is_deleted, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, FALSE, 0, 0, 0, FALSE, ?, ?)";
+    private static final String UPSERT_USAGE_SQL =
+            "INSERT INTO usage_tracking (user_id, usage_date, usage_type, usage_count, created_at) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE usage_count = COALESCE(usage_count, 0) + VALUES(usage_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchIndexService searchIndexService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public OperationRecorderServiceImpl(JdbcTemplate jdbcTemplate,
+                                        TransactionTemplate transactionTemplate,
+                                        SearchIndexService searchIndexService,
+                                        ApplicationEventPublisher eventPublisher,
+                                        @Value("${app.operations.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.searchIndexService = searchIndexService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void record(OperationCompleted operation) {
+        if (operation == null || operation.userId() == null || operation.operationType() == null) {
+            log.warn("Ignoring operation record without user or operation type: {}", operation);
+            return;
+        }
+        if (operation.completedAt() == null) {
+            operation = operation.toBuilder().completedAt(LocalDateTime.now()).build();
+        }
+        queue.add(new Pending(operation, 0));
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Write queued operations every second
+     */
+    @Scheduled(fixedDelayString = "${app.operations.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error flushing operation records", e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            int written = flush();
+            log.info("Flushed {} operation records on shutdown", written);
+        } catch (Exception e) {
+            log.error("Failed to flush operation records on shutdown", e);
+        }
+    }
+
+    @Override
+    public synchronized int flush() {
+        int written = 0;
+        // Only what is queued now; operations recorded meanwhile wait for the next flush
+        int remaining = queued.get();
+        while (remaining > 0) {
+            List<Pending> batch = drain(Math.min(remaining, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            remaining -= batch.size();
+            written += writeOrRetry(batch);
+        }
+        return written;
+    }
+
+    private List<Pending> drain(int max) {
+        List<Pending> batch = new ArrayList<>(max);
+        Pending next;
+        while (batch.size() < max && (next = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private int writeOrRetry(List<Pending> batch) {
+        try {
+            publishStored(transactionTemplate.execute(status -> write(batch)));
+            log.debug("Recorded {} operations", batch.size());
+            return batch.size();
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} operation records failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+
+        int written = 0;
+        for (Pending pending : batch) {
+            try {
+                publishStored(transactionTemplate.execute(status -> write(List.of(pending))));
+                written++;
+            } catch (RuntimeException e) {
+                if (pending.attempts() + 1 < MAX_ATTEMPTS) {
+                    queue.add(new Pending(pending.operation(), pending.attempts() + 1));
+                    queued.incrementAndGet();
+                } else {
+                    log.error("Dropping operation record after {} attempts: {}", MAX_ATTEMPTS, pending.operation(), e);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write one batch and return the stored results, for derivative generation after commit
+     */
+    private List<StoredImage> write(List<Pending> batch) {
+        List<OperationCompleted> operations = batch.stream().map(Pending::operation).toList();
+        List<OperationCompleted> completed = operations.stream().filter(OperationRecorderServiceImpl::isCompleted).toList();
+
+        List<Long> processedIds = insert(INSERT_PROCESSED_SQL, operations, this::bindProcessed);
+        List<Long> generatedIds = insert(INSERT_GENERATED_SQL, completed, this::bindGenerated);
+        upsertUsage(completed);
+        index(operations, processedIds, completed, generatedIds);
+
+        List<StoredImage> stored = new ArrayList<>(completed.size());
+        for (int i = 0, j = 0; i < operations.size() && i < processedIds.size(); i++) {
+            OperationCompleted operation = operations.get(i);
+            if (isCompleted(operation)) {
+                Long generatedId = j < generatedIds.size() ? generatedIds.get(j) : null;
+                stored.add(new StoredImage(generatedId, processedIds.get(i), operation.resultUrl()));
+                j++;
+            }
+        }
+        return stored;
+    }
+
+    private void publishStored(List<StoredImage> stored) {
+        if (stored == null || stored.isEmpty()) {
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new ImagesStoredEvent(stored));
+        } catch (RuntimeException e) {
+            // Listeners may already be gone during shutdown; the rows are written without derivatives
+            log.debug("Could not publish stored images event", e);
+        }
+    }
+
+    private static boolean isCompleted(OperationCompleted operation) {
+        return operation.success() && operation.resultUrl() != null && !operation.resultUrl().isBlank();
+    }
+
+    /**
+     * Insert one row per operation in a single batch and return the generated ids in order
+     */
+    private List<Long> insert(String sql, List<OperationCompleted> operations, Binder binder) {
+        if (operations.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        binder.bind(ps, operations.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return operations.size();
+                    }
+                }, keys);
+        List<Long> ids = new ArrayList<>(operations.size());
+        for (Map<String, Object> row : keys.getKeyList()) {
+            Object id = row.values().stream().findFirst().orElse(null);
+            ids.add(id instanceof Number number ? number.longValue() : null);
+        }
+        return ids;
+    }
+
+    private void bindProcessed(PreparedStatement ps, OperationCompleted operation) throws SQLException {
+        Timestamp at = Timestamp.valueOf(operation.completedAt());
+        ImageHandle source = operation.sourceImage() != null ? operation.sourceImage() : ImageHandle.ofUrl(null);
+        ps.setLong(1, operation.userId());
+        ps.setString(2, operation.originalUrl());
+        // processed_url is NOT NULL; a failed operation has no result
+        ps.setString(3, operation.resultUrl() != null ? operation.resultUrl() : "");
+        ps.setString(4, source.url());
+        ps.setString(5, source.contentHash());
+        ps.setObject(6, source.perceptualHash(), Types.BIGINT);
+        ps.setObject(7, source.sizeBytes(), Types.BIGINT);
+        ps.setObject(8, source.width(), Types.INTEGER);
+        ps.setObject(9, source.height(), Types.INTEGER);
+        ps.setString(10, operation.operationType().name());
+        ps.setString(11, operation.prompt());
+        ps.setString(12, operation.style());
+        ps.setString(13, operation.quality());
+        ps.setObject(14, operation.scaleFactor(), Types.DOUBLE);
+        ps.setObject(15, operation.fileSize() != null ? operation.fileSize().longValue() : null, Types.BIGINT);
+        ps.setLong(16, operation.processingTimeMs());
+        ps.setBoolean(17, operation.success());
+        ps.setString(18, truncate(operation.errorMessage()));
+        ps.setTimestamp(19, at);
+        ps.setTimestamp(20, at);
+    }
+
+    private void bindGenerated(PreparedStatement ps, OperationCompleted operation) throws SQLException {
+        Timestamp at = Timestamp.valueOf(operation.completedAt());
+        ps.setLong(1, operation.userId());
+        ps.setString(2, operation.resultUrl());
+        ps.setObject(3, operation.fileSize(), Types.INTEGER);
+        ps.setString(4, GenerationStatus.COMPLETED.getValue());
+        ps.setTimestamp(5, at);
+        ps.setTimestamp(6, at);
+    }
+
+    /**
+     * One daily and one monthly increment per user and day, however many operations it covers
+     */
+    private void upsertUsage(List<OperationCompleted> completed) {
+        if (completed.isEmpty()) {
+            return;
+        }
+        // Sorted so concurrent flushes from several instances lock usage rows in the same order
+        Map<UsageKey, Integer> counts = new TreeMap<>();
+        for (OperationCompleted operation : completed) {
+            counts.merge(new UsageKey(operation.userId(), operation.completedAt().toLocalDate()), 1, Integer::sum);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(counts.size() * 2);
+        counts.forEach((key, count) -> {
+            args.add(new Object[]{key.userId(), Date.valueOf(key.date()), UsageType.DAILY_GENERATION.name(), count, now});
+            args.add(new Object[]{key.userId(), Date.valueOf(key.date()), UsageType.MONTHLY_GENERATION.name(), count, now});
+        });
+        jdbcTemplate.batchUpdate(UPSERT_USAGE_SQL, args);
+    }
+
+    private void index(List<OperationCompleted> operations, List<Long> processedIds,
+                       List<OperationCompleted> completed, List<Long> generatedIds) {
+        List<ProcessedImage> processedImages = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size() && i < processedIds.size(); i++) {
+            OperationCompleted operation = operations.get(i);
+            processedImages.add(ProcessedImage.builder()
+                    .id(processedIds.get(i))
+                    .userId(operation.userId())
+                    .operationType(operation.operationType())
+                    .prompt(operation.prompt())
+                    .style(operation.style())
+                    .createdAt(operation.completedAt())
+                    .build());
+        }
+
+        List<GeneratedImageTerms> generatedImages = new ArrayList<>(completed.size());
+        for (int i = 0; i < completed.size() && i < generatedIds.size(); i++) {
+            OperationCompleted operation = completed.get(i);
+            GeneratedImage image = new GeneratedImage();
+            image.setId(generatedIds.get(i));
+            image.setUserId(operation.userId());
+            image.setCreatedAt(operation.completedAt());
+            generatedImages.add(new GeneratedImageTerms(image, operationLabel(operation), promptText(operation)));
+        }
+        searchIndexService.indexBatch(processedImages, generatedImages);
+    }
+
+    /**
+     * Operation name as the PixelCut endpoints spell it, e.g. remove-background
+     */
+    static String operationLabel(OperationCompleted operation) {
+        return switch (operation.operationType()) {
+            case UPSCALE_IMAGE -> "upscale";
+            default -> operation.operationType().name().toLowerCase().replace('_', '-');
+        };
+    }
+
+    private static String promptText(OperationCompleted operation) {
+        if (operation.prompt() != null && !operation.prompt().isBlank()) {
+            return operation.prompt();
+        }
+        if (operation.operationType() == ProcessedImage.OperationType.UPSCALE_IMAGE && operation.scaleFactor() != null) {
+            return "Image upscaling " + operation.scaleFactor() + "x";
+        }
+        return operationLabel(operation) + " operation";
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    @FunctionalInterface
+    private interface Binder {
+        void bind(PreparedStatement ps, OperationCompleted operation) throws SQLException;
+    }
+
+    private record Pending(OperationCompleted operation, int attempts) {
+    }
+
+    private record UsageKey(Long userId, LocalDate date) implements Comparable<UsageKey> {
+        @Override
+        public int compareTo(UsageKey other) {
+            int byUser = userId.compareTo(other.userId);
+            return byUser != 0 ? byUser : date.compareTo(other.date);
+        }
+    }
+}
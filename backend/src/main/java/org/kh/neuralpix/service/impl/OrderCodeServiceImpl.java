@@ -0,0 +1,156 @@
+package org.kh.neuralpix.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.model.OrderCodeNode;
+import org.kh.neuralpix.repository.OrderCodeNodeRepository;
+import org.kh.neuralpix.service.OrderCodeService;
+import org.kh.neuralpix.utils.SnowflakeOrderCodeGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Leases a generator node id from the order_code_nodes table and issues codes from a
+ * {@link SnowflakeOrderCodeGenerator}. Codes are only issued while the local view of the
+ * lease is valid; the lease is renewed well before it expires, so the fast path never
+ * touches the database.
+ */
+@Service
+@Slf4j
+public class OrderCodeServiceImpl implements OrderCodeService {
+
+    private final OrderCodeNodeRepository nodeRepository;
+    private final String owner;
+
+    @Value("${app.payment.order-code.lease-minutes:5}")
+    private int leaseMinutes;
+
+    private volatile SnowflakeOrderCodeGenerator generator;
+    // Stop issuing codes a minute before the lease actually expires in the database
+    private volatile long validUntilMillis;
+
+    public OrderCodeServiceImpl(OrderCodeNodeRepository nodeRepository) {
+        this.nodeRepository = nodeRepository;
+        this.owner = resolveOwner();
+    }
+
+    @Override
+    public long nextOrderCode() {
+        SnowflakeOrderCodeGenerator current = generator;
+        if (current == null || System.currentTimeMillis() >= validUntilMillis) {
+            current = ensureLease();
+        }
+        return current.nextOrderCode();
+    }
+
+    /**
+     * Renew the node lease every minute
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void renewLease() {
+        SnowflakeOrderCodeGenerator current = generator;
+        if (current == null) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                if (!renew(current)) {
+                    log.warn("Lost order code node lease {}, acquiring a new node id", current.getNodeId());
+                    generator = null;
+                    acquire();
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to renew order code node lease {}", current.getNodeId(), e);
+        }
+    }
+
+    private synchronized SnowflakeOrderCodeGenerator ensureLease() {
+        SnowflakeOrderCodeGenerator current = generator;
+        if (current != null && System.currentTimeMillis() < validUntilMillis) {
+            return current;
+        }
+        if (current != null && renew(current)) {
+            return current;
+        }
+        return acquire();
+    }
+
+    private boolean renew(SnowflakeOrderCodeGenerator current) {
+        long now = System.currentTimeMillis();
+        int updated = nodeRepository.renewLease(current.getNodeId(), owner,
+                LocalDateTime.now().plusMinutes(leaseMinutes), current.getLastTimestampMillis());
+        if (updated == 0) {
+            return false;
+        }
+        validUntilMillis = now + (leaseMinutes - 1) * 60_000L;
+        return true;
+    }
+
+    private SnowflakeOrderCodeGenerator acquire() {
+        ensureNodeRows();
+        for (int nodeId = 0; nodeId < SnowflakeOrderCodeGenerator.MAX_NODES; nodeId++) {
+            long now = System.currentTimeMillis();
+            LocalDateTime nowTime = LocalDateTime.now();
+            if (nodeRepository.tryLease(nodeId, owner, nowTime, nowTime.plusMinutes(leaseMinutes)) == 0) {
+                continue;
+            }
+            long lastTimestamp = nodeRepository.findById(nodeId)
+                    .map(OrderCodeNode::getLastTimestampMillis)
+                    .orElse(0L);
+            SnowflakeOrderCodeGenerator leased = new SnowflakeOrderCodeGenerator(nodeId, lastTimestamp);
+            validUntilMillis = now + (leaseMinutes - 1) * 60_000L;
+            generator = leased;
+            log.info("Leased order code node id {} as {}", nodeId, owner);
+            return leased;
+        }
+        throw new IllegalStateException("No free order code node id - all "
+                + SnowflakeOrderCodeGenerator.MAX_NODES + " are leased");
+    }
+
+    private void ensureNodeRows() {
+        if (nodeRepository.count() >= SnowflakeOrderCodeGenerator.MAX_NODES) {
+            return;
+        }
+        for (int nodeId = 0; nodeId < SnowflakeOrderCodeGenerator.MAX_NODES; nodeId++) {
+            if (nodeRepository.existsById(nodeId)) {
+                continue;
+            }
+            try {
+                nodeRepository.saveAndFlush(OrderCodeNode.builder().nodeId(nodeId).build());
+            } catch (DataIntegrityViolationException e) {
+                // Inserted concurrently by another instance
+            }
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        SnowflakeOrderCodeGenerator current = generator;
+        if (current == null) {
+            return;
+        }
+        try {
+            nodeRepository.releaseLease(current.getNodeId(), owner, current.getLastTimestampMillis());
+        } catch (Exception e) {
+            log.warn("Failed to release order code node lease {}", current.getNodeId(), e);
+        }
+    }
+
+    private static String resolveOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String owner = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        return owner.length() > 100 ? owner.substring(owner.length() - 100) : owner;
+    }
+}
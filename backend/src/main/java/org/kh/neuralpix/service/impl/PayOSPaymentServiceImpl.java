@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.kh.neuralpix.constants.PayOSConstants;
 import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.service.OrderCodeService;
 import org.kh.neuralpix.service.TransactionService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -19,7 +20,6 @@ import vn.payos.type.Webhook;
 import vn.payos.type.WebhookData;
 import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.concurrent.atomic.AtomicLong;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
@@ -32,9 +32,7 @@ import java.security.NoSuchAlgorithmException;
 public class PayOSPaymentServiceImpl implements PayOSPaymentService {
 
     private final TransactionService transactionService;
-    
-    // Atomic counter for thread-safe orderCode generation
-    private static final AtomicLong orderCodeCounter = new AtomicLong(System.currentTimeMillis() / 1000);
+    private final OrderCodeService orderCodeService;
 
     @Value("${payos.client-id}")
     private String clientId;
@@ -76,6 +74,7 @@ public class PayOSPaymentServiceImpl implements PayOSPaymentService {
     /**
      * Tạo payment link và lưu transaction với thread-safe orderCode generation
      */
+    @Override
     public CheckoutResponseData createPaymentLinkWithTransaction(Long orderCode, Long userId, Long subscriptionId, 
                                                                BigDecimal amount, Transaction.TransactionType type, 
                                                                String description, String buyerEmail) {
@@ -104,11 +103,6 @@ public class PayOSPaymentServiceImpl implements PayOSPaymentService {
             
             log.info("Creating payment link for order: {} with amount: {}", orderCode, amount);
             
-            // Kiểm tra orderCode đã tồn tại chưa
-            if (transactionService.existsByOrderCode(orderCode)) {
-                throw new RuntimeException("Order code already exists: " + orderCode);
-            }
-            
             PaymentData.PaymentDataBuilder paymentDataBuilder = PaymentData.builder()
                     .orderCode(orderCode)
                     .amount(amount.intValue())
@@ -249,10 +243,10 @@ public class PayOSPaymentServiceImpl implements PayOSPaymentService {
     }
 
     /**
-     * Generate thread-safe unique order code
+     * Generate an order code that is unique across instances (node id leased from the DB)
      */
     public Long generateUniqueOrderCode() {
-        return orderCodeCounter.incrementAndGet();
+        return orderCodeService.nextOrderCode();
     }
 
     /**
@@ -0,0 +1,439 @@
+package org.kh.neuralpix.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.config.PaymentConfig;
+import org.kh.neuralpix.constants.PayOSConstants;
+import org.kh.neuralpix.dto.UserDto;
+import org.kh.neuralpix.model.PaymentWebhookEvent;
+import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.repository.PaymentWebhookEventRepository;
+import org.kh.neuralpix.service.PaymentWebhookService;
+import org.kh.neuralpix.service.SubscriptionService;
+import org.kh.neuralpix.service.TransactionService;
+import org.kh.neuralpix.service.UserService;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import vn.payos.type.WebhookData;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes PayOS webhooks off the request thread. Each verified delivery is stored in
+ * {@link PaymentWebhookEvent} before PayOS gets its 200, then handed to one of several
+ * single-threaded workers chosen by orderCode, so events for the same order are applied
+ * in order while different orders run in parallel. A scheduled sweep re-dispatches events
+ * that were never picked up (queue full, restart) or are due for retry.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentWebhookServiceImpl implements PaymentWebhookService {
+
+    private static final int DISPATCH_BATCH_SIZE = 200;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final PaymentWebhookEventRepository eventRepository;
+    private final TransactionService transactionService;
+    private final SubscriptionService subscriptionService;
+    private final UserService userService;
+    private final PaymentConfig paymentConfig;
+    private final ObjectMapper objectMapper;
+
+    private ThreadPoolExecutor[] workers;
+
+    @PostConstruct
+    public void startWorkers() {
+        PaymentConfig.Webhook config = paymentConfig.getWebhook();
+        int stripes = Math.max(1, config.getWorkerStripes());
+        workers = new ThreadPoolExecutor[stripes];
+        for (int i = 0; i < stripes; i++) {
+            String threadName = "payos-webhook-" + i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        log.info("Started {} PayOS webhook workers", stripes);
+    }
+
+    @PreDestroy
+    public void stopWorkers() {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+        for (ThreadPoolExecutor worker : workers) {
+            try {
+                if (!worker.awaitTermination(10, TimeUnit.SECONDS)) {
+                    // Unfinished events stay PENDING/PROCESSING and are picked up after restart
+                    worker.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                worker.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean enqueue(WebhookData webhookData) {
+        Long orderCode = webhookData.getOrderCode();
+        String statusCode = webhookData.getCode();
+
+        if (eventRepository.existsByOrderCodeAndStatusCode(orderCode, statusCode)) {
+            log.info("Duplicate PayOS webhook for order: {} with status code: {}, ignoring", orderCode, statusCode);
+            return false;
+        }
+
+        PaymentWebhookEvent event = PaymentWebhookEvent.builder()
+                .orderCode(orderCode)
+                .statusCode(statusCode)
+                .reference(webhookData.getReference())
+                .payload(toJson(webhookData))
+                .status(PaymentWebhookEvent.EventStatus.PENDING)
+                .attempts(0)
+                .build();
+        try {
+            event = eventRepository.saveAndFlush(event);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent delivery of the same webhook won the insert
+            log.info("Duplicate PayOS webhook for order: {} with status code: {} (concurrent delivery), ignoring",
+                    orderCode, statusCode);
+            return false;
+        }
+
+        log.info("Queued PayOS webhook event {} for order: {} with status code: {}", event.getId(), orderCode, statusCode);
+        dispatch(event.getId(), orderCode);
+        return true;
+    }
+
+    @Override
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public void dispatchDueEvents() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<PaymentWebhookEvent> due = eventRepository.findDueEvents(now, staleBefore(now),
+                    PageRequest.of(0, DISPATCH_BATCH_SIZE));
+            if (due.isEmpty()) {
+                return;
+            }
+            log.info("Dispatching {} due PayOS webhook events", due.size());
+            for (PaymentWebhookEvent event : due) {
+                dispatch(event.getId(), event.getOrderCode());
+            }
+        } catch (Exception e) {
+            log.error("Error dispatching due PayOS webhook events", e);
+        }
+    }
+
+    private void dispatch(Long eventId, Long orderCode) {
+        ThreadPoolExecutor worker = workers[(int) Math.floorMod(orderCode, (long) workers.length)];
+        try {
+            worker.execute(() -> processEvent(eventId));
+        } catch (RejectedExecutionException e) {
+            // The event is durable; the scheduled sweep will dispatch it once the worker catches up
+            log.warn("Webhook worker queue full, event {} for order: {} deferred to next sweep", eventId, orderCode);
+        }
+    }
+
+    private void processEvent(Long eventId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (eventRepository.claim(eventId, now, staleBefore(now)) == 0) {
+            // Already processed or being processed by another worker/instance
+            return;
+        }
+
+        PaymentWebhookEvent event = eventRepository.findById(eventId).orElse(null);
+        if (event == null) {
+            return;
+        }
+
+        Long orderCode = event.getOrderCode();
+        try {
+            Optional<Transaction> transactionOpt = transactionService.findByOrderCode(orderCode);
+            if (transactionOpt.isEmpty()) {
+                throw new IllegalStateException("Transaction not found for order code: " + orderCode);
+            }
+
+            Transaction transaction = transactionOpt.get();
+            log.info("Processing webhook event {} for transaction ID: {} with current status: {} and webhook status: {}",
+                    eventId, transaction.getId(), transaction.getStatus(), event.getStatusCode());
+
+            processPaymentWebhook(transaction, event.getStatusCode(), orderCode);
+
+            event.setStatus(PaymentWebhookEvent.EventStatus.PROCESSED);
+            event.setProcessedAt(LocalDateTime.now());
+            event.setLastError(null);
+            eventRepository.save(event);
+            log.info("PayOS webhook event {} processed successfully for order: {}", eventId, orderCode);
+
+        } catch (Exception e) {
+            markFailed(event, e);
+        }
+    }
+
+    private void markFailed(PaymentWebhookEvent event, Exception e) {
+        PaymentConfig.Webhook config = paymentConfig.getWebhook();
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        event.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+
+        if (event.getAttempts() >= config.getMaxAttempts()) {
+            event.setStatus(PaymentWebhookEvent.EventStatus.DEAD);
+            event.setNextAttemptAt(null);
+            log.error("PayOS webhook event {} for order: {} failed {} times - manual review required",
+                    event.getId(), event.getOrderCode(), event.getAttempts(), e);
+        } else {
+            // Exponential backoff: base, 2x base, 4x base, ...
+            long delaySeconds = config.getRetryBaseDelaySeconds() * (1L << Math.min(event.getAttempts() - 1, 10));
+            event.setStatus(PaymentWebhookEvent.EventStatus.FAILED);
+            event.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+            log.warn("PayOS webhook event {} for order: {} failed (attempt {}), retrying in {}s: {}",
+                    event.getId(), event.getOrderCode(), event.getAttempts(), delaySeconds, error);
+        }
+
+        try {
+            eventRepository.save(event);
+        } catch (Exception saveError) {
+            // Left in PROCESSING; the stale sweep will retry it
+            log.error("Failed to record failure for PayOS webhook event {}", event.getId(), saveError);
+        }
+    }
+
+    private LocalDateTime staleBefore(LocalDateTime now) {
+        return now.minusMinutes(paymentConfig.getWebhook().getStaleProcessingMinutes());
+    }
+
+    private String toJson(WebhookData webhookData) {
+        try {
+            return objectMapper.writeValueAsString(webhookData);
+        } catch (Exception e) {
+            log.warn("Could not serialize webhook payload for order: {}", webhookData.getOrderCode());
+            return null;
+        }
+    }
+
+    private void processPaymentWebhook(Transaction transaction, String statusCode, Long orderCode) {
+        try {
+            log.info("Processing payment webhook for transaction: {} with PayOS status code: {}", 
+                transaction.getId(), statusCode);
+
+            if (PayOSConstants.PAYMENT_SUCCESS.equals(statusCode)) {
+                handleSuccessfulPaymentWebhook(transaction, orderCode);
+            } else if (PayOSConstants.PAYMENT_CANCELLED.equals(statusCode)) {
+                handleCancelledPaymentWebhook(transaction, orderCode);
+            } else if (PayOSConstants.PAYMENT_FAILED.equals(statusCode)) {
+                handleFailedPaymentWebhook(transaction, orderCode);
+            } else if (PayOSConstants.PAYMENT_PENDING.equals(statusCode)) {
+                handlePendingPaymentWebhook(transaction, orderCode);
+            } else {
+                log.warn("Unknown PayOS status code: {} for order: {}, treating as failed", statusCode, orderCode);
+                handleFailedPaymentWebhook(transaction, orderCode);
+            }
+        } catch (Exception e) {
+            log.error("Error processing payment webhook for order: {}", orderCode, e);
+            throw e;
+        }
+    }
+
+    private void handleSuccessfulPaymentWebhook(Transaction transaction, Long orderCode) {
+        try {
+            log.info("Processing successful payment webhook for order: {} with transaction ID: {}", 
+                orderCode, transaction.getId());
+
+            if (transaction.isPaid()) {
+                log.info("Transaction {} is already marked as paid, skipping processing", transaction.getId());
+                return;
+            }
+
+            transaction = transactionService.markTransactionAsPaid(orderCode, PayOSConstants.DEFAULT_PAYMENT_PROVIDER);
+            log.info("Transaction {} marked as paid successfully", transaction.getId());
+
+            if (transaction.getSubscriptionId() != null) {
+                if (transaction.getType() == Transaction.TransactionType.SUBSCRIPTION_PAYMENT) {
+                    log.info("Activating subscription: {} for transaction: {}", 
+                        transaction.getSubscriptionId(), transaction.getId());
+                    
+                    try {
+                        subscriptionService.activateSubscription(transaction.getSubscriptionId());
+                        log.info("Subscription {} activated successfully", transaction.getSubscriptionId());
+                    } catch (Exception e) {
+                        log.error("Failed to activate subscription {} for paid transaction {}. Manual intervention may be required.", 
+                            transaction.getSubscriptionId(), transaction.getId(), e);
+                    }
+                } else if (transaction.getType() == Transaction.TransactionType.SUBSCRIPTION_RENEWAL) {
+                    log.info("Completing renewal of subscription: {} for transaction: {}",
+                        transaction.getSubscriptionId(), transaction.getId());
+
+                    try {
+                        subscriptionService.completeRenewal(transaction.getSubscriptionId());
+                    } catch (Exception e) {
+                        log.error("Failed to renew subscription {} for paid transaction {}. Manual intervention may be required.",
+                            transaction.getSubscriptionId(), transaction.getId(), e);
+                    }
+                } else if (transaction.getType() == Transaction.TransactionType.SUBSCRIPTION_UPGRADE) {
+                    log.info("Processing subscription upgrade: {} for transaction: {}", 
+                        transaction.getSubscriptionId(), transaction.getId());
+                    
+                    try {
+                        processUpgradePaymentConfirmation(transaction);
+                        log.info("Subscription upgrade {} processed successfully", transaction.getSubscriptionId());
+                    } catch (Exception e) {
+                        log.error("Failed to process subscription upgrade {} for paid transaction {}. Manual intervention may be required.", 
+                            transaction.getSubscriptionId(), transaction.getId(), e);
+                    }
+                }
+            }
+
+            sendPaymentSuccessEmail(transaction);
+            
+            log.info("Successful payment webhook processing completed for order: {}", orderCode);
+            
+        } catch (IllegalStateException e) {
+            log.warn("Transaction {} is already in final state: {}", orderCode, e.getMessage());
+            // Không cần fail webhook nếu transaction đã được xử lý
+        } catch (Exception e) {
+            log.error("Error processing successful payment webhook for order: {}", orderCode, e);
+            throw e;
+        }
+    }
+
+    private void handleCancelledPaymentWebhook(Transaction transaction, Long orderCode) {
+        try {
+            log.info("Processing cancelled payment webhook for order: {}", orderCode);
+            
+            if (transaction.isCancelled()) {
+                log.info("Transaction {} is already cancelled", transaction.getId());
+                return;
+            }
+            
+            transactionService.markTransactionAsCancelled(orderCode);
+            log.info("Transaction {} marked as cancelled", transaction.getId());
+            
+        } catch (IllegalStateException e) {
+            log.warn("Transaction {} is already in final state: {}", orderCode, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing cancelled payment webhook for order: {}", orderCode, e);
+            throw e;
+        }
+    }
+
+    private void handleFailedPaymentWebhook(Transaction transaction, Long orderCode) {
+        try {
+            log.info("Processing failed payment webhook for order: {}", orderCode);
+            
+            if (transaction.isFailed()) {
+                log.info("Transaction {} is already marked as failed", transaction.getId());
+                return;
+            }
+            
+            transactionService.markTransactionAsFailed(orderCode);
+            log.info("Transaction {} marked as failed", transaction.getId());
+            
+        } catch (IllegalStateException e) {
+            log.warn("Transaction {} is already in final state: {}", orderCode, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing failed payment webhook for order: {}", orderCode, e);
+            throw e;
+        }
+    }
+
+
+    private void handlePendingPaymentWebhook(Transaction transaction, Long orderCode) {
+        try {
+            log.info("Processing pending payment webhook for order: {}", orderCode);
+            
+            // Transaction đã ở trạng thái PENDING từ khi tạo, không cần cập nhật gì
+            log.info("Transaction {} remains in pending status", transaction.getId());
+            
+        } catch (Exception e) {
+            log.error("Error processing pending payment webhook for order: {}", orderCode, e);
+            throw e;
+        }
+    }
+
+    private void sendPaymentSuccessEmail(Transaction transaction) {
+        try {
+            Optional<UserDto> user = userService.findById(transaction.getUserId());
+            if (user.isEmpty()) {
+                log.warn("User not found for transaction {}, skipping email notification", transaction.getId());
+                return;
+            }
+            
+            if (transaction.getSubscriptionId() != null) {
+                log.info("Subscription confirmation email will be sent by subscription service for transaction {}", transaction.getId());
+            } else {
+                log.info("Payment confirmation email would be sent for transaction {} to user {}", 
+                    transaction.getId(), user.get().getEmail());
+                // emailService.sendPaymentConfirmation(user, transaction);
+            }
+        } catch (Exception e) {
+            log.error("Failed to send payment success email for transaction {}. User will not receive email notification.", 
+                transaction.getId(), e);
+        }
+    }
+
+    /**
+     * Process upgrade payment confirmation and apply subscription upgrade
+     */
+    private void processUpgradePaymentConfirmation(Transaction transaction) {
+        try {
+            log.info("Processing upgrade payment confirmation for transaction: {}", transaction.getId());
+            
+            // Extract upgrade details from transaction description
+            String description = transaction.getDescription();
+            if (description == null || !description.contains("from") || !description.contains("to")) {
+                throw new IllegalStateException("Transaction description doesn't contain upgrade information");
+            }
+            
+            // Parse tier information from description like "Upgrade from BASIC to PREMIUM"
+            String[] parts = description.split(" ");
+            String currentTierStr = null;
+            String newTierStr = null;
+            
+            for (int i = 0; i < parts.length - 2; i++) {
+                if ("from".equals(parts[i]) && i + 1 < parts.length) {
+                    currentTierStr = parts[i + 1];
+                }
+                if ("to".equals(parts[i]) && i + 1 < parts.length) {
+                    newTierStr = parts[i + 1];
+                }
+            }
+            
+            if (currentTierStr == null || newTierStr == null) {
+                throw new IllegalStateException("Upgrade tier information is missing from transaction metadata");
+            }
+            
+            // Create upgrade request
+            org.kh.neuralpix.dto.request.SubscriptionUpgradeDto upgradeRequest = 
+                new org.kh.neuralpix.dto.request.SubscriptionUpgradeDto();
+            upgradeRequest.setNewTier(org.kh.neuralpix.model.enums.SubscriptionTier.valueOf(newTierStr));
+            upgradeRequest.setReason("Payment confirmed upgrade");
+            upgradeRequest.setUpgradeImmediately(true);
+            upgradeRequest.setPaymentOrderCode(transaction.getOrderCode());
+            
+            // Apply the subscription upgrade
+            subscriptionService.upgradeSubscription(transaction.getSubscriptionId(), upgradeRequest);
+            
+            log.info("Subscription upgrade applied successfully for transaction: {} - {} to {}", 
+                transaction.getId(), currentTierStr, newTierStr);
+                
+        } catch (Exception e) {
+            log.error("Failed to process upgrade payment confirmation for transaction: {}", transaction.getId(), e);
+            throw e;
+        }
+    }
+}
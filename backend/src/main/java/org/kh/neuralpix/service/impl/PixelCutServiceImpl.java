@@ -5,8 +5,11 @@ import org.kh.neuralpix.dto.pixelcut.PixelCutImageGenerationRequest;
 import org.kh.neuralpix.dto.pixelcut.PixelCutImageGenerationResponse;
 import org.kh.neuralpix.model.Prompt;
 import org.kh.neuralpix.service.PixelCutService;
-import org.kh.neuralpix.service.CloudinaryService;
-import org.kh.neuralpix.service.ProcessedImageService;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.ImageProbeService;
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+import org.kh.neuralpix.service.OperationRecorderService;
+import org.kh.neuralpix.service.UploadDedupService;
 import org.kh.neuralpix.model.ProcessedImage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,10 +27,13 @@ import okhttp3.Response;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import javax.imageio.ImageIO;
@@ -38,6 +44,9 @@ public class PixelCutServiceImpl implements PixelCutService {
 
     private static final Logger logger = LoggerFactory.getLogger(PixelCutServiceImpl.class);
 
+    // Input formats PixelCut accepts; anything else is converted to PNG first
+    private static final Set<String> SUPPORTED_FORMATS = Set.of("png", "jpeg", "webp");
+
     @Value("${pixelcut.api-key}")
     private String apiKey;
 
@@ -47,15 +56,22 @@ public class PixelCutServiceImpl implements PixelCutService {
     @Value("${pixelcut.timeout:30000}")
     private int timeout;
 
+    // Inputs above this are refused before any provider call (default 25 megapixels)
+    @Value("${pixelcut.max-input-pixels:25000000}")
+    private long maxInputPixels;
+
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private OkHttpClient okHttpClient;
 
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private OperationRecorderService operationRecorderService;
 
     @Autowired
-    private ProcessedImageService processedImageService;
+    private ImageProbeService imageProbeService;
+
+    @Autowired
+    private UploadDedupService uploadDedupService;
 
     public PixelCutServiceImpl() {
         this.restTemplate = new RestTemplate();
@@ -118,6 +134,11 @@ public class PixelCutServiceImpl implements PixelCutService {
 
     @Override
     public CompletableFuture<PixelCutImageGenerationResponse> upScale(PixelCutImageGenerationRequest request) {
+        return upScaleFor(request, null);
+    }
+
+    private CompletableFuture<PixelCutImageGenerationResponse> upScaleFor(PixelCutImageGenerationRequest request, Long userId) {
+        AtomicReference<ImageHandle> resolvedSource = new AtomicReference<>();
         return CompletableFuture.supplyAsync(() -> {
             try {
                 logger.info("Upscaling image using PixelCut.ai");
@@ -132,15 +153,19 @@ public class PixelCutServiceImpl implements PixelCutService {
                 
                 // Convert to supported format if needed
                 imageUrl = convertToSupportedFormat(imageUrl);
+                String sizeError = checkInputSize(imageUrl);
+                if (sizeError != null) {
+                    return PixelCutImageGenerationResponse.builder()
+                        .success(false)
+                        .errorMessage(sizeError)
+                        .build();
+                }
 
                 OkHttpClient client = getOkHttpClient();
                 
-                // For base64 images, upload to Cloudinary first
-                if (imageUrl.startsWith("data:image/")) {
-                    logger.info("Uploading base64 image to Cloudinary for upscaling");
-                    String cloudUrl = cloudinaryService.uploadImageFromBase64(imageUrl).join();
-                    imageUrl = cloudUrl; // Use Cloudinary URL instead of base64
-                }
+                // For base64 images, upload to Cloudinary once (or reuse the user's earlier upload); the handle travels with the response
+                ImageHandle sourceImage = resolveSourceImage(imageUrl, "upscaling", userId, resolvedSource);
+                imageUrl = sourceImage.url();
 
                 // Always send as JSON with image_url parameter
                 logger.info("Processing image URL for upscaling: {}", imageUrl);
@@ -197,6 +222,7 @@ public class PixelCutServiceImpl implements PixelCutService {
                                 PixelCutImageGenerationResponse result = PixelCutImageGenerationResponse.builder()
                                     .success(true)
                                     .imageUrls(List.of(resultUrl))
+                                    .sourceImage(sourceImage)
                                     .build();
                                 logger.info("Successfully upscaled image");
                                 return result;
@@ -230,53 +256,78 @@ public class PixelCutServiceImpl implements PixelCutService {
                     .errorMessage("Failed to upscale image: " + e.getMessage())
                     .build();
             }
-        });
+        }).thenApply(response -> withSourceImage(response, resolvedSource.get()));
     }
 
-    private CompletableFuture<String> ensureDirectImageUrl(String imageUrl) {
-        if (imageUrl == null || imageUrl.trim().isEmpty()) {
-            return CompletableFuture.completedFuture(null);
-        }
-
-        // If it's already a direct URL (http/https), use it
-        if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
-            return CompletableFuture.completedFuture(imageUrl);
-        }
-
-        // If it's base64, upload to Cloudinary first
+    private ImageHandle resolveSourceImage(String imageUrl, String purpose, Long userId,
+                                           AtomicReference<ImageHandle> resolvedSource) {
         if (imageUrl.startsWith("data:image/")) {
-            return cloudinaryService.uploadImageFromBase64(imageUrl);
+            logger.info("Uploading base64 image to Cloudinary for {}", purpose);
+            ImageHandle uploaded = uploadDedupService.upload(userId, imageUrl).join();
+            resolvedSource.set(uploaded);
+            return uploaded;
         }
+        // Remote inputs were probed when validated; the probe cache answers here
+        Optional<ImageInfo> info = imageProbeService.probe(imageUrl);
+        ImageHandle remote = info.map(i -> new ImageHandle(imageUrl, null, null, null, null, i.width(), i.height(), i.format()))
+                .orElseGet(() -> ImageHandle.ofUrl(imageUrl));
+        resolvedSource.set(remote);
+        return remote;
+    }
 
-        // Default case - try to use as is
-        return CompletableFuture.completedFuture(imageUrl);
+    /**
+     * Attach the resolved input to responses that left it out, failures included, so the
+     * recorder still references an input that was uploaded for the call
+     */
+    private static PixelCutImageGenerationResponse withSourceImage(PixelCutImageGenerationResponse response,
+                                                                   ImageHandle sourceImage) {
+        if (response != null && response.getSourceImage() == null) {
+            response.setSourceImage(sourceImage);
+        }
+        return response;
     }
 
-    private void saveProcessedImageRecord(Long userId, String originalUrl, String processedUrl, String imgurUrl, 
-                                        ProcessedImage.OperationType operationType, PixelCutImageGenerationRequest request, 
-                                        boolean success, String errorMessage, long processingTime) {
+    /**
+     * Hand the finished operation to the recorder, which writes its history rows and usage in
+     * a later batch. Must not throw: it runs in whenComplete of the caller's future.
+     */
+    private void recordOperation(Long userId, PixelCutImageGenerationRequest request,
+                                 PixelCutImageGenerationResponse response, Throwable throwable,
+                                 ProcessedImage.OperationType operationType, long processingTime) {
         try {
-            ProcessedImage processedImage = ProcessedImage.builder()
+            String resultUrl = null;
+            Integer fileSize = null;
+            if (response != null && response.getImageUrls() != null && !response.getImageUrls().isEmpty()) {
+                resultUrl = response.getImageUrls().get(0);
+            } else if (response != null && response.getImages() != null && !response.getImages().isEmpty()) {
+                resultUrl = response.getImages().get(0).getImageUrl();
+                fileSize = response.getImages().get(0).getFileSize();
+            }
+            // Set by the operation once the input was resolved, whether or not the call succeeded; never re-uploaded here
+            ImageHandle sourceImage = response != null ? response.getSourceImage() : null;
+            String originalUrl = request.getImageUrl();
+            if (originalUrl != null && originalUrl.startsWith("data:")) {
+                // Never store inline image data, only where it was uploaded to
+                originalUrl = sourceImage != null ? sourceImage.url() : null;
+            }
+
+            operationRecorderService.record(OperationRecorderService.OperationCompleted.builder()
                 .userId(userId)
-                .originalUrl(originalUrl)
-                .processedUrl(processedUrl)
-                .imgurUrl(imgurUrl) // Can rename this to cloudinaryUrl later
                 .operationType(operationType)
+                .originalUrl(originalUrl)
+                .resultUrl(resultUrl)
+                .sourceImage(sourceImage)
                 .prompt(request.getPrompt())
                 .style(request.getStyle())
                 .quality(request.getQuality())
                 .scaleFactor(request.getScale() != null ? request.getScale().doubleValue() : null)
+                .fileSize(fileSize)
+                .success(throwable == null && response != null && response.isSuccess())
+                .errorMessage(throwable != null ? throwable.getMessage() : (response != null ? response.getErrorMessage() : null))
                 .processingTimeMs(processingTime)
-                .success(success)
-                .errorMessage(errorMessage)
-                .isPublic(false)
-                .isFavorite(false)
-                .viewCount(0)
-                .build();
-
-            processedImageService.saveProcessedImage(processedImage);
+                .build());
         } catch (Exception e) {
-            logger.warn("Failed to save processed image record: {}", e.getMessage());
+            logger.warn("Failed to record {} operation: {}", operationType, e.getMessage());
             // Don't throw exception - this shouldn't break the main operation
         }
     }
@@ -286,25 +337,20 @@ public class PixelCutServiceImpl implements PixelCutService {
             logger.warn("Image URL is null or empty");
             return false;
         }
-        
+
+        // The header tells the real format, whatever the MIME type or extension claims
+        Optional<ImageInfo> info = imageProbeService.probe(imageUrl);
+        if (info.isPresent()) {
+            logger.debug("Probed image format: {} {}x{}", info.get().format(), info.get().width(), info.get().height());
+            return SUPPORTED_FORMATS.contains(info.get().format());
+        }
+
         if (imageUrl.startsWith("data:image/")) {
-            // Extract MIME type from data URL
-            try {
-                String mimeType = imageUrl.substring(5, imageUrl.indexOf(';'));
-                logger.debug("Detected MIME type: {}", mimeType);
-                boolean isValid = mimeType.equals("image/jpeg") || mimeType.equals("image/png") || 
-                       mimeType.equals("image/jpg") || mimeType.equals("image/webp");
-                if (!isValid) {
-                    logger.warn("Unsupported MIME type: {}", mimeType);
-                }
-                return isValid;
-            } catch (Exception e) {
-                logger.error("Failed to extract MIME type from data URL: {}", e.getMessage());
-                return false;
-            }
+            logger.warn("Unsupported image data in data URL");
+            return false;
         }
         
-        // For regular URLs, check file extension
+        // Remote image could not be probed: fall back to the file extension
         String lowerUrl = imageUrl.toLowerCase();
         boolean isValid = lowerUrl.endsWith(".jpg") || lowerUrl.endsWith(".jpeg") || 
                lowerUrl.endsWith(".png") || lowerUrl.endsWith(".webp");
@@ -316,6 +362,20 @@ public class PixelCutServiceImpl implements PixelCutService {
         return isValid;
     }
 
+    /**
+     * Error message when the input is larger than the provider calls are worth, null otherwise
+     */
+    private String checkInputSize(String imageUrl) {
+        Optional<ImageInfo> info = imageProbeService.probe(imageUrl);
+        if (info.isPresent() && info.get().pixels() > maxInputPixels) {
+            logger.warn("Rejecting {}x{} input image, limit is {} pixels",
+                    info.get().width(), info.get().height(), maxInputPixels);
+            return "Image is too large: " + info.get().width() + "x" + info.get().height()
+                    + " exceeds " + maxInputPixels + " pixels";
+        }
+        return null;
+    }
+
     private String convertToSupportedFormat(String imageUrl) {
         if (isValidImageFormat(imageUrl)) {
             return imageUrl;
@@ -358,6 +418,11 @@ public class PixelCutServiceImpl implements PixelCutService {
 
     @Override
     public CompletableFuture<PixelCutImageGenerationResponse> removeBackground(PixelCutImageGenerationRequest request) {
+        return removeBackgroundFor(request, null);
+    }
+
+    private CompletableFuture<PixelCutImageGenerationResponse> removeBackgroundFor(PixelCutImageGenerationRequest request, Long userId) {
+        AtomicReference<ImageHandle> resolvedSource = new AtomicReference<>();
         return CompletableFuture.supplyAsync(() -> {
             try {
                 logger.info("Removing background from image using PixelCut.ai");
@@ -372,17 +437,20 @@ public class PixelCutServiceImpl implements PixelCutService {
                 
                 // Convert to supported format if needed
                 imageUrl = convertToSupportedFormat(imageUrl);
+                String sizeError = checkInputSize(imageUrl);
+                if (sizeError != null) {
+                    return PixelCutImageGenerationResponse.builder()
+                        .success(false)
+                        .errorMessage(sizeError)
+                        .build();
+                }
 
                 OkHttpClient client = getOkHttpClient();
                 RequestBody body;
 
-                // For base64 images, convert to supported format but keep as base64
-                // For URL images, send directly as URL
-                if (imageUrl.startsWith("data:image/")) {
-                    logger.info("Uploading base64 image to Cloudinary for background removal");
-                    String cloudUrl = cloudinaryService.uploadImageFromBase64(imageUrl).join();
-                    imageUrl = cloudUrl; // Use Cloudinary URL instead of base64
-                }
+                // For base64 images, upload to Cloudinary once (or reuse the user's earlier upload); the handle travels with the response
+                ImageHandle sourceImage = resolveSourceImage(imageUrl, "background removal", userId, resolvedSource);
+                imageUrl = sourceImage.url();
 
                 // Always send as JSON with image_url parameter
                 logger.info("Processing image URL for background removal: {}", imageUrl);
@@ -426,6 +494,7 @@ public class PixelCutServiceImpl implements PixelCutService {
                                 PixelCutImageGenerationResponse result = PixelCutImageGenerationResponse.builder()
                                     .success(true)
                                     .imageUrls(List.of(resultUrl))
+                                    .sourceImage(sourceImage)
                                     .build();
                                 logger.info("Successfully removed background from image");
                                 return result;
@@ -463,10 +532,15 @@ public class PixelCutServiceImpl implements PixelCutService {
                     .errorMessage("Failed to remove background: " + e.getMessage())
                     .build();
             }
-        });
+        }).thenApply(response -> withSourceImage(response, resolvedSource.get()));
     }
     @Override
     public CompletableFuture<PixelCutImageGenerationResponse> generateBackground(PixelCutImageGenerationRequest request) {
+        return generateBackgroundFor(request, null);
+    }
+
+    private CompletableFuture<PixelCutImageGenerationResponse> generateBackgroundFor(PixelCutImageGenerationRequest request, Long userId) {
+        AtomicReference<ImageHandle> resolvedSource = new AtomicReference<>();
         return CompletableFuture.supplyAsync(() -> {
             try {
                 logger.info("Generating background for image using PixelCut.ai with prompt: {}", request.getPrompt());
@@ -481,15 +555,19 @@ public class PixelCutServiceImpl implements PixelCutService {
                 
                 // Convert to supported format if needed
                 imageUrl = convertToSupportedFormat(imageUrl);
+                String sizeError = checkInputSize(imageUrl);
+                if (sizeError != null) {
+                    return PixelCutImageGenerationResponse.builder()
+                        .success(false)
+                        .errorMessage(sizeError)
+                        .build();
+                }
 
                 OkHttpClient client = getOkHttpClient();
                 
-                // For base64 images, upload to Cloudinary first
-                if (imageUrl.startsWith("data:image/")) {
-                    logger.info("Uploading base64 image to Cloudinary for background generation");
-                    String cloudUrl = cloudinaryService.uploadImageFromBase64(imageUrl).join();
-                    imageUrl = cloudUrl; // Use Cloudinary URL instead of base64
-                }
+                // For base64 images, upload to Cloudinary once (or reuse the user's earlier upload); the handle travels with the response
+                ImageHandle sourceImage = resolveSourceImage(imageUrl, "background generation", userId, resolvedSource);
+                imageUrl = sourceImage.url();
 
                 // Always send as JSON with image_url parameter
                 logger.info("Processing image URL for background generation: {}", imageUrl);
@@ -535,6 +613,7 @@ public class PixelCutServiceImpl implements PixelCutService {
                                 PixelCutImageGenerationResponse result = PixelCutImageGenerationResponse.builder()
                                     .success(true)
                                     .imageUrls(List.of(resultUrl))
+                                    .sourceImage(sourceImage)
                                     .build();
                                 logger.info("Successfully generated background for image");
                                 return result;
@@ -568,7 +647,7 @@ public class PixelCutServiceImpl implements PixelCutService {
                     .errorMessage("Failed to generate background: " + e.getMessage())
                     .build();
             }
-        });
+        }).thenApply(response -> withSourceImage(response, resolvedSource.get()));
     }
 
     @Override
@@ -688,94 +767,33 @@ public class PixelCutServiceImpl implements PixelCutService {
     @Override
     public CompletableFuture<PixelCutImageGenerationResponse> removeBackground(PixelCutImageGenerationRequest request, Long userId) {
         long startTime = System.currentTimeMillis();
-        return removeBackground(request).whenComplete((response, throwable) -> {
+        return removeBackgroundFor(request, userId).whenComplete((response, throwable) -> {
             long processingTime = System.currentTimeMillis() - startTime;
-            String cloudinaryUrl = null;
-            
-            try {
-                // Get the Cloudinary URL from the uploaded image
-                String directImageUrl = ensureDirectImageUrl(request.getImageUrl()).join();
-                if (directImageUrl != null && directImageUrl.contains("cloudinary.com")) {
-                    cloudinaryUrl = directImageUrl;
-                }
-            } catch (Exception e) {
-                logger.warn("Could not determine Cloudinary URL: {}", e.getMessage());
-            }
             
-            saveProcessedImageRecord(
-                userId,
-                request.getImageUrl(),
-                response != null && response.getImageUrls() != null && !response.getImageUrls().isEmpty() 
-                    ? response.getImageUrls().get(0) : null,
-                cloudinaryUrl,
-                ProcessedImage.OperationType.REMOVE_BACKGROUND,
-                request,
-                response != null && response.isSuccess(),
-                throwable != null ? throwable.getMessage() : (response != null ? response.getErrorMessage() : null),
-                processingTime
-            );
+            recordOperation(userId, request, response, throwable,
+                ProcessedImage.OperationType.REMOVE_BACKGROUND, processingTime);
         });
     }
 
     @Override
     public CompletableFuture<PixelCutImageGenerationResponse> generateBackground(PixelCutImageGenerationRequest request, Long userId) {
         long startTime = System.currentTimeMillis();
-        return generateBackground(request).whenComplete((response, throwable) -> {
+        return generateBackgroundFor(request, userId).whenComplete((response, throwable) -> {
             long processingTime = System.currentTimeMillis() - startTime;
-            String cloudinaryUrl = null;
-            
-            try {
-                String directImageUrl = ensureDirectImageUrl(request.getImageUrl()).join();
-                if (directImageUrl != null && directImageUrl.contains("cloudinary.com")) {
-                    cloudinaryUrl = directImageUrl;
-                }
-            } catch (Exception e) {
-                logger.warn("Could not determine Cloudinary URL: {}", e.getMessage());
-            }
             
-            saveProcessedImageRecord(
-                userId,
-                request.getImageUrl(),
-                response != null && response.getImageUrls() != null && !response.getImageUrls().isEmpty() 
-                    ? response.getImageUrls().get(0) : null,
-                cloudinaryUrl,
-                ProcessedImage.OperationType.GENERATE_BACKGROUND,
-                request,
-                response != null && response.isSuccess(),
-                throwable != null ? throwable.getMessage() : (response != null ? response.getErrorMessage() : null),
-                processingTime
-            );
+            recordOperation(userId, request, response, throwable,
+                ProcessedImage.OperationType.GENERATE_BACKGROUND, processingTime);
         });
     }
 
     @Override
     public CompletableFuture<PixelCutImageGenerationResponse> upScale(PixelCutImageGenerationRequest request, Long userId) {
         long startTime = System.currentTimeMillis();
-        return upScale(request).whenComplete((response, throwable) -> {
+        return upScaleFor(request, userId).whenComplete((response, throwable) -> {
             long processingTime = System.currentTimeMillis() - startTime;
-            String cloudinaryUrl = null;
             
-            try {
-                String directImageUrl = ensureDirectImageUrl(request.getImageUrl()).join();
-                if (directImageUrl != null && directImageUrl.contains("cloudinary.com")) {
-                    cloudinaryUrl = directImageUrl;
-                }
-            } catch (Exception e) {
-                logger.warn("Could not determine Cloudinary URL: {}", e.getMessage());
-            }
-            
-            saveProcessedImageRecord(
-                userId,
-                request.getImageUrl(),
-                response != null && response.getImageUrls() != null && !response.getImageUrls().isEmpty() 
-                    ? response.getImageUrls().get(0) : null,
-                cloudinaryUrl,
-                ProcessedImage.OperationType.UPSCALE_IMAGE,
-                request,
-                response != null && response.isSuccess(),
-                throwable != null ? throwable.getMessage() : (response != null ? response.getErrorMessage() : null),
-                processingTime
-            );
+            recordOperation(userId, request, response, throwable,
+                ProcessedImage.OperationType.UPSCALE_IMAGE, processingTime);
         });
     }
 
@@ -785,18 +803,8 @@ public class PixelCutServiceImpl implements PixelCutService {
         return generateImage(request).whenComplete((response, throwable) -> {
             long processingTime = System.currentTimeMillis() - startTime;
             
-            saveProcessedImageRecord(
-                userId,
-                null, // No original image for generation
-                response != null && response.getImageUrls() != null && !response.getImageUrls().isEmpty() 
-                    ? response.getImageUrls().get(0) : null,
-                null, // No Cloudinary upload needed for generation
-                ProcessedImage.OperationType.GENERATE_IMAGE,
-                request,
-                response != null && response.isSuccess(),
-                throwable != null ? throwable.getMessage() : (response != null ? response.getErrorMessage() : null),
-                processingTime
-            );
+            recordOperation(userId, request, response, throwable,
+                ProcessedImage.OperationType.GENERATE_IMAGE, processingTime);
         });
     }
 } 
\ No newline at end of file
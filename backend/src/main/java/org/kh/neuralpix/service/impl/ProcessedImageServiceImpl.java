@@ -1,33 +1,54 @@
 package org.kh.neuralpix.service.impl;
 
 import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.model.SearchDocument;
 import org.kh.neuralpix.repository.ProcessedImageRepository;
+import org.kh.neuralpix.service.EngagementCounterService;
 import org.kh.neuralpix.service.ProcessedImageService;
+import org.kh.neuralpix.service.SearchIndexService;
+import org.kh.neuralpix.service.TrendingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ProcessedImageServiceImpl implements ProcessedImageService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProcessedImageServiceImpl.class);
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
 
     @Autowired
     private ProcessedImageRepository processedImageRepository;
 
+    @Autowired
+    private EngagementCounterService engagementCounterService;
+
+    @Autowired
+    private TrendingService trendingService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
     @Override
     public ProcessedImage saveProcessedImage(ProcessedImage processedImage) {
         try {
             ProcessedImage saved = processedImageRepository.save(processedImage);
+            searchIndexService.indexProcessedImage(saved);
             logger.info("Saved processed image with ID: {} for user: {}", saved.getId(), saved.getUserId());
             return saved;
         } catch (Exception e) {
@@ -39,43 +60,43 @@ public class ProcessedImageServiceImpl implements ProcessedImageService {
     @Override
     @Transactional(readOnly = true)
     public List<ProcessedImage> getUserImages(Long userId) {
-        return processedImageRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        return withPendingViews(processedImageRepository.findByUserIdOrderByCreatedAtDesc(userId));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<ProcessedImage> getUserImages(Long userId, Pageable pageable) {
-        return processedImageRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable);
+        return withPendingViews(processedImageRepository.findByUserIdOrderByCreatedAtDesc(userId, pageable));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ProcessedImage> getUserSuccessfulImages(Long userId) {
-        return processedImageRepository.findByUserIdAndSuccessIsTrueOrderByCreatedAtDesc(userId);
+        return withPendingViews(processedImageRepository.findByUserIdAndSuccessIsTrueOrderByCreatedAtDesc(userId));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<ProcessedImage> getUserSuccessfulImages(Long userId, Pageable pageable) {
-        return processedImageRepository.findByUserIdAndSuccessIsTrueOrderByCreatedAtDesc(userId, pageable);
+        return withPendingViews(processedImageRepository.findByUserIdAndSuccessIsTrueOrderByCreatedAtDesc(userId, pageable));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ProcessedImage> getUserImagesByType(Long userId, ProcessedImage.OperationType operationType) {
-        return processedImageRepository.findByUserIdAndOperationTypeOrderByCreatedAtDesc(userId, operationType);
+        return withPendingViews(processedImageRepository.findByUserIdAndOperationTypeOrderByCreatedAtDesc(userId, operationType));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ProcessedImage> getUserFavorites(Long userId) {
-        return processedImageRepository.findByUserIdAndIsFavoriteTrueOrderByCreatedAtDesc(userId);
+        return withPendingViews(processedImageRepository.findByUserIdAndIsFavoriteTrueOrderByCreatedAtDesc(userId));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<ProcessedImage> findExistingProcessedImage(Long userId, String originalUrl, ProcessedImage.OperationType operationType) {
-        return processedImageRepository.findByUserIdAndOriginalUrlAndOperationType(userId, originalUrl, operationType);
+        return withPendingViews(processedImageRepository.findByUserIdAndOriginalUrlAndOperationType(userId, originalUrl, operationType));
     }
 
     @Override
@@ -93,20 +114,34 @@ public class ProcessedImageServiceImpl implements ProcessedImageService {
     }
 
     @Override
-    public ProcessedImage incrementViewCount(Long imageId) {
-        Optional<ProcessedImage> imageOpt = processedImageRepository.findById(imageId);
-        if (imageOpt.isPresent()) {
-            ProcessedImage image = imageOpt.get();
-            image.setViewCount((image.getViewCount() != null ? image.getViewCount() : 0) + 1);
-            return processedImageRepository.save(image);
-        }
-        throw new RuntimeException("Processed image not found with ID: " + imageId);
+    public void incrementViewCount(Long imageId) {
+        engagementCounterService.increment(EngagementCounterService.Counter.PROCESSED_IMAGE_VIEWS, imageId);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ProcessedImage> searchUserImages(Long userId, String keyword) {
-        return processedImageRepository.searchByKeyword(userId, keyword);
+        return searchUserImages(userId, keyword, PageRequest.of(0, DEFAULT_SEARCH_LIMIT)).getContent();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ProcessedImage> searchUserImages(Long userId, String keyword, Pageable pageable) {
+        Page<Long> ids = searchIndexService.search(userId, SearchDocument.ItemType.PROCESSED_IMAGE, keyword, pageable);
+        if (ids.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        Map<Long, ProcessedImage> byId = processedImageRepository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(ProcessedImage::getId, Function.identity()));
+        List<ProcessedImage> images = new ArrayList<>(ids.getNumberOfElements());
+        for (Long id : ids) {
+            ProcessedImage image = byId.get(id);
+            // Failed items are filtered by the search query; null only if one was removed since
+            if (image != null) {
+                images.add(image);
+            }
+        }
+        return withPendingViews(new PageImpl<>(images, pageable, ids.getTotalElements()));
     }
 
     @Override
@@ -131,13 +166,13 @@ public class ProcessedImageServiceImpl implements ProcessedImageService {
     @Override
     @Transactional(readOnly = true)
     public Page<ProcessedImage> getPublicGallery(Pageable pageable) {
-        return processedImageRepository.findByIsPublicTrueAndSuccessIsTrueOrderByCreatedAtDesc(pageable);
+        return withPendingViews(processedImageRepository.findByIsPublicTrueAndSuccessIsTrueOrderByCreatedAtDesc(pageable));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<ProcessedImage> getPopularImages(Pageable pageable) {
-        return processedImageRepository.findPopularPublicImages(pageable);
+        return withPendingViews(trendingService.getTrendingProcessedImages(pageable));
     }
 
     @Override
@@ -149,12 +184,37 @@ public class ProcessedImageServiceImpl implements ProcessedImageService {
                 throw new RuntimeException("Access denied: Image does not belong to user");
             }
             processedImageRepository.delete(image);
+            searchIndexService.remove(SearchDocument.ItemType.PROCESSED_IMAGE, imageId);
             logger.info("Deleted processed image with ID: {} for user: {}", imageId, userId);
         } else {
             throw new RuntimeException("Processed image not found with ID: " + imageId);
         }
     }
 
+    /**
+     * Add view increments that have not been flushed yet. The column is not updatable,
+     * so changing the loaded entity never writes it back.
+     */
+    private ProcessedImage withPendingViews(ProcessedImage image) {
+        image.setViewCount(engagementCounterService.withPending(
+                EngagementCounterService.Counter.PROCESSED_IMAGE_VIEWS, image.getId(), image.getViewCount()));
+        return image;
+    }
+
+    private List<ProcessedImage> withPendingViews(List<ProcessedImage> images) {
+        images.forEach(this::withPendingViews);
+        return images;
+    }
+
+    private Page<ProcessedImage> withPendingViews(Page<ProcessedImage> page) {
+        page.getContent().forEach(this::withPendingViews);
+        return page;
+    }
+
+    private Optional<ProcessedImage> withPendingViews(Optional<ProcessedImage> image) {
+        return image.map(this::withPendingViews);
+    }
+
     @Override
     public void cleanupFailedProcessing(int daysOld) {
         LocalDateTime beforeDate = LocalDateTime.now().minusDays(daysOld);
@@ -0,0 +1,166 @@
+package org.kh.neuralpix.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+import org.kh.neuralpix.mapper.GeneratedImageMapper;
+import org.kh.neuralpix.repository.GeneratedImageRepository;
+import org.kh.neuralpix.service.PublicGalleryService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Public gallery feed with a read-through window cache. The newest {@code windowSize} public
+ * images are kept as an immutable list; requests that fall inside the window are answered by
+ * slicing it. Deeper pages seek the feed index for ids and load just those rows. The window is
+ * dropped after any gallery change commits and also expires after a short TTL so engagement
+ * counts do not drift far.
+ *
+ * Only one request rebuilds the window at a time; the others wait for it and use its result.
+ * Every window records the gallery generation it was read at, and a window whose generation
+ * was bumped by a change while it was being read is never served from the cache.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PublicGalleryServiceImpl implements PublicGalleryService {
+
+    private final GeneratedImageRepository generatedImageRepository;
+    private final GeneratedImageMapper generatedImageMapper;
+
+    @Value("${app.gallery.cache-window:200}")
+    private int windowSize = 200;
+
+    @Value("${app.gallery.cache-ttl-seconds:30}")
+    private long cacheTtlSeconds = 30;
+
+    private volatile FeedWindow window;
+    // Bumped by every gallery change
+    private final AtomicLong generation = new AtomicLong();
+    private final Object rebuildLock = new Object();
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<GeneratedImageResponseDto> getFeed(LocalDateTime cursorCreatedAt, Long cursorId, int limit) {
+        FeedWindow current = currentWindow();
+
+        int start = 0;
+        if (cursorCreatedAt != null && cursorId != null) {
+            start = current.indexAfter(cursorCreatedAt, cursorId);
+        }
+        if (start >= 0 && (start + limit <= current.items.size() || current.complete)) {
+            int end = Math.min(current.items.size(), start + limit);
+            return start >= end ? List.of() : current.items.subList(start, end);
+        }
+
+        // Outside the cached window
+        List<Long> ids = cursorCreatedAt == null || cursorId == null
+                ? generatedImageRepository.findPublicFeedIds(PageRequest.of(0, limit))
+                : generatedImageRepository.findPublicFeedIdsAfter(cursorCreatedAt, cursorId, PageRequest.of(0, limit));
+        return load(ids);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGalleryChanged(GalleryChangedEvent event) {
+        generation.incrementAndGet();
+        window = null;
+        log.debug("Public gallery window invalidated by image {}", event.imageId());
+    }
+
+    private FeedWindow currentWindow() {
+        FeedWindow current = window;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (rebuildLock) {
+            // Another request may have rebuilt it while this one waited
+            current = window;
+            if (isFresh(current)) {
+                return current;
+            }
+            long readAt = generation.get();
+            List<Long> ids = generatedImageRepository.findPublicFeedIds(PageRequest.of(0, windowSize));
+            current = new FeedWindow(List.copyOf(load(ids)), ids.size() < windowSize, LocalDateTime.now(), readAt);
+            window = current;
+            return current;
+        }
+    }
+
+    private boolean isFresh(FeedWindow current) {
+        return current != null
+                && current.generation == generation.get()
+                && !current.builtAt.isBefore(LocalDateTime.now().minusSeconds(cacheTtlSeconds));
+    }
+
+    /**
+     * Load list projections (with the username, in one query) and return them in the order of ids
+     */
+    private List<GeneratedImageResponseDto> load(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, GeneratedImageResponseDto> byId = generatedImageRepository.findListItemsByIdIn(ids).stream()
+                .collect(Collectors.toMap(GeneratedImageResponseDto::getId, Function.identity()));
+        List<GeneratedImageResponseDto> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            GeneratedImageResponseDto image = byId.get(id);
+            if (image != null) {
+                result.add(generatedImageMapper.withPendingCounts(image));
+            }
+        }
+        return result;
+    }
+
+    private static final class FeedWindow {
+
+        private static final Comparator<GeneratedImageResponseDto> FEED_ORDER = Comparator
+                .comparing(GeneratedImageResponseDto::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(GeneratedImageResponseDto::getId, Comparator.reverseOrder());
+
+        final List<GeneratedImageResponseDto> items;
+        // True when the window holds every public image, so any cursor can be answered from it
+        final boolean complete;
+        final LocalDateTime builtAt;
+        // Gallery generation when the read started
+        final long generation;
+
+        FeedWindow(List<GeneratedImageResponseDto> items, boolean complete, LocalDateTime builtAt, long generation) {
+            this.items = items;
+            this.complete = complete;
+            this.builtAt = builtAt;
+            this.generation = generation;
+        }
+
+        /**
+         * Index of the first item after the cursor, or -1 if the cursor is past the end of an incomplete window
+         */
+        int indexAfter(LocalDateTime cursorCreatedAt, Long cursorId) {
+            GeneratedImageResponseDto key = new GeneratedImageResponseDto();
+            key.setCreatedAt(cursorCreatedAt);
+            key.setId(cursorId);
+            int low = 0;
+            int high = items.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (FEED_ORDER.compare(items.get(mid), key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < items.size() || complete ? low : -1;
+        }
+    }
+}
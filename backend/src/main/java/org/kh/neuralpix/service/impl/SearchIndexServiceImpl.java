@@ -0,0 +1,227 @@
+package org.kh.neuralpix.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.model.GeneratedImage;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.model.Prompt;
+import org.kh.neuralpix.model.SearchDocument;
+import org.kh.neuralpix.repository.PromptRepository;
+import org.kh.neuralpix.repository.SearchDocumentRepository;
+import org.kh.neuralpix.service.SearchIndexService;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+
+/**
+ * MySQL FULLTEXT implementation of {@link SearchIndexService}. Every document starts with an
+ * owner token (usr&lt;userId&gt;) that each query requires, so the full-text lookup is narrowed to
+ * the user's own postings instead of matching globally and filtering afterwards. Query words
+ * are required prefixes (+word*) and results are ordered by MATCH relevance.
+ */
+@Service
+@Slf4j
+public class SearchIndexServiceImpl implements SearchIndexService {
+
+    private static final String FULLTEXT_INDEX = "ft_search_documents_content";
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // InnoDB never indexes tokens shorter than innodb_ft_min_token_size (3) or its default
+    // stopwords; a required term for one of them would match nothing, so they are dropped
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final Set<String> STOPWORDS = Set.of("about", "are", "com", "for", "from", "how", "that",
+            "the", "this", "was", "what", "when", "where", "who", "will", "with", "und", "www");
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MAX_CONTENT_LENGTH = 16000;
+    private static final String UPSERT_SQL =
+            "INSERT INTO search_documents (item_type, item_id, user_id, content, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE user_id = VALUES(user_id), content = VALUES(content), updated_at = VALUES(updated_at)";
+
+    private final SearchDocumentRepository documentRepository;
+    private final PromptRepository promptRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public SearchIndexServiceImpl(SearchDocumentRepository documentRepository,
+                                  PromptRepository promptRepository,
+                                  JdbcTemplate jdbcTemplate) {
+        this.documentRepository = documentRepository;
+        this.promptRepository = promptRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Create the FULLTEXT index if it is missing and index rows written before search existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (documentRepository.countIndexes(FULLTEXT_INDEX) == 0) {
+                jdbcTemplate.execute("ALTER TABLE search_documents ADD FULLTEXT INDEX " + FULLTEXT_INDEX + " (content)");
+                log.info("Created full-text index {}", FULLTEXT_INDEX);
+            }
+            int generated = documentRepository.backfillGeneratedImages();
+            int processed = documentRepository.backfillProcessedImages();
+            if (generated > 0 || processed > 0) {
+                log.info("Indexed {} generated and {} processed images for search", generated, processed);
+            }
+        } catch (Exception e) {
+            log.error("Failed to initialize search index", e);
+        }
+    }
+
+    @Override
+    @Transactional
+    public void indexGeneratedImage(GeneratedImage image, String... extraTerms) {
+        upsert(SearchDocument.ItemType.GENERATED_IMAGE, image.getId(), image.getUserId(),
+                generatedImageContent(image, extraTerms), image.getCreatedAt());
+    }
+
+    @Override
+    @Transactional
+    public void indexProcessedImage(ProcessedImage image) {
+        upsert(SearchDocument.ItemType.PROCESSED_IMAGE, image.getId(), image.getUserId(),
+                processedImageContent(image), image.getCreatedAt());
+    }
+
+    @Override
+    @Transactional
+    public void indexBatch(List<ProcessedImage> processedImages, List<GeneratedImageTerms> generatedImages) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> args = new ArrayList<>(processedImages.size() + generatedImages.size());
+        for (ProcessedImage image : processedImages) {
+            addRow(args, SearchDocument.ItemType.PROCESSED_IMAGE, image.getId(), image.getUserId(),
+                    processedImageContent(image), image.getCreatedAt(), now);
+        }
+        for (GeneratedImageTerms entry : generatedImages) {
+            GeneratedImage image = entry.image();
+            addRow(args, SearchDocument.ItemType.GENERATED_IMAGE, image.getId(), image.getUserId(),
+                    generatedImageContent(image, entry.extraTerms()), image.getCreatedAt(), now);
+        }
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+        }
+    }
+
+    private StringJoiner generatedImageContent(GeneratedImage image, String... extraTerms) {
+        StringJoiner content = ownerContent(image.getUserId());
+        if (image.getPromptId() != null) {
+            Prompt prompt = image.getPrompt() != null ? image.getPrompt()
+                    : promptRepository.findById(image.getPromptId()).orElse(null);
+            if (prompt != null) {
+                append(content, prompt.getPromptText());
+                append(content, prompt.getStyle());
+                append(content, prompt.getModel());
+            }
+        }
+        for (String term : extraTerms) {
+            append(content, term);
+        }
+        return content;
+    }
+
+    private static StringJoiner processedImageContent(ProcessedImage image) {
+        StringJoiner content = ownerContent(image.getUserId());
+        append(content, image.getPrompt());
+        append(content, image.getTags());
+        append(content, image.getStyle());
+        if (image.getOperationType() != null) {
+            // Both REMOVE_BACKGROUND and "remove background" should match
+            append(content, image.getOperationType().name());
+            append(content, image.getOperationType().name().replace('_', ' '));
+        }
+        return content;
+    }
+
+    @Override
+    @Transactional
+    public void remove(SearchDocument.ItemType itemType, Long itemId) {
+        documentRepository.deleteByItem(itemType, itemId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Long> search(Long userId, SearchDocument.ItemType itemType, String query, Pageable pageable) {
+        String booleanQuery = toBooleanQuery(userId, query);
+        if (booleanQuery == null) {
+            return Page.empty(pageable);
+        }
+        List<Long> ids = documentRepository.search(itemType.name(), userId, booleanQuery,
+                pageable.getPageSize(), pageable.getOffset());
+        // The count query only runs when the page alone cannot tell the total
+        return PageableExecutionUtils.getPage(ids, pageable,
+                () -> documentRepository.countMatches(itemType.name(), userId, booleanQuery));
+    }
+
+    /**
+     * Boolean-mode query requiring the owner token and every indexable word as a prefix, or null
+     * when the input has no indexable words. Operator characters never reach MySQL.
+     */
+    static String toBooleanQuery(Long userId, String query) {
+        if (query == null) {
+            return null;
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : NON_WORD.split(query.toLowerCase(Locale.ROOT))) {
+            if (word.length() >= MIN_WORD_LENGTH && !STOPWORDS.contains(word) && words.size() < MAX_QUERY_WORDS) {
+                words.add(word);
+            }
+        }
+        if (words.isEmpty()) {
+            return null;
+        }
+        StringBuilder booleanQuery = new StringBuilder("+usr").append(userId);
+        for (String word : words) {
+            booleanQuery.append(" +").append(word).append('*');
+        }
+        return booleanQuery.toString();
+    }
+
+    private static StringJoiner ownerContent(Long userId) {
+        StringJoiner content = new StringJoiner(" ");
+        content.add("usr" + userId);
+        return content;
+    }
+
+    private static void append(StringJoiner content, String value) {
+        if (value != null && !value.isBlank()) {
+            content.add(value.trim());
+        }
+    }
+
+    private void upsert(SearchDocument.ItemType itemType, Long itemId, Long userId, StringJoiner content,
+                        LocalDateTime createdAt) {
+        if (itemId == null || userId == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        documentRepository.upsert(itemType.name(), itemId, userId, truncate(content), createdAt != null ? createdAt : now, now);
+    }
+
+    private static void addRow(List<Object[]> args, SearchDocument.ItemType itemType, Long itemId, Long userId,
+                               StringJoiner content, LocalDateTime createdAt, LocalDateTime now) {
+        if (itemId == null || userId == null) {
+            return;
+        }
+        args.add(new Object[]{itemType.name(), itemId, userId, truncate(content),
+                createdAt != null ? createdAt : now, now});
+    }
+
+    private static String truncate(StringJoiner content) {
+        String text = content.toString();
+        return text.length() > MAX_CONTENT_LENGTH ? text.substring(0, MAX_CONTENT_LENGTH) : text;
+    }
+}
@@ -0,0 +1,231 @@
+package org.kh.neuralpix.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.kh.neuralpix.model.SchedulerCheckpoint;
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.repository.SchedulerCheckpointRepository;
+import org.kh.neuralpix.repository.SubscriptionRepository;
+import org.kh.neuralpix.service.SubscriptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Drives subscription renewals and expirations.
+ *
+ * A renewal only asks for the payment: the subscription is held PAST_DUE until the PayOS
+ * webhook confirms it and extends the period. Past due subscriptions are expired once their
+ * period ended more than app.subscriptions.scheduler.past-due-grace-days ago.
+ *
+ * Each job walks the due subscriptions in (dueAt, id) order using the status/date indexes,
+ * bounded by the time the run started. Every chunk is processed in parallel on a small pool,
+ * one transaction per subscription, and the cursor is checkpointed after the chunk so a
+ * restart resumes from the last completed chunk instead of rescanning the month boundary.
+ *
+ * The cursor only spans one pass: once a pass reaches the end it is reset, and the next run
+ * scans from the start again. Processed subscriptions no longer match the due queries, so that
+ * scan finds exactly what is still due: failed renewals and expirations, which are retried, and
+ * rows that became due behind the cursor (a billing date moved back, a status reset to ACTIVE).
+ */
+@Service
+public class SubscriptionLifecycleSchedulerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionLifecycleSchedulerService.class);
+
+    static final String RENEWAL_JOB = "subscription-renewal";
+    static final String EXPIRATION_JOB = "subscription-expiration";
+    static final String PAST_DUE_JOB = "subscription-past-due-expiration";
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final SchedulerCheckpointRepository checkpointRepository;
+    private final SubscriptionService subscriptionService;
+    private final ExecutorService workers;
+    private final String owner;
+
+    @Value("${app.subscriptions.scheduler.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${app.subscriptions.scheduler.lease-minutes:10}")
+    private int leaseMinutes;
+
+    @Value("${app.subscriptions.scheduler.past-due-grace-days:3}")
+    private int pastDueGraceDays;
+
+    public SubscriptionLifecycleSchedulerService(SubscriptionRepository subscriptionRepository,
+                                                 SchedulerCheckpointRepository checkpointRepository,
+                                                 SubscriptionService subscriptionService,
+                                                 @Value("${app.subscriptions.scheduler.concurrency:4}") int concurrency) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.subscriptionService = subscriptionService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+            Thread thread = new Thread(r, "subscription-lifecycle-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.owner = resolveOwner();
+    }
+
+    /**
+     * Process due renewals and expirations every 10 minutes
+     */
+    @Scheduled(cron = "${app.subscriptions.scheduler.cron:0 */10 * * * *}")
+    public void processDueSubscriptions() {
+        LocalDateTime until = LocalDateTime.now();
+        runJob(RENEWAL_JOB, until, cursor -> subscriptionRepository.findDueForRenewal(
+                Subscription.SubscriptionStatus.ACTIVE, until, cursor.getCursorTime(), cursor.getCursorId(),
+                PageRequest.of(0, chunkSize)), subscriptionService::renewSubscription);
+        runJob(EXPIRATION_JOB, until, cursor -> subscriptionRepository.findDueForExpiration(
+                List.of(Subscription.SubscriptionStatus.ACTIVE, Subscription.SubscriptionStatus.CANCELLED),
+                until, cursor.getCursorTime(), cursor.getCursorId(),
+                PageRequest.of(0, chunkSize)), subscriptionService::expireSubscription);
+        LocalDateTime graceEndedBy = until.minusDays(pastDueGraceDays);
+        runJob(PAST_DUE_JOB, until, cursor -> subscriptionRepository.findEndedWithStatus(
+                Subscription.SubscriptionStatus.PAST_DUE, graceEndedBy, cursor.getCursorTime(), cursor.getCursorId(),
+                PageRequest.of(0, chunkSize)), subscriptionService::expireSubscription);
+    }
+
+    int runJob(String jobName, LocalDateTime until,
+               Function<SchedulerCheckpoint, List<Object[]>> nextChunk,
+               Consumer<Long> action) {
+        SchedulerCheckpoint cursor = acquire(jobName);
+        if (cursor == null) {
+            logger.debug("Job {} is running on another instance, skipping", jobName);
+            return 0;
+        }
+
+        long start = System.currentTimeMillis();
+        int processed = 0;
+        int failed = 0;
+        try {
+            List<Object[]> chunk;
+            while (!(chunk = nextChunk.apply(cursor)).isEmpty()) {
+                failed += processChunk(jobName, chunk, action);
+                processed += chunk.size();
+
+                Object[] last = chunk.get(chunk.size() - 1);
+                cursor.setCursorId((Long) last[0]);
+                cursor.setCursorTime((LocalDateTime) last[1]);
+                if (checkpointRepository.saveCursor(jobName, owner, cursor.getCursorTime(), cursor.getCursorId(),
+                        LocalDateTime.now().plusMinutes(leaseMinutes)) == 0) {
+                    logger.warn("Lost lease on job {} after {} subscriptions, stopping", jobName, processed);
+                    return processed;
+                }
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+            }
+            // Start the next run from the beginning so failed and newly due rows behind the cursor are found
+            checkpointRepository.saveCursor(jobName, owner, EPOCH, 0L, LocalDateTime.now().plusMinutes(leaseMinutes));
+        } catch (Exception e) {
+            logger.error("Job {} stopped after {} subscriptions, will resume from checkpoint", jobName, processed, e);
+        } finally {
+            checkpointRepository.release(jobName, owner);
+        }
+
+        if (processed > 0) {
+            logger.info("Job {} processed {} subscriptions due by {} ({} failed) in {} ms",
+                    jobName, processed, until, failed, System.currentTimeMillis() - start);
+        }
+        return processed;
+    }
+
+    private int processChunk(String jobName, List<Object[]> chunk, Consumer<Long> action) throws InterruptedException {
+        List<Future<Boolean>> results = new ArrayList<>(chunk.size());
+        for (Object[] row : chunk) {
+            Long subscriptionId = (Long) row[0];
+            results.add(workers.submit(() -> {
+                try {
+                    action.accept(subscriptionId);
+                    return true;
+                } catch (Exception e) {
+                    // Still due, so the next pass retries it
+                    logger.error("Job {} failed for subscription {}", jobName, subscriptionId, e);
+                    return false;
+                }
+            }));
+        }
+
+        int failed = 0;
+        for (Future<Boolean> result : results) {
+            try {
+                if (!result.get()) {
+                    failed++;
+                }
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Take the job lease and return the stored cursor, or null if another instance holds it
+     */
+    private SchedulerCheckpoint acquire(String jobName) {
+        if (!checkpointRepository.existsById(jobName)) {
+            try {
+                checkpointRepository.saveAndFlush(SchedulerCheckpoint.builder()
+                        .jobName(jobName)
+                        .cursorTime(EPOCH)
+                        .cursorId(0L)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Created concurrently by another instance
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (checkpointRepository.tryAcquire(jobName, owner, now, now.plusMinutes(leaseMinutes)) == 0) {
+            return null;
+        }
+
+        SchedulerCheckpoint checkpoint = checkpointRepository.findById(jobName).orElseThrow();
+        if (checkpoint.getCursorTime() == null) {
+            checkpoint.setCursorTime(EPOCH);
+        }
+        if (checkpoint.getCursorId() == null) {
+            checkpoint.setCursorId(0L);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Lease owner name for this instance, unique across restarts on the same host
+     */
+    static String resolveOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String owner = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        return owner.length() > 100 ? owner.substring(owner.length() - 100) : owner;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
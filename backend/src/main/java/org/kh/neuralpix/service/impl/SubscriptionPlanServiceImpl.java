@@ -8,23 +8,47 @@ import org.kh.neuralpix.model.enums.SubscriptionTier;
 import org.kh.neuralpix.repository.SubscriptionPlanRepository;
 import org.kh.neuralpix.service.SubscriptionPlanService;
 import org.kh.neuralpix.utils.EntityMerge;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+/**
+ * Plans change rarely but are read on every quota check and plans-page view, so reads are
+ * served from an immutable {@link PlanCatalog} snapshot. Writes reload the catalog after
+ * commit and swap it in atomically; a periodic check picks up changes made by other instances.
+ * The snapshot holds its own copies of the plans and every read returns fresh copies, so
+ * callers may modify what they get without affecting other readers.
+ */
 @Service
 public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionPlanServiceImpl.class);
+
     private final SubscriptionPlanRepository planRepository;
 
+    private volatile PlanCatalog catalog;
+
     @Autowired
     public SubscriptionPlanServiceImpl(SubscriptionPlanRepository planRepository) {
         this.planRepository = planRepository;
@@ -32,26 +56,93 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
 
     @Override
     public List<SubscriptionPlan> getAll() {
-        return planRepository.findAll();
+        return copiesOf(catalog().all);
     }
 
     @Override
     public SubscriptionPlan getById(Long id) {
-        return planRepository.findById(id).orElseThrow(() ->
+        return findById(id).orElseThrow(() ->
             new ResourceNotFoundException("SubscriptionPlan", "id", id.toString()));
     }
 
     @Override
     public Optional<SubscriptionPlan> getByTier(SubscriptionTier tier) {
-        SubscriptionPlan plan = planRepository.findByTierAndIsActive(tier, SubscriptionPlan.IsActive.TRUE);
-        return Optional.ofNullable(plan);
+        return Optional.ofNullable(catalog().activeByTier.get(tier)).map(SubscriptionPlanServiceImpl::copyOf);
     }
 
     @Override
     public Optional<SubscriptionPlan> findById(Long id) {
+        SubscriptionPlan plan = catalog().byId.get(id);
+        if (plan != null) {
+            return Optional.of(copyOf(plan));
+        }
+        // Possibly created on another instance since our last refresh
         return planRepository.findById(id);
     }
 
+    @Override
+    public String getCatalogVersion() {
+        return catalog().version;
+    }
+
+    private PlanCatalog catalog() {
+        PlanCatalog current = catalog;
+        if (current == null) {
+            synchronized (this) {
+                current = catalog;
+                if (current == null) {
+                    current = reloadCatalog();
+                }
+            }
+        }
+        return current;
+    }
+
+    private synchronized PlanCatalog reloadCatalog() {
+        PlanCatalog loaded = PlanCatalog.of(planRepository.findAll());
+        catalog = loaded;
+        logger.info("Loaded plan catalog version {} with {} plans", loaded.version, loaded.all.size());
+        return loaded;
+    }
+
+    /**
+     * Swap in a fresh catalog once the current transaction commits, so a rolled back
+     * change is never published
+     */
+    private void reloadCatalogAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadCatalog();
+                }
+            });
+        } else {
+            reloadCatalog();
+        }
+    }
+
+    /**
+     * Check every minute whether plans were changed on another instance
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void refreshCatalogIfChanged() {
+        try {
+            PlanCatalog current = catalog;
+            if (current == null) {
+                return;
+            }
+            List<Object[]> stamp = planRepository.findCatalogStamp();
+            LocalDateTime lastUpdated = stamp.isEmpty() ? null : (LocalDateTime) stamp.get(0)[0];
+            long count = stamp.isEmpty() ? 0 : ((Number) stamp.get(0)[1]).longValue();
+            if (!PlanCatalog.versionOf(lastUpdated, count).equals(current.version)) {
+                reloadCatalog();
+            }
+        } catch (Exception e) {
+            logger.error("Failed to refresh plan catalog", e);
+        }
+    }
+
     @Override
     @Transactional
     public SubscriptionPlanDto create(SubscriptionPlanDto request) {
@@ -81,6 +172,7 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
         plan.setUpdatedAt(LocalDateTime.now());
 
         SubscriptionPlan savedPlan = planRepository.save(plan);
+        reloadCatalogAfterCommit();
         return convertToDto(savedPlan);
     }
 
@@ -114,6 +206,7 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
         existingPlan.setUpdatedAt(LocalDateTime.now());
 
         SubscriptionPlan savedPlan = planRepository.save(existingPlan);
+        reloadCatalogAfterCommit();
         return convertToDto(savedPlan);
     }
 
@@ -127,11 +220,25 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
         plan.setIsActive(SubscriptionPlan.IsActive.FALSE);
         plan.setUpdatedAt(LocalDateTime.now());
         planRepository.save(plan);
+        reloadCatalogAfterCommit();
+    }
+
+    @Override
+    @Transactional
+    public SubscriptionPlanDto toggleStatus(Long id) {
+        SubscriptionPlan plan = planRepository.findById(id).orElseThrow(
+                () -> new ResourceNotFoundException("SubscriptionPlan", "id", id.toString()));
+        plan.setIsActive(plan.getIsActive() == SubscriptionPlan.IsActive.TRUE ?
+                SubscriptionPlan.IsActive.FALSE : SubscriptionPlan.IsActive.TRUE);
+        plan.setUpdatedAt(LocalDateTime.now());
+        SubscriptionPlan savedPlan = planRepository.save(plan);
+        reloadCatalogAfterCommit();
+        return convertToDto(savedPlan);
     }
 
     @Override
     public List<SubscriptionPlan> getActivePlans() {
-        return planRepository.findByIsActive(SubscriptionPlan.IsActive.TRUE);
+        return copiesOf(catalog().active);
     }
 
     @Override
@@ -141,7 +248,7 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
 
     @Override
     public Page<SubscriptionPlan> searchPlans(String tier, String isActive, Pageable pageable) {
-        List<SubscriptionPlan> allPlans = planRepository.findAll();
+        List<SubscriptionPlan> allPlans = catalog().all;
         
         List<SubscriptionPlan> filteredPlans = allPlans.stream()
             .filter(plan -> {
@@ -158,7 +265,7 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
         int start = (int) pageable.getOffset();
         int end = Math.min((start + pageable.getPageSize()), filteredPlans.size());
         
-        List<SubscriptionPlan> pageContent = filteredPlans.subList(start, end);
+        List<SubscriptionPlan> pageContent = copiesOf(filteredPlans.subList(start, end));
         return new PageImpl<>(pageContent, pageable, filteredPlans.size());
     }
 
@@ -177,6 +284,19 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
         return planRepository.countByIsActive(SubscriptionPlan.IsActive.FALSE);
     }
 
+    private static List<SubscriptionPlan> copiesOf(List<SubscriptionPlan> plans) {
+        return plans.stream().map(SubscriptionPlanServiceImpl::copyOf).collect(Collectors.toList());
+    }
+
+    /**
+     * Detached copy of a plan; every field is an immutable value, so a shallow copy is enough
+     */
+    private static SubscriptionPlan copyOf(SubscriptionPlan plan) {
+        SubscriptionPlan copy = new SubscriptionPlan();
+        BeanUtils.copyProperties(plan, copy);
+        return copy;
+    }
+
     private SubscriptionPlanDto convertToDto(SubscriptionPlan plan) {
         return SubscriptionPlanDto.builder()
                 .id(plan.getId())
@@ -200,4 +320,55 @@ public class SubscriptionPlanServiceImpl implements SubscriptionPlanService {
                 .updatedAt(plan.getUpdatedAt())
                 .build();
     }
+
+    /**
+     * Immutable snapshot of all plans, indexed by id and by tier (active plans only). The plans
+     * are copies, never the entities the repository returned. The version is the latest
+     * updatedAt in epoch millis and the plan count, the same stamp findCatalogStamp reads, so
+     * every instance computes the same version for the same rows and removing a plan changes it.
+     */
+    private static final class PlanCatalog {
+
+        final String version;
+        final List<SubscriptionPlan> all;
+        final List<SubscriptionPlan> active;
+        final Map<Long, SubscriptionPlan> byId;
+        final Map<SubscriptionTier, SubscriptionPlan> activeByTier;
+
+        private PlanCatalog(String version, List<SubscriptionPlan> all, List<SubscriptionPlan> active,
+                            Map<Long, SubscriptionPlan> byId, Map<SubscriptionTier, SubscriptionPlan> activeByTier) {
+            this.version = version;
+            this.all = all;
+            this.active = active;
+            this.byId = byId;
+            this.activeByTier = activeByTier;
+        }
+
+        static PlanCatalog of(List<SubscriptionPlan> plans) {
+            List<SubscriptionPlan> sorted = new ArrayList<>(copiesOf(plans));
+            sorted.sort(Comparator.comparing(SubscriptionPlan::getId));
+
+            List<SubscriptionPlan> active = new ArrayList<>();
+            Map<Long, SubscriptionPlan> byId = new HashMap<>();
+            Map<SubscriptionTier, SubscriptionPlan> activeByTier = new EnumMap<>(SubscriptionTier.class);
+            LocalDateTime lastUpdated = null;
+            for (SubscriptionPlan plan : sorted) {
+                byId.put(plan.getId(), plan);
+                if (plan.getIsActive() == SubscriptionPlan.IsActive.TRUE) {
+                    active.add(plan);
+                    activeByTier.putIfAbsent(plan.getTier(), plan);
+                }
+                if (plan.getUpdatedAt() != null && (lastUpdated == null || plan.getUpdatedAt().isAfter(lastUpdated))) {
+                    lastUpdated = plan.getUpdatedAt();
+                }
+            }
+            return new PlanCatalog(versionOf(lastUpdated, sorted.size()), List.copyOf(sorted), List.copyOf(active),
+                    Map.copyOf(byId), Collections.unmodifiableMap(activeByTier));
+        }
+
+        static String versionOf(LocalDateTime lastUpdated, long count) {
+            long lastUpdatedMillis = lastUpdated == null ? 0 : lastUpdated.toInstant(ZoneOffset.UTC).toEpochMilli();
+            return lastUpdatedMillis + "-" + count;
+        }
+    }
 }
@@ -13,7 +13,9 @@ import org.kh.neuralpix.exception.SubscriptionException;
 import org.kh.neuralpix.model.*;
 import org.kh.neuralpix.model.enums.SubscriptionTier;
 import org.kh.neuralpix.repository.*;
+import org.kh.neuralpix.service.BusinessMetricsService;
 import org.kh.neuralpix.service.EmailService;
+import org.kh.neuralpix.service.OrderCodeService;
 import org.kh.neuralpix.service.PayOSPaymentService;
 import org.kh.neuralpix.service.SubscriptionService;
 import org.kh.neuralpix.service.TransactionService;
@@ -41,6 +43,8 @@ public class SubscriptionServiceImpl implements SubscriptionService {
     private final PayOSPaymentService payOSPaymentService;
     private final EmailService emailService;
     private final TransactionRepository transactionRepos;
+    private final BusinessMetricsService metricsService;
+    private final OrderCodeService orderCodeService;
 
 
     @Override
@@ -307,86 +311,78 @@ public class SubscriptionServiceImpl implements SubscriptionService {
             return;
         }
 
+        // Held past due until the payment webhook confirms the renewal, or the grace period ends
+        subscription.setStatus(Subscription.SubscriptionStatus.PAST_DUE);
+        subscription.setUpdatedAt(LocalDateTime.now());
         try {
             User user = userRepository.findById(subscription.getUserId())
                     .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
-            // Process payment with PayOS
-            boolean paymentSuccessful = processRenewalPayment(subscription, user);
-
-            if (paymentSuccessful) {
-                // Extend subscription
-                subscription.setStartDate(LocalDateTime.now());
-                subscription.setEndDate(calculateEndDate(subscription.getBillingCycle()));
-                subscription.setNextBillingDate(calculateNextBillingDate(subscription.getBillingCycle()));
-                subscription.setStatus(Subscription.SubscriptionStatus.ACTIVE);
-                subscription.setUpdatedAt(LocalDateTime.now());
-
-                subscriptionRepository.save(subscription);
-
-                // Record history
-                recordSubscriptionHistory(subscription.getUserId(), subscriptionId, "RENEWED",
-                        subscription.getTier().name(), subscription.getTier().name(), subscription.getPrice());
-
-                // Send renewal confirmation
-                emailService.sendSubscriptionConfirmation(user, subscription);
-                
-                log.info("Successfully renewed subscription: {}", subscriptionId);
-
+            if (requestRenewalPayment(subscription, user)) {
+                log.info("Subscription {} is awaiting its renewal payment", subscriptionId);
             } else {
-                // Payment failed - mark as past due
-                subscription.setStatus(Subscription.SubscriptionStatus.PAST_DUE);
-                subscription.setUpdatedAt(LocalDateTime.now());
-                subscriptionRepository.save(subscription);
-
-                // Send payment failure notification (you can create this method in EmailService)
-                log.warn("Payment failed for subscription renewal: {}", subscriptionId);
+                log.warn("Could not request the renewal payment for subscription: {}", subscriptionId);
                 // emailService.sendPaymentFailureNotification(user, subscription);
             }
-
         } catch (Exception e) {
-            log.error("Failed to renew subscription: {}", subscriptionId, e);
-            subscription.setStatus(Subscription.SubscriptionStatus.PAST_DUE);
-            subscription.setUpdatedAt(LocalDateTime.now());
-            subscriptionRepository.save(subscription);
+            log.error("Failed to request renewal payment for subscription: {}", subscriptionId, e);
         }
+        subscriptionRepository.save(subscription);
+    }
+
+    @Override
+    @Transactional
+    public void completeRenewal(Long subscriptionId) {
+        Subscription subscription = subscriptionRepository.findById(subscriptionId)
+                .orElseThrow(() -> new SubscriptionException("Subscription not found"));
+        Subscription.SubscriptionStatus previous = subscription.getStatus();
+        if (previous != Subscription.SubscriptionStatus.PAST_DUE && previous != Subscription.SubscriptionStatus.EXPIRED) {
+            throw new SubscriptionException("Cannot renew subscription with status: " + previous);
+        }
+
+        subscription.setStartDate(LocalDateTime.now());
+        subscription.setEndDate(calculateEndDate(subscription.getBillingCycle()));
+        subscription.setNextBillingDate(calculateNextBillingDate(subscription.getBillingCycle()));
+        subscription.setStatus(Subscription.SubscriptionStatus.ACTIVE);
+        subscription.setUpdatedAt(LocalDateTime.now());
+        subscriptionRepository.save(subscription);
+
+        User user = userRepository.findById(subscription.getUserId())
+                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+        if (previous == Subscription.SubscriptionStatus.EXPIRED) {
+            // Paid after the grace period ended and the user was moved to the free tier
+            user.setSubscriptionTier(subscription.getTier());
+            userRepository.save(user);
+        }
+
+        boolean reactivated = previous == Subscription.SubscriptionStatus.EXPIRED;
+        recordSubscriptionHistory(subscription.getUserId(), subscriptionId, reactivated ? "REACTIVATED" : "RENEWED",
+                reactivated ? "FREE" : subscription.getTier().name(), subscription.getTier().name(), subscription.getPrice());
+        emailService.sendSubscriptionConfirmation(user, subscription);
+        log.info("Successfully renewed subscription: {}", subscriptionId);
     }
 
     /**
-     * Process renewal payment using PayOS
+     * Create the PayOS payment link for a renewal, recorded as a SUBSCRIPTION_RENEWAL transaction
+     * so the payment webhook completes the renewal. Returns whether the link was created.
      */
-    private boolean processRenewalPayment(Subscription subscription, User user) {
-        try {
-            if ("payos".equalsIgnoreCase(subscription.getPaymentProvider())) {
-                // Create PayOS payment for renewal
-                Long orderCode = System.currentTimeMillis() / 1000;
-                String description = "Renewal for " + subscription.getTier() + " subscription - " + subscription.getBillingCycle();
-                
-                vn.payos.type.CheckoutResponseData paymentResponse = payOSPaymentService.createPaymentLink(
-                        orderCode, subscription.getPrice(), description, user.getEmail());
-                
-                if (paymentResponse != null && paymentResponse.getPaymentLinkId() != null) {
-                    // Update external subscription ID
-                    subscription.setExternalSubscriptionId(paymentResponse.getPaymentLinkId());
-                    
-                    log.info("PayOS renewal payment link created for subscription: {} with order code: {}", 
-                            subscription.getId(), orderCode);
-                    
-                    // For automatic renewal, you might want to implement webhook handling
-                    // For now, we'll assume payment is successful (in real scenario, this would be handled by webhook)
-                    return true;
-                } else {
-                    log.error("Failed to create PayOS payment link for renewal");
-                    return false;
-                }
-            } else {
-                log.warn("Unsupported payment provider for renewal: {}", subscription.getPaymentProvider());
-                return false;
-            }
-        } catch (Exception e) {
-            log.error("Error processing renewal payment for subscription: {}", subscription.getId(), e);
+    private boolean requestRenewalPayment(Subscription subscription, User user) {
+        if (!"payos".equalsIgnoreCase(subscription.getPaymentProvider())) {
+            log.warn("Unsupported payment provider for renewal: {}", subscription.getPaymentProvider());
             return false;
         }
+        Long orderCode = orderCodeService.nextOrderCode();
+        String description = "Renewal for " + subscription.getTier() + " subscription - " + subscription.getBillingCycle();
+        vn.payos.type.CheckoutResponseData paymentResponse = payOSPaymentService.createPaymentLinkWithTransaction(
+                orderCode, subscription.getUserId(), subscription.getId(), subscription.getPrice(),
+                Transaction.TransactionType.SUBSCRIPTION_RENEWAL, description, user.getEmail());
+        if (paymentResponse == null || paymentResponse.getPaymentLinkId() == null) {
+            log.error("Failed to create PayOS payment link for renewal");
+            return false;
+        }
+        subscription.setExternalSubscriptionId(paymentResponse.getPaymentLinkId());
+        log.info("PayOS renewal payment link created for subscription: {} with order code: {}",
+                subscription.getId(), orderCode);
+        return true;
     }
 
     /**
@@ -587,7 +583,7 @@ public class SubscriptionServiceImpl implements SubscriptionService {
         try {
             if ("payos".equalsIgnoreCase(subscription.getPaymentProvider())) {
                 Long orderCode = request.getPaymentOrderCode() != null ? 
-                        request.getPaymentOrderCode() : System.currentTimeMillis() / 1000;
+                        request.getPaymentOrderCode() : orderCodeService.nextOrderCode();
                         
                 String description = "Upgrade to " + request.getNewTier() + 
                         " subscription - Price difference";
@@ -692,61 +688,32 @@ public class SubscriptionServiceImpl implements SubscriptionService {
 
     @Override
     public long countSubscriptionsByStatus(Subscription.SubscriptionStatus status) {
-        return subscriptionRepository.countByStatus(status);
+        return metricsService.countSubscriptionsByStatus(status);
     }
 
     @Override
     public Double getTotalRevenue() {
-        List<Subscription> activeSubscriptions = subscriptionRepository.findByStatus(Subscription.SubscriptionStatus.ACTIVE);
-        return activeSubscriptions.stream()
-            .mapToDouble(subscription -> subscription.getPrice().doubleValue())
-            .sum();
+        return metricsService.getActiveSubscriptionRevenue();
     }
 
     @Override
     public Double getMonthlyRevenue() {
-        List<Subscription> activeSubscriptions = subscriptionRepository.findByStatus(Subscription.SubscriptionStatus.ACTIVE);
-        return activeSubscriptions.stream()
-            .filter(subscription -> subscription.getBillingCycle() == Subscription.BillingCycle.MONTHLY)
-            .mapToDouble(subscription -> subscription.getPrice().doubleValue())
-            .sum();
+        return metricsService.getActiveMonthlySubscriptionRevenue();
     }
 
     @Override
     public Double getAverageRevenuePerUser() {
-        List<Subscription> activeSubscriptions = subscriptionRepository.findByStatus(Subscription.SubscriptionStatus.ACTIVE);
-        if (activeSubscriptions.isEmpty()) {
-            return 0.0;
-        }
-        double totalRevenue = activeSubscriptions.stream()
-            .mapToDouble(subscription -> subscription.getPrice().doubleValue())
-            .sum();
-        return totalRevenue / activeSubscriptions.size();
+        return metricsService.getAverageRevenuePerUser();
     }
 
     @Override
     public Double getChurnRate() {
-        long totalSubscriptions = subscriptionRepository.count();
-        long cancelledSubscriptions = subscriptionRepository.countByStatus(Subscription.SubscriptionStatus.CANCELLED);
-        
-        if (totalSubscriptions == 0) {
-            return 0.0;
-        }
-        
-        return (double) cancelledSubscriptions / totalSubscriptions * 100;
+        return metricsService.getChurnRate();
     }
 
     @Override
     public Double getGrowthRate() {
-        // This is a simplified calculation - in a real scenario, you'd compare monthly/quarterly growth
-        long activeSubscriptions = subscriptionRepository.countByStatus(Subscription.SubscriptionStatus.ACTIVE);
-        long totalSubscriptions = subscriptionRepository.count();
-        
-        if (totalSubscriptions == 0) {
-            return 0.0;
-        }
-        
-        return (double) activeSubscriptions / totalSubscriptions * 100;
+        return metricsService.getGrowthRate();
     }
 
     @Override
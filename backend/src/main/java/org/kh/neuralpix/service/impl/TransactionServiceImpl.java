@@ -1,22 +1,31 @@
 package org.kh.neuralpix.service.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.kh.neuralpix.constants.PayOSConstants;
 import org.kh.neuralpix.model.Transaction;
 import org.kh.neuralpix.repository.TransactionRepository;
+import org.kh.neuralpix.service.BusinessMetricsService;
 import org.kh.neuralpix.service.TransactionService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +34,12 @@ import java.util.Optional;
 public class TransactionServiceImpl implements TransactionService {
 
     private final TransactionRepository transactionRepository;
+    private final EntityManager entityManager;
+    private final BusinessMetricsService metricsService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.transactions.expiry-batch-size:500}")
+    private int expiryBatchSize = 500;
 
     @Override
     public Transaction createTransaction(Transaction transaction) {
@@ -197,33 +212,56 @@ public class TransactionServiceImpl implements TransactionService {
     }
 
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void cancelExpiredPendingTransactions(int expiredHours) {
-        log.info("Cancelling expired pending transactions older than {} hours", expiredHours);
+        log.info("Cancelling expired pending transactions older than {} hours in batches of {}", expiredHours, expiryBatchSize);
         
         LocalDateTime expiredTime = LocalDateTime.now().minusHours(expiredHours);
-        List<Transaction> expiredTransactions = transactionRepository.findExpiredPendingTransactions(expiredTime);
+        String reason = "Expired - automatically cancelled after " + expiredHours + " hours";
+        Pageable batch = PageRequest.of(0, expiryBatchSize);
+        long startedAt = System.currentTimeMillis();
         
+        // Each batch is its own short transaction, so row locks are held only for one UPDATE.
+        // Cancelled rows drop out of the PENDING filter, so the next query returns the next batch.
         int cancelledCount = 0;
-        for (Transaction transaction : expiredTransactions) {
+        int batches = 0;
+        while (true) {
+            List<Long> ids = transactionRepository.findExpiredPendingTransactionIds(expiredTime, batch);
+            if (ids.isEmpty()) {
+                break;
+            }
+            
+            int updated;
             try {
-                // Check if transaction is still pending before cancelling
-                if (transaction.getStatus() == Transaction.TransactionStatus.PENDING) {
-                    transaction.markAsCancelled("Expired - automatically cancelled after " + expiredHours + " hours");
-                    transactionRepository.save(transaction);
-                    log.info("Cancelled expired transaction with order code: {}", transaction.getOrderCode());
-                    cancelledCount++;
-                } else {
-                    log.debug("Skipping transaction {} - no longer pending (status: {})", 
-                        transaction.getOrderCode(), transaction.getStatus());
-                }
+                updated = transactionRepository.cancelPendingTransactions(ids, reason, LocalDateTime.now());
             } catch (Exception e) {
-                log.error("Error cancelling expired transaction with order code: {}", 
-                    transaction.getOrderCode(), e);
+                log.error("Error cancelling batch of {} expired transactions, stopping after {} cancelled", 
+                    ids.size(), cancelledCount, e);
+                break;
+            }
+            
+            batches++;
+            cancelledCount += updated;
+            expiredTransactionsCounter().increment(updated);
+            log.info("Expired transaction batch {}: cancelled {} of {} (total {})", batches, updated, ids.size(), cancelledCount);
+            
+            if (ids.size() < expiryBatchSize) {
+                break;
             }
         }
         
-        log.info("Cancelled {} expired transactions out of {} found", cancelledCount, expiredTransactions.size());
+        if (cancelledCount > 0) {
+            // Bulk updates bypass entity events, so refresh the dashboard aggregates from the DB
+            metricsService.rebuild();
+        }
+        log.info("Cancelled {} expired transactions in {} batches ({} ms)", 
+            cancelledCount, batches, System.currentTimeMillis() - startedAt);
+    }
+    
+    private Counter expiredTransactionsCounter() {
+        return Counter.builder("neuralpix.transactions.expired")
+                .description("Pending transactions cancelled by the expiry job")
+                .register(meterRegistry);
     }
     
     /**
@@ -231,7 +269,7 @@ public class TransactionServiceImpl implements TransactionService {
      * Runs every hour and cancels transactions older than 24 hours
      */
     @Scheduled(cron = "0 0 * * * *") // Run every hour at minute 0
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void scheduledCancelExpiredTransactions() {
         try {
             log.info("Running scheduled cleanup of expired transactions");
@@ -244,8 +282,7 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     @Transactional(readOnly = true)
     public Double getTotalRevenueByStatus(Transaction.TransactionStatus status) {
-        Double revenue = transactionRepository.getTotalAmountByStatus(status);
-        return revenue != null ? revenue : 0.0;
+        return metricsService.getTransactionAmountByStatus(status);
     }
 
     @Override
@@ -258,7 +295,7 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     @Transactional(readOnly = true)
     public long countTransactionsByStatus(Transaction.TransactionStatus status) {
-        return transactionRepository.countByStatus(status);
+        return metricsService.countTransactionsByStatus(status);
     }
 
     @Override
@@ -279,11 +316,39 @@ public class TransactionServiceImpl implements TransactionService {
         return transactionRepository.findByUserIdAndCreatedAtBetween(userId, startDate, endDate);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Transaction> searchTransactions(Long userId, Transaction.TransactionStatus status,
+                                                Transaction.TransactionType type,
+                                                LocalDateTime startDate, LocalDateTime endDate,
+                                                LocalDateTime cursorCreatedAt, Long cursorId, int limit) {
+        return transactionRepository.searchByFilters(userId, status, type, startDate, endDate,
+                cursorCreatedAt, cursorId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long exportTransactions(Long userId, Transaction.TransactionStatus status,
+                                   Transaction.TransactionType type,
+                                   LocalDateTime startDate, LocalDateTime endDate,
+                                   Consumer<Transaction> consumer) {
+        long exported = 0;
+        try (Stream<Transaction> rows = transactionRepository.streamByFilters(userId, status, type, startDate, endDate)) {
+            for (Transaction transaction : (Iterable<Transaction>) rows::iterator) {
+                consumer.accept(transaction);
+                // Detach each row so the persistence context does not grow with the result set
+                entityManager.detach(transaction);
+                exported++;
+            }
+        }
+        log.info("Exported {} transactions between {} and {}", exported, startDate, endDate);
+        return exported;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Double getMonthlyRevenue(int year, int month) {
-        Double revenue = transactionRepository.getRevenueByMonth(year, month);
-        return revenue != null ? revenue : 0.0;
+        return metricsService.getPaidRevenueByMonth(year, month);
     }
 
     @Override
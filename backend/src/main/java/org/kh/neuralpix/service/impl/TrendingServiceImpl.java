@@ -0,0 +1,284 @@
+package org.kh.neuralpix.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+import org.kh.neuralpix.mapper.GeneratedImageMapper;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.model.SchedulerCheckpoint;
+import org.kh.neuralpix.model.TrendingSnapshot;
+import org.kh.neuralpix.repository.GeneratedImageRepository;
+import org.kh.neuralpix.repository.ProcessedImageRepository;
+import org.kh.neuralpix.repository.SchedulerCheckpointRepository;
+import org.kh.neuralpix.repository.TrendingSnapshotRepository;
+import org.kh.neuralpix.service.EngagementCounterService;
+import org.kh.neuralpix.service.EngagementCounterService.Counter;
+import org.kh.neuralpix.service.TrendingService;
+import org.kh.neuralpix.utils.TrendingIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps one {@link TrendingIndex} for generated images and one for processed images. Scores
+ * are fed from {@link EngagementCounterService.CountersFlushedEvent}, so the index sees the
+ * same batched deltas that were written to the database. Images that are no longer public
+ * are dropped from the index lazily, the first time a read finds them.
+ *
+ * On startup the index is restored from the last snapshot, or seeded from the newest public
+ * images when there is none. Each instance ranks the traffic it has seen itself, and the
+ * snapshot is written by one instance at a time: the one holding the trending-snapshot lease,
+ * which it renews with every snapshot it writes.
+ */
+@Service
+@Slf4j
+public class TrendingServiceImpl implements TrendingService {
+
+    private static final double VIEW_WEIGHT = 1;
+    private static final double DOWNLOAD_WEIGHT = 3;
+    private static final double LIKE_WEIGHT = 5;
+    // Rounds of lazy cleanup before a read gives up on filling the requested size
+    private static final int MAX_READ_ROUNDS = 3;
+    static final String SNAPSHOT_JOB = "trending-snapshot";
+    private static final String INSERT_SNAPSHOT_SQL =
+            "INSERT INTO trending_snapshots (item_type, item_id, log_score, snapshot_at) VALUES (?, ?, ?, ?)";
+
+    private final GeneratedImageRepository generatedImageRepository;
+    private final ProcessedImageRepository processedImageRepository;
+    private final TrendingSnapshotRepository snapshotRepository;
+    private final SchedulerCheckpointRepository checkpointRepository;
+    private final GeneratedImageMapper generatedImageMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final TrendingIndex generatedIndex;
+    private final TrendingIndex processedIndex;
+    private final int snapshotSize;
+    private final int snapshotLeaseMinutes;
+    private final String owner;
+
+    // Bumped on every index change; the snapshot is skipped when nothing changed
+    private final AtomicLong version = new AtomicLong();
+    private volatile long snapshotVersion = -1;
+
+    public TrendingServiceImpl(GeneratedImageRepository generatedImageRepository,
+                               ProcessedImageRepository processedImageRepository,
+                               TrendingSnapshotRepository snapshotRepository,
+                               SchedulerCheckpointRepository checkpointRepository,
+                               GeneratedImageMapper generatedImageMapper,
+                               JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${app.trending.capacity:5000}") int capacity,
+                               @Value("${app.trending.half-life-hours:12}") long halfLifeHours,
+                               @Value("${app.trending.snapshot-size:1000}") int snapshotSize,
+                               @Value("${app.trending.snapshot-lease-minutes:15}") int snapshotLeaseMinutes) {
+        this.generatedImageRepository = generatedImageRepository;
+        this.processedImageRepository = processedImageRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.generatedImageMapper = generatedImageMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        long halfLifeMillis = Duration.ofHours(halfLifeHours).toMillis();
+        this.generatedIndex = new TrendingIndex(capacity, halfLifeMillis);
+        this.processedIndex = new TrendingIndex(capacity, halfLifeMillis);
+        this.snapshotSize = snapshotSize;
+        this.snapshotLeaseMinutes = snapshotLeaseMinutes;
+        this.owner = SubscriptionLifecycleSchedulerService.resolveOwner();
+    }
+
+    @EventListener
+    public void onCountersFlushed(EngagementCounterService.CountersFlushedEvent event) {
+        long at = event.flushedAtMillis();
+        event.deltas().forEach((counter, byId) -> {
+            TrendingIndex index = counter == Counter.PROCESSED_IMAGE_VIEWS ? processedIndex : generatedIndex;
+            double weight = weight(counter);
+            byId.forEach((id, delta) -> index.record(id, weight * delta, at));
+        });
+        version.incrementAndGet();
+    }
+
+    private static double weight(Counter counter) {
+        return switch (counter) {
+            case IMAGE_LIKES -> LIKE_WEIGHT;
+            case IMAGE_DOWNLOADS -> DOWNLOAD_WEIGHT;
+            case IMAGE_VIEWS, PROCESSED_IMAGE_VIEWS -> VIEW_WEIGHT;
+        };
+    }
+
+    @Override
+    public List<GeneratedImageResponseDto> getTrendingImages(int limit) {
+        List<GeneratedImageResponseDto> images = readTop(generatedIndex, 0, limit,
+                generatedImageRepository::findListItemsByIdIn, GeneratedImageResponseDto::getId,
+                image -> Boolean.TRUE.equals(image.getIsPublic()) && !Boolean.TRUE.equals(image.getIsDeleted()));
+        return generatedImageMapper.withPendingCounts(images);
+    }
+
+    @Override
+    public Page<ProcessedImage> getTrendingProcessedImages(Pageable pageable) {
+        List<ProcessedImage> images = readTop(processedIndex, (int) pageable.getOffset(), pageable.getPageSize(),
+                processedImageRepository::findAllById, ProcessedImage::getId,
+                image -> Boolean.TRUE.equals(image.getIsPublic()) && Boolean.TRUE.equals(image.getSuccess()));
+        return new PageImpl<>(images, pageable, processedIndex.size());
+    }
+
+    /**
+     * Read ids from the index in rank order, load them in one query and drop the ones that are
+     * missing or no longer eligible from the index, retrying to fill the page
+     */
+    private <T> List<T> readTop(TrendingIndex index, int offset, int limit,
+                                Function<List<Long>, List<T>> loader,
+                                Function<T, Long> idOf,
+                                Predicate<T> eligible) {
+        List<T> result = new ArrayList<>();
+        for (int round = 0; round < MAX_READ_ROUNDS; round++) {
+            List<Long> ids = index.top(offset, limit);
+            if (ids.isEmpty()) {
+                return result;
+            }
+            Map<Long, T> byId = loader.apply(ids).stream()
+                    .collect(Collectors.toMap(idOf, Function.identity(), (a, b) -> a));
+            result = new ArrayList<>(ids.size());
+            boolean removed = false;
+            for (Long id : ids) {
+                T item = byId.get(id);
+                if (item != null && eligible.test(item)) {
+                    result.add(item);
+                } else {
+                    index.remove(id);
+                    removed = true;
+                }
+            }
+            if (!removed) {
+                return result;
+            }
+            version.incrementAndGet();
+        }
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            load(TrendingSnapshot.ItemType.GENERATED_IMAGE, generatedIndex);
+            load(TrendingSnapshot.ItemType.PROCESSED_IMAGE, processedIndex);
+            snapshotVersion = version.get();
+        } catch (Exception e) {
+            log.error("Failed to load trending index", e);
+        }
+    }
+
+    private void load(TrendingSnapshot.ItemType type, TrendingIndex index) {
+        List<TrendingSnapshot> rows = snapshotRepository.findByItemType(type);
+        if (!rows.isEmpty()) {
+            rows.forEach(row -> index.restore(row.getItemId(), row.getLogScore()));
+            log.info("Restored {} trending {} entries from snapshot", rows.size(), type);
+            return;
+        }
+
+        // No snapshot yet: rank the newest public images by their lifetime engagement, decayed from creation
+        PageRequest seedPage = PageRequest.of(0, snapshotSize);
+        List<Object[]> seed = type == TrendingSnapshot.ItemType.GENERATED_IMAGE
+                ? generatedImageRepository.findTrendingSeed(seedPage)
+                : processedImageRepository.findTrendingSeed(seedPage);
+        for (Object[] row : seed) {
+            Long id = (Long) row[0];
+            LocalDateTime createdAt = (LocalDateTime) row[row.length - 1];
+            double engagement = type == TrendingSnapshot.ItemType.GENERATED_IMAGE
+                    ? LIKE_WEIGHT * count(row[1]) + DOWNLOAD_WEIGHT * count(row[2]) + VIEW_WEIGHT * count(row[3])
+                    : VIEW_WEIGHT * count(row[1]);
+            long at = createdAt != null ? createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : System.currentTimeMillis();
+            // Every image starts with a unit score so an idle gallery still ranks by recency
+            index.record(id, 1 + engagement, at);
+        }
+        log.info("Seeded trending {} index with {} images", type, seed.size());
+    }
+
+    private static long count(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    /**
+     * Snapshot the index every 5 minutes when it has changed
+     */
+    @Scheduled(fixedDelayString = "${app.trending.snapshot-interval-ms:300000}", initialDelay = 300000)
+    public void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("Error snapshotting trending index", e);
+        }
+    }
+
+    @Override
+    public synchronized void snapshot() {
+        long current = version.get();
+        if (current == snapshotVersion) {
+            return;
+        }
+        createCheckpoint();
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp at = Timestamp.valueOf(now);
+        Boolean written = transactionTemplate.execute(status -> {
+            // The lease row stays locked until commit, so a concurrent writer waits and then finds it taken
+            if (checkpointRepository.tryAcquire(SNAPSHOT_JOB, owner, now, now.plusMinutes(snapshotLeaseMinutes)) == 0) {
+                return false;
+            }
+            write(TrendingSnapshot.ItemType.GENERATED_IMAGE, generatedIndex, at);
+            write(TrendingSnapshot.ItemType.PROCESSED_IMAGE, processedIndex, at);
+            return true;
+        });
+        if (Boolean.TRUE.equals(written)) {
+            snapshotVersion = current;
+        } else {
+            log.debug("Trending snapshot is held by another instance");
+        }
+    }
+
+    private void createCheckpoint() {
+        if (checkpointRepository.existsById(SNAPSHOT_JOB)) {
+            return;
+        }
+        try {
+            checkpointRepository.saveAndFlush(SchedulerCheckpoint.builder().jobName(SNAPSHOT_JOB).build());
+        } catch (DataIntegrityViolationException e) {
+            // Created concurrently by another instance
+        }
+    }
+
+    private void write(TrendingSnapshot.ItemType type, TrendingIndex index, Timestamp now) {
+        snapshotRepository.deleteByItemType(type);
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<Long, Double> entry : index.snapshot().entrySet()) {
+            if (args.size() >= snapshotSize) {
+                break;
+            }
+            args.add(new Object[]{type.name(), entry.getKey(), entry.getValue(), now});
+        }
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, args);
+        }
+        log.debug("Snapshotted {} trending {} entries", args.size(), type);
+    }
+}
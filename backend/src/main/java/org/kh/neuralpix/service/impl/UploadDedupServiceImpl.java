@@ -0,0 +1,174 @@
+package org.kh.neuralpix.service.impl;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.StorageBackend;
+import org.kh.neuralpix.service.UploadDedupService;
+import org.kh.neuralpix.utils.PerceptualHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-user index of uploaded inputs by SHA-256. Only an exact match is substituted: images a
+ * few dHash bits apart can still differ in what matters to the operation (a retouched region,
+ * a different crop or colour), and flat images all hash alike. The dHash is still computed and
+ * recorded with the upload. Indexes of recently active users are kept in a bounded cache and
+ * loaded from processed_images (the newest app.upload-dedup.max-entries uploads) on first use.
+ * Concurrent uploads of the same bytes by the same user share one upload to the storage backend.
+ */
+@Service
+@Slf4j
+public class UploadDedupServiceImpl implements UploadDedupService {
+
+    private static final String LOAD_SQL =
+            "SELECT imgur_url, source_hash, source_phash, source_file_size, source_width, source_height " +
+            "FROM processed_images WHERE user_id = ? AND source_hash IS NOT NULL AND imgur_url IS NOT NULL " +
+            "ORDER BY id DESC LIMIT ?";
+
+    private final StorageBackend storageBackend;
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxEntries;
+    private final LoadingCache<Long, UserIndex> indexes;
+    private final ConcurrentMap<String, CompletableFuture<ImageHandle>> inFlight = new ConcurrentHashMap<>();
+
+    public UploadDedupServiceImpl(StorageBackend storageBackend,
+                                  JdbcTemplate jdbcTemplate,
+                                  @Value("${app.upload-dedup.max-entries:2000}") int maxEntries,
+                                  @Value("${app.upload-dedup.cached-users:10000}") long cachedUsers) {
+        this.storageBackend = storageBackend;
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxEntries = maxEntries;
+        this.indexes = CacheBuilder.newBuilder()
+                .maximumSize(cachedUsers)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build(CacheLoader.from(this::load));
+    }
+
+    @Override
+    public CompletableFuture<ImageHandle> upload(Long userId, String base64Data) {
+        return CompletableFuture.supplyAsync(() -> {
+            String cleanBase64 = base64Data.startsWith("data:") ? base64Data.substring(base64Data.indexOf(',') + 1) : base64Data;
+            return Base64.getDecoder().decode(cleanBase64);
+        }).thenCompose(imageBytes -> resolve(userId, imageBytes));
+    }
+
+    private CompletableFuture<ImageHandle> resolve(Long userId, byte[] imageBytes) {
+        String contentHash = sha256(imageBytes);
+        if (userId == null) {
+            return storageBackend.store(imageBytes, contentHash);
+        }
+
+        UserIndex index;
+        try {
+            index = indexes.getUnchecked(userId);
+        } catch (RuntimeException e) {
+            log.warn("Upload index unavailable for user {}, uploading without deduplication: {}", userId, e.getMessage());
+            return storageBackend.store(imageBytes, contentHash);
+        }
+
+        ImageHandle exact = index.exact(contentHash);
+        if (exact != null) {
+            log.debug("Reusing {} for an identical upload by user {}", exact.url(), userId);
+            return CompletableFuture.completedFuture(exact);
+        }
+
+        Long perceptualHash = perceptualHash(imageBytes);
+        String key = userId + ":" + contentHash;
+        CompletableFuture<ImageHandle> upload = new CompletableFuture<>();
+        CompletableFuture<ImageHandle> running = inFlight.putIfAbsent(key, upload);
+        if (running != null) {
+            return running;
+        }
+        storageBackend.store(imageBytes, contentHash)
+                .thenApply(stored -> stored.withHashes(contentHash, perceptualHash))
+                .whenComplete((stored, throwable) -> {
+                    if (stored != null) {
+                        index.add(stored);
+                    }
+                    inFlight.remove(key);
+                    if (throwable != null) {
+                        upload.completeExceptionally(throwable);
+                    } else {
+                        upload.complete(stored);
+                    }
+                });
+        return upload;
+    }
+
+    private UserIndex load(Long userId) {
+        UserIndex index = new UserIndex(maxEntries);
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            index.add(new ImageHandle(
+                    rs.getString("imgur_url"),
+                    null,
+                    rs.getString("source_hash"),
+                    rs.getObject("source_phash", Long.class),
+                    rs.getObject("source_file_size", Long.class),
+                    rs.getObject("source_width", Integer.class),
+                    rs.getObject("source_height", Integer.class),
+                    null));
+        }, userId, maxEntries);
+        log.debug("Loaded {} uploads into the index of user {}", index.size(), userId);
+        return index;
+    }
+
+    private static Long perceptualHash(byte[] imageBytes) {
+        try {
+            return PerceptualHash.dHash(imageBytes);
+        } catch (Exception e) {
+            log.debug("Could not compute perceptual hash: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Uploads of one user. Entries beyond capacity are not indexed.
+     */
+    private static final class UserIndex {
+
+        private final int capacity;
+        private final Map<String, ImageHandle> byContentHash = new HashMap<>();
+
+        private UserIndex(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized ImageHandle exact(String contentHash) {
+            return byContentHash.get(contentHash);
+        }
+
+        synchronized void add(ImageHandle handle) {
+            if (byContentHash.size() >= capacity || handle.contentHash() == null) {
+                return;
+            }
+            byContentHash.putIfAbsent(handle.contentHash(), handle);
+        }
+
+        synchronized int size() {
+            return byContentHash.size();
+        }
+    }
+}
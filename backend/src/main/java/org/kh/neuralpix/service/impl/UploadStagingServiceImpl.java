@@ -0,0 +1,329 @@
+package org.kh.neuralpix.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.kh.neuralpix.exception.StorageAdmissionException;
+import org.kh.neuralpix.service.UploadStagingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the upload directory inside a byte budget. Stored files are tracked in access order,
+ * so eviction takes expired files first and then the least recently used ones, sparing files
+ * used within a short residency window. Uploads reserve their size up front; a refused upload
+ * gets 429 while the budget is only held by uploads in progress, and 507 once stored files alone
+ * fill it. The index is rebuilt from the directory at startup and reconciled with it by the sweep.
+ */
+@Slf4j
+@Service
+public class UploadStagingServiceImpl implements UploadStagingService {
+
+    private static final Set<String> MEMORY_FILE_SYSTEMS = Set.of("tmpfs", "ramfs");
+    private static final String TEMP_PREFIX = "upload-";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path uploadDir;
+    private final long budgetBytes;
+    private final Duration ttl;
+    private final Duration minResidency;
+    private final Duration orphanGrace;
+
+    // File name -> entry in access order; guarded by this
+    private final LinkedHashMap<String, Entry> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+    private long reservedBytes;
+    private Consumer<String> evictor = this::deleteFile;
+
+    private final Counter evictedFiles;
+    private final Counter evictedBytes;
+    private final Counter rejectedFull;
+    private final Counter rejectedBusy;
+
+    public UploadStagingServiceImpl(@Value("${app.upload.dir}") String uploadDir,
+                                    @Value("${app.upload.staging.budget-bytes:0}") long budgetBytes,
+                                    @Value("${app.upload.staging.ttl-seconds:86400}") long ttlSeconds,
+                                    @Value("${app.upload.staging.min-residency-seconds:300}") long minResidencySeconds,
+                                    @Value("${app.upload.staging.orphan-grace-seconds:900}") long orphanGraceSeconds,
+                                    MeterRegistry meterRegistry) {
+        this.uploadDir = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.minResidency = Duration.ofSeconds(minResidencySeconds);
+        this.orphanGrace = Duration.ofSeconds(orphanGraceSeconds);
+        this.budgetBytes = budgetBytes > 0 ? budgetBytes : defaultBudget(this.uploadDir);
+        rebuild();
+
+        Gauge.builder("neuralpix.uploads.staging.budget.bytes", this, s -> s.budgetBytes)
+                .description("Byte budget of the upload directory")
+                .register(meterRegistry);
+        Gauge.builder("neuralpix.uploads.staging.stored.bytes", this, s -> s.usage().storedBytes())
+                .description("Bytes of stored uploads")
+                .register(meterRegistry);
+        Gauge.builder("neuralpix.uploads.staging.reserved.bytes", this, s -> s.usage().reservedBytes())
+                .description("Bytes reserved by uploads in progress")
+                .register(meterRegistry);
+        Gauge.builder("neuralpix.uploads.staging.files", this, s -> s.usage().files())
+                .description("Stored uploads")
+                .register(meterRegistry);
+        evictedFiles = Counter.builder("neuralpix.uploads.staging.evicted")
+                .description("Uploads evicted to stay within the budget or past their TTL")
+                .register(meterRegistry);
+        evictedBytes = Counter.builder("neuralpix.uploads.staging.evicted.bytes")
+                .register(meterRegistry);
+        rejectedFull = Counter.builder("neuralpix.uploads.staging.rejected")
+                .tag("reason", "full")
+                .description("Uploads refused because the budget is full")
+                .register(meterRegistry);
+        rejectedBusy = Counter.builder("neuralpix.uploads.staging.rejected")
+                .tag("reason", "busy")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Reservation reserve(long bytes) {
+        synchronized (this) {
+            List<String> evicted = new ArrayList<>();
+            try {
+                if (bytes > budgetBytes) {
+                    rejectedFull.increment();
+                    throw new StorageAdmissionException(HttpStatus.INSUFFICIENT_STORAGE,
+                            "File is larger than the upload storage budget", 0);
+                }
+                long now = System.currentTimeMillis();
+                evictExpired(now, evicted);
+                // Files used within the residency window are kept even when that means refusing
+                long residentSince = now - minResidency.toMillis();
+                Iterator<Map.Entry<String, Entry>> lru = files.entrySet().iterator();
+                while (storedBytes + reservedBytes + bytes > budgetBytes && lru.hasNext()) {
+                    Map.Entry<String, Entry> oldest = lru.next();
+                    if (oldest.getValue().lastAccess() >= residentSince) {
+                        break;
+                    }
+                    lru.remove();
+                    storedBytes -= oldest.getValue().size();
+                    evicted.add(oldest.getKey());
+                    evictedBytes.increment(oldest.getValue().size());
+                }
+                if (storedBytes + reservedBytes + bytes > budgetBytes) {
+                    if (reservedBytes > 0 && storedBytes + bytes <= budgetBytes) {
+                        rejectedBusy.increment();
+                        throw new StorageAdmissionException(HttpStatus.TOO_MANY_REQUESTS,
+                                "Upload storage is busy, please retry shortly", 5);
+                    }
+                    rejectedFull.increment();
+                    throw new StorageAdmissionException(HttpStatus.INSUFFICIENT_STORAGE,
+                            "Upload storage is full", 0);
+                }
+                reservedBytes += bytes;
+            } finally {
+                evict(evicted);
+            }
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                synchronized (this) {
+                    reservedBytes -= bytes;
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void stored(String fileName, long bytes) {
+        Entry previous = files.put(fileName, new Entry(bytes, System.currentTimeMillis()));
+        storedBytes += bytes - (previous != null ? previous.size() : 0);
+    }
+
+    @Override
+    public synchronized void accessed(String fileName) {
+        Entry entry = files.get(fileName);
+        if (entry != null) {
+            files.put(fileName, new Entry(entry.size(), System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public synchronized void removed(String fileName) {
+        Entry entry = files.remove(fileName);
+        if (entry != null) {
+            storedBytes -= entry.size();
+        }
+    }
+
+    @Override
+    public synchronized void setEvictor(Consumer<String> evictor) {
+        this.evictor = evictor;
+    }
+
+    @Override
+    public synchronized <T> T withoutEviction(Callable<T> action) throws Exception {
+        return action.call();
+    }
+
+    @Override
+    public synchronized Usage usage() {
+        return new Usage(budgetBytes, storedBytes, reservedBytes, files.size());
+    }
+
+    /**
+     * Deletes expired uploads and temp files left by uploads that died mid-write, and drops
+     * index entries for files removed behind the service's back.
+     */
+    @Scheduled(fixedDelayString = "${app.upload.staging.sweep-interval-ms:60000}")
+    public void sweep() {
+        synchronized (this) {
+            List<String> evicted = new ArrayList<>();
+            evictExpired(System.currentTimeMillis(), evicted);
+            evict(evicted);
+            Iterator<Map.Entry<String, Entry>> it = files.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> entry = it.next();
+                if (!Files.exists(uploadDir.resolve(entry.getKey()))) {
+                    it.remove();
+                    storedBytes -= entry.getValue().size();
+                }
+            }
+        }
+
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - orphanGrace.toMillis();
+        try (Stream<Path> paths = Files.list(uploadDir)) {
+            paths.filter(UploadStagingServiceImpl::isTemp).forEach(path -> {
+                try {
+                    if (Files.getLastModifiedTime(path).toMillis() < cutoff && Files.deleteIfExists(path)) {
+                        log.info("Removed orphaned upload temp file {}", path.getFileName());
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not remove orphaned upload temp file {}: {}", path.getFileName(), e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not sweep upload directory {}: {}", uploadDir, e.getMessage());
+        }
+    }
+
+    // Caller holds the lock
+    private void evictExpired(long now, List<String> evicted) {
+        long cutoff = now - ttl.toMillis();
+        Iterator<Map.Entry<String, Entry>> it = files.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> entry = it.next();
+            if (entry.getValue().lastAccess() >= cutoff) {
+                // Access order: the rest were used more recently
+                break;
+            }
+            it.remove();
+            storedBytes -= entry.getValue().size();
+            evicted.add(entry.getKey());
+            evictedBytes.increment(entry.getValue().size());
+        }
+    }
+
+    /**
+     * Deletes evicted files while the lock is held, so no caller can pick up a file between its
+     * removal from the index and its deletion
+     */
+    private void evict(List<String> evicted) {
+        for (String fileName : evicted) {
+            try {
+                evictor.accept(fileName);
+                evictedFiles.increment();
+            } catch (RuntimeException e) {
+                log.warn("Could not evict upload {}: {}", fileName, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteFile(String fileName) {
+        try {
+            Files.deleteIfExists(uploadDir.resolve(fileName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void rebuild() {
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> existing = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(uploadDir)) {
+            paths.filter(path -> !isTemp(path)).forEach(path -> {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        long lastAccess = Math.max(attributes.lastAccessTime().toMillis(),
+                                attributes.lastModifiedTime().toMillis());
+                        existing.add(Map.entry(path.getFileName().toString(), new Entry(attributes.size(), lastAccess)));
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not read upload {}: {}", path.getFileName(), e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            log.warn("Could not index upload directory {}: {}", uploadDir, e.getMessage());
+        }
+        existing.sort(Map.Entry.comparingByValue((a, b) -> Long.compare(a.lastAccess(), b.lastAccess())));
+        for (Map.Entry<String, Entry> entry : existing) {
+            files.put(entry.getKey(), entry.getValue());
+            storedBytes += entry.getValue().size();
+        }
+        log.info("Upload staging in {}: {} files, {} of {} bytes", uploadDir, files.size(), storedBytes, budgetBytes);
+    }
+
+    private static boolean isTemp(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX);
+    }
+
+    /**
+     * A quarter of an in-memory file system, since its bytes come out of the container's memory
+     * limit, and half of a disk-backed one.
+     */
+    private static long defaultBudget(Path dir) {
+        Path existing = dir;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        try {
+            FileStore store = Files.getFileStore(existing != null ? existing : dir);
+            boolean inMemory = MEMORY_FILE_SYSTEMS.contains(store.type());
+            if (inMemory) {
+                log.info("Upload directory {} is on {}; stored files count against container memory", dir, store.type());
+            }
+            return store.getTotalSpace() / (inMemory ? 4 : 2);
+        } catch (IOException e) {
+            log.warn("Could not size upload storage at {}, using 256 MB: {}", dir, e.getMessage());
+            return 256L * 1024 * 1024;
+        }
+    }
+
+    private record Entry(long size, long lastAccess) {
+    }
+}
@@ -10,7 +10,7 @@ import com.google.protobuf.util.JsonFormat;
 import org.kh.neuralpix.config.VertexAIConfig;
 import org.kh.neuralpix.dto.vertexai.VertexAIImageRequest;
 import org.kh.neuralpix.dto.vertexai.VertexAIImageResponse;
-import org.kh.neuralpix.service.CloudinaryService;
+import org.kh.neuralpix.service.StorageBackend;
 import org.kh.neuralpix.service.VertexAIImagenService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,7 +33,7 @@ public class VertexAIImagenServiceImpl implements VertexAIImagenService {
     private VertexAIConfig vertexAIConfig;
     
     @Autowired
-    private CloudinaryService cloudinaryService;
+    private StorageBackend storageBackend;
     
     @org.springframework.beans.factory.annotation.Value("${vertexai.imagen.model:imagegeneration@006}")
     private String imagenModel;
@@ -64,9 +64,9 @@ public class VertexAIImagenServiceImpl implements VertexAIImagenService {
                 // Process the response
                 VertexAIImageResponse imageResponse = processResponse(response, correlationId);
                 
-                // Upload images to Cloudinary if successful
+                // Store images if successful
                 if (imageResponse.isSuccess() && imageResponse.getImages() != null) {
-                    uploadImagesToCloudinary(imageResponse, correlationId);
+                    storeImages(imageResponse, correlationId);
                 }
                 
                 long processingTime = System.currentTimeMillis() - startTime;
@@ -108,7 +108,7 @@ public class VertexAIImagenServiceImpl implements VertexAIImagenService {
                 VertexAIImageResponse imageResponse = processResponse(response, correlationId);
                 
                 if (imageResponse.isSuccess() && imageResponse.getImages() != null) {
-                    uploadImagesToCloudinary(imageResponse, correlationId);
+                    storeImages(imageResponse, correlationId);
                 }
                 
                 long processingTime = System.currentTimeMillis() - startTime;
@@ -150,7 +150,7 @@ public class VertexAIImagenServiceImpl implements VertexAIImagenService {
                 VertexAIImageResponse imageResponse = processResponse(response, correlationId);
                 
                 if (imageResponse.isSuccess() && imageResponse.getImages() != null) {
-                    uploadImagesToCloudinary(imageResponse, correlationId);
+                    storeImages(imageResponse, correlationId);
                 }
                 
                 long processingTime = System.currentTimeMillis() - startTime;
@@ -303,25 +303,25 @@ public class VertexAIImagenServiceImpl implements VertexAIImagenService {
         }
     }
     
-    private void uploadImagesToCloudinary(VertexAIImageResponse response, String correlationId) {
+    private void storeImages(VertexAIImageResponse response, String correlationId) {
         try {
             for (VertexAIImageResponse.GeneratedImageData imageData : response.getImages()) {
                 if (imageData.getBase64Data() != null) {
                     // Convert base64 to bytes
                     byte[] imageBytes = Base64.getDecoder().decode(imageData.getBase64Data());
                     
-                    // Upload to Cloudinary
-                    String imageUrl = cloudinaryService.uploadImageFromBytes(imageBytes, "vertexai_" + correlationId);
+                    // Stored by the configured backend
+                    String imageUrl = storageBackend.store(imageBytes).join().url();
                     imageData.setImageUrl(imageUrl);
                     
                     // Clear base64 data to save memory
                     imageData.setBase64Data(null);
                     
-                    logger.info("[{}] Uploaded image to Cloudinary: {}", correlationId, imageUrl);
+                    logger.info("[{}] Stored generated image: {}", correlationId, imageUrl);
                 }
             }
         } catch (Exception e) {
-            logger.error("[{}] Error uploading images to Cloudinary: {}", correlationId, e.getMessage(), e);
+            logger.error("[{}] Error storing generated images: {}", correlationId, e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package org.kh.neuralpix.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads format and dimensions of PNG, JPEG, GIF and WebP images from their headers, without
+ * decoding pixels. PNG, GIF and WebP need the first 30 bytes; JPEG is walked segment by segment
+ * up to the frame header, reading only the few bytes of each marker, so a large EXIF block is
+ * skipped rather than read.
+ */
+public final class ImageProbe {
+
+    /**
+     * Bytes worth reading up front: covers PNG, GIF and WebP and the first JPEG markers
+     */
+    public static final int HEADER_BYTES = 512;
+
+    // JPEG files put the frame header after EXIF/ICC blocks; give up past this point
+    private static final long MAX_JPEG_SCAN = 1L << 20;
+    private static final int MAX_JPEG_SEGMENTS = 128;
+
+    private ImageProbe() {
+    }
+
+    public record ImageInfo(String format, int width, int height) {
+
+        public long pixels() {
+            return (long) width * height;
+        }
+    }
+
+    /**
+     * Random access to the image bytes. Returns fewer bytes than asked for at the end of the data.
+     */
+    @FunctionalInterface
+    public interface ByteSource {
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    /**
+     * Format (png, jpeg, gif or webp) and dimensions, or null when the data is none of those
+     */
+    public static ImageInfo probe(ByteSource source) throws IOException {
+        byte[] header = source.read(0, HEADER_BYTES);
+        String format = format(header);
+        if (format == null) {
+            return null;
+        }
+        return switch (format) {
+            case "png" -> header.length >= 24 ? new ImageInfo("png", int32(header, 16), int32(header, 20)) : null;
+            case "gif" -> header.length >= 10 ? new ImageInfo("gif", uint16le(header, 6), uint16le(header, 8)) : null;
+            case "webp" -> webp(header);
+            default -> jpeg(source, header);
+        };
+    }
+
+    /**
+     * Format from the magic number at the start of the data, or null when it is not a supported image
+     */
+    public static String format(byte[] header) {
+        if (isPng(header)) {
+            return "png";
+        }
+        if (isWebp(header)) {
+            return "webp";
+        }
+        if (header.length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return "jpeg";
+        }
+        if (header.length >= 6 && header[0] == 'G' && header[1] == 'I' && header[2] == 'F' && header[3] == '8'
+                && (header[4] == '7' || header[4] == '9') && header[5] == 'a') {
+            return "gif";
+        }
+        return null;
+    }
+
+    private static boolean isPng(byte[] b) {
+        return b.length >= 8 && (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G'
+                && b[4] == 0x0D && b[5] == 0x0A && b[6] == 0x1A && b[7] == 0x0A;
+    }
+
+    private static boolean isWebp(byte[] b) {
+        return b.length >= 12 && b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F'
+                && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P';
+    }
+
+    private static ImageInfo webp(byte[] b) {
+        if (b.length < 30) {
+            return null;
+        }
+        String chunk = new String(b, 12, 4, StandardCharsets.US_ASCII);
+        switch (chunk) {
+            case "VP8 " -> {
+                // Lossy: frame tag (3 bytes), start code 9d 01 2a, then 14-bit width and height
+                if ((b[23] & 0xFF) != 0x9D || (b[24] & 0xFF) != 0x01 || (b[25] & 0xFF) != 0x2A) {
+                    return null;
+                }
+                return new ImageInfo("webp", uint16le(b, 26) & 0x3FFF, uint16le(b, 28) & 0x3FFF);
+            }
+            case "VP8L" -> {
+                // Lossless: signature 0x2f, then width-1 and height-1 as 14-bit fields
+                if ((b[20] & 0xFF) != 0x2F) {
+                    return null;
+                }
+                long bits = (b[21] & 0xFFL) | (b[22] & 0xFFL) << 8 | (b[23] & 0xFFL) << 16 | (b[24] & 0xFFL) << 24;
+                return new ImageInfo("webp", (int) (bits & 0x3FFF) + 1, (int) ((bits >> 14) & 0x3FFF) + 1);
+            }
+            case "VP8X" -> {
+                // Extended: 24-bit canvas width-1 and height-1
+                return new ImageInfo("webp", uint24le(b, 24) + 1, uint24le(b, 27) + 1);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private static ImageInfo jpeg(ByteSource source, byte[] header) throws IOException {
+        long offset = 2;
+        for (int segment = 0; segment < MAX_JPEG_SEGMENTS && offset < MAX_JPEG_SCAN; segment++) {
+            byte[] marker = slice(source, header, offset, 9);
+            if (marker.length < 4 || (marker[0] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int type = marker[1] & 0xFF;
+            if (type == 0xFF) {
+                // Fill byte before the marker
+                offset++;
+                continue;
+            }
+            if (type == 0xD9 || type == 0xDA) {
+                // End of image or start of scan before any frame header
+                return null;
+            }
+            if (type >= 0xD0 && type <= 0xD7 || type == 0x01) {
+                // Markers without a length
+                offset += 2;
+                continue;
+            }
+            int length = uint16be(marker, 2);
+            if (isStartOfFrame(type)) {
+                if (marker.length < 9) {
+                    return null;
+                }
+                return new ImageInfo("jpeg", uint16be(marker, 7), uint16be(marker, 5));
+            }
+            if (length < 2) {
+                return null;
+            }
+            offset += 2 + length;
+        }
+        return null;
+    }
+
+    private static boolean isStartOfFrame(int type) {
+        // SOF0-SOF15 except DHT (C4), JPG (C8) and DAC (CC)
+        return type >= 0xC0 && type <= 0xCF && type != 0xC4 && type != 0xC8 && type != 0xCC;
+    }
+
+    /**
+     * Bytes at offset, from the header already read when they are in it
+     */
+    private static byte[] slice(ByteSource source, byte[] header, long offset, int length) throws IOException {
+        if (offset + length <= header.length) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(header, (int) offset, bytes, 0, length);
+            return bytes;
+        }
+        return source.read(offset, length);
+    }
+
+    private static int int32(byte[] b, int i) {
+        return (b[i] & 0xFF) << 24 | (b[i + 1] & 0xFF) << 16 | (b[i + 2] & 0xFF) << 8 | (b[i + 3] & 0xFF);
+    }
+
+    private static int uint16be(byte[] b, int i) {
+        return (b[i] & 0xFF) << 8 | (b[i + 1] & 0xFF);
+    }
+
+    private static int uint16le(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8;
+    }
+
+    private static int uint24le(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16;
+    }
+}
@@ -0,0 +1,90 @@
+package org.kh.neuralpix.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free Snowflake-style order code generator sized for PayOS, whose order codes must be
+ * positive integers no larger than 2^53 - 1 (9007199254740991).
+ *
+ * Layout (53 bits): 41 bits of milliseconds since {@link #EPOCH_MILLIS} | 5 bits node id | 7 bits sequence.
+ * That allows 32 concurrently running nodes, 128 codes per millisecond per node and about 69 years of range.
+ * When a node exhausts the sequence for a millisecond it borrows the next millisecond instead of
+ * spinning, so callers never block; the clock catches up on its own.
+ */
+public class SnowflakeOrderCodeGenerator {
+
+    /** 2025-01-01T00:00:00Z */
+    public static final long EPOCH_MILLIS = 1735689600000L;
+
+    public static final int NODE_BITS = 5;
+    public static final int SEQUENCE_BITS = 7;
+    public static final int TIMESTAMP_BITS = 41;
+
+    public static final int MAX_NODES = 1 << NODE_BITS;
+    public static final long MAX_ORDER_CODE = (1L << (TIMESTAMP_BITS + NODE_BITS + SEQUENCE_BITS)) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << TIMESTAMP_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // (timestamp << SEQUENCE_BITS) | sequence of the last issued code
+    private final AtomicLong state;
+
+    public SnowflakeOrderCodeGenerator(int nodeId, long lastTimestampMillis) {
+        this(nodeId, lastTimestampMillis, System::currentTimeMillis);
+    }
+
+    public SnowflakeOrderCodeGenerator(int nodeId, long lastTimestampMillis, LongSupplier clock) {
+        if (nodeId < 0 || nodeId >= MAX_NODES) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + (MAX_NODES - 1));
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        // Start after the last timestamp issued under this node id so a takeover never repeats a code
+        long floor = Math.max(0, lastTimestampMillis - EPOCH_MILLIS);
+        this.state = new AtomicLong((floor << SEQUENCE_BITS) | SEQUENCE_MASK);
+    }
+
+    public long nextOrderCode() {
+        while (true) {
+            long previous = state.get();
+            long previousTimestamp = previous >>> SEQUENCE_BITS;
+            long previousSequence = previous & SEQUENCE_MASK;
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+
+            long timestamp;
+            long sequence;
+            if (now > previousTimestamp) {
+                timestamp = now;
+                sequence = 0;
+            } else if (previousSequence < SEQUENCE_MASK) {
+                timestamp = previousTimestamp;
+                sequence = previousSequence + 1;
+            } else {
+                timestamp = previousTimestamp + 1;
+                sequence = 0;
+            }
+            if (timestamp > MAX_TIMESTAMP) {
+                throw new IllegalStateException("Order code timestamp range exhausted");
+            }
+
+            if (state.compareAndSet(previous, (timestamp << SEQUENCE_BITS) | sequence)) {
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    public int getNodeId() {
+        return (int) nodeId;
+    }
+
+    /**
+     * Wall-clock millisecond of the most recently issued code, used as the floor for the next holder of this node id
+     */
+    public long getLastTimestampMillis() {
+        return (state.get() >>> SEQUENCE_BITS) + EPOCH_MILLIS;
+    }
+}
@@ -0,0 +1,148 @@
+package org.kh.neuralpix.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bounded, time-decayed top-K index of item ids.
+ *
+ * An event of weight w at time t contributes w * 2^((t - EPOCH) / halfLife) to an item's score,
+ * so every score decays by half each half-life without ever being touched. Because all items
+ * decay at the same rate, their order never changes with time alone and only the item that
+ * received an event has to be re-sorted. Scores are kept as base-2 logarithms so they grow
+ * linearly with time instead of overflowing.
+ *
+ * Items are kept in a sorted set: recording an event is O(log n) and reading the top K is O(K).
+ * When more than capacity items are tracked, the lowest scored one is dropped.
+ */
+public class TrendingIndex {
+
+    // 2025-01-01T00:00:00Z, the same epoch as the order code generator
+    public static final long EPOCH = 1735689600000L;
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingDouble((Entry entry) -> entry.logScore).reversed()
+            .thenComparing(Comparator.comparingLong((Entry entry) -> entry.id).reversed());
+
+    private final int capacity;
+    private final double halfLifeMillis;
+
+    // Guarded by this
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> ranked = new TreeSet<>(ORDER);
+
+    public TrendingIndex(int capacity, long halfLifeMillis) {
+        if (capacity <= 0 || halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("Capacity and half-life must be positive");
+        }
+        this.capacity = capacity;
+        this.halfLifeMillis = halfLifeMillis;
+    }
+
+    /**
+     * Add an event of the given weight that happened at timestampMillis
+     */
+    public synchronized void record(long id, double weight, long timestampMillis) {
+        if (weight <= 0) {
+            return;
+        }
+        add(id, Math.log(weight) / Math.log(2) + (timestampMillis - EPOCH) / halfLifeMillis);
+    }
+
+    /**
+     * Restore a score previously returned by {@link #snapshot()}
+     */
+    public synchronized void restore(long id, double logScore) {
+        add(id, logScore);
+    }
+
+    private void add(long id, double logScore) {
+        Entry current = entries.get(id);
+        double combined = logScore;
+        if (current != null) {
+            ranked.remove(current);
+            combined = logAdd(current.logScore, logScore);
+        } else if (entries.size() >= capacity) {
+            Entry lowest = ranked.last();
+            if (ORDER.compare(new Entry(id, combined), lowest) > 0) {
+                // Would be dropped immediately
+                return;
+            }
+            ranked.pollLast();
+            entries.remove(lowest.id);
+        }
+        Entry updated = new Entry(id, combined);
+        entries.put(id, updated);
+        ranked.add(updated);
+    }
+
+    public synchronized void remove(long id) {
+        Entry current = entries.remove(id);
+        if (current != null) {
+            ranked.remove(current);
+        }
+    }
+
+    /**
+     * Ids ranked offset .. offset + limit - 1, highest score first
+     */
+    public synchronized List<Long> top(int offset, int limit) {
+        List<Long> ids = new ArrayList<>(Math.max(0, Math.min(limit, entries.size())));
+        int index = 0;
+        for (Entry entry : ranked) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            if (index++ >= offset) {
+                ids.add(entry.id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The decayed score of an item at the given time, 0 if it is not tracked
+     */
+    public synchronized double score(long id, long nowMillis) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return 0;
+        }
+        return Math.pow(2, entry.logScore - (nowMillis - EPOCH) / halfLifeMillis);
+    }
+
+    /**
+     * All tracked ids with their log scores, highest first. Scores do not depend on the
+     * time of the snapshot and can be restored as they are.
+     */
+    public synchronized Map<Long, Double> snapshot() {
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        for (Entry entry : ranked) {
+            scores.put(entry.id, entry.logScore);
+        }
+        return scores;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        ranked.clear();
+    }
+
+    private static double logAdd(double a, double b) {
+        double high = Math.max(a, b);
+        double low = Math.min(a, b);
+        return high + Math.log1p(Math.pow(2, low - high)) / Math.log(2);
+    }
+
+    private record Entry(long id, double logScore) {
+    }
+}
@@ -0,0 +1,98 @@
+package org.kh.neuralpix.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadAdmissionFilterTest {
+
+    private static MockHttpServletRequest post(int bodyBytes) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/pixelcut/remove-background");
+        request.setContentType("application/json");
+        request.setContent(new byte[bodyBytes]);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    @Test
+    void testLargeBodyHoldsBudgetUntilAsyncResponseCompletes() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // A budget far below any body, so each large request needs all of it
+        PayloadAdmissionFilter filter = new PayloadAdmissionFilter(1024, 1 << 20, 3, 1e-9, 0, registry);
+        FilterChain startsAsync = (request, response) -> request.startAsync();
+
+        MockHttpServletRequest first = post(4096);
+        filter.doFilter(first, new MockHttpServletResponse(), startsAsync);
+        assertTrue(first.isAsyncStarted());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(post(4096), rejected, startsAsync);
+        assertEquals(503, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+
+        // Small bodies are never held back
+        MockHttpServletResponse small = new MockHttpServletResponse();
+        filter.doFilter(post(100), small, (request, response) -> {});
+        assertEquals(200, small.getStatus());
+
+        first.getAsyncContext().complete();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+        filter.doFilter(post(4096), admitted, (request, response) -> {});
+        assertEquals(200, admitted.getStatus());
+
+        MockHttpServletResponse tooLarge = new MockHttpServletResponse();
+        filter.doFilter(post(2 << 20), tooLarge, (request, response) -> {});
+        assertEquals(413, tooLarge.getStatus());
+
+        assertEquals(8192.0, registry.get("neuralpix.payload.admitted.bytes").counter().count());
+        assertEquals(4096.0 + (2 << 20), registry.get("neuralpix.payload.rejected.bytes").counter().count());
+        assertEquals(0.0, registry.get("neuralpix.payload.inflight.bytes").gauge().value());
+    }
+
+    private static MockHttpServletRequest chunked(int bodyBytes) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/vertex/edit") {
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        request.setContentType("application/json");
+        request.addHeader("Transfer-Encoding", "chunked");
+        request.setContent(new byte[bodyBytes]);
+        return request;
+    }
+
+    // Reads the whole body and, like the message converters, answers 400 when it cannot be read
+    private static final FilterChain READS_BODY = (request, response) -> {
+        try (InputStream in = request.getInputStream()) {
+            in.readAllBytes();
+        } catch (IOException e) {
+            ((HttpServletResponse) response).sendError(400, "Unreadable body");
+        }
+    };
+
+    @Test
+    void testChunkedBodyIsCutOffAtMaxBodySize() throws Exception {
+        // No MeterRegistry bean, as in a web slice test
+        PayloadAdmissionFilter filter = new PayloadAdmissionFilter(1024, 8192, 3, 0.25, 0,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+        MockHttpServletResponse withinLimit = new MockHttpServletResponse();
+        filter.doFilter(chunked(8192), withinLimit, READS_BODY);
+        assertEquals(200, withinLimit.getStatus());
+
+        MockHttpServletResponse overLimit = new MockHttpServletResponse();
+        filter.doFilter(chunked(8193), overLimit, READS_BODY);
+        assertEquals(413, overLimit.getStatus());
+    }
+}
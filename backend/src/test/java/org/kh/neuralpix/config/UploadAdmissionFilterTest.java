@@ -0,0 +1,64 @@
+package org.kh.neuralpix.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kh.neuralpix.service.UploadStagingService;
+import org.kh.neuralpix.service.impl.UploadStagingServiceImpl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadAdmissionFilterTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private static MockHttpServletRequest multipart(int bodyBytes) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/files/upload");
+        request.setContentType("multipart/form-data; boundary=xyz");
+        request.setContent(new byte[bodyBytes]);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    @Test
+    void testMultipartBodyIsReservedBeforeItIsParsed() throws Exception {
+        UploadStagingService staging = new UploadStagingServiceImpl(uploadDir.toString(), 1000, 3600, 0, 900,
+                new SimpleMeterRegistry());
+        UploadAdmissionFilter filter = new UploadAdmissionFilter(staging, DataSize.ofBytes(800));
+        AtomicLong reservedInChain = new AtomicLong();
+
+        filter.doFilter(multipart(600), new MockHttpServletResponse(),
+                (request, response) -> reservedInChain.set(staging.usage().reservedBytes()));
+        assertEquals(600, reservedInChain.get());
+        assertEquals(0, staging.usage().reservedBytes());
+
+        // Held across async handling, so a second body does not fit until the first completes
+        MockHttpServletRequest first = multipart(600);
+        filter.doFilter(first, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        MockHttpServletResponse busy = new MockHttpServletResponse();
+        filter.doFilter(multipart(600), busy, (request, response) -> fail("parsed while over budget"));
+        assertEquals(429, busy.getStatus());
+        assertEquals("5", busy.getHeader("Retry-After"));
+
+        first.getAsyncContext().complete();
+        assertEquals(0, staging.usage().reservedBytes());
+
+        // Larger than the whole budget
+        UploadAdmissionFilter lenient = new UploadAdmissionFilter(staging, DataSize.ofBytes(2000));
+        MockHttpServletResponse tooLarge = new MockHttpServletResponse();
+        lenient.doFilter(multipart(1500), tooLarge, (request, response) -> fail("parsed while over budget"));
+        assertEquals(507, tooLarge.getStatus());
+
+        // Bodies over the multipart limit are charged at the limit; the container refuses the rest
+        filter.doFilter(multipart(1500), new MockHttpServletResponse(),
+                (request, response) -> reservedInChain.set(staging.usage().reservedBytes()));
+        assertEquals(800, reservedInChain.get());
+    }
+}
@@ -0,0 +1,95 @@
+package org.kh.neuralpix.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.dto.UserDto;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.DirectUploadService;
+import org.kh.neuralpix.service.DirectUploadService.UploadResult;
+import org.kh.neuralpix.service.StorageBackend;
+import org.kh.neuralpix.service.UserService;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Avatar changes are limited to the signed-in user's own account
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UserControllerTest {
+
+    private static final UploadResult RESULT = new UploadResult("neuralpix/users/7/0123456789abcdef0123456789abcdef", "1", "sig");
+
+    @Mock
+    private UserService userService;
+    @Mock
+    private StorageBackend storageBackend;
+    @Mock
+    private DirectUploadService directUploadService;
+
+    private UserController userController;
+    private final Authentication alice = new UsernamePasswordAuthenticationToken("alice@example.com", null);
+
+    @BeforeEach
+    void setUp() {
+        when(userService.findByEmail("alice@example.com")).thenReturn(Optional.of(UserDto.builder().id(7L).build()));
+        userController = new UserController(userService, storageBackend, directUploadService);
+    }
+
+    @Test
+    void testDirectAvatarOfAnotherUserIsForbidden() {
+        assertEquals(HttpStatus.FORBIDDEN, userController.confirmDirectAvatar(8L, RESULT, alice).getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, userController.confirmDirectAvatar(7L, RESULT, null).getStatusCode());
+        verifyNoInteractions(directUploadService);
+        verify(userService, never()).updateUserAvatar(any(), any());
+    }
+
+    @Test
+    void testDirectAvatarOfOwnAccountIsSet() {
+        ImageHandle avatar = ImageHandle.ofUrl("https://res.cloudinary.com/demo/image/upload/v1/avatar.png");
+        when(directUploadService.confirm(7L, RESULT)).thenReturn(avatar);
+        when(userService.updateUserAvatar(7L, avatar.url())).thenReturn(UserDto.builder().id(7L).avatarUrl(avatar.url()).build());
+
+        assertEquals(HttpStatus.OK, userController.confirmDirectAvatar(7L, RESULT, alice).getStatusCode());
+        verify(userService).updateUserAvatar(7L, avatar.url());
+    }
+
+    @Test
+    void testUploadedAvatarIsStreamedToStorage() {
+        MockMultipartFile file = new MockMultipartFile("file", "a.png", "image/png", new byte[]{1, 2, 3});
+        ImageHandle avatar = ImageHandle.ofUrl("https://res.cloudinary.com/demo/image/upload/v1/avatars/a.png");
+        when(storageBackend.store(file, "avatars")).thenReturn(CompletableFuture.completedFuture(avatar));
+
+        assertEquals(HttpStatus.OK, userController.uploadAvatar(7L, file, alice).join().getStatusCode());
+        verify(userService).updateUserAvatar(7L, avatar.url());
+
+        // The backend refuses bodies that are not images whatever their declared type
+        when(storageBackend.store(file, "avatars")).thenReturn(
+                CompletableFuture.failedFuture(new IllegalArgumentException("File is not a PNG, JPEG, GIF or WebP image")));
+        assertEquals(HttpStatus.BAD_REQUEST, userController.uploadAvatar(7L, file, alice).join().getStatusCode());
+        verify(storageBackend, never()).store(any(byte[].class));
+        verify(storageBackend, never()).store(any(byte[].class), any());
+    }
+
+    @Test
+    void testUploadedAvatarOfAnotherUserIsForbidden() {
+        MockMultipartFile file = new MockMultipartFile("file", "a.png", "image/png", new byte[]{1, 2, 3});
+
+        assertEquals(HttpStatus.FORBIDDEN, userController.uploadAvatar(8L, file, alice).join().getStatusCode());
+        verifyNoInteractions(storageBackend);
+    }
+}
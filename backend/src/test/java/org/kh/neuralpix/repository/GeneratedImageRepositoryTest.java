@@ -0,0 +1,111 @@
+package org.kh.neuralpix.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kh.neuralpix.dto.response.WorkHistoryResponseDto;
+import org.kh.neuralpix.mapper.GeneratedImageMapper;
+import org.kh.neuralpix.model.GeneratedImage;
+import org.kh.neuralpix.model.User;
+import org.kh.neuralpix.service.EngagementCounterService;
+import org.kh.neuralpix.service.SearchIndexService;
+import org.kh.neuralpix.service.UsageTrackingService;
+import org.kh.neuralpix.service.impl.GeneratedImageServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Statement counts of the list views against a real schema (H2 in MySQL mode): a page must cost
+ * its projection query and the count query, however many rows and users are on it.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:neuralpix;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class GeneratedImageRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private GeneratedImageRepository generatedImageRepository;
+
+    private GeneratedImageServiceImpl generatedImageService;
+    private Statistics statistics;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        EngagementCounterService engagementCounterService = mock(EngagementCounterService.class, CALLS_REAL_METHODS);
+        generatedImageService = new GeneratedImageServiceImpl(generatedImageRepository, mock(UsageTrackingService.class),
+                new GeneratedImageMapper(engagementCounterService), mock(ApplicationEventPublisher.class),
+                engagementCounterService, mock(SearchIndexService.class));
+
+        userId = persistUser("alice").getId();
+        Long otherUserId = persistUser("bob").getId();
+        for (int i = 0; i < 25; i++) {
+            persistImage(userId, i % 5 == 0);
+            persistImage(otherUserId, false);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private User persistUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPasswordHash("hash");
+        return entityManager.persist(user);
+    }
+
+    private void persistImage(Long ownerId, boolean deleted) {
+        GeneratedImage image = new GeneratedImage();
+        image.setUserId(ownerId);
+        image.setImageUrl("https://img.example.com/" + ownerId + ".png");
+        image.setIsDeleted(deleted);
+        entityManager.persist(image);
+    }
+
+    @Test
+    void testWorkHistoryPageIsProjectionAndCountQuery() {
+        WorkHistoryResponseDto history = generatedImageService.getUserWorkHistory(userId, PageRequest.of(0, 10));
+
+        assertEquals(10, history.getImages().size());
+        assertEquals(20, history.getTotalElements());
+        assertTrue(history.getImages().stream().allMatch(image -> "alice".equals(image.getUsername())));
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void testMyImagesIsOneQuery() {
+        assertEquals(25, generatedImageService.getImagesByUserIdDto(userId).size());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
@@ -0,0 +1,117 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.repository.SubscriptionRepository;
+import org.kh.neuralpix.repository.TransactionRepository;
+import org.kh.neuralpix.service.impl.BusinessMetricsServiceImpl;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BusinessMetricsServiceTest {
+
+    @Mock
+    private SubscriptionRepository subscriptionRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @InjectMocks
+    private BusinessMetricsServiceImpl metricsService;
+
+    @Test
+    void testRebuildFromGroupByRows() {
+        when(subscriptionRepository.aggregateByStatusAndBillingCycle()).thenReturn(List.of(
+            new Object[]{Subscription.SubscriptionStatus.ACTIVE, Subscription.BillingCycle.MONTHLY, 3L, new BigDecimal("300")},
+            new Object[]{Subscription.SubscriptionStatus.ACTIVE, Subscription.BillingCycle.YEARLY, 1L, new BigDecimal("1000")},
+            new Object[]{Subscription.SubscriptionStatus.CANCELLED, Subscription.BillingCycle.MONTHLY, 1L, new BigDecimal("100")}
+        ));
+        when(transactionRepository.aggregateByStatus()).thenReturn(List.of(
+            new Object[]{Transaction.TransactionStatus.PAID, 2L, new BigDecimal("500")},
+            new Object[]{Transaction.TransactionStatus.PENDING, 4L, new BigDecimal("400")}
+        ));
+        when(transactionRepository.aggregatePaidRevenueByMonth()).thenReturn(List.<Object[]>of(
+            new Object[]{2026, 10, new BigDecimal("500")}
+        ));
+
+        metricsService.rebuild();
+
+        assertEquals(4, metricsService.countSubscriptionsByStatus(Subscription.SubscriptionStatus.ACTIVE));
+        assertEquals(1300.0, metricsService.getActiveSubscriptionRevenue());
+        assertEquals(300.0, metricsService.getActiveMonthlySubscriptionRevenue());
+        assertEquals(325.0, metricsService.getAverageRevenuePerUser());
+        assertEquals(20.0, metricsService.getChurnRate());
+        assertEquals(2, metricsService.countTransactionsByStatus(Transaction.TransactionStatus.PAID));
+        assertEquals(500.0, metricsService.getTransactionAmountByStatus(Transaction.TransactionStatus.PAID));
+        assertEquals(500.0, metricsService.getPaidRevenueByMonth(2026, 10));
+        assertEquals(0.0, metricsService.getPaidRevenueByMonth(2026, 9));
+    }
+
+    @Test
+    void testUpdatesDuringRebuildAreKept() {
+        BigDecimal price = new BigDecimal("99000");
+        when(subscriptionRepository.aggregateByStatusAndBillingCycle()).thenReturn(List.<Object[]>of(
+            new Object[]{Subscription.SubscriptionStatus.ACTIVE, Subscription.BillingCycle.MONTHLY, 2L, new BigDecimal("198000")}
+        ));
+        // A subscription committed after its table was read, while transactions are being read
+        when(transactionRepository.aggregateByStatus()).thenAnswer(invocation -> {
+            metricsService.subscriptionAdded(Subscription.SubscriptionStatus.ACTIVE, Subscription.BillingCycle.MONTHLY, price);
+            return List.of();
+        });
+        when(transactionRepository.aggregatePaidRevenueByMonth()).thenReturn(List.of());
+
+        metricsService.rebuild();
+
+        assertEquals(3, metricsService.countSubscriptionsByStatus(Subscription.SubscriptionStatus.ACTIVE));
+        assertEquals(297000.0, metricsService.getActiveMonthlySubscriptionRevenue());
+
+        // Once the rebuild is over, updates are no longer replayed by the next one
+        when(transactionRepository.aggregateByStatus()).thenReturn(List.of());
+        metricsService.rebuild();
+        assertEquals(2, metricsService.countSubscriptionsByStatus(Subscription.SubscriptionStatus.ACTIVE));
+    }
+
+    @Test
+    void testIncrementalStatusTransitions() {
+        BigDecimal price = new BigDecimal("99000");
+
+        // Subscription created as PENDING, then activated, then cancelled
+        metricsService.subscriptionAdded(Subscription.SubscriptionStatus.PENDING, Subscription.BillingCycle.MONTHLY, price);
+        metricsService.subscriptionRemoved(Subscription.SubscriptionStatus.PENDING, Subscription.BillingCycle.MONTHLY, price);
+        metricsService.subscriptionAdded(Subscription.SubscriptionStatus.ACTIVE, Subscription.BillingCycle.MONTHLY, price);
+
+        assertEquals(1, metricsService.countSubscriptionsByStatus(Subscription.SubscriptionStatus.ACTIVE));
+        assertEquals(0, metricsService.countSubscriptionsByStatus(Subscription.SubscriptionStatus.PENDING));
+        assertEquals(99000.0, metricsService.getActiveMonthlySubscriptionRevenue());
+
+        metricsService.subscriptionRemoved(Subscription.SubscriptionStatus.ACTIVE, Subscription.BillingCycle.MONTHLY, price);
+        metricsService.subscriptionAdded(Subscription.SubscriptionStatus.CANCELLED, Subscription.BillingCycle.MONTHLY, price);
+
+        assertEquals(0.0, metricsService.getActiveSubscriptionRevenue());
+        assertEquals(100.0, metricsService.getChurnRate());
+
+        // Transaction paid
+        LocalDateTime created = LocalDateTime.of(2026, 10, 1, 9, 0);
+        LocalDateTime paid = LocalDateTime.of(2026, 10, 1, 9, 5);
+        metricsService.transactionAdded(Transaction.TransactionStatus.PENDING, price, created);
+        metricsService.transactionRemoved(Transaction.TransactionStatus.PENDING, price, created);
+        metricsService.transactionAdded(Transaction.TransactionStatus.PAID, price, paid);
+
+        assertEquals(0, metricsService.countTransactionsByStatus(Transaction.TransactionStatus.PENDING));
+        assertEquals(1, metricsService.countTransactionsByStatus(Transaction.TransactionStatus.PAID));
+        assertEquals(99000.0, metricsService.getPaidRevenueByMonth(2026, 10));
+
+        verifyNoInteractions(subscriptionRepository, transactionRepository);
+    }
+}
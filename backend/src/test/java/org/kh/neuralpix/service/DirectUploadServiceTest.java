@@ -0,0 +1,97 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.DirectUploadService.SignedUpload;
+import org.kh.neuralpix.service.DirectUploadService.UploadResult;
+import org.kh.neuralpix.service.impl.DirectUploadServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DirectUploadServiceTest {
+
+    @Mock
+    private CloudinaryService cloudinaryService;
+
+    private DirectUploadServiceImpl directUploadService;
+
+    @BeforeEach
+    void setUp() {
+        directUploadService = new DirectUploadServiceImpl(cloudinaryService, "neuralpix", 900, 300, "cloudinary");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSignedUploadIsOneNewImageInTheUserFolder() {
+        when(cloudinaryService.directUploadUrl()).thenReturn("https://api.cloudinary.com/v1_1/demo/image/upload");
+        when(cloudinaryService.signDirectUpload(anyMap())).thenAnswer(invocation -> {
+            Map<String, Object> signed = new HashMap<>(invocation.<Map<String, Object>>getArgument(0));
+            signed.put("signature", "sig");
+            return signed;
+        });
+
+        long now = Instant.now().getEpochSecond();
+        SignedUpload upload = directUploadService.sign(7L);
+        SignedUpload another = directUploadService.sign(7L);
+
+        String publicId = (String) upload.params().get("public_id");
+        assertTrue(publicId.matches("neuralpix/users/7/[0-9a-f]{32}"), publicId);
+        assertNotEquals(publicId, another.params().get("public_id"));
+        assertEquals("false", upload.params().get("overwrite"));
+        assertNotNull(upload.params().get("allowed_formats"));
+
+        // Backdated so Cloudinary's hour runs out five minutes after signing
+        long timestamp = ((Number) upload.params().get("timestamp")).longValue();
+        assertEquals(upload.expiresAt() - 3600, timestamp);
+        assertTrue(upload.expiresAt() >= now + 300 && upload.expiresAt() <= now + 302, String.valueOf(upload.expiresAt() - now));
+    }
+
+    @Test
+    void testRefusedWithLocalStorage() {
+        DirectUploadServiceImpl local = new DirectUploadServiceImpl(cloudinaryService, "neuralpix", 900, 300, "local");
+
+        assertThrows(UnsupportedOperationException.class, () -> local.sign(7L));
+        assertThrows(UnsupportedOperationException.class, () -> local.confirm(7L,
+                new UploadResult("neuralpix/users/7/a", String.valueOf(Instant.now().getEpochSecond()), "good")));
+        verifyNoInteractions(cloudinaryService);
+    }
+
+    @Test
+    void testConfirmVerifiesOwnerAgeAndSignature() {
+        String now = String.valueOf(Instant.now().getEpochSecond());
+        String name = "0123456789abcdef0123456789abcdef";
+        ImageHandle handle = ImageHandle.ofUrl("https://res.cloudinary.com/demo/image/upload/v1/neuralpix/users/7/" + name);
+        when(cloudinaryService.verifyDirectUpload("neuralpix/users/7/" + name, now, "good")).thenReturn(Optional.of(handle));
+        when(cloudinaryService.verifyDirectUpload("neuralpix/users/7/" + name, now, "bad")).thenReturn(Optional.empty());
+
+        assertEquals(handle, directUploadService.confirm(7L, new UploadResult("neuralpix/users/7/" + name, now, "good")));
+        assertThrows(IllegalArgumentException.class,
+                () -> directUploadService.confirm(7L, new UploadResult("neuralpix/users/7/" + name, now, "bad")));
+
+        // Another user's folder, or a prefix that only looks like it
+        assertThrows(IllegalArgumentException.class,
+                () -> directUploadService.confirm(7L, new UploadResult("neuralpix/users/8/" + name, now, "good")));
+        assertThrows(IllegalArgumentException.class,
+                () -> directUploadService.confirm(7L, new UploadResult("neuralpix/users/77/" + name, now, "good")));
+        // A name the server did not sign, for example one nested deeper
+        assertThrows(IllegalArgumentException.class,
+                () -> directUploadService.confirm(7L, new UploadResult("neuralpix/users/7/x/" + name, now, "good")));
+
+        String old = String.valueOf(Instant.now().getEpochSecond() - 3600);
+        assertThrows(IllegalArgumentException.class,
+                () -> directUploadService.confirm(7L, new UploadResult("neuralpix/users/7/" + name, old, "good")));
+        verify(cloudinaryService, times(2)).verifyDirectUpload(any(), any(), any());
+    }
+}
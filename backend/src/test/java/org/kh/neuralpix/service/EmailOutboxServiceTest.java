@@ -0,0 +1,108 @@
+package org.kh.neuralpix.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.kh.neuralpix.model.EmailOutboxMessage;
+import org.kh.neuralpix.repository.EmailOutboxMessageRepository;
+import org.kh.neuralpix.service.impl.EmailOutboxServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Mock
+    private EmailOutboxMessageRepository outboxRepository;
+
+    private JavaMailSenderImpl mailSender;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+    }
+
+    private EmailOutboxServiceImpl newService() {
+        EmailOutboxServiceImpl service = new EmailOutboxServiceImpl(outboxRepository, mailSender);
+        ReflectionTestUtils.setField(service, "fromEmail", "noreply@neuralpix.com");
+        ReflectionTestUtils.setField(service, "maxPerSecond", 0);
+        return service;
+    }
+
+    private static EmailOutboxMessage message(long id, String recipient, int attempts) {
+        return EmailOutboxMessage.builder()
+                .id(id)
+                .recipient(recipient)
+                .subject("Subject " + id)
+                .htmlBody("<p>Body " + id + "</p>")
+                .fromName("NeuralPix Support")
+                .status(EmailOutboxMessage.OutboxStatus.SENDING)
+                .attempts(attempts)
+                .build();
+    }
+
+    @Test
+    void testBatchIsDeliveredOverSmtp() throws Exception {
+        EmailOutboxMessage first = message(1, "alice@example.com", 1);
+        EmailOutboxMessage second = message(2, "bob@example.com", 1);
+        when(outboxRepository.findDueMessageIds(any(), any(), any())).thenReturn(List.of(1L, 2L));
+        when(outboxRepository.claim(anyLong(), any(), any())).thenReturn(1);
+        when(outboxRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(first, second));
+
+        assertEquals(2, newService().dispatchDueMessages());
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(2, received.length);
+        assertEquals(EmailOutboxMessage.OutboxStatus.SENT, first.getStatus());
+        assertEquals(EmailOutboxMessage.OutboxStatus.SENT, second.getStatus());
+        assertNotNull(first.getSentAt());
+        verify(outboxRepository).saveAll(List.of(first, second));
+    }
+
+    @Test
+    void testUnclaimedMessagesAreSkipped() {
+        EmailOutboxMessage mine = message(1, "alice@example.com", 1);
+        when(outboxRepository.findDueMessageIds(any(), any(), any())).thenReturn(List.of(1L, 2L));
+        when(outboxRepository.claim(eq(1L), any(), any())).thenReturn(1);
+        when(outboxRepository.claim(eq(2L), any(), any())).thenReturn(0);
+        when(outboxRepository.findAllById(List.of(1L))).thenReturn(List.of(mine));
+
+        assertEquals(1, newService().dispatchDueMessages());
+        assertEquals(1, greenMail.getReceivedMessages().length);
+    }
+
+    @Test
+    void testConnectionFailureSchedulesRetryThenDeadLetters() {
+        mailSender.setPort(1); // nothing listening
+        EmailOutboxMessage retryable = message(1, "alice@example.com", 1);
+        EmailOutboxMessage lastAttempt = message(2, "bob@example.com", 5);
+        when(outboxRepository.findDueMessageIds(any(), any(), any())).thenReturn(List.of(1L, 2L));
+        when(outboxRepository.claim(anyLong(), any(), any())).thenReturn(1);
+        when(outboxRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(retryable, lastAttempt));
+
+        newService().dispatchDueMessages();
+
+        assertEquals(EmailOutboxMessage.OutboxStatus.FAILED, retryable.getStatus());
+        assertNotNull(retryable.getNextAttemptAt());
+        assertNotNull(retryable.getLastError());
+        assertEquals(EmailOutboxMessage.OutboxStatus.DEAD, lastAttempt.getStatus());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+}
@@ -0,0 +1,51 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kh.neuralpix.service.impl.EmailTemplateRenderer;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmailTemplateRendererTest {
+
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        renderer = new EmailTemplateRenderer();
+        renderer.compileTemplates();
+    }
+
+    @Test
+    void testRendersCompiledTemplateWithFreshBufferEachTime() {
+        String first = renderer.render("password-reset.html",
+                Map.of("username", "alice", "resetLink", "https://example.com/a", "currentYear", 2026));
+        String second = renderer.render("password-reset.html",
+                Map.of("username", "bob", "resetLink", "https://example.com/b", "currentYear", 2026));
+
+        assertTrue(first.contains("alice"));
+        assertTrue(second.contains("bob"));
+        assertFalse(second.contains("alice"));
+        assertEquals(first.length() - "alice".length(), second.length() - "bob".length());
+    }
+
+    @Test
+    void testRendersSectionsFromImmutableLists() {
+        String html = renderer.render("subscription-confirmation.html", Map.of(
+                "username", "alice",
+                "tierName", "Premium",
+                "benefits", true,
+                "benefitsList", List.of("API access", "Commercial license")));
+
+        assertTrue(html.contains("API access"));
+        assertTrue(html.contains("Commercial license"));
+    }
+
+    @Test
+    void testUnknownTemplateIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> renderer.render("missing.html", Map.of()));
+    }
+}
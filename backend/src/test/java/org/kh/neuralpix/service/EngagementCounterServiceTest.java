@@ -0,0 +1,99 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.service.EngagementCounterService.Counter;
+import org.kh.neuralpix.service.impl.EngagementCounterServiceImpl;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EngagementCounterServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private EngagementCounterServiceImpl counterService;
+
+    @BeforeEach
+    void setUp() {
+        counterService = new EngagementCounterServiceImpl(jdbcTemplate, transactionTemplate, eventPublisher);
+    }
+
+    private void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testConcurrentIncrementsAreFlushedAsOneRelativeUpdate() throws Exception {
+        runTransactionsInline();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation ->
+                new int[invocation.<List<Object[]>>getArgument(1).size()]);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            pool.execute(() -> counterService.increment(Counter.IMAGE_VIEWS, 42L));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        counterService.increment(Counter.IMAGE_LIKES, 7L);
+
+        assertEquals(1000, counterService.pending(Counter.IMAGE_VIEWS, 42L));
+        assertEquals(1010, counterService.withPending(Counter.IMAGE_VIEWS, 42L, 10));
+
+        counterService.flush();
+
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(
+                eq("UPDATE generated_images SET views_count = COALESCE(views_count, 0) + ? WHERE id = ?"),
+                args.capture());
+        assertArrayEquals(new Object[]{1000L, 42L}, args.getValue().get(0));
+        verify(jdbcTemplate).batchUpdate(
+                eq("UPDATE generated_images SET likes_count = COALESCE(likes_count, 0) + ? WHERE id = ?"),
+                anyList());
+        assertEquals(0, counterService.pending(Counter.IMAGE_VIEWS, 42L));
+        verify(eventPublisher).publishEvent(any(EngagementCounterService.CountersFlushedEvent.class));
+
+        // Nothing new to write
+        clearInvocations(jdbcTemplate);
+        counterService.flush();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testFailedFlushKeepsIncrements() {
+        runTransactionsInline();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new QueryTimeoutException("timeout"));
+
+        counterService.increment(Counter.PROCESSED_IMAGE_VIEWS, 5L);
+        counterService.increment(Counter.PROCESSED_IMAGE_VIEWS, 5L);
+
+        assertThrows(QueryTimeoutException.class, () -> counterService.flush());
+        assertEquals(2, counterService.pending(Counter.PROCESSED_IMAGE_VIEWS, 5L));
+        verifyNoInteractions(eventPublisher);
+    }
+}
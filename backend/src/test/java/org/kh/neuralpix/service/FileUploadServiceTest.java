@@ -0,0 +1,158 @@
+package org.kh.neuralpix.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kh.neuralpix.service.impl.FileUploadServiceImpl;
+import org.kh.neuralpix.service.impl.UploadStagingServiceImpl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileUploadServiceTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path uploadDir;
+
+    private FileUploadServiceImpl fileUploadService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        UploadStagingService staging = new UploadStagingServiceImpl(uploadDir.toString(), 1 << 20, 3600, 300, 900,
+                new SimpleMeterRegistry());
+        fileUploadService = new FileUploadServiceImpl(uploadDir.toString(), staging);
+    }
+
+    private MockHttpServletResponse download(String fileName, MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fileUploadService.downloadFile(fileName, request, response);
+        return response;
+    }
+
+    private long blobs() throws Exception {
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void testIdenticalUploadsShareContentButNotIds() throws Exception {
+        String first = fileUploadService.uploadFile(new MockMultipartFile("file", "a.TXT", "text/plain", CONTENT));
+        String second = fileUploadService.uploadFile(new MockMultipartFile("file", "b.txt", "text/plain", CONTENT));
+
+        assertTrue(first.matches("[0-9a-f]{32}\\.txt"));
+        assertNotEquals(first, second);
+        assertFalse(first.contains("84d89877f0d4041efb6bf91a16f0248f"));
+        assertEquals(1, blobs());
+        assertTrue(Files.exists(uploadDir.resolve("84d89877f0d4041efb6bf91a16f0248f2fd573e6af05c19f96bedb9f882f7882")));
+
+        // Deleting one upload leaves the other uploader's file in place
+        assertTrue(fileUploadService.deleteFile(first));
+        assertFalse(fileUploadService.deleteFile(first));
+        assertEquals(404, download(first, new MockHttpServletRequest("GET", "/")).getStatus());
+        assertEquals("0123456789", download(second, new MockHttpServletRequest("GET", "/")).getContentAsString());
+        assertEquals(1, blobs());
+
+        assertTrue(fileUploadService.deleteFile(second));
+        assertEquals(0, blobs());
+    }
+
+    @Test
+    void testIndexIsRebuiltFromLinksOnRestart() throws Exception {
+        String first = fileUploadService.uploadFile(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT));
+        String second = fileUploadService.uploadFile(new MockMultipartFile("file", "b.txt", "text/plain", CONTENT));
+        Files.write(uploadDir.resolve("0".repeat(64)), CONTENT);
+
+        UploadStagingService staging = new UploadStagingServiceImpl(uploadDir.toString(), 1 << 20, 3600, 300, 900,
+                new SimpleMeterRegistry());
+        FileUploadServiceImpl restarted = new FileUploadServiceImpl(uploadDir.toString(), staging);
+        // The unreferenced blob is gone, the shared one is counted once
+        assertEquals(1, blobs());
+        assertEquals(CONTENT.length, staging.usage().storedBytes());
+
+        assertTrue(restarted.deleteFile(first));
+        assertEquals(1, blobs());
+        assertTrue(restarted.deleteFile(second));
+        assertEquals(0, blobs());
+        assertEquals(0, staging.usage().storedBytes());
+    }
+
+    @Test
+    void testEvictedBlobTakesItsIdsAndCanBeStoredAgain() throws Exception {
+        UploadStagingService staging = new UploadStagingServiceImpl(uploadDir.toString(), 15, 3600, 0, 900,
+                new SimpleMeterRegistry());
+        FileUploadServiceImpl service = new FileUploadServiceImpl(uploadDir.toString(), staging);
+        String first = service.uploadFile(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT));
+
+        // Out of the (zero) residency window
+        Thread.sleep(5);
+        // Another upload is admitted and needs the room: the blob and every id linked to it go together
+        try (UploadStagingService.Reservation ignored = staging.reserve(10)) {
+            assertEquals(0, blobs());
+            assertEquals(0, staging.usage().storedBytes());
+        }
+        MockHttpServletResponse evicted = new MockHttpServletResponse();
+        service.downloadFile(first, new MockHttpServletRequest("GET", "/"), evicted);
+        assertEquals(404, evicted.getStatus());
+        assertFalse(service.deleteFile(first));
+
+        // The same content uploaded again gets a live blob, counted once
+        String again = service.uploadFile(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT));
+        MockHttpServletResponse stored = new MockHttpServletResponse();
+        service.downloadFile(again, new MockHttpServletRequest("GET", "/"), stored);
+        assertEquals("0123456789", stored.getContentAsString());
+        assertEquals(CONTENT.length, staging.usage().storedBytes());
+        assertEquals(1, blobs());
+    }
+
+    @Test
+    void testConditionalAndRangeRequests() throws Exception {
+        String fileName = fileUploadService.uploadFile(new MockMultipartFile("file", "a.txt", "text/plain", CONTENT));
+        String etag = "\"" + fileName.substring(0, 32) + "\"";
+
+        MockHttpServletResponse full = download(fileName, new MockHttpServletRequest("GET", "/"));
+        assertEquals(200, full.getStatus());
+        assertEquals("0123456789", full.getContentAsString());
+        assertEquals(etag, full.getHeader("ETag"));
+        assertEquals("bytes", full.getHeader("Accept-Ranges"));
+        assertTrue(full.getContentType().startsWith("text/plain"));
+
+        MockHttpServletRequest conditional = new MockHttpServletRequest("GET", "/");
+        conditional.addHeader("If-None-Match", etag);
+        MockHttpServletResponse notModified = download(fileName, conditional);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+
+        MockHttpServletRequest ranged = new MockHttpServletRequest("GET", "/");
+        ranged.addHeader("Range", "bytes=2-4");
+        MockHttpServletResponse partial = download(fileName, ranged);
+        assertEquals(206, partial.getStatus());
+        assertEquals("234", partial.getContentAsString());
+        assertEquals("bytes 2-4/10", partial.getHeader("Content-Range"));
+
+        MockHttpServletRequest staleIfRange = new MockHttpServletRequest("GET", "/");
+        staleIfRange.addHeader("Range", "bytes=2-4");
+        staleIfRange.addHeader("If-Range", "\"other\"");
+        assertEquals(200, download(fileName, staleIfRange).getStatus());
+
+        MockHttpServletRequest beyond = new MockHttpServletRequest("GET", "/");
+        beyond.addHeader("Range", "bytes=20-");
+        MockHttpServletResponse unsatisfiable = download(fileName, beyond);
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */10", unsatisfiable.getHeader("Content-Range"));
+
+        assertEquals(404, download("../" + uploadDir.getFileName() + "/" + fileName + "x",
+                new MockHttpServletRequest("GET", "/")).getStatus());
+        assertEquals(404, download("../etc/passwd", new MockHttpServletRequest("GET", "/")).getStatus());
+    }
+}
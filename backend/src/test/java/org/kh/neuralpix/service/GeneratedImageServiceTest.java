@@ -0,0 +1,96 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+import org.kh.neuralpix.dto.response.WorkHistoryResponseDto;
+import org.kh.neuralpix.mapper.GeneratedImageMapper;
+import org.kh.neuralpix.model.enums.GenerationStatus;
+import org.kh.neuralpix.repository.GeneratedImageRepository;
+import org.kh.neuralpix.service.impl.GeneratedImageServiceImpl;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * List views must be served by a single projection query per page: no entity loads and no
+ * lazy user lookups per row.
+ */
+@ExtendWith(MockitoExtension.class)
+class GeneratedImageServiceTest {
+
+    @Mock
+    private GeneratedImageRepository generatedImageRepository;
+
+    @Mock
+    private UsageTrackingService usageTrackingService;
+
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
+    private EngagementCounterService engagementCounterService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SearchIndexService searchIndexService;
+
+    private GeneratedImageServiceImpl generatedImageService;
+
+    @BeforeEach
+    void setUp() {
+        generatedImageService = new GeneratedImageServiceImpl(generatedImageRepository, usageTrackingService,
+                new GeneratedImageMapper(engagementCounterService), eventPublisher, engagementCounterService,
+                searchIndexService);
+    }
+
+    private static GeneratedImageResponseDto item(long id, String username) {
+        return new GeneratedImageResponseDto(id, null, 7L, "https://img/" + id + ".png", null, 1024,
+                512, 512, null, GenerationStatus.COMPLETED, false, 1, 0, 10, false,
+                LocalDateTime.of(2026, 10, 1, 9, 0), null, username);
+    }
+
+    @Test
+    void testWorkHistoryPageIsOneProjectionQuery() {
+        Pageable pageable = PageRequest.of(0, 20);
+        when(generatedImageRepository.findUserWorkHistoryItems(7L, pageable))
+                .thenReturn(new PageImpl<>(List.of(item(2L, "alice"), item(1L, "alice")), pageable, 2));
+        lenient().when(engagementCounterService.pending(any(), any())).thenReturn(0L);
+        when(engagementCounterService.pending(EngagementCounterService.Counter.IMAGE_VIEWS, 2L)).thenReturn(3L);
+
+        WorkHistoryResponseDto history = generatedImageService.getUserWorkHistory(7L, pageable);
+
+        verify(generatedImageRepository).findUserWorkHistoryItems(7L, pageable);
+        verifyNoMoreInteractions(generatedImageRepository);
+        assertEquals(2, history.getImages().size());
+        assertEquals("alice", history.getImages().get(0).getUsername());
+        assertNull(history.getImages().get(0).getErrorMessage());
+        // Unflushed views are merged into the projection
+        assertEquals(13, history.getImages().get(0).getViewsCount());
+        assertEquals(10, history.getImages().get(1).getViewsCount());
+        assertEquals(2, history.getTotalElements());
+    }
+
+    @Test
+    void testMyImagesIsOneProjectionQuery() {
+        when(generatedImageRepository.findListItemsByUserId(7L)).thenReturn(List.of(item(1L, "alice")));
+
+        List<GeneratedImageResponseDto> images = generatedImageService.getImagesByUserIdDto(7L);
+
+        verify(generatedImageRepository).findListItemsByUserId(7L);
+        verifyNoMoreInteractions(generatedImageRepository);
+        assertEquals(1, images.size());
+        assertEquals("alice", images.get(0).getUsername());
+    }
+}
@@ -0,0 +1,76 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.ImageDerivativeService.StoredImage;
+import org.kh.neuralpix.service.impl.ImageDerivativeServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ImageDerivativeServiceTest {
+
+    private static final String PROVIDER_URL = "https://api.pixelcut.app/results/abc.png";
+    private static final String CLOUDINARY_URL = "https://res.cloudinary.com/demo/image/upload/v1/neuralpix/abc.png";
+
+    @Mock
+    private CloudinaryService cloudinaryService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ImageDerivativeServiceImpl derivativeService;
+
+    @BeforeEach
+    void setUp() {
+        when(cloudinaryService.derivativeUrl(anyString(), anyInt()))
+                .thenAnswer(inv -> "https://res.cloudinary.com/demo/w_" + inv.getArgument(1) + "/" + inv.getArgument(0));
+        derivativeService = new ImageDerivativeServiceImpl(cloudinaryService, jdbcTemplate, 1, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        derivativeService.stopWorkers();
+    }
+
+    @Test
+    void testUploadedCopyBecomesTheImageUrl() {
+        when(cloudinaryService.storeWithDerivatives(PROVIDER_URL)).thenReturn(CompletableFuture.completedFuture(
+                new ImageHandle(CLOUDINARY_URL, "neuralpix/abc", null, null, 2048L, 640, 480, "png")));
+
+        assertTrue(derivativeService.submit(new StoredImage(11L, 12L, PROVIDER_URL)));
+
+        String thumbnail = "https://res.cloudinary.com/demo/w_" + CloudinaryService.THUMBNAIL_WIDTH + "/neuralpix/abc";
+        // Swapped only while the row still points at the provider URL
+        verify(jdbcTemplate, timeout(2000)).update(contains("image_url = CASE WHEN image_url = ?"),
+                eq(PROVIDER_URL), eq(CLOUDINARY_URL), eq(thumbnail), eq(2048), eq(640), eq(480), eq(11L));
+        verify(jdbcTemplate, timeout(2000)).update(contains("processed_url = CASE WHEN processed_url = ?"),
+                eq(PROVIDER_URL), eq(CLOUDINARY_URL), eq(thumbnail), eq(2048L), eq(640), eq(480), eq("png"), eq(12L));
+    }
+
+    @Test
+    void testFailedStoreLeavesRowsUntouched() throws Exception {
+        when(cloudinaryService.storeWithDerivatives(PROVIDER_URL))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("quota exceeded")));
+
+        assertTrue(derivativeService.submit(new StoredImage(11L, null, PROVIDER_URL)));
+        verify(cloudinaryService, timeout(2000)).storeWithDerivatives(PROVIDER_URL);
+        Thread.sleep(100);
+
+        verifyNoInteractions(jdbcTemplate);
+        assertFalse(derivativeService.submit(new StoredImage(null, null, PROVIDER_URL)));
+    }
+}
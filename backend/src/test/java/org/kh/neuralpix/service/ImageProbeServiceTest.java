@@ -0,0 +1,110 @@
+package org.kh.neuralpix.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kh.neuralpix.service.impl.ImageProbeServiceImpl;
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+import org.springframework.util.ReflectionUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageProbeServiceTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // A JPEG whose frame header sits behind a 20 KB APP1 segment, several probe blocks in
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(320, 200, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+        byte[] jpeg = encoded.toByteArray();
+        int segmentLength = 20_000;
+        ByteArrayOutputStream padded = new ByteArrayOutputStream();
+        padded.write(jpeg, 0, 2);
+        padded.write(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (segmentLength >> 8), (byte) segmentLength});
+        padded.write(new byte[segmentLength - 2]);
+        padded.write(jpeg, 2, jpeg.length - 2);
+        byte[] image = padded.toByteArray();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        // Ignores Range and always sends the whole image
+        server.createContext("/image.jpg", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, image.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(image);
+            }
+        });
+        server.createContext("/redirect", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("Location", "/image.jpg");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * The service with the public-address check lifted, which only tests can construct
+     */
+    private static ImageProbeService allowingLocalAddresses() throws Exception {
+        return ReflectionUtils.accessibleConstructor(ImageProbeServiceImpl.class, long.class, long.class, boolean.class)
+                .newInstance(100L, 2000L, true);
+    }
+
+    @Test
+    void testRefusesNonPublicAddressesAndRedirects() throws Exception {
+        ImageProbeService probeService = new ImageProbeServiceImpl(100, 2000);
+
+        assertEquals(Optional.empty(), probeService.probe(baseUrl + "/image.jpg"));
+        assertEquals(Optional.empty(), probeService.probe("http://localhost:" + server.getAddress().getPort() + "/image.jpg"));
+        assertEquals(Optional.empty(), probeService.probe("http://[::1]:" + server.getAddress().getPort() + "/image.jpg"));
+        assertEquals(0, requests.get());
+
+        // Even where local addresses are allowed, a redirect is not followed
+        ImageProbeService local = allowingLocalAddresses();
+        assertEquals(Optional.empty(), local.probe(baseUrl + "/redirect"));
+        assertEquals(1, requests.get());
+
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("169.254.169.254")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("10.1.2.3")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("192.168.0.1")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("0.0.0.0")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("0.1.2.3")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("100.64.0.1")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("100.127.255.254")));
+        assertTrue(ImageProbeServiceImpl.isPublic(InetAddress.getByName("100.128.0.1")));
+        assertTrue(ImageProbeServiceImpl.isPublic(InetAddress.getByName("100.63.255.255")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("fd00::1")));
+        assertFalse(ImageProbeServiceImpl.isPublic(InetAddress.getByName("fe80::1")));
+        assertTrue(ImageProbeServiceImpl.isPublic(InetAddress.getByName("8.8.8.8")));
+        assertTrue(ImageProbeServiceImpl.isPublic(InetAddress.getByName("2606:4700::1111")));
+    }
+
+    @Test
+    void testServerIgnoringRangeIsDownloadedOnce() throws Exception {
+        ImageProbeService local = allowingLocalAddresses();
+
+        assertEquals(Optional.of(new ImageInfo("jpeg", 320, 200)), local.probe(baseUrl + "/image.jpg"));
+        assertEquals(1, requests.get());
+    }
+}
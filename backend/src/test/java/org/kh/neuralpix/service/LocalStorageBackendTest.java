@@ -0,0 +1,113 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.impl.LocalStorageBackend;
+import org.kh.neuralpix.service.StorageBackend.StoredFile;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalStorageBackendTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testStoreReadAndDeleteOffline() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(dir.toString(), "http://localhost:8080/", 1 << 20);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(30, 20, BufferedImage.TYPE_INT_RGB), "png", png);
+        byte[] bytes = png.toByteArray();
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+
+        ImageHandle handle = storage.store(bytes, hash).join();
+
+        String shard = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/";
+        assertEquals(hash + ".png", handle.publicId());
+        assertEquals("http://localhost:8080/api/storage/" + shard + hash + ".png", handle.url());
+        assertEquals(30, handle.width());
+        assertEquals(20, handle.height());
+        assertTrue(Files.exists(dir.resolve(shard + hash + ".png")));
+
+        // Same bytes again: same file
+        assertEquals(handle, storage.store(bytes, hash).join());
+
+        try (StoredFile file = storage.read(handle.publicId()).orElseThrow()) {
+            assertEquals("image/png", file.contentType());
+            assertEquals(ByteBuffer.wrap(bytes), file.content());
+        }
+
+        assertTrue(storage.delete(handle.publicId()).join());
+        assertTrue(storage.read(handle.publicId()).isEmpty());
+        assertTrue(storage.read("../../etc/passwd").isEmpty());
+
+        assertThrows(CompletionException.class, () -> storage.store("text".getBytes(), hash).join());
+    }
+
+    @Test
+    void testStreamedUploadIsHashedWhileCopied() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(dir.toString(), "http://localhost:8080", 1 << 20);
+        byte[] bytes = png(30, 20);
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+
+        ImageHandle handle = storage.store(new MockMultipartFile("file", "a.png", "image/png", bytes), "avatars").join();
+
+        assertEquals(hash + ".png", handle.publicId());
+        assertEquals(hash, handle.contentHash());
+        assertEquals(bytes.length, handle.sizeBytes());
+        assertEquals(30, handle.width());
+        // Same address as the byte path, and no temporary file left behind
+        assertEquals(handle, storage.store(bytes).join());
+        assertEquals(handle, storage.store(new MockMultipartFile("file", bytes), "avatars").join());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(Files::isRegularFile));
+        }
+
+        CompletionException refused = assertThrows(CompletionException.class, () -> storage.store(
+                new MockMultipartFile("file", "a.png", "image/png", "not an image".getBytes()), "avatars").join());
+        assertInstanceOf(IllegalArgumentException.class, refused.getCause());
+    }
+
+    @Test
+    void testEvictedMappingOutlivesReadsInProgress() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(dir.toString(), "http://localhost:8080", 1 << 20);
+        byte[] bytes = png(30, 20);
+        ImageHandle handle = storage.store(bytes).join();
+
+        StoredFile reading = storage.read(handle.publicId()).orElseThrow();
+        // Deleting drops the mapping from the cache while the read is still open
+        assertTrue(storage.delete(handle.publicId()).join());
+        assertEquals(ByteBuffer.wrap(bytes), reading.content());
+        reading.close();
+        reading.close();
+        assertTrue(storage.read(handle.publicId()).isEmpty());
+
+        // Files bigger than the whole cache are mapped for the one read
+        LocalStorageBackend tiny = new LocalStorageBackend(dir.toString(), "http://localhost:8080", 1);
+        ImageHandle big = tiny.store(bytes).join();
+        for (int i = 0; i < 2; i++) {
+            try (StoredFile file = tiny.read(big.publicId()).orElseThrow()) {
+                assertEquals(ByteBuffer.wrap(bytes), file.content());
+            }
+        }
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", png);
+        return png.toByteArray();
+    }
+}
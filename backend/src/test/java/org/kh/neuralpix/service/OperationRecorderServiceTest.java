@@ -0,0 +1,118 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.service.OperationRecorderService.OperationCompleted;
+import org.kh.neuralpix.service.impl.OperationRecorderServiceImpl;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OperationRecorderServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private SearchIndexService searchIndexService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private OperationRecorderServiceImpl recorder;
+
+    @BeforeEach
+    void setUp() {
+        recorder = new OperationRecorderServiceImpl(jdbcTemplate, transactionTemplate, searchIndexService,
+                eventPublisher, 500);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private static OperationCompleted operation(long userId, boolean success) {
+        return OperationCompleted.builder()
+                .userId(userId)
+                .operationType(ProcessedImage.OperationType.REMOVE_BACKGROUND)
+                .originalUrl("https://res.cloudinary.com/demo/in.png")
+                .resultUrl(success ? "https://cdn.pixelcut.ai/out.png" : null)
+                .success(success)
+                .errorMessage(success ? null : "HTTP 500")
+                .completedAt(LocalDateTime.of(2026, 10, 19, 9, 0))
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOperationsAreWrittenAsOneBatchPerTable() {
+        AtomicLong nextId = new AtomicLong(100);
+        when(jdbcTemplate.batchUpdate(any(PreparedStatementCreator.class), any(BatchPreparedStatementSetter.class),
+                any(KeyHolder.class))).thenAnswer(invocation -> {
+            int size = invocation.<BatchPreparedStatementSetter>getArgument(1).getBatchSize();
+            KeyHolder keys = invocation.getArgument(2);
+            for (int i = 0; i < size; i++) {
+                keys.getKeyList().add(Map.of("GENERATED_KEY", nextId.getAndIncrement()));
+            }
+            return new int[size];
+        });
+
+        recorder.record(operation(7L, true));
+        recorder.record(operation(7L, true));
+        recorder.record(operation(8L, false));
+
+        assertEquals(3, recorder.flush());
+
+        // processed_images for all three, generated_images for the two successes
+        ArgumentCaptor<BatchPreparedStatementSetter> inserts = ArgumentCaptor.forClass(BatchPreparedStatementSetter.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(any(PreparedStatementCreator.class), inserts.capture(), any(KeyHolder.class));
+        assertEquals(List.of(3, 2), inserts.getAllValues().stream().map(BatchPreparedStatementSetter::getBatchSize).toList());
+
+        // One daily and one monthly increment of 2 for the user, nothing for the failure
+        ArgumentCaptor<List<Object[]>> usage = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(contains("usage_tracking"), usage.capture());
+        assertEquals(2, usage.getValue().size());
+        for (Object[] row : usage.getValue()) {
+            assertEquals(7L, row[0]);
+            assertEquals(2, row[3]);
+        }
+
+        ArgumentCaptor<List<ProcessedImage>> processed = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<SearchIndexService.GeneratedImageTerms>> generated = ArgumentCaptor.forClass(List.class);
+        verify(searchIndexService).indexBatch(processed.capture(), generated.capture());
+        assertEquals(List.of(100L, 101L, 102L), processed.getValue().stream().map(ProcessedImage::getId).toList());
+        assertEquals(List.of(103L, 104L), generated.getValue().stream().map(terms -> terms.image().getId()).toList());
+        assertArrayEquals(new String[]{"remove-background", "remove-background operation"},
+                generated.getValue().get(0).extraTerms());
+
+        // Derivatives are generated for the two stored results after commit
+        ArgumentCaptor<ImageDerivativeService.ImagesStoredEvent> stored =
+                ArgumentCaptor.forClass(ImageDerivativeService.ImagesStoredEvent.class);
+        verify(eventPublisher).publishEvent(stored.capture());
+        assertEquals(List.of(new ImageDerivativeService.StoredImage(103L, 100L, "https://cdn.pixelcut.ai/out.png"),
+                        new ImageDerivativeService.StoredImage(104L, 101L, "https://cdn.pixelcut.ai/out.png")),
+                stored.getValue().images());
+
+        assertEquals(0, recorder.flush());
+    }
+}
@@ -0,0 +1,246 @@
+package org.kh.neuralpix.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.config.PaymentConfig;
+import org.kh.neuralpix.constants.PayOSConstants;
+import org.kh.neuralpix.controller.PayOSPaymentController;
+import org.kh.neuralpix.model.PaymentWebhookEvent;
+import org.kh.neuralpix.model.PaymentWebhookEvent.EventStatus;
+import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.repository.PaymentWebhookEventRepository;
+import org.kh.neuralpix.service.impl.PaymentWebhookServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.ResponseEntity;
+import vn.payos.type.Webhook;
+import vn.payos.type.WebhookData;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The webhook pipeline end to end over an in-memory event table: the controller stores the
+ * delivery, a worker applies it, failures are scheduled for retry and re-dispatched by the sweep.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PaymentWebhookServiceTest {
+
+    private static final long ORDER_CODE = 4242L;
+
+    @Mock
+    private PaymentWebhookEventRepository eventRepository;
+    @Mock
+    private TransactionService transactionService;
+    @Mock
+    private SubscriptionService subscriptionService;
+    @Mock
+    private UserService userService;
+
+    private final Map<Long, PaymentWebhookEvent> events = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private PaymentConfig paymentConfig;
+    private PaymentWebhookServiceImpl webhookService;
+
+    @BeforeEach
+    void setUp() {
+        paymentConfig = new PaymentConfig();
+        paymentConfig.getWebhook().setWorkerStripes(1);
+        paymentConfig.getWebhook().setMaxAttempts(2);
+        paymentConfig.getWebhook().setRetryBaseDelaySeconds(0);
+
+        when(eventRepository.existsByOrderCodeAndStatusCode(anyLong(), anyString())).thenAnswer(inv ->
+                events.values().stream().anyMatch(e -> e.getOrderCode().equals(inv.getArgument(0))
+                        && e.getStatusCode().equals(inv.getArgument(1))));
+        when(eventRepository.saveAndFlush(any())).thenAnswer(inv -> {
+            PaymentWebhookEvent event = inv.getArgument(0);
+            event.setId(ids.incrementAndGet());
+            events.put(event.getId(), event);
+            return event;
+        });
+        when(eventRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(eventRepository.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(events.get(inv.<Long>getArgument(0))));
+        when(eventRepository.claim(anyLong(), any(), any())).thenAnswer(inv -> {
+            PaymentWebhookEvent event = events.get(inv.<Long>getArgument(0));
+            synchronized (event) {
+                if (event.getStatus() != EventStatus.PENDING && event.getStatus() != EventStatus.FAILED) {
+                    return 0;
+                }
+                event.setStatus(EventStatus.PROCESSING);
+                event.setAttempts(event.getAttempts() + 1);
+                return 1;
+            }
+        });
+        when(eventRepository.findDueEvents(any(), any(), any())).thenAnswer(inv -> {
+            LocalDateTime now = inv.getArgument(0);
+            List<PaymentWebhookEvent> due = new ArrayList<>();
+            for (PaymentWebhookEvent e : events.values()) {
+                if ((e.getStatus() == EventStatus.PENDING || e.getStatus() == EventStatus.FAILED)
+                        && (e.getNextAttemptAt() == null || !e.getNextAttemptAt().isAfter(now))) {
+                    due.add(e);
+                }
+            }
+            return due;
+        });
+
+        webhookService = new PaymentWebhookServiceImpl(eventRepository, transactionService, subscriptionService,
+                userService, paymentConfig, new ObjectMapper());
+        webhookService.startWorkers();
+    }
+
+    @AfterEach
+    void tearDown() {
+        webhookService.stopWorkers();
+    }
+
+    private static WebhookData paid() {
+        return WebhookData.builder()
+                .orderCode(ORDER_CODE)
+                .amount(99000)
+                .description("Subscription")
+                .accountNumber("0001")
+                .reference("REF-1")
+                .transactionDateTime("2026-10-19 10:00:00")
+                .currency("VND")
+                .paymentLinkId("link-1")
+                .code(PayOSConstants.PAYMENT_SUCCESS)
+                .desc("success")
+                .build();
+    }
+
+    private static Transaction transaction(Transaction.TransactionStatus status) {
+        return Transaction.builder()
+                .id(7L)
+                .orderCode(ORDER_CODE)
+                .userId(3L)
+                .status(status)
+                .type(Transaction.TransactionType.ONE_TIME_PAYMENT)
+                .build();
+    }
+
+    private PaymentWebhookEvent onlyEvent() {
+        assertEquals(1, events.size());
+        return events.values().iterator().next();
+    }
+
+    private void awaitStatus(EventStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (onlyEvent().getStatus() != status && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(status, onlyEvent().getStatus());
+    }
+
+    @Test
+    void testEnqueuedEventIsAppliedByWorkerAndDuplicateIgnored() throws Exception {
+        when(transactionService.findByOrderCode(ORDER_CODE))
+                .thenReturn(Optional.of(transaction(Transaction.TransactionStatus.PENDING)));
+        when(transactionService.markTransactionAsPaid(eq(ORDER_CODE), anyString()))
+                .thenReturn(transaction(Transaction.TransactionStatus.PAID));
+
+        assertTrue(webhookService.enqueue(paid()));
+        awaitStatus(EventStatus.PROCESSED);
+        assertEquals(1, onlyEvent().getAttempts());
+        assertNotNull(onlyEvent().getProcessedAt());
+
+        assertFalse(webhookService.enqueue(paid()));
+        assertEquals(1, events.size());
+        verify(transactionService, times(1)).markTransactionAsPaid(eq(ORDER_CODE), anyString());
+    }
+
+    @Test
+    void testPaidRenewalExtendsSubscription() throws Exception {
+        Transaction renewal = transaction(Transaction.TransactionStatus.PENDING);
+        renewal.setType(Transaction.TransactionType.SUBSCRIPTION_RENEWAL);
+        renewal.setSubscriptionId(21L);
+        Transaction paid = transaction(Transaction.TransactionStatus.PAID);
+        paid.setType(Transaction.TransactionType.SUBSCRIPTION_RENEWAL);
+        paid.setSubscriptionId(21L);
+        when(transactionService.findByOrderCode(ORDER_CODE)).thenReturn(Optional.of(renewal));
+        when(transactionService.markTransactionAsPaid(eq(ORDER_CODE), anyString())).thenReturn(paid);
+
+        webhookService.enqueue(paid());
+        awaitStatus(EventStatus.PROCESSED);
+
+        verify(subscriptionService).completeRenewal(21L);
+        verify(subscriptionService, never()).activateSubscription(anyLong());
+    }
+
+    @Test
+    void testWorkerFailureIsRetriedBySweepUntilDead() throws Exception {
+        when(transactionService.findByOrderCode(ORDER_CODE))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(transaction(Transaction.TransactionStatus.PENDING)));
+        when(transactionService.markTransactionAsPaid(eq(ORDER_CODE), anyString()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        assertTrue(webhookService.enqueue(paid()));
+        awaitStatus(EventStatus.FAILED);
+        assertEquals(1, onlyEvent().getAttempts());
+        assertTrue(onlyEvent().getLastError().contains("Transaction not found"));
+        assertNotNull(onlyEvent().getNextAttemptAt());
+
+        // Second and last attempt fails differently; the event is parked for manual review
+        webhookService.dispatchDueEvents();
+        awaitStatus(EventStatus.DEAD);
+        assertEquals(2, onlyEvent().getAttempts());
+        assertEquals("database down", onlyEvent().getLastError());
+        assertNull(onlyEvent().getNextAttemptAt());
+
+        webhookService.dispatchDueEvents();
+        Thread.sleep(100);
+        verify(eventRepository, times(2)).claim(anyLong(), any(), any());
+    }
+
+    @Test
+    void testRetriedEventSucceeds() throws Exception {
+        when(transactionService.findByOrderCode(ORDER_CODE))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(transaction(Transaction.TransactionStatus.PENDING)));
+        when(transactionService.markTransactionAsPaid(eq(ORDER_CODE), anyString()))
+                .thenReturn(transaction(Transaction.TransactionStatus.PAID));
+
+        webhookService.enqueue(paid());
+        awaitStatus(EventStatus.FAILED);
+
+        webhookService.dispatchDueEvents();
+        awaitStatus(EventStatus.PROCESSED);
+        assertNull(onlyEvent().getLastError());
+    }
+
+    @Test
+    void testControllerAsksForRetryWhenWebhookCannotBeStored() {
+        PayOSPaymentService payOSPaymentService = mock(PayOSPaymentService.class);
+        PaymentWebhookService failingStore = mock(PaymentWebhookService.class);
+        PayOSPaymentController controller = new PayOSPaymentController(payOSPaymentService, null, transactionService,
+                paymentConfig, failingStore, mock(OrderCodeService.class));
+        Webhook webhook = Webhook.builder()
+                .code("00").desc("success").success(true).data(paid()).signature("signed")
+                .build();
+        when(payOSPaymentService.verifyWebhookData(webhook)).thenReturn(paid());
+
+        when(failingStore.enqueue(any())).thenThrow(new DataAccessResourceFailureException("database down"));
+        ResponseEntity<Map<String, String>> failed = controller.handleWebhook(webhook);
+        assertEquals(503, failed.getStatusCode().value());
+
+        reset(failingStore);
+        when(failingStore.enqueue(any())).thenReturn(true);
+        assertEquals(200, controller.handleWebhook(webhook).getStatusCode().value());
+    }
+}
@@ -0,0 +1,122 @@
+package org.kh.neuralpix.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.dto.pixelcut.PixelCutImageGenerationRequest;
+import org.kh.neuralpix.dto.pixelcut.PixelCutImageGenerationResponse;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.OperationRecorderService.OperationCompleted;
+import org.kh.neuralpix.service.impl.PixelCutServiceImpl;
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Recording of failed operations: the input that was uploaded for the call must still be
+ * recorded, or the uploaded asset is referenced by nothing.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PixelCutServiceTest {
+
+    private static final String DATA_URL = "data:image/png;base64,iVBORw0KGgo=";
+    private static final ImageHandle UPLOADED = new ImageHandle("https://res.cloudinary.com/demo/input.png",
+            "neuralpix/input", "abc123", null, 68L, 64, 64, "png");
+
+    @Mock
+    private OperationRecorderService operationRecorderService;
+    @Mock
+    private ImageProbeService imageProbeService;
+    @Mock
+    private UploadDedupService uploadDedupService;
+
+    private HttpServer server;
+    private PixelCutServiceImpl pixelCutService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // The provider refuses every call
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{\"error\":\"unavailable\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(503, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        when(imageProbeService.probe(anyString())).thenReturn(Optional.of(new ImageInfo("png", 64, 64)));
+        when(uploadDedupService.upload(eq(7L), eq(DATA_URL))).thenReturn(CompletableFuture.completedFuture(UPLOADED));
+
+        pixelCutService = new PixelCutServiceImpl();
+        ReflectionTestUtils.setField(pixelCutService, "apiKey", "test-key");
+        ReflectionTestUtils.setField(pixelCutService, "baseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(pixelCutService, "timeout", 2000);
+        ReflectionTestUtils.setField(pixelCutService, "maxInputPixels", 25_000_000L);
+        ReflectionTestUtils.setField(pixelCutService, "operationRecorderService", operationRecorderService);
+        ReflectionTestUtils.setField(pixelCutService, "imageProbeService", imageProbeService);
+        ReflectionTestUtils.setField(pixelCutService, "uploadDedupService", uploadDedupService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static PixelCutImageGenerationRequest request(String imageUrl) {
+        PixelCutImageGenerationRequest request = new PixelCutImageGenerationRequest();
+        request.setImageUrl(imageUrl);
+        return request;
+    }
+
+    private OperationCompleted recorded() {
+        ArgumentCaptor<OperationCompleted> operation = ArgumentCaptor.forClass(OperationCompleted.class);
+        verify(operationRecorderService).record(operation.capture());
+        return operation.getValue();
+    }
+
+    @Test
+    void testFailedCallRecordsUploadedInput() {
+        PixelCutImageGenerationResponse response = pixelCutService.removeBackground(request(DATA_URL), 7L).join();
+
+        assertFalse(response.isSuccess());
+        assertSame(UPLOADED, response.getSourceImage());
+        OperationCompleted operation = recorded();
+        assertFalse(operation.success());
+        assertEquals(UPLOADED.url(), operation.originalUrl());
+        assertSame(UPLOADED, operation.sourceImage());
+        verify(uploadDedupService, times(1)).upload(any(), any());
+    }
+
+    @Test
+    void testFailedCallRecordsRemoteInput() {
+        String remoteUrl = "https://images.example.com/cat.png";
+
+        pixelCutService.upScale(request(remoteUrl), 7L).join();
+
+        OperationCompleted operation = recorded();
+        assertFalse(operation.success());
+        assertEquals(remoteUrl, operation.originalUrl());
+        assertEquals(new ImageHandle(remoteUrl, null, null, null, null, 64, 64, "png"), operation.sourceImage());
+        verifyNoInteractions(uploadDedupService);
+    }
+}
@@ -0,0 +1,94 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.dto.response.GeneratedImageResponseDto;
+import org.kh.neuralpix.mapper.GeneratedImageMapper;
+import org.kh.neuralpix.repository.GeneratedImageRepository;
+import org.kh.neuralpix.service.PublicGalleryService.GalleryChangedEvent;
+import org.kh.neuralpix.service.impl.PublicGalleryServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The feed window is rebuilt by one request at a time and never cached across a gallery change
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PublicGalleryServiceTest {
+
+    @Mock
+    private GeneratedImageRepository generatedImageRepository;
+    @Mock
+    private GeneratedImageMapper generatedImageMapper;
+
+    private PublicGalleryServiceImpl galleryService;
+
+    @BeforeEach
+    void setUp() {
+        GeneratedImageResponseDto image = new GeneratedImageResponseDto();
+        image.setId(1L);
+        image.setCreatedAt(LocalDateTime.now());
+        when(generatedImageRepository.findListItemsByIdIn(anyList())).thenReturn(List.of(image));
+        when(generatedImageMapper.withPendingCounts(any(GeneratedImageResponseDto.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        galleryService = new PublicGalleryServiceImpl(generatedImageRepository, generatedImageMapper);
+    }
+
+    @Test
+    void testConcurrentMissesBuildTheWindowOnce() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(generatedImageRepository.findPublicFeedIds(any())).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(1L);
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<GeneratedImageResponseDto>> first = pool.submit(() -> galleryService.getFeed(null, null, 10));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+            Future<List<GeneratedImageResponseDto>> second = pool.submit(() -> galleryService.getFeed(null, null, 10));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).size());
+            assertEquals(1, second.get(5, TimeUnit.SECONDS).size());
+        } finally {
+            pool.shutdownNow();
+        }
+        verify(generatedImageRepository, times(1)).findPublicFeedIds(any());
+    }
+
+    @Test
+    void testWindowReadAcrossAChangeIsNotCached() {
+        when(generatedImageRepository.findPublicFeedIds(any())).thenAnswer(invocation -> {
+            // An image is published while the window is being read
+            galleryService.onGalleryChanged(new GalleryChangedEvent(2L));
+            return List.of(1L);
+        });
+        galleryService.getFeed(null, null, 10);
+
+        when(generatedImageRepository.findPublicFeedIds(any())).thenReturn(List.of(1L));
+        galleryService.getFeed(null, null, 10);
+        galleryService.getFeed(null, null, 10);
+
+        verify(generatedImageRepository, times(2)).findPublicFeedIds(any());
+    }
+}
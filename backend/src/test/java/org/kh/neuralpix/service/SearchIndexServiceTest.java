@@ -0,0 +1,99 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.model.ProcessedImage;
+import org.kh.neuralpix.model.SearchDocument;
+import org.kh.neuralpix.repository.PromptRepository;
+import org.kh.neuralpix.repository.SearchDocumentRepository;
+import org.kh.neuralpix.service.impl.SearchIndexServiceImpl;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SearchIndexServiceTest {
+
+    @Mock
+    private SearchDocumentRepository documentRepository;
+
+    @Mock
+    private PromptRepository promptRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private SearchIndexServiceImpl searchIndexService;
+
+    @Test
+    void testQueryRequiresOwnerAndEveryWordAsPrefix() {
+        when(documentRepository.search(anyString(), anyLong(), anyString(), anyInt(), anyLong()))
+                .thenReturn(List.of(12L, 5L));
+
+        // Boolean operators in user input are stripped, short and duplicate words dropped
+        Page<Long> page = searchIndexService.search(7L, SearchDocument.ItemType.GENERATED_IMAGE,
+                "Sunset +beach* -(a) \"sunset\"", PageRequest.of(0, 20));
+
+        verify(documentRepository).search("GENERATED_IMAGE", 7L, "+usr7 +sunset* +beach*", 20, 0L);
+        assertEquals(List.of(12L, 5L), page.getContent());
+        assertEquals(2, page.getTotalElements());
+        // A short first page already tells the total
+        verify(documentRepository, never()).countMatches(anyString(), anyLong(), anyString());
+    }
+
+    @Test
+    void testWordsInnoDbDoesNotIndexAreNotRequired() {
+        when(documentRepository.search(anyString(), anyLong(), anyString(), anyInt(), anyLong()))
+                .thenReturn(List.of(4L));
+
+        // "ai" and "in" are below the minimum token size, "the" is an InnoDB stopword
+        searchIndexService.search(7L, SearchDocument.ItemType.PROCESSED_IMAGE, "The AI portrait in watercolor",
+                PageRequest.of(0, 20));
+        verify(documentRepository).search("PROCESSED_IMAGE", 7L, "+usr7 +portrait* +watercolor*", 20, 0L);
+
+        assertTrue(searchIndexService.search(7L, SearchDocument.ItemType.PROCESSED_IMAGE, "the ai",
+                PageRequest.of(0, 20)).isEmpty());
+        verifyNoMoreInteractions(documentRepository);
+    }
+
+    @Test
+    void testBlankQueryReturnsEmptyPage() {
+        Page<Long> page = searchIndexService.search(7L, SearchDocument.ItemType.PROCESSED_IMAGE, " *+- ", PageRequest.of(0, 20));
+
+        assertTrue(page.isEmpty());
+        verifyNoInteractions(documentRepository);
+    }
+
+    @Test
+    void testProcessedImageDocumentContent() {
+        ProcessedImage image = ProcessedImage.builder()
+                .id(3L)
+                .userId(7L)
+                .prompt("neon city at night")
+                .tags("cyberpunk,city")
+                .operationType(ProcessedImage.OperationType.values()[0])
+                .createdAt(LocalDateTime.of(2026, 10, 1, 9, 0))
+                .build();
+
+        searchIndexService.indexProcessedImage(image);
+
+        ArgumentCaptor<String> content = ArgumentCaptor.forClass(String.class);
+        verify(documentRepository).upsert(eq("PROCESSED_IMAGE"), eq(3L), eq(7L), content.capture(),
+                eq(image.getCreatedAt()), any());
+        String operation = ProcessedImage.OperationType.values()[0].name();
+        assertTrue(content.getValue().startsWith("usr7 neon city at night cyberpunk,city " + operation));
+        assertTrue(content.getValue().endsWith(operation.replace('_', ' ')));
+    }
+}
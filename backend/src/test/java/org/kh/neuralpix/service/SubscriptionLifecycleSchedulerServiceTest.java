@@ -0,0 +1,175 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.model.SchedulerCheckpoint;
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.repository.SchedulerCheckpointRepository;
+import org.kh.neuralpix.repository.SubscriptionRepository;
+import org.kh.neuralpix.service.impl.SubscriptionLifecycleSchedulerService;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Renewal passes over an in-memory set of due subscriptions: renewed rows leave the set, as
+ * they leave the due query, and the checkpoint row is kept in memory.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SubscriptionLifecycleSchedulerServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.now().minusDays(1);
+
+    @Mock
+    private SubscriptionRepository subscriptionRepository;
+    @Mock
+    private SchedulerCheckpointRepository checkpointRepository;
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    // Subscription id -> next billing date of the subscriptions due for renewal
+    private final Map<Long, LocalDateTime> due = new ConcurrentHashMap<>();
+    private final List<Long> renewed = new CopyOnWriteArrayList<>();
+    private final SchedulerCheckpoint checkpoint = SchedulerCheckpoint.builder().jobName("subscription-renewal").build();
+    private final AtomicInteger cursorSaves = new AtomicInteger();
+    private int loseLeaseAtSave = -1;
+
+    private SubscriptionLifecycleSchedulerService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        when(subscriptionRepository.findDueForRenewal(any(), any(), any(), any(), any())).thenAnswer(inv -> {
+            LocalDateTime until = inv.getArgument(1);
+            LocalDateTime cursorTime = inv.getArgument(2);
+            Long cursorId = inv.getArgument(3);
+            Pageable page = inv.getArgument(4);
+            List<Object[]> rows = new ArrayList<>();
+            due.forEach((id, dueAt) -> {
+                if (!dueAt.isAfter(until) && (dueAt.isAfter(cursorTime) || dueAt.equals(cursorTime) && id > cursorId)) {
+                    rows.add(new Object[]{id, dueAt});
+                }
+            });
+            rows.sort(Comparator.<Object[], LocalDateTime>comparing(r -> (LocalDateTime) r[1]).thenComparing(r -> (Long) r[0]));
+            return new ArrayList<>(rows.subList(0, Math.min(rows.size(), page.getPageSize())));
+        });
+        when(checkpointRepository.existsById(anyString())).thenReturn(true);
+        when(checkpointRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(1);
+        when(checkpointRepository.findById(anyString())).thenAnswer(inv -> Optional.of(SchedulerCheckpoint.builder()
+                .jobName(inv.getArgument(0))
+                .cursorTime(inv.getArgument(0).equals(checkpoint.getJobName()) ? checkpoint.getCursorTime() : null)
+                .cursorId(inv.getArgument(0).equals(checkpoint.getJobName()) ? checkpoint.getCursorId() : null)
+                .build()));
+        when(checkpointRepository.saveCursor(anyString(), anyString(), any(), any(), any())).thenAnswer(inv -> {
+            if (!inv.getArgument(0).equals(checkpoint.getJobName())) {
+                return 1;
+            }
+            if (cursorSaves.incrementAndGet() == loseLeaseAtSave) {
+                return 0;
+            }
+            checkpoint.setCursorTime(inv.getArgument(2));
+            checkpoint.setCursorId(inv.getArgument(3));
+            return 1;
+        });
+        doAnswer(inv -> {
+            Long id = inv.getArgument(0);
+            renewed.add(id);
+            due.remove(id);
+            return null;
+        }).when(subscriptionService).renewSubscription(anyLong());
+
+        scheduler = new SubscriptionLifecycleSchedulerService(subscriptionRepository, checkpointRepository,
+                subscriptionService, 2);
+        ReflectionTestUtils.setField(scheduler, "chunkSize", 2);
+        ReflectionTestUtils.setField(scheduler, "leaseMinutes", 10);
+    }
+
+    @Test
+    void testFailedRenewalIsRetriedOnNextRun() {
+        for (long id = 1; id <= 5; id++) {
+            due.put(id, BASE.plusMinutes(id));
+        }
+        doThrow(new IllegalStateException("payment provider down"))
+                .doAnswer(inv -> {
+                    renewed.add(3L);
+                    due.remove(3L);
+                    return null;
+                })
+                .when(subscriptionService).renewSubscription(3L);
+
+        scheduler.processDueSubscriptions();
+        assertEquals(List.of(1L, 2L, 4L, 5L), renewed.stream().sorted().toList());
+        assertEquals(Map.of(3L, BASE.plusMinutes(3)), due);
+
+        scheduler.processDueSubscriptions();
+        assertTrue(renewed.contains(3L));
+        assertTrue(due.isEmpty());
+    }
+
+    @Test
+    void testInterruptedPassResumesThenRescansForRowsBehindCursor() {
+        for (long id = 1; id <= 5; id++) {
+            due.put(id, BASE.plusMinutes(id));
+        }
+        // The lease is lost when the second chunk is checkpointed
+        loseLeaseAtSave = 2;
+        scheduler.processDueSubscriptions();
+        assertEquals(List.of(1L, 2L, 3L, 4L), renewed.stream().sorted().toList());
+        assertEquals(2L, checkpoint.getCursorId());
+
+        // A row becomes due behind the cursor, e.g. its billing date was moved back
+        due.put(9L, BASE);
+        scheduler.processDueSubscriptions();
+        assertTrue(renewed.contains(5L));
+        assertFalse(renewed.contains(9L));
+
+        scheduler.processDueSubscriptions();
+        assertTrue(renewed.contains(9L));
+        assertTrue(due.isEmpty());
+        assertEquals(0L, checkpoint.getCursorId());
+    }
+
+    @Test
+    void testPastDueSubscriptionExpiresAfterGracePeriod() {
+        ReflectionTestUtils.setField(scheduler, "pastDueGraceDays", 3);
+        LocalDateTime now = LocalDateTime.now();
+        // Awaiting renewal payment: one period ended 4 days ago, the other 2 days ago
+        Map<Long, LocalDateTime> pastDue = Map.of(11L, now.minusDays(4), 12L, now.minusDays(2));
+        when(subscriptionRepository.findEndedWithStatus(eq(Subscription.SubscriptionStatus.PAST_DUE), any(), any(), any(), any()))
+                .thenAnswer(inv -> {
+                    LocalDateTime until = inv.getArgument(1);
+                    LocalDateTime cursorTime = inv.getArgument(2);
+                    List<Object[]> rows = new ArrayList<>();
+                    pastDue.forEach((id, endDate) -> {
+                        if (!endDate.isAfter(until) && endDate.isAfter(cursorTime)) {
+                            rows.add(new Object[]{id, endDate});
+                        }
+                    });
+                    return rows;
+                });
+
+        scheduler.processDueSubscriptions();
+
+        verify(subscriptionService).expireSubscription(11L);
+        verify(subscriptionService, never()).expireSubscription(12L);
+        verify(subscriptionService, never()).renewSubscription(anyLong());
+    }
+}
@@ -0,0 +1,126 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.model.SubscriptionPlan;
+import org.kh.neuralpix.model.enums.SubscriptionTier;
+import org.kh.neuralpix.repository.SubscriptionPlanRepository;
+import org.kh.neuralpix.service.impl.SubscriptionPlanServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SubscriptionPlanServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Mock
+    private SubscriptionPlanRepository planRepository;
+
+    private static SubscriptionPlan plan(long id, SubscriptionTier tier, LocalDateTime updatedAt) {
+        SubscriptionPlan plan = new SubscriptionPlan();
+        plan.setId(id);
+        plan.setName(tier.name());
+        plan.setTier(tier);
+        plan.setMonthlyPrice(BigDecimal.TEN);
+        plan.setYearlyPrice(BigDecimal.valueOf(100));
+        plan.setDailyGenerationLimit(10);
+        plan.setMonthlyGenerationLimit(300);
+        plan.setMaxImageResolution(1024);
+        plan.setIsActive(SubscriptionPlan.IsActive.TRUE);
+        plan.setUpdatedAt(updatedAt);
+        return plan;
+    }
+
+    /**
+     * A fresh instance, as on another server, over rows freshly loaded from the database
+     */
+    private SubscriptionPlanServiceImpl serviceOver(SubscriptionPlan... plans) {
+        SubscriptionPlanRepository repository = mock(SubscriptionPlanRepository.class);
+        List<SubscriptionPlan> rows = new ArrayList<>();
+        for (SubscriptionPlan plan : plans) {
+            rows.add(plan(plan.getId(), plan.getTier(), plan.getUpdatedAt()));
+        }
+        when(repository.findAll()).thenReturn(rows);
+        return new SubscriptionPlanServiceImpl(repository);
+    }
+
+    @Test
+    void testVersionIsDerivedFromTheData() {
+        SubscriptionPlan free = plan(1, SubscriptionTier.FREE, T0);
+        SubscriptionPlan basic = plan(2, SubscriptionTier.BASIC, T0.plusMinutes(5));
+
+        String version = serviceOver(free, basic).getCatalogVersion();
+        // Instances that loaded the same rows agree, whenever they loaded them
+        assertEquals(version, serviceOver(basic, free).getCatalogVersion());
+
+        // A later edit, or removing a plan that was not the latest edit, both change it
+        assertNotEquals(version, serviceOver(free, plan(2, SubscriptionTier.BASIC, T0.plusMinutes(6))).getCatalogVersion());
+        assertNotEquals(version, serviceOver(basic).getCatalogVersion());
+    }
+
+    @Test
+    void testPlansAreCopies() {
+        when(planRepository.findAll()).thenReturn(List.of(plan(1, SubscriptionTier.FREE, T0)));
+        SubscriptionPlanServiceImpl service = new SubscriptionPlanServiceImpl(planRepository);
+
+        SubscriptionPlan fromTier = service.getByTier(SubscriptionTier.FREE).orElseThrow();
+        fromTier.setDailyGenerationLimit(-1);
+        service.getAll().get(0).setName("changed");
+        service.getActivePlans().get(0).setIsActive(SubscriptionPlan.IsActive.FALSE);
+        service.getById(1L).setMonthlyPrice(BigDecimal.ZERO);
+
+        SubscriptionPlan fresh = service.getByTier(SubscriptionTier.FREE).orElseThrow();
+        assertNotSame(fromTier, fresh);
+        assertEquals(10, fresh.getDailyGenerationLimit());
+        assertEquals("FREE", service.getAll().get(0).getName());
+        assertEquals(1, service.getActivePlans().size());
+        assertEquals(BigDecimal.TEN, service.getById(1L).getMonthlyPrice());
+    }
+
+    @Test
+    void testCatalogDoesNotShareRepositoryEntities() {
+        SubscriptionPlan loaded = plan(1, SubscriptionTier.FREE, T0);
+        when(planRepository.findAll()).thenReturn(List.of(loaded));
+        SubscriptionPlanServiceImpl service = new SubscriptionPlanServiceImpl(planRepository);
+        String version = service.getCatalogVersion();
+
+        // A managed entity changed in a transaction that later rolls back
+        loaded.setDailyGenerationLimit(-1);
+        loaded.setUpdatedAt(T0.plusDays(1));
+
+        assertEquals(10, service.getByTier(SubscriptionTier.FREE).orElseThrow().getDailyGenerationLimit());
+        assertEquals(version, service.getCatalogVersion());
+    }
+
+    @Test
+    void testRefreshReloadsOnlyWhenTheStampChanges() {
+        when(planRepository.findAll()).thenReturn(List.of(plan(1, SubscriptionTier.FREE, T0), plan(2, SubscriptionTier.BASIC, T0)));
+        SubscriptionPlanServiceImpl service = new SubscriptionPlanServiceImpl(planRepository);
+        service.getAll();
+
+        when(planRepository.findCatalogStamp()).thenReturn(Collections.singletonList(new Object[]{T0, 2L}));
+        service.refreshCatalogIfChanged();
+        verify(planRepository, times(1)).findAll();
+
+        // Same latest edit, one plan fewer
+        when(planRepository.findAll()).thenReturn(List.of(plan(1, SubscriptionTier.FREE, T0)));
+        when(planRepository.findCatalogStamp()).thenReturn(Collections.singletonList(new Object[]{T0, 1L}));
+        service.refreshCatalogIfChanged();
+        verify(planRepository, times(2)).findAll();
+        assertEquals(1, service.getAll().size());
+        assertTrue(service.getByTier(SubscriptionTier.BASIC).isEmpty());
+    }
+}
@@ -0,0 +1,135 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.exception.SubscriptionException;
+import org.kh.neuralpix.model.Subscription;
+import org.kh.neuralpix.model.Transaction;
+import org.kh.neuralpix.model.User;
+import org.kh.neuralpix.model.enums.SubscriptionTier;
+import org.kh.neuralpix.repository.SubscriptionRepository;
+import org.kh.neuralpix.repository.UserRepository;
+import org.kh.neuralpix.repository.UserSubscriptionHistoryRepository;
+import org.kh.neuralpix.service.impl.SubscriptionServiceImpl;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import vn.payos.type.CheckoutResponseData;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Renewals are extended only once their payment is confirmed
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SubscriptionServiceTest {
+
+    private static final LocalDateTime END = LocalDateTime.now().minusHours(1);
+
+    @Mock
+    private SubscriptionRepository subscriptionRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private UserSubscriptionHistoryRepository historyRepository;
+    @Mock
+    private PayOSPaymentService payOSPaymentService;
+    @Mock
+    private EmailService emailService;
+    @Mock
+    private OrderCodeService orderCodeService;
+
+    @InjectMocks
+    private SubscriptionServiceImpl subscriptionService;
+
+    private Subscription subscription;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        subscription = Subscription.builder()
+                .id(21L)
+                .userId(3L)
+                .tier(SubscriptionTier.PREMIUM)
+                .status(Subscription.SubscriptionStatus.ACTIVE)
+                .startDate(END.minusMonths(1))
+                .endDate(END)
+                .nextBillingDate(END)
+                .price(BigDecimal.valueOf(99000))
+                .billingCycle(Subscription.BillingCycle.MONTHLY)
+                .paymentProvider("payos")
+                .autoRenew(true)
+                .build();
+        user = new User();
+        user.setId(3L);
+        user.setEmail("user@example.com");
+        user.setSubscriptionTier(SubscriptionTier.PREMIUM);
+        when(subscriptionRepository.findById(21L)).thenReturn(Optional.of(subscription));
+        when(userRepository.findById(3L)).thenReturn(Optional.of(user));
+        when(orderCodeService.nextOrderCode()).thenReturn(4242L);
+    }
+
+    @Test
+    void testRenewalRequestsPaymentWithoutExtending() {
+        CheckoutResponseData link = mock(CheckoutResponseData.class);
+        when(link.getPaymentLinkId()).thenReturn("link-1");
+        when(payOSPaymentService.createPaymentLinkWithTransaction(eq(4242L), eq(3L), eq(21L), any(),
+                eq(Transaction.TransactionType.SUBSCRIPTION_RENEWAL), anyString(), eq("user@example.com"))).thenReturn(link);
+
+        subscriptionService.renewSubscription(21L);
+
+        assertEquals(Subscription.SubscriptionStatus.PAST_DUE, subscription.getStatus());
+        assertEquals(END, subscription.getEndDate());
+        assertEquals(END, subscription.getNextBillingDate());
+        assertEquals("link-1", subscription.getExternalSubscriptionId());
+        verify(subscriptionRepository).save(subscription);
+        verifyNoInteractions(historyRepository, emailService);
+    }
+
+    @Test
+    void testRenewalPaymentThatCannotBeRequestedStaysPastDue() {
+        when(payOSPaymentService.createPaymentLinkWithTransaction(any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("PayOS unavailable"));
+
+        subscriptionService.renewSubscription(21L);
+
+        assertEquals(Subscription.SubscriptionStatus.PAST_DUE, subscription.getStatus());
+        assertEquals(END, subscription.getEndDate());
+    }
+
+    @Test
+    void testConfirmedPaymentCompletesRenewal() {
+        subscription.setStatus(Subscription.SubscriptionStatus.PAST_DUE);
+
+        subscriptionService.completeRenewal(21L);
+
+        assertEquals(Subscription.SubscriptionStatus.ACTIVE, subscription.getStatus());
+        assertTrue(subscription.getEndDate().isAfter(LocalDateTime.now().plusDays(27)));
+        verify(emailService).sendSubscriptionConfirmation(user, subscription);
+
+        // A second confirmation of the same period is refused
+        assertThrows(SubscriptionException.class, () -> subscriptionService.completeRenewal(21L));
+    }
+
+    @Test
+    void testPaymentAfterExpiryRestoresTheTier() {
+        subscription.setStatus(Subscription.SubscriptionStatus.EXPIRED);
+        user.setSubscriptionTier(SubscriptionTier.FREE);
+
+        subscriptionService.completeRenewal(21L);
+
+        assertEquals(Subscription.SubscriptionStatus.ACTIVE, subscription.getStatus());
+        assertEquals(SubscriptionTier.PREMIUM, user.getSubscriptionTier());
+        verify(userRepository).save(user);
+    }
+}
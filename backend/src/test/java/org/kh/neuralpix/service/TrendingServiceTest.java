@@ -0,0 +1,97 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.mapper.GeneratedImageMapper;
+import org.kh.neuralpix.model.TrendingSnapshot;
+import org.kh.neuralpix.repository.GeneratedImageRepository;
+import org.kh.neuralpix.repository.ProcessedImageRepository;
+import org.kh.neuralpix.repository.SchedulerCheckpointRepository;
+import org.kh.neuralpix.repository.TrendingSnapshotRepository;
+import org.kh.neuralpix.service.EngagementCounterService.Counter;
+import org.kh.neuralpix.service.EngagementCounterService.CountersFlushedEvent;
+import org.kh.neuralpix.service.impl.TrendingServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Only the instance holding the snapshot lease replaces the snapshot
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TrendingServiceTest {
+
+    @Mock
+    private GeneratedImageRepository generatedImageRepository;
+    @Mock
+    private ProcessedImageRepository processedImageRepository;
+    @Mock
+    private TrendingSnapshotRepository snapshotRepository;
+    @Mock
+    private SchedulerCheckpointRepository checkpointRepository;
+    @Mock
+    private GeneratedImageMapper generatedImageMapper;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private TrendingServiceImpl trendingService;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(checkpointRepository.existsById(anyString())).thenReturn(true);
+        trendingService = new TrendingServiceImpl(generatedImageRepository, processedImageRepository, snapshotRepository,
+                checkpointRepository, generatedImageMapper, jdbcTemplate, transactionTemplate, 100, 12, 100, 15);
+        trendingService.onCountersFlushed(new CountersFlushedEvent(
+                Map.of(Counter.IMAGE_LIKES, Map.of(1L, 2L)), System.currentTimeMillis()));
+    }
+
+    @Test
+    void testSnapshotIsSkippedWhileAnotherInstanceHoldsTheLease() {
+        when(checkpointRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(0);
+
+        trendingService.snapshot();
+
+        verify(snapshotRepository, never()).deleteByItemType(any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testLeaseHolderReplacesTheSnapshot() {
+        when(checkpointRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(1);
+
+        trendingService.snapshot();
+
+        verify(snapshotRepository).deleteByItemType(TrendingSnapshot.ItemType.GENERATED_IMAGE);
+        verify(snapshotRepository).deleteByItemType(TrendingSnapshot.ItemType.PROCESSED_IMAGE);
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        // Nothing changed since: the lease is not even asked for
+        trendingService.snapshot();
+        verify(checkpointRepository, times(1)).tryAcquire(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void testSnapshotRefusedByTheLeaseIsRetried() {
+        when(checkpointRepository.tryAcquire(anyString(), anyString(), any(), any())).thenReturn(0, 1);
+
+        trendingService.snapshot();
+        trendingService.snapshot();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+    }
+}
@@ -0,0 +1,106 @@
+package org.kh.neuralpix.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
+import org.kh.neuralpix.service.impl.UploadDedupServiceImpl;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UploadDedupServiceTest {
+
+    @Mock
+    private StorageBackend storageBackend;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final AtomicInteger stored = new AtomicInteger();
+    private UploadDedupService dedupService;
+
+    @BeforeEach
+    void setUp() {
+        when(storageBackend.store(any(byte[].class), anyString())).thenAnswer(inv -> {
+            int n = stored.incrementAndGet();
+            return CompletableFuture.completedFuture(new ImageHandle("https://cdn.example.com/" + n + ".png",
+                    "upload-" + n, inv.getArgument(1), null, (long) inv.<byte[]>getArgument(0).length, 64, 64, "png"));
+        });
+        // No upload history
+        doNothing().when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(), any());
+        dedupService = new UploadDedupServiceImpl(storageBackend, jdbcTemplate, 2000, 100);
+    }
+
+    private static String png(Color color) throws Exception {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 64, 64);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    @Test
+    void testOnlyIdenticalBytesReuseAnUpload() throws Exception {
+        ImageHandle red = dedupService.upload(7L, png(Color.RED)).join();
+        // Same perceptual hash as every other flat image, but a different picture
+        ImageHandle blue = dedupService.upload(7L, png(Color.BLUE)).join();
+        assertNotEquals(red.url(), blue.url());
+        assertEquals(red.perceptualHash(), blue.perceptualHash());
+
+        assertEquals(red.url(), dedupService.upload(7L, png(Color.RED)).join().url());
+        assertEquals(2, stored.get());
+
+        // Other users and anonymous uploads never share
+        assertNotEquals(red.url(), dedupService.upload(8L, png(Color.RED)).join().url());
+        assertNotEquals(red.url(), dedupService.upload(null, png(Color.RED)).join().url());
+        assertEquals(4, stored.get());
+    }
+
+    @Test
+    void testUploadLoadedWithoutPerceptualHashKeepsItNull() throws Exception {
+        String image = png(Color.GREEN);
+        byte[] bytes = Base64.getDecoder().decode(image.substring(image.indexOf(',') + 1));
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        // An earlier upload recorded before perceptual hashes were, or whose hash could not be computed
+        ResultSet row = mock(ResultSet.class);
+        when(row.getString("imgur_url")).thenReturn("https://cdn.example.com/old.png");
+        when(row.getString("source_hash")).thenReturn(hash);
+        when(row.getObject("source_phash", Long.class)).thenReturn(null);
+        when(row.getLong("source_phash")).thenReturn(0L);
+        doAnswer(inv -> {
+            inv.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(9L), any());
+
+        ImageHandle reused = dedupService.upload(9L, image).join();
+
+        assertEquals("https://cdn.example.com/old.png", reused.url());
+        assertNull(reused.perceptualHash());
+        assertEquals(0, stored.get());
+    }
+}
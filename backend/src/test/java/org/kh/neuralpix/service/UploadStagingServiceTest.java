@@ -0,0 +1,75 @@
+package org.kh.neuralpix.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kh.neuralpix.exception.StorageAdmissionException;
+import org.kh.neuralpix.service.UploadStagingService.Reservation;
+import org.kh.neuralpix.service.impl.UploadStagingServiceImpl;
+import org.springframework.http.HttpStatus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadStagingServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private Path write(String name, int size, Instant modified) throws Exception {
+        Path file = Files.write(uploadDir.resolve(name), new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+        return file;
+    }
+
+    @Test
+    void testLeastRecentlyUsedFilesAreEvictedForNewUploads() throws Exception {
+        Instant hourAgo = Instant.now().minus(1, ChronoUnit.HOURS);
+        Path a = write("a.png", 40, hourAgo);
+        Path b = write("b.png", 40, hourAgo.plusSeconds(60));
+        Path orphan = write("upload-1.tmp", 10, hourAgo);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UploadStagingService staging = new UploadStagingServiceImpl(uploadDir.toString(), 100, 86400, 0, 900, registry);
+        assertEquals(80, staging.usage().storedBytes());
+        assertEquals(2, staging.usage().files());
+
+        staging.accessed("a.png");
+        try (Reservation ignored = staging.reserve(40)) {
+            assertTrue(Files.exists(a));
+            assertFalse(Files.exists(b));
+            assertEquals(new UploadStagingService.Usage(100, 40, 40, 1), staging.usage());
+        }
+        assertEquals(0, staging.usage().reservedBytes());
+        assertEquals(1.0, registry.get("neuralpix.uploads.staging.evicted").counter().count());
+
+        ((UploadStagingServiceImpl) staging).sweep();
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(a));
+    }
+
+    @Test
+    void testRefusesWithTooManyRequestsWhileBusyAndInsufficientStorageWhenFull() throws Exception {
+        write("a.png", 60, Instant.now());
+        UploadStagingService staging = new UploadStagingServiceImpl(uploadDir.toString(), 100, 86400, 3600, 900,
+                new SimpleMeterRegistry());
+
+        Reservation inProgress = staging.reserve(30);
+        StorageAdmissionException busy = assertThrows(StorageAdmissionException.class, () -> staging.reserve(30));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, busy.getStatus());
+        assertTrue(busy.getRetryAfterSeconds() > 0);
+
+        inProgress.close();
+        inProgress.close();
+        assertEquals(0, staging.usage().reservedBytes());
+        assertEquals(HttpStatus.INSUFFICIENT_STORAGE,
+                assertThrows(StorageAdmissionException.class, () -> staging.reserve(50)).getStatus());
+        assertEquals(HttpStatus.INSUFFICIENT_STORAGE,
+                assertThrows(StorageAdmissionException.class, () -> staging.reserve(200)).getStatus());
+        assertTrue(Files.exists(uploadDir.resolve("a.png")));
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.kh.neuralpix.config.VertexAIConfig;
 import org.kh.neuralpix.dto.vertexai.VertexAIImageRequest;
 import org.kh.neuralpix.dto.vertexai.VertexAIImageResponse;
+import org.kh.neuralpix.service.CloudinaryService.ImageHandle;
 import org.kh.neuralpix.service.impl.VertexAIImagenServiceImpl;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -31,7 +32,7 @@ class VertexAIImagenServiceTest {
     private VertexAIConfig vertexAIConfig;
 
     @Mock
-    private CloudinaryService cloudinaryService;
+    private StorageBackend storageBackend;
 
     @InjectMocks
     private VertexAIImagenServiceImpl vertexAIImagenService;
@@ -55,7 +56,7 @@ class VertexAIImagenServiceTest {
         // Arrange
         PredictResponse mockResponse = createMockPredictResponse();
         when(predictionServiceClient.predict(any())).thenReturn(mockResponse);
-        when(cloudinaryService.uploadImageFromBytes(any(), any())).thenReturn("http://test-url.com/image.png");
+        when(storageBackend.store(any(byte[].class))).thenReturn(CompletableFuture.completedFuture(ImageHandle.ofUrl("http://test-url.com/image.png")));
 
         // Act
         CompletableFuture<VertexAIImageResponse> future = vertexAIImagenService.generateImage(testRequest);
@@ -69,7 +70,7 @@ class VertexAIImagenServiceTest {
         assertEquals("http://test-url.com/image.png", response.getImages().get(0).getImageUrl());
 
         verify(predictionServiceClient, times(1)).predict(any());
-        verify(cloudinaryService, times(1)).uploadImageFromBytes(any(), any());
+        verify(storageBackend, times(1)).store(any(byte[].class));
     }
 
     @Test
@@ -115,7 +116,7 @@ class VertexAIImagenServiceTest {
 
         PredictResponse mockResponse = createMockPredictResponse();
         when(predictionServiceClient.predict(any())).thenReturn(mockResponse);
-        when(cloudinaryService.uploadImageFromBytes(any(), any())).thenReturn("http://test-url.com/edited.png");
+        when(storageBackend.store(any(byte[].class))).thenReturn(CompletableFuture.completedFuture(ImageHandle.ofUrl("http://test-url.com/edited.png")));
 
         // Act
         CompletableFuture<VertexAIImageResponse> future = vertexAIImagenService.editImage(editRequest);
@@ -136,7 +137,7 @@ class VertexAIImagenServiceTest {
 
         PredictResponse mockResponse = createMockPredictResponse();
         when(predictionServiceClient.predict(any())).thenReturn(mockResponse);
-        when(cloudinaryService.uploadImageFromBytes(any(), any())).thenReturn("http://test-url.com/upscaled.png");
+        when(storageBackend.store(any(byte[].class))).thenReturn(CompletableFuture.completedFuture(ImageHandle.ofUrl("http://test-url.com/upscaled.png")));
 
         // Act
         CompletableFuture<VertexAIImageResponse> future = vertexAIImagenService.upscaleImage(upscaleRequest);
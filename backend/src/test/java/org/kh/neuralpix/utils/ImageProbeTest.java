@@ -0,0 +1,83 @@
+package org.kh.neuralpix.utils;
+
+import org.junit.jupiter.api.Test;
+import org.kh.neuralpix.utils.ImageProbe.ImageInfo;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageProbeTest {
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Serves the bytes and records every read, so tests can see how much was touched
+     */
+    private static ImageProbe.ByteSource source(byte[] data, List<long[]> reads) {
+        return (offset, length) -> {
+            reads.add(new long[]{offset, length});
+            int from = (int) Math.min(offset, data.length);
+            return Arrays.copyOfRange(data, from, Math.min(data.length, from + length));
+        };
+    }
+
+    @Test
+    void testPngJpegAndGifDimensionsFromEncodedImages() throws IOException {
+        assertEquals(new ImageInfo("png", 37, 21), ImageProbe.probe(source(encode("png", 37, 21), new ArrayList<>())));
+        assertEquals(new ImageInfo("jpeg", 640, 3), ImageProbe.probe(source(encode("jpg", 640, 3), new ArrayList<>())));
+        assertEquals(new ImageInfo("gif", 9, 300), ImageProbe.probe(source(encode("gif", 9, 300), new ArrayList<>())));
+    }
+
+    @Test
+    void testJpegSkipsLargeSegmentsWithoutReadingThem() throws IOException {
+        // SOI, a 60 KB APP1 block, then SOF0 with height 300 and width 400
+        byte[] jpeg = new byte[2 + 2 + 60_000 + 11];
+        jpeg[0] = (byte) 0xFF;
+        jpeg[1] = (byte) 0xD8;
+        jpeg[2] = (byte) 0xFF;
+        jpeg[3] = (byte) 0xE1;
+        jpeg[4] = (byte) (60_000 >> 8);
+        jpeg[5] = (byte) (60_000 & 0xFF);
+        int sof = 4 + 60_000;
+        byte[] frame = {(byte) 0xFF, (byte) 0xC0, 0x00, 0x11, 0x08, 0x01, 0x2C, 0x01, (byte) 0x90};
+        System.arraycopy(frame, 0, jpeg, sof, frame.length);
+
+        List<long[]> reads = new ArrayList<>();
+        assertEquals(new ImageInfo("jpeg", 400, 300), ImageProbe.probe(source(jpeg, reads)));
+        assertEquals(2, reads.size());
+        assertEquals(sof, reads.get(1)[0]);
+        assertTrue(reads.get(1)[1] < 16);
+    }
+
+    @Test
+    void testWebpExtendedHeader() throws IOException {
+        byte[] webp = new byte[30];
+        System.arraycopy("RIFF".getBytes(), 0, webp, 0, 4);
+        System.arraycopy("WEBPVP8X".getBytes(), 0, webp, 8, 8);
+        // Canvas 1920x1080, stored minus one as 24-bit little-endian values
+        webp[24] = (byte) 0x7F;
+        webp[25] = 0x07;
+        webp[27] = 0x37;
+        webp[28] = 0x04;
+
+        assertEquals(new ImageInfo("webp", 1920, 1080), ImageProbe.probe(source(webp, new ArrayList<>())));
+    }
+
+    @Test
+    void testUnknownOrTruncatedDataIsNotAnImage() throws IOException {
+        assertNull(ImageProbe.probe(source("BM not supported".getBytes(), new ArrayList<>())));
+        assertNull(ImageProbe.probe(source(Arrays.copyOf(encode("png", 4, 4), 12), new ArrayList<>())));
+        assertNull(ImageProbe.probe(source(new byte[0], new ArrayList<>())));
+    }
+}
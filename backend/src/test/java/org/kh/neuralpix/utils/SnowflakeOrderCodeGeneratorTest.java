@@ -0,0 +1,62 @@
+package org.kh.neuralpix.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeOrderCodeGeneratorTest {
+
+    @Test
+    void testCodesAreUniqueAcrossThreadsAndWithinPayOSRange() throws Exception {
+        SnowflakeOrderCodeGenerator generator = new SnowflakeOrderCodeGenerator(31, 0);
+        Set<Long> codes = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    codes.add(generator.nextOrderCode());
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(80_000, codes.size());
+        for (Long code : codes) {
+            assertTrue(code > 0 && code <= SnowflakeOrderCodeGenerator.MAX_ORDER_CODE);
+        }
+    }
+
+    @Test
+    void testSequenceOverflowBorrowsNextMillisecond() {
+        long frozen = SnowflakeOrderCodeGenerator.EPOCH_MILLIS + 1_000;
+        SnowflakeOrderCodeGenerator generator = new SnowflakeOrderCodeGenerator(3, 0, () -> frozen);
+
+        long previous = -1;
+        for (int i = 0; i < 1_000; i++) {
+            long code = generator.nextOrderCode();
+            assertTrue(code > previous);
+            assertEquals(3, (code >>> SnowflakeOrderCodeGenerator.SEQUENCE_BITS) & (SnowflakeOrderCodeGenerator.MAX_NODES - 1));
+            previous = code;
+        }
+        assertTrue(generator.getLastTimestampMillis() > frozen);
+    }
+
+    @Test
+    void testNewHolderStartsAfterPreviousLastTimestamp() {
+        long clock = SnowflakeOrderCodeGenerator.EPOCH_MILLIS + 5_000;
+        SnowflakeOrderCodeGenerator previousHolder = new SnowflakeOrderCodeGenerator(7, 0, () -> clock + 2_000);
+        long lastIssued = previousHolder.nextOrderCode();
+
+        // New holder's clock is behind the previous holder's
+        SnowflakeOrderCodeGenerator newHolder = new SnowflakeOrderCodeGenerator(7,
+                previousHolder.getLastTimestampMillis(), () -> clock);
+        assertTrue(newHolder.nextOrderCode() > lastIssued);
+    }
+}
@@ -0,0 +1,62 @@
+package org.kh.neuralpix.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingIndexTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long NOW = TrendingIndex.EPOCH + 1000 * HOUR;
+
+    @Test
+    void testRecentEngagementOutranksOlderEngagement() {
+        TrendingIndex index = new TrendingIndex(10, HOUR);
+
+        // 100 views two days ago decay below 5 views now
+        index.record(1L, 100, NOW - 48 * HOUR);
+        index.record(2L, 5, NOW);
+        index.record(3L, 1, NOW);
+
+        assertEquals(List.of(2L, 3L, 1L), index.top(0, 10));
+        assertEquals(List.of(3L), index.top(1, 1));
+        assertEquals(5.0, index.score(2L, NOW), 1e-9);
+        assertEquals(2.5, index.score(2L, NOW + HOUR), 1e-9);
+
+        // Scores add up within an item
+        index.record(3L, 7, NOW);
+        assertEquals(8.0, index.score(3L, NOW), 1e-9);
+        assertEquals(List.of(3L, 2L, 1L), index.top(0, 3));
+    }
+
+    @Test
+    void testCapacityDropsLowestScore() {
+        TrendingIndex index = new TrendingIndex(2, HOUR);
+        index.record(1L, 1, NOW);
+        index.record(2L, 3, NOW);
+        index.record(3L, 2, NOW);
+        // Lower than everything tracked, never enters
+        index.record(4L, 0.5, NOW);
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(2L, 3L), index.top(0, 10));
+    }
+
+    @Test
+    void testSnapshotRestoresSameRanking() {
+        TrendingIndex index = new TrendingIndex(10, HOUR);
+        index.record(1L, 4, NOW - HOUR);
+        index.record(2L, 3, NOW);
+        index.remove(99L);
+
+        Map<Long, Double> snapshot = index.snapshot();
+        TrendingIndex restored = new TrendingIndex(10, HOUR);
+        snapshot.forEach(restored::restore);
+
+        assertEquals(index.top(0, 10), restored.top(0, 10));
+        assertEquals(index.score(1L, NOW), restored.score(1L, NOW), 1e-9);
+    }
+}